@@ -1,7 +1,12 @@
+import sys
+
 import pandas as pd
 import matplotlib.pyplot as plt
 
-df = pd.read_csv('conjunction_benchmark.csv')
+# python plot.py [quintic] plots conjunction_benchmark_quintic.csv into quintic_*.png
+suffix = f"_{sys.argv[1]}" if len(sys.argv) > 1 else ''
+prefix = f"{sys.argv[1]}_" if len(sys.argv) > 1 else ''
+df = pd.read_csv(f'conjunction_benchmark{suffix}.csv')
 param = 'interp_stride'
 param_label = 'Interpolation Stride'
 avg_all = df.groupby(param).mean(numeric_only=True).reset_index()
@@ -35,7 +40,7 @@ ax.set_ylabel('Total Time (s)', fontsize=12)
 ax.set_title('Total Processing Time vs Interpolation Stride', fontsize=14, fontweight='bold')
 ax.grid(True, alpha=0.3)
 plt.tight_layout()
-plt.savefig('1_total_time.png', dpi=300, bbox_inches='tight')
+plt.savefig(f'{prefix}1_total_time.png', dpi=300, bbox_inches='tight')
 plt.close()
 
 # Plot 2 - Line per component
@@ -50,7 +55,7 @@ ax.set_title('Time Breakdown by Interpolation Stride', fontsize=14, fontweight='
 ax.legend(fontsize=10, ncol=2)
 ax.grid(True, alpha=0.3)
 plt.tight_layout()
-plt.savefig('2_time_breakdown.png', dpi=300, bbox_inches='tight')
+plt.savefig(f'{prefix}2_time_breakdown.png', dpi=300, bbox_inches='tight')
 plt.close()
 
 # Plot 3 - Stacked area
@@ -64,7 +69,7 @@ ax.set_title('Time Breakdown Stacked by Interpolation Stride', fontsize=14, font
 ax.legend(fontsize=8, loc='upper left', ncol=2)
 ax.grid(True, alpha=0.3)
 plt.tight_layout()
-plt.savefig('3_time_breakdown_stacked.png', dpi=300, bbox_inches='tight')
+plt.savefig(f'{prefix}3_time_breakdown_stacked.png', dpi=300, bbox_inches='tight')
 plt.close()
 
 # Plot 4 - Conjunctions (includes stride=1)
@@ -77,5 +82,5 @@ ax.set_ylabel('Conjunctions', fontsize=12)
 ax.set_title('Conjunctions Detected vs Interpolation Stride', fontsize=14, fontweight='bold')
 ax.grid(True, alpha=0.3)
 plt.tight_layout()
-plt.savefig('4_conjunctions.png', dpi=300, bbox_inches='tight')
+plt.savefig(f'{prefix}4_conjunctions.png', dpi=300, bbox_inches='tight')
 plt.close()
@@ -1,8 +1,15 @@
+import sys
+
 import pandas as pd
 import matplotlib.pyplot as plt
 import numpy as np
 
-df = pd.read_csv('pareto_benchmark.csv')
+# python plot.py [quintic] plots pareto_benchmark_quintic.csv into quintic_*.png
+suffix = f"_{sys.argv[1]}" if len(sys.argv) > 1 else ''
+prefix = f"{sys.argv[1]}_" if len(sys.argv) > 1 else ''
+df = pd.read_csv(f'pareto_benchmark{suffix}.csv')
+if 'neighbor_list_steps' not in df:
+    df['neighbor_list_steps'] = 1  # older runs rebuilt the grid every step
 
 ground_truth = df['conj'].iloc[0]
 df['accuracy_pct'] = (df['conj'] / ground_truth * 100).clip(upper=100)
@@ -23,12 +30,12 @@ frontier = sorted_df[sorted_df['is_pareto']].sort_values('accuracy_pct', ascendi
 # Print table
 print(f"\nGround truth: {ground_truth} conjunctions")
 print(f"\nPareto frontier ({len(frontier)} points):")
-print(f"| Step | Stride | Cell  | Cell (km) | Conj  | Accuracy | Time   |")
-print(f"|------|--------|-------|-----------|-------|----------|--------|")
+print(f"| Step | Stride | Cell  | Cell (km) | NL | Conj  | Accuracy | Time   |")
+print(f"|------|--------|-------|-----------|----|-------|----------|--------|")
 for _, row in frontier.iterrows():
     cell_km = row['tolerance_km'] / row['cell_ratio']
     print(f"| {int(row['step_ratio']):<4} | {int(row['interp_stride']):<6} | {row['cell_ratio']:<5.2f} "
-          f"| {cell_km:>7.1f}   "
+          f"| {cell_km:>7.1f}   | {int(row['neighbor_list_steps']):<2} "
           f"| {int(row['conj']):>5} | {row['accuracy_pct']:>7.2f}% | {row['total_s']:>5.2f}s |")
 
 # Print all evaluated points
@@ -50,7 +57,7 @@ ax.plot(frontier['total_s'], frontier['accuracy_pct'],
         label='Pareto frontier', zorder=3)
 
 for _, row in frontier.iterrows():
-    label = f"s{int(row['step_ratio'])} i{int(row['interp_stride'])} c{row['cell_ratio']:.1f}"
+    label = f"s{int(row['step_ratio'])} i{int(row['interp_stride'])} c{row['cell_ratio']:.1f} n{int(row['neighbor_list_steps'])}"
     ax.annotate(label, (row['total_s'], row['accuracy_pct']),
                 textcoords='offset points', xytext=(8, -4), fontsize=7,
                 color='#D62839')
@@ -65,7 +72,7 @@ ax.set_title('Pareto Frontier: Speed vs Accuracy', fontsize=14, fontweight='bold
 ax.legend(fontsize=10)
 ax.grid(True, alpha=0.3)
 plt.tight_layout()
-plt.savefig('1_pareto_frontier.png', dpi=300, bbox_inches='tight')
+plt.savefig(f'{prefix}1_pareto_frontier.png', dpi=300, bbox_inches='tight')
 plt.close()
 
 # Plot 2 - Frontier parameter evolution as accuracy decreases
@@ -94,7 +101,7 @@ for ax in [ax1, ax2, ax3]:
     ax.axvline(x=98.0, color='#FF9900', linestyle='--', alpha=0.7)
 
 plt.tight_layout()
-plt.savefig('2_frontier_parameters.png', dpi=300, bbox_inches='tight')
+plt.savefig(f'{prefix}2_frontier_parameters.png', dpi=300, bbox_inches='tight')
 plt.close()
 
 timing_columns = ['propagator_s', 'sgp4_s', 'interp_s', 'check_s', 'grouping_s', 'refine_s', 'probability_s']
@@ -117,7 +124,7 @@ ax.set_title('Pareto Frontier: Time Breakdown', fontsize=14, fontweight='bold')
 ax.legend(fontsize=8, ncol=2)
 ax.grid(True, alpha=0.3)
 plt.tight_layout()
-plt.savefig('3_time_breakdown.png', dpi=300, bbox_inches='tight')
+plt.savefig(f'{prefix}3_time_breakdown.png', dpi=300, bbox_inches='tight')
 plt.close()
 
 # Plot 4 - Stacked area along Pareto frontier
@@ -131,7 +138,7 @@ ax.set_title('Pareto Frontier: Time Breakdown (Stacked)', fontsize=14, fontweigh
 ax.legend(fontsize=8, loc='upper left', ncol=2)
 ax.grid(True, alpha=0.3)
 plt.tight_layout()
-plt.savefig('4_time_breakdown_stacked.png', dpi=300, bbox_inches='tight')
+plt.savefig(f'{prefix}4_time_breakdown_stacked.png', dpi=300, bbox_inches='tight')
 plt.close()
 
 print(f"\nPlots saved: 1_pareto_frontier.png, 2_frontier_parameters.png, 3_time_breakdown.png, 4_time_breakdown_stacked.png")
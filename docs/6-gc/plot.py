@@ -9,18 +9,19 @@ for f in csv_files:
     dfs[name] = pd.read_csv(f)
 
 gc_names = list(dfs.keys())
-gc_colors = ['#2E86AB', '#D62839', '#06A77D', '#F77F00'][:len(gc_names)]
+gc_colors = ['#2E86AB', '#7FB3D5', '#1B4F72', '#D62839', '#F1948A', '#922B21', '#06A77D', '#82E0AA', '#0B5345',
+             '#F77F00', '#F8C471', '#9C640C'][:len(gc_names)]
 
 timing_columns = ['propagator_s', 'sgp4_s', 'interp_s', 'check_s', 'grouping_s', 'refine_s', 'probability_s']
 stack_colors = ['#2ca02c', '#06A77D', '#e377c2', '#17becf', '#9467bd', '#D62839', '#8c564b']
 stack_labels = ['Propagator Build', 'SGP4', 'Interpolation', 'Check Pairs', 'Grouping', 'Refine', 'Probability']
 
 # Print table
-print(f"| {'GC':<12} | Mean Time | Std Dev | Min    | Max    | Conjunctions |")
-print(f"|{'-'*14}|-----------|---------|--------|--------|--------------|")
+print(f"| {'GC':<20} | Mean Time | Std Dev | Min    | Max    | Conjunctions |")
+print(f"|{'-'*22}|-----------|---------|--------|--------|--------------|")
 for name in gc_names:
     df = dfs[name]
-    print(f"| {name:<12} | {df['total_s'].mean():>8.2f}s | {df['total_s'].std():>6.2f}s "
+    print(f"| {name:<20} | {df['total_s'].mean():>8.2f}s | {df['total_s'].std():>6.2f}s "
           f"| {df['total_s'].min():>5.2f}s | {df['total_s'].max():>5.2f}s | {int(df['conj'].mean()):>12} |")
 
 # Plot 1 - Total time: box plot (left) + mean bar (right)
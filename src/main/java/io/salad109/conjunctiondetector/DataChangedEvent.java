@@ -1,4 +1,9 @@
 package io.salad109.conjunctiondetector;
 
-public record DataChangedEvent() {
+/**
+ * Published after a catalog sync or a conjunction scan commits.
+ *
+ * @param catalogChanged true when published by a catalog sync, false for a conjunction scan
+ */
+public record DataChangedEvent(boolean catalogChanged) {
 }
@@ -6,7 +6,8 @@ import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
 import io.salad109.conjunctiondetector.satellite.SatelliteService;
 import jakarta.annotation.PostConstruct;
 import org.apache.commons.lang3.time.StopWatch;
-import org.orekit.propagation.analytical.tle.TLEPropagator;
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.eclipse.collections.impl.factory.primitive.LongSets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,22 +19,36 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class ConjunctionService {
 
     private static final Logger log = LoggerFactory.getLogger(ConjunctionService.class);
 
+    // Keeps the primary ID lists of a delete well under the JDBC bind parameter limit
+    private static final int DELETE_BATCH_SIZE = 10_000;
+
     private final SatelliteService satelliteService;
     private final ConjunctionRepository conjunctionRepository;
     private final PropagationService propagationService;
+    private final PropagatorRegistry propagatorRegistry;
     private final ScanService scanService;
+    private final FilterChainService filterChainService;
+    private final FormationTracker formationTracker;
     private final CollisionProbabilityService collisionProbabilityService;
     private final ScanLogService scanLogService;
     private final ApplicationEventPublisher eventPublisher;
@@ -59,17 +74,109 @@ public class ConjunctionService {
     @Value("${conjunction.subwindow-count:1}")
     private int subwindowCount;
 
+    @Value("${conjunction.grid-type:hash}")
+    private GridType gridType;
+
+    @Value("${conjunction.broad-phase:grid}")
+    private BroadPhaseType broadPhaseType;
+
+    @Value("${conjunction.position-layout:satellite-major}")
+    private PositionLayout positionLayout;
+
+    @Value("${conjunction.sweep-mode:cached}")
+    private SweepMode sweepMode;
+
+    @Value("${conjunction.position-storage:heap}")
+    private PositionStorage positionStorage;
+
+    @Value("${conjunction.position-spill-dir:}")
+    private String positionSpillDir;
+
+    @Value("${conjunction.satellite-ordering:catalog}")
+    private SatelliteOrdering satelliteOrdering;
+
+    @Value("${conjunction.knot-propagator:orekit}")
+    private KnotPropagator knotPropagator;
+
+    @Value("${conjunction.interpolation-order:cubic}")
+    private InterpolationOrder interpolationOrder;
+
+    @Value("${conjunction.ephemeris:hermite}")
+    private EphemerisType ephemerisType;
+
+    @Value("${conjunction.chebyshev-segment-minutes:60.0}")
+    private double chebyshevSegmentMinutes;
+
+    @Value("${conjunction.chebyshev-degree:12}")
+    private int chebyshevDegree;
+
+    @Value("${conjunction.pipeline-memory-mb:0}")
+    private long pipelineMemoryMb;
+
+    @Value("${conjunction.knot-store-dir:}")
+    private String knotStoreDir;
+
+    private KnotStore knotStore;
+
+    @Value("${conjunction.neighbor-list-steps:1}")
+    private int neighborListSteps;
+
+    @Value("${conjunction.kernel:scalar}")
+    private KernelType kernel;
+
+    @Value("${conjunction.shell-boundaries-km:}")
+    private double[] shellBoundariesKm;
+
+    @Value("${conjunction.shell-margin-km:50.0}")
+    private double shellMarginKm;
+
+    @Value("${conjunction.regime-max-stride:1}")
+    private int regimeMaxStride;
+
+    @Value("${conjunction.event-reduction:sort}")
+    private EventReduction eventReduction;
+
+    @Value("${conjunction.formation-tracking:false}")
+    private boolean formationTracking;
+
+    @Value("${conjunction.formation-max-velocity-ms:10.0}")
+    private double formationMaxVelocityMs;
+
+    @Value("${conjunction.screening-scope:all}")
+    private ScreeningScope screeningScope;
+
+    @Value("${conjunction.primary-norad-ids:}")
+    private int[] primaryNoradIds;
+
+    @Value("${conjunction.primary-object-types:}")
+    private String[] primaryObjectTypes;
+
+    @Value("${conjunction.primary-schedule.cron:-}")
+    private String primaryScheduleCron;
+
+    @Value("${conjunction.engine:grid}")
+    private ScreeningEngine engine;
+
+    @Value("${conjunction.filter-margin-km:25.0}")
+    private double filterMarginKm;
+
     public ConjunctionService(SatelliteService satelliteService,
                               ConjunctionRepository conjunctionRepository,
                               PropagationService propagationService,
+                              PropagatorRegistry propagatorRegistry,
                               ScanService scanService,
+                              FilterChainService filterChainService,
+                              FormationTracker formationTracker,
                               CollisionProbabilityService collisionProbabilityService,
                               ScanLogService scanLogService,
                               ApplicationEventPublisher eventPublisher) {
         this.satelliteService = satelliteService;
         this.conjunctionRepository = conjunctionRepository;
         this.propagationService = propagationService;
+        this.propagatorRegistry = propagatorRegistry;
         this.scanService = scanService;
+        this.filterChainService = filterChainService;
+        this.formationTracker = formationTracker;
         this.collisionProbabilityService = collisionProbabilityService;
         this.scanLogService = scanLogService;
         this.eventPublisher = eventPublisher;
@@ -85,6 +192,73 @@ public class ConjunctionService {
         if (interpolationStride <= 0)
             throw new IllegalStateException("conjunction.interpolation-stride must be positive");
         if (subwindowCount <= 0) throw new IllegalStateException("conjunction.subwindow-count must be positive");
+        if (neighborListSteps <= 0)
+            throw new IllegalStateException("conjunction.neighbor-list-steps must be positive");
+        if (kernel == KernelType.VECTOR && !KernelType.isVectorApiAvailable())
+            throw new IllegalStateException("conjunction.kernel=vector requires --add-modules jdk.incubator.vector");
+        if (shellMarginKm < 0) throw new IllegalStateException("conjunction.shell-margin-km must not be negative");
+        if (broadPhaseType != BroadPhaseType.GRID && (neighborListSteps > 1 || shellBoundariesKm.length > 0))
+            throw new IllegalStateException("neighbor lists and altitude shells only support conjunction.broad-phase=grid");
+        if (neighborListSteps > 1 && sweepMode != SweepMode.CACHED)
+            throw new IllegalStateException("conjunction.neighbor-list-steps above 1 requires conjunction.sweep-mode=cached");
+        if (shellBoundariesKm.length > 0 && sweepMode != SweepMode.CACHED)
+            throw new IllegalStateException("conjunction.shell-boundaries-km requires conjunction.sweep-mode=cached");
+        if (regimeMaxStride <= 0 || Integer.bitCount(regimeMaxStride) != 1)
+            throw new IllegalStateException("conjunction.regime-max-stride must be a positive power of two");
+        if (regimeMaxStride > 1 && (sweepMode != SweepMode.CACHED || positionLayout != PositionLayout.SATELLITE_MAJOR
+                || neighborListSteps > 1 || shellBoundariesKm.length > 0))
+            throw new IllegalStateException("conjunction.regime-max-stride above 1 requires the satellite-major cached sweep without neighbor lists or altitude shells");
+        if (eventReduction == EventReduction.IN_SWEEP && (neighborListSteps > 1 || shellBoundariesKm.length > 0
+                || sweepMode == SweepMode.SEGMENT_BOXES))
+            throw new IllegalStateException("conjunction.event-reduction=in-sweep does not support neighbor lists, altitude shells or segment boxes");
+        if (formationMaxVelocityMs <= 0)
+            throw new IllegalStateException("conjunction.formation-max-velocity-ms must be positive");
+        if (formationTracking && (neighborListSteps > 1 || shellBoundariesKm.length > 0))
+            throw new IllegalStateException("conjunction.formation-tracking does not support neighbor lists or altitude shells");
+        if (filterMarginKm < 0) throw new IllegalStateException("conjunction.filter-margin-km must not be negative");
+        if (chebyshevSegmentMinutes * 60 < stepSeconds)
+            throw new IllegalStateException("conjunction.chebyshev-segment-minutes must span at least one step");
+        if (chebyshevDegree < 2) throw new IllegalStateException("conjunction.chebyshev-degree must be at least 2");
+        if (ephemerisType == EphemerisType.CHEBYSHEV && (sweepMode != SweepMode.CACHED || regimeMaxStride > 1
+                || formationTracking || satelliteOrdering != SatelliteOrdering.CATALOG))
+            throw new IllegalStateException("conjunction.ephemeris=chebyshev requires the cached sweep without time step regimes, formation tracking or satellite reordering");
+        if (interpolationOrder == InterpolationOrder.QUINTIC && (sweepMode != SweepMode.CACHED || regimeMaxStride > 1))
+            throw new IllegalStateException("conjunction.interpolation-order=quintic requires the cached sweep without time step regimes");
+        if (positionStorage != PositionStorage.HEAP && (positionLayout != PositionLayout.STEP_MAJOR
+                || sweepMode != SweepMode.CACHED || regimeMaxStride > 1 || ephemerisType != EphemerisType.HERMITE
+                || interpolationOrder != InterpolationOrder.CUBIC))
+            throw new IllegalStateException("conjunction.position-storage=off-heap or quantized requires the step-major cached sweep with cubic Hermite and no time step regimes");
+        if (!positionSpillDir.isBlank() && positionStorage != PositionStorage.OFF_HEAP)
+            throw new IllegalStateException("conjunction.position-spill-dir requires conjunction.position-storage=off-heap");
+        if (pipelineMemoryMb < 0) throw new IllegalStateException("conjunction.pipeline-memory-mb must not be negative");
+        boolean primariesUsed = screeningScope == ScreeningScope.PRIMARIES || !"-".equals(primaryScheduleCron);
+        if (primariesUsed && primarySelection().isEmpty())
+            throw new IllegalStateException("primary screening requires conjunction.primary-norad-ids or conjunction.primary-object-types");
+        if (primariesUsed && (engine != ScreeningEngine.GRID || neighborListSteps > 1 || shellBoundariesKm.length > 0
+                || sweepMode == SweepMode.SEGMENT_BOXES || ephemerisType == EphemerisType.CHEBYSHEV))
+            throw new IllegalStateException("primary screening requires the grid engine without neighbor lists, altitude shells, segment boxes or the Chebyshev ephemeris");
+    }
+
+    @PostConstruct
+    void openKnotStore() {
+        if (!knotStoreDir.isBlank()) knotStore = KnotStore.open(Path.of(knotStoreDir));
+    }
+
+    private Path positionSpillDirectory() {
+        return positionSpillDir.isBlank() ? null : Path.of(positionSpillDir);
+    }
+
+    /**
+     * Distance under which the sweep reports every pair: the grid and the primary probe only cover one cell size.
+     */
+    private double sweepCoverageKm() {
+        boolean cells = broadPhaseType == BroadPhaseType.GRID || screeningScope == ScreeningScope.PRIMARIES
+                || !"-".equals(primaryScheduleCron);
+        return cells ? Math.min(toleranceKm, cellSizeKm) : toleranceKm;
+    }
+
+    private PrimarySelection primarySelection() {
+        return PrimarySelection.of(primaryNoradIds, primaryObjectTypes);
     }
 
     @Transactional(readOnly = true)
@@ -119,8 +293,20 @@ public class ConjunctionService {
 
     @Transactional
     public void findConjunctions() {
+        findConjunctions(screeningScope);
+    }
+
+    /**
+     * Screen only the primaries against the full catalog and replace their conjunctions, leaving the rest in place.
+     */
+    @Transactional
+    public void findPrimaryConjunctions() {
+        findConjunctions(ScreeningScope.PRIMARIES);
+    }
+
+    private void findConjunctions(ScreeningScope scope) {
         StopWatch stopWatch = StopWatch.createStarted();
-        log.info("Starting conjunction screening...");
+        log.info("Starting conjunction screening ({})...", scope);
 
         OffsetDateTime startedAt = OffsetDateTime.now(ZoneOffset.UTC);
 
@@ -128,49 +314,37 @@ public class ConjunctionService {
         List<SatelliteScanInfo> satellites = satelliteService.getAllScanInfo();
         log.debug("Loaded {} satellites", satellites.size());
 
-        // Build propagators
-        Map<Integer, TLEPropagator> propagators = propagationService.buildPropagators(satellites);
-
-        // Split the lookahead window into subwindows to cap PositionCache memory
-        OffsetDateTime windowEnd = startedAt.plusHours(lookaheadHours);
-        long subwindowNanos = Duration.between(startedAt, windowEnd).toNanos() / subwindowCount;
-
-        List<ScanService.RefinedEvent> allRefined = new ArrayList<>();
-
-        for (int w = 0; w < subwindowCount; w++) {
-            OffsetDateTime subStart = startedAt.plusNanos(w * subwindowNanos);
-            OffsetDateTime subEnd = (w == subwindowCount - 1) ? windowEnd : startedAt.plusNanos((w + 1) * subwindowNanos);
-
-            // SGP4 at stride points
-            PropagationService.KnotCache knots = propagationService.computeKnots(
-                    propagators, subStart, subEnd, stepSeconds, interpolationStride);
-
-            // Interpolate to full position cache
-            PropagationService.PositionCache cache = propagationService.interpolate(knots);
-
-            // Coarse sweep
-            List<ScanService.CoarseDetection> detections = scanService.checkPairs(
-                    satellites, cache, toleranceKm, cellSizeKm);
-
-            // Sort, cluster, reduce to best-per-event
-            List<ScanService.CoarseDetection> events = scanService.groupAndReduce(detections);
+        PrimarySelection primaries = scope == ScreeningScope.PRIMARIES ? primarySelection() : null;
+        List<Integer> primaryIds = primaries == null ? List.of() : satellites.stream()
+                .filter(primaries::includes)
+                .map(SatelliteScanInfo::noradCatId)
+                .toList();
+        if (primaries != null) log.debug("Screening {} primaries against the catalog", primaryIds.size());
 
-            // Refine
-            List<ScanService.RefinedEvent> refined = scanService.refine(
-                    events, cache, propagators, stepSeconds, thresholdKm);
-            allRefined.addAll(refined);
+        // Propagators from earlier scans, rebuilt only for changed element sets
+        ScanCatalog catalog = propagatorRegistry.catalog(satellites);
 
-            log.debug("Subwindow {}/{}: {} detections, {} events, {} refined",
-                    w + 1, subwindowCount, detections.size(), events.size(), refined.size());
-        }
+        // Grid sweep, or mean element filters with SGP4 only inside the windows where a pair can meet
+        OffsetDateTime windowEnd = startedAt.plusHours(lookaheadHours);
+        List<ScanService.RefinedEvent> allRefined = engine == ScreeningEngine.FILTER_CHAIN
+                ? filterChainService.screen(catalog, startedAt, windowEnd, stepSeconds,
+                toleranceKm, thresholdKm, filterMarginKm).refined()
+                : screenGrid(catalog, startedAt, windowEnd, primaries);
 
         // Collision probability
         List<Conjunction> conjunctions = allRefined.parallelStream()
                 .map(collisionProbabilityService::computeProbabilityAndBuild)
                 .toList();
 
-        // Persist
-        conjunctionRepository.truncate();
+        // Persist, a primary scan only replaces conjunctions involving a primary
+        if (primaries == null) {
+            conjunctionRepository.truncate();
+        } else {
+            for (int from = 0; from < primaryIds.size(); from += DELETE_BATCH_SIZE) {
+                conjunctionRepository.deleteInvolving(
+                        primaryIds.subList(from, Math.min(from + DELETE_BATCH_SIZE, primaryIds.size())));
+            }
+        }
         conjunctionRepository.saveAll(conjunctions);
         satelliteService.updateConjunctionCounts();
 
@@ -178,7 +352,317 @@ public class ConjunctionService {
         log.info("Conjunction screening completed in {}ms, found {} conjunctions",
                 stopWatch.getTime(), conjunctions.size());
 
-        scanLogService.saveScanLog(startedAt, stopWatch.getTime(), satellites.size(), conjunctions.size());
-        eventPublisher.publishEvent(new DataChangedEvent());
+        // The scan log is the full catalog's history, a primary scan's partial count would read as a full scan
+        if (primaries == null) {
+            scanLogService.saveScanLog(startedAt, stopWatch.getTime(), satellites.size(), conjunctions.size());
+        }
+        eventPublisher.publishEvent(new DataChangedEvent(false));
+    }
+
+    List<ScanService.RefinedEvent> screenGrid(ScanCatalog catalog, OffsetDateTime startedAt,
+                                              OffsetDateTime windowEnd, PrimarySelection primaries) {
+        // Split the lookahead window into subwindows to cap PositionCache memory
+        long subwindowNanos = Duration.between(startedAt, windowEnd).toNanos() / subwindowCount;
+        OffsetDateTime windowStart = startedAt;
+        long knotNanos = KnotStore.knotNanos(stepSeconds, interpolationStride);
+        if (knotStore != null && subwindowNanos >= knotNanos) {
+            // Stored knots sit on a global lattice, start every subwindow on it
+            windowStart = KnotStore.floorToLattice(startedAt, knotNanos);
+            subwindowNanos = subwindowNanos / knotNanos * knotNanos;
+            KnotStore store = knotStore;
+            synchronized (store) {
+                store.retainFrom(windowStart, knotNanos);
+            }
+        }
+        BroadPhase broadPhase = BroadPhase.create(broadPhaseType, gridType, toleranceKm, cellSizeKm);
+
+        // Subwindows prepared ahead of the one being swept, as many as fit the memory budget next to it
+        long subwindowBytes = subwindowBytes(catalog.size(), subwindowNanos);
+        int ahead = (int) Math.clamp(pipelineMemoryMb * 1024L * 1024L / Math.max(1, subwindowBytes) - 1,
+                0, subwindowCount - 1);
+
+        List<ScanService.RefinedEvent> allRefined = new ArrayList<>();
+        PipelineTimings timings = new PipelineTimings();
+        StopWatch wall = StopWatch.createStarted();
+        Deque<Future<Subwindow>> prepared = new ArrayDeque<>();
+        // Set once the scan is over, queued preparations then return without building anything
+        AtomicBoolean finished = new AtomicBoolean();
+        ExecutorService prefetch = ahead > 0
+                ? Executors.newSingleThreadExecutor(Thread.ofPlatform().name("subwindow-prepare").factory())
+                : null;
+        try {
+            int next = 0;
+            for (int w = 0; w < subwindowCount; w++) {
+                Subwindow subwindow;
+                if (prefetch == null) {
+                    subwindow = prepare(catalog, w, windowStart, windowEnd, subwindowNanos);
+                } else {
+                    while (next < subwindowCount && next <= w + ahead) {
+                        int index = next++;
+                        OffsetDateTime start = windowStart;
+                        long nanos = subwindowNanos;
+                        prepared.add(prefetch.submit(() -> finished.get()
+                                ? null
+                                : prepare(catalog, index, start, windowEnd, nanos)));
+                    }
+                    StopWatch waited = StopWatch.createStarted();
+                    subwindow = await(prepared.remove());
+                    timings.waitMillis += waited.getTime();
+                }
+                timings.prepareMillis += subwindow.prepareMillis();
+                allRefined.addAll(screenSubwindow(catalog, subwindow, broadPhase, primaries, timings));
+            }
+        } finally {
+            if (prefetch != null) {
+                // A failed scan only waits for the preparation already running, not for the queued ones
+                finished.set(true);
+                prefetch.close();
+                // Anything prepared for a failed scan still holds its cache
+                for (Future<Subwindow> future : prepared) {
+                    if (future.state() == Future.State.SUCCESS && future.resultNow() != null) {
+                        release(future.resultNow());
+                    }
+                }
+            }
+        }
+        wall.stop();
+
+        log.info("Subwindow pipeline: {} subwindows, {} prepared ahead ({} MB each) | wall {}ms | prepare {}ms sweep {}ms refine {}ms | waited {}ms, overlap {}ms",
+                subwindowCount, ahead, subwindowBytes / (1024 * 1024), wall.getTime(), timings.prepareMillis,
+                timings.sweepMillis, timings.refineMillis, timings.waitMillis,
+                Math.max(0, timings.prepareMillis + timings.sweepMillis + timings.refineMillis - wall.getTime()));
+        broadPhase.occupancy()
+                .map(o -> timings.occupancy == null ? o : o.plus(timings.occupancy))
+                .ifPresent(o -> log.debug(
+                        "Broad phase occupancy: {} steps, {} cells/step, max {} per cell, {} same-cell pairs/step",
+                        o.steps(), Math.round(o.cellsPerStep()), o.maxOccupancy(),
+                        Math.round(o.sameCellPairsPerStep())));
+
+        return allRefined;
+    }
+
+    /**
+     * Knots or Chebyshev ephemeris and the position cache of subwindow w. Reads only the catalog, so it can run while
+     * an earlier subwindow is swept.
+     */
+    private Subwindow prepare(ScanCatalog catalog, int w, OffsetDateTime windowStart, OffsetDateTime windowEnd,
+                              long subwindowNanos) {
+        StopWatch stopWatch = StopWatch.createStarted();
+        OffsetDateTime subStart = windowStart.plusNanos(w * subwindowNanos);
+        OffsetDateTime subEnd = (w == subwindowCount - 1) ? windowEnd : windowStart.plusNanos((w + 1) * subwindowNanos);
+
+        // SGP4 at stride points, satellites renumbered by where they are at the subwindow start. A Chebyshev
+        // ephemeris replaces the knots, and the sweep allows each pair the fit error of its two segments.
+        PropagationService.KnotCache knots = null;
+        ChebyshevEphemeris chebyshev = null;
+        PositionErrors errors = null;
+        double maxErrorKm = 0;
+        if (ephemerisType == EphemerisType.CHEBYSHEV) {
+            int segmentSteps = (int) Math.round(chebyshevSegmentMinutes * 60 / stepSeconds);
+            chebyshev = propagationService.fitChebyshev(catalog, subStart, subEnd, stepSeconds, segmentSteps,
+                    chebyshevDegree, knotPropagator);
+            maxErrorKm = chebyshev.maxErrorKm();
+            errors = chebyshev::stepErrorKm;
+            log.debug("Chebyshev ephemeris: max fit error {} m", Math.round(chebyshev.maxErrorKm() * 1000));
+        } else {
+            knots = propagationService.reorder(propagationService.computeKnots(
+                    catalog, subStart, subEnd, stepSeconds, interpolationStride, knotPropagator, knotStore),
+                    satelliteOrdering);
+        }
+
+        // Interpolate to full position cache, or leave the knots to be interpolated on the fly by the sweep
+        TimeStepRegimes regimes = null;
+        PositionSource cache;
+        if (regimeMaxStride > 1) {
+            // Slow regimes on a coarser sub-lattice, interpolation skips their other steps
+            regimes = new TimeStepRegimes(catalog.satellites(), knots, toleranceKm, sweepCoverageKm(), thresholdKm,
+                    stepSeconds, regimeMaxStride);
+            cache = propagationService.interpolate(knots, kernel, regimes);
+        } else if (sweepMode != SweepMode.CACHED) {
+            cache = knots;
+        } else if (chebyshev != null) {
+            cache = propagationService.evaluate(chebyshev, positionLayout);
+        } else if (positionStorage == PositionStorage.OFF_HEAP) {
+            cache = propagationService.interpolateOffHeap(knots, positionSpillDirectory());
+        } else if (positionStorage == PositionStorage.QUANTIZED) {
+            QuantizedPositionCache quantized = propagationService.interpolateQuantized(knots);
+            maxErrorKm = quantized.maxErrorKm();
+            errors = (sat, step) -> quantized.maxErrorKm();
+            cache = quantized;
+        } else {
+            cache = propagationService.interpolate(knots, positionLayout, kernel, interpolationOrder);
+        }
+
+        return new Subwindow(w, knots, chebyshev, regimes, cache, errors, maxErrorKm, stopWatch.getTime());
+    }
+
+    /**
+     * Sweep, reduce and refine one prepared subwindow, then release its cache. Runs in subwindow order, formation
+     * tracking carries over from one subwindow to the next.
+     */
+    private List<ScanService.RefinedEvent> screenSubwindow(ScanCatalog catalog, Subwindow subwindow,
+                                                           BroadPhase broadPhase, PrimarySelection primaries,
+                                                           PipelineTimings timings) {
+        List<SatelliteScanInfo> satellites = catalog.satellites();
+        PropagationService.KnotCache knots = subwindow.knots();
+        PositionSource cache = subwindow.cache();
+        TimeStepRegimes regimes = subwindow.regimes();
+        // Approximate positions can put a pair within tolerance up to both satellites' error bounds further apart
+        double marginKm = 2 * subwindow.maxErrorKm();
+        try {
+            StopWatch sweep = StopWatch.createStarted();
+            boolean[] primaryMask = primaries == null ? null : primaries.mask(satellites, knots);
+
+            // Co-located pairs skip the sweep and get one summary event for the subwindow. A primary scan only
+            // replaces the primaries' conjunctions, so it only verifies and summarizes formations with a primary, and
+            // its events, from which formations are spotted, all involve one.
+            double formationMaxVelocityKmS = formationMaxVelocityMs / 1000.0;
+            LongSet formations = formationTracking
+                    ? formationTracker.verify(knots, toleranceKm, formationMaxVelocityKmS, primaryMask)
+                    : LongSets.immutable.empty();
+
+            // Primary scans probe the grid with the primaries only. Over approximate positions the cells and the
+            // tolerance reach further by the margin, and each pair is held to its own error bounds.
+            BroadPhase sweepBroadPhase;
+            if (primaries != null) {
+                sweepBroadPhase = BroadPhase.primariesAgainstCatalog(primaryMask, cellSizeKm + marginKm);
+            } else if (marginKm > 0) {
+                sweepBroadPhase = BroadPhase.create(broadPhaseType, gridType, toleranceKm + marginKm,
+                        cellSizeKm + marginKm);
+            } else {
+                sweepBroadPhase = broadPhase;
+            }
+            if (subwindow.errors() != null) {
+                sweepBroadPhase = BroadPhase.errorBounded(sweepBroadPhase, subwindow.errors(), subwindow.maxErrorKm());
+            }
+
+            // In-sweep reduction yields events directly, otherwise every detection is kept for groupAndReduce
+            boolean reduceInSweep = eventReduction == EventReduction.IN_SWEEP;
+            DetectionBuffer detections = null;
+            DetectionBuffer events = null;
+            if (regimes != null) {
+                if (reduceInSweep) {
+                    events = scanService.checkPairsMultiRateReduced(cache, regimes, toleranceKm, sweepBroadPhase,
+                            kernel, formations);
+                } else {
+                    detections = scanService.checkPairsMultiRate(cache, regimes, toleranceKm, sweepBroadPhase,
+                            kernel, formations);
+                }
+            } else if (sweepMode == SweepMode.SEGMENT_BOXES) {
+                detections = scanService.checkPairsBySegmentBoxes(knots, toleranceKm, formations);
+            } else if (sweepMode == SweepMode.STREAMING) {
+                if (reduceInSweep) {
+                    events = scanService.checkPairsStreamingReduced(knots, toleranceKm, sweepBroadPhase, kernel,
+                            formations);
+                } else {
+                    detections = scanService.checkPairsStreaming(knots, toleranceKm, sweepBroadPhase, kernel,
+                            formations);
+                }
+            } else if (shellBoundariesKm.length > 0) {
+                // Shells and neighbor lists grid on their own, they take the margin for every pair
+                AltitudeShells shells = new AltitudeShells(
+                        satellites, cache, shellBoundariesKm, shellMarginKm, toleranceKm + marginKm);
+                detections = scanService.checkPairsByShell(
+                        cache, shells, toleranceKm + marginKm, cellSizeKm + marginKm, gridType);
+            } else if (neighborListSteps > 1) {
+                detections = scanService.checkPairsNeighborList(
+                        cache, toleranceKm + marginKm, cellSizeKm + marginKm, gridType, neighborListSteps);
+            } else if (reduceInSweep) {
+                events = scanService.checkPairsReduced(cache, toleranceKm, sweepBroadPhase, kernel, formations);
+            } else {
+                detections = scanService.checkPairs(cache, toleranceKm, sweepBroadPhase, kernel, formations);
+            }
+
+            // Sort, cluster, reduce to best-per-event unless the sweep already did, then refine
+            if (events == null) {
+                events = regimes != null
+                        ? scanService.groupAndReduce(detections, regimes)
+                        : scanService.groupAndReduce(detections);
+            }
+            sweep.stop();
+            // A broad phase built for this subwindow's tolerance keeps its own counts, fold them into the scan's
+            if (sweepBroadPhase != broadPhase) {
+                sweepBroadPhase.occupancy().ifPresent(o ->
+                        timings.occupancy = timings.occupancy == null ? o : timings.occupancy.plus(o));
+            }
+
+            StopWatch refine = StopWatch.createStarted();
+            List<ScanService.RefinedEvent> refined = new ArrayList<>();
+            if (regimes != null) {
+                refined.addAll(scanService.refine(events, catalog, cache, stepSeconds, thresholdKm, regimes));
+                log.debug("Time step regimes: {} satellites at stride 1, 2, 4, ...",
+                        Arrays.toString(regimes.countsByStride()));
+            } else {
+                // Refinement reads the series itself to place the closest approach between steps
+                PositionSource positions = subwindow.chebyshev() != null ? subwindow.chebyshev() : cache;
+                refined.addAll(scanService.refine(events, catalog, positions, stepSeconds, thresholdKm));
+            }
+            int refinedCount = refined.size();
+
+            if (formationTracking) {
+                List<ScanService.RefinedEvent> summaries = formationTracker.summarize(
+                        formations, knots, catalog, stepSeconds, thresholdKm);
+                refined.addAll(summaries);
+                formationTracker.spot(events, knots, toleranceKm, formationMaxVelocityKmS);
+                log.debug("Formations: {} held, {} summarized under threshold, {} tracked",
+                        formations.size(), summaries.size(), formationTracker.trackedCount());
+            }
+            refine.stop();
+            timings.sweepMillis += sweep.getTime();
+            timings.refineMillis += refine.getTime();
+
+            log.debug("Subwindow {}/{}: {} detections, {} events, {} refined | prepare {}ms sweep {}ms refine {}ms",
+                    subwindow.index() + 1, subwindowCount, detections == null ? "in-sweep" : detections.size(),
+                    events.size(), refinedCount, subwindow.prepareMillis(), sweep.getTime(), refine.getTime());
+            return refined;
+        } finally {
+            release(subwindow);
+        }
+    }
+
+    /**
+     * Off-heap positions are freed with the subwindow, not left to the collector.
+     */
+    private static void release(Subwindow subwindow) {
+        if (subwindow.cache() instanceof OffHeapPositionCache offHeap) offHeap.close();
+    }
+
+    private static Subwindow await(Future<Subwindow> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while preparing a subwindow", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException("Subwindow preparation failed", e.getCause());
+        }
+    }
+
+    /**
+     * Knots plus position cache of one subwindow, what a prepared subwindow holds while it waits for the sweep.
+     * Chebyshev coefficients take less than the knots they replace.
+     */
+    private long subwindowBytes(int numSats, long subwindowNanos) {
+        long steps = subwindowNanos / Math.round(stepSeconds * 1_000_000_000L) + 1;
+        long knotBytes = (long) numSats * (steps / interpolationStride + 1) * 6 * Float.BYTES;
+        if (sweepMode != SweepMode.CACHED) return knotBytes;
+        int valueBytes = positionStorage == PositionStorage.QUANTIZED ? Short.BYTES : Float.BYTES;
+        return knotBytes + (long) numSats * steps * 3 * valueBytes;
+    }
+
+    private record Subwindow(int index, PropagationService.KnotCache knots, ChebyshevEphemeris chebyshev,
+                             TimeStepRegimes regimes, PositionSource cache, PositionErrors errors,
+                             double maxErrorKm, long prepareMillis) {
+    }
+
+    // Summed over the subwindows of one scan, written by the screening thread only
+    private static final class PipelineTimings {
+        long prepareMillis;
+        long sweepMillis;
+        long refineMillis;
+        long waitMillis;
+        // Occupancy of the broad phases built per subwindow, null if none was
+        BroadPhase.Occupancy occupancy;
     }
 }
@@ -0,0 +1,299 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Adaptive grid broad phase: a linear octree over one step of positions. Satellites are radix-sorted on the Morton
+ * code of a fine grid, so every octree cell is a contiguous range of the sorted order and needs no nodes. A cell is
+ * split while it holds more than {@link #MAX_OCCUPANCY} satellites and is larger than the fine cell, so dense shells
+ * end up in small cells and sparse regions such as GEO stay in large ones.
+ * <p>
+ * Pairs come from a dual-tree self join: a cell is joined with itself and every pair of its children, and two cells are
+ * only descended into while the gap between their boxes is under tolerance. Every pair within tolerance sits in two
+ * leaves whose boxes are closer than that, so none is missed, and each leaf pair is reached exactly once.
+ */
+final class AdaptiveGridBroadPhase implements BroadPhase {
+
+    static final int MAX_OCCUPANCY = 16;
+
+    // Finest cells are tolerance / 2^FINE_LEVELS, dense cells cannot be split below that
+    private static final int FINE_LEVELS = 2;
+
+    // 3 * 21 bits of Morton code fit a non-negative long; one spare cell absorbs rounding at the top edge
+    private static final int MAX_AXIS_BITS = 21;
+    private static final long MAX_AXIS_SPAN = (1L << MAX_AXIS_BITS) - 2;
+
+    // Covers float rounding in the caller's distance, so a box gap never prunes a pair the distance check accepts
+    private static final double PRUNE_SLACK_KM = 0.01;
+
+    private static final int RADIX_BITS = 11;
+    private static final int RADIX_SIZE = 1 << RADIX_BITS;
+
+    // Reuse to reduce hot path allocations
+    private static final ThreadLocal<Tree> TREE_POOL = ThreadLocal.withInitial(Tree::new);
+
+    private final double radiusKm;
+    private final OccupancyCounter occupancy = new OccupancyCounter();
+
+    AdaptiveGridBroadPhase(double radiusKm) {
+        this.radiusKm = radiusKm;
+    }
+
+    @Override
+    public void forEachCandidatePair(PositionSource positions, int step, SpatialGrid.IntBiConsumer consumer) {
+        Tree tree = TREE_POOL.get();
+        if (!tree.build(positions, step, radiusKm)) return;
+        tree.consumer = consumer;
+        tree.leaves = 0;
+        tree.maxOccupancy = 0;
+        tree.sameCellPairs = 0;
+        tree.selfJoin(0, tree.count, tree.rootLevel, 0, 0, 0);
+        tree.consumer = null;
+        occupancy.record(tree.leaves, tree.maxOccupancy, tree.sameCellPairs);
+    }
+
+    @Override
+    public Optional<Occupancy> occupancy() {
+        return Optional.of(occupancy.snapshot());
+    }
+
+    /**
+     * Interleave the low 21 bits of x, y, z into a Morton code, x in the highest bit of each triple.
+     */
+    static long morton(long x, long y, long z) {
+        return spread(x) << 2 | spread(y) << 1 | spread(z);
+    }
+
+    private static long spread(long v) {
+        v &= 0x1fffffL;
+        v = (v | v << 32) & 0x1f00000000ffffL;
+        v = (v | v << 16) & 0x1f0000ff0000ffL;
+        v = (v | v << 8) & 0x100f00f00f00f00fL;
+        v = (v | v << 4) & 0x10c30c30c30c30c3L;
+        v = (v | v << 2) & 0x1249249249249249L;
+        return v;
+    }
+
+    private static final class Tree {
+        int count;
+        int rootLevel;
+        double fineCellKm;
+        double limitSq;
+        long[] codes = new long[0];
+        long[] codesTmp = new long[0];
+        int[] index = new int[0];
+        int[] indexTmp = new int[0];
+        final int[] histogram = new int[RADIX_SIZE + 1];
+        // Child range bounds of the cell being self-joined, one row per level so recursion does not clobber them
+        final int[][] bounds = new int[MAX_AXIS_BITS + 1][9];
+
+        SpatialGrid.IntBiConsumer consumer;
+        int leaves;
+        int maxOccupancy;
+        long sameCellPairs;
+
+        /**
+         * Sort the valid satellites on their fine-grid Morton codes. False when there are none.
+         */
+        boolean build(PositionSource positions, int step, double radiusKm) {
+            int n = positions.numSatellites();
+            if (index.length < n) {
+                codes = new long[n];
+                codesTmp = new long[n];
+                index = new int[n];
+                indexTmp = new int[n];
+            }
+
+            float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+            count = 0;
+            for (int sat = 0; sat < n; sat++) {
+                float x = positions.x(sat, step);
+                if (Float.isNaN(x)) continue;
+                float y = positions.y(sat, step);
+                float z = positions.z(sat, step);
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                minZ = Math.min(minZ, z);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+                maxZ = Math.max(maxZ, z);
+                index[count++] = sat;
+            }
+            if (count == 0) return false;
+
+            // Coarsen the fine grid rather than clamp when the span would not fit the code
+            double span = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+            fineCellKm = Math.max(radiusKm / (1 << FINE_LEVELS), span / MAX_AXIS_SPAN);
+            double reach = radiusKm + PRUNE_SLACK_KM;
+            limitSq = reach * reach;
+
+            long maxCoord = 0;
+            for (int i = 0; i < count; i++) {
+                int sat = index[i];
+                long cx = fine(positions.x(sat, step) - minX);
+                long cy = fine(positions.y(sat, step) - minY);
+                long cz = fine(positions.z(sat, step) - minZ);
+                maxCoord = Math.max(maxCoord, cx | cy | cz);
+                codes[i] = morton(cx, cy, cz);
+            }
+            rootLevel = 64 - Long.numberOfLeadingZeros(maxCoord);
+            radixSort(3 * rootLevel);
+            return true;
+        }
+
+        private long fine(double offsetKm) {
+            return Math.min((long) (offsetKm / fineCellKm), MAX_AXIS_SPAN);
+        }
+
+        /**
+         * LSD radix sort of codes[0..count) carrying index[] along.
+         */
+        private void radixSort(int keyBits) {
+            for (int shift = 0; shift < keyBits; shift += RADIX_BITS) {
+                Arrays.fill(histogram, 0);
+                for (int i = 0; i < count; i++) {
+                    histogram[(int) ((codes[i] >>> shift) & (RADIX_SIZE - 1)) + 1]++;
+                }
+                for (int d = 1; d <= RADIX_SIZE; d++) {
+                    histogram[d] += histogram[d - 1];
+                }
+                for (int i = 0; i < count; i++) {
+                    int dest = histogram[(int) ((codes[i] >>> shift) & (RADIX_SIZE - 1))]++;
+                    codesTmp[dest] = codes[i];
+                    indexTmp[dest] = index[i];
+                }
+                long[] swapCodes = codes;
+                codes = codesTmp;
+                codesTmp = swapCodes;
+                int[] swapIndex = index;
+                index = indexTmp;
+                indexTmp = swapIndex;
+            }
+        }
+
+        private static boolean isLeaf(int lo, int hi, int level) {
+            return hi - lo <= MAX_OCCUPANCY || level == 0;
+        }
+
+        /**
+         * Emit every candidate pair inside the cell [lo, hi) of side 2^level fine cells at origin (ox, oy, oz).
+         */
+        void selfJoin(int lo, int hi, int level, long ox, long oy, long oz) {
+            if (isLeaf(lo, hi, level)) {
+                int k = hi - lo;
+                leaves++;
+                maxOccupancy = Math.max(maxOccupancy, k);
+                sameCellPairs += (long) k * (k - 1) / 2;
+                for (int i = lo; i < hi; i++) {
+                    for (int j = i + 1; j < hi; j++) {
+                        consumer.accept(index[i], index[j]);
+                    }
+                }
+                return;
+            }
+
+            int[] b = bounds[level];
+            int shift = 3 * (level - 1);
+            b[0] = lo;
+            for (int digit = 0; digit < 8; digit++) {
+                b[digit + 1] = childEnd(b[digit], hi, shift, digit);
+            }
+            long half = 1L << (level - 1);
+            for (int c = 0; c < 8; c++) {
+                if (b[c] == b[c + 1]) continue;
+                selfJoin(b[c], b[c + 1], level - 1, childX(ox, c, half), childY(oy, c, half), childZ(oz, c, half));
+            }
+            for (int c = 0; c < 8; c++) {
+                if (b[c] == b[c + 1]) continue;
+                for (int d = c + 1; d < 8; d++) {
+                    if (b[d] == b[d + 1]) continue;
+                    cross(b[c], b[c + 1], level - 1, childX(ox, c, half), childY(oy, c, half), childZ(oz, c, half),
+                            b[d], b[d + 1], level - 1, childX(ox, d, half), childY(oy, d, half), childZ(oz, d, half));
+                }
+            }
+        }
+
+        /**
+         * Emit every candidate pair between two disjoint cells, descending into the larger one until both are leaves
+         * or their boxes are further apart than tolerance.
+         */
+        private void cross(int loA, int hiA, int levelA, long ax, long ay, long az,
+                           int loB, int hiB, int levelB, long bx, long by, long bz) {
+            double gx = gap(ax, levelA, bx, levelB);
+            double gy = gap(ay, levelA, by, levelB);
+            double gz = gap(az, levelA, bz, levelB);
+            if ((gx * gx + gy * gy + gz * gz) * fineCellKm * fineCellKm > limitSq) return;
+
+            boolean leafA = isLeaf(loA, hiA, levelA);
+            boolean leafB = isLeaf(loB, hiB, levelB);
+            if (leafA && leafB) {
+                for (int i = loA; i < hiA; i++) {
+                    for (int j = loB; j < hiB; j++) {
+                        consumer.accept(index[i], index[j]);
+                    }
+                }
+                return;
+            }
+
+            if (leafB || (!leafA && levelA >= levelB)) {
+                int shift = 3 * (levelA - 1);
+                long half = 1L << (levelA - 1);
+                int start = loA;
+                for (int c = 0; c < 8; c++) {
+                    int end = childEnd(start, hiA, shift, c);
+                    if (end > start) {
+                        cross(start, end, levelA - 1, childX(ax, c, half), childY(ay, c, half), childZ(az, c, half),
+                                loB, hiB, levelB, bx, by, bz);
+                    }
+                    start = end;
+                }
+            } else {
+                int shift = 3 * (levelB - 1);
+                long half = 1L << (levelB - 1);
+                int start = loB;
+                for (int c = 0; c < 8; c++) {
+                    int end = childEnd(start, hiB, shift, c);
+                    if (end > start) {
+                        cross(loA, hiA, levelA, ax, ay, az,
+                                start, end, levelB - 1, childX(bx, c, half), childY(by, c, half), childZ(bz, c, half));
+                    }
+                    start = end;
+                }
+            }
+        }
+
+        /**
+         * First position in [lo, hi) whose child digit at {@code shift} is above {@code digit}; codes share every
+         * higher bit inside a cell, so the digits are sorted.
+         */
+        private int childEnd(int lo, int hi, int shift, int digit) {
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (((codes[mid] >>> shift) & 7) <= digit) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        /**
+         * Empty space between [a, a + 2^levelA) and [b, b + 2^levelB) on one axis, in fine cells.
+         */
+        private static double gap(long a, int levelA, long b, int levelB) {
+            return Math.max(0, Math.max(a, b) - Math.min(a + (1L << levelA), b + (1L << levelB)));
+        }
+
+        private static long childX(long origin, int digit, long half) {
+            return origin + ((digit >> 2) & 1) * half;
+        }
+
+        private static long childY(long origin, int digit, long half) {
+            return origin + ((digit >> 1) & 1) * half;
+        }
+
+        private static long childZ(long origin, int digit, long half) {
+            return origin + (digit & 1) * half;
+        }
+    }
+}
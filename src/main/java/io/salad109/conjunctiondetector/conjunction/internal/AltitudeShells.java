@@ -0,0 +1,143 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Partition of the catalog into overlapping altitude shells. Each satellite gets a radial band
+ * [perigee - margin - tol/2, apogee + margin + tol/2]; two satellites closer than tolerance have radii within tolerance,
+ * so the midpoint of their radii lies in both bands. Pairs whose bands are disjoint can never be a detection.
+ * <p>
+ * A satellite is a member of every shell its band touches. A pair is owned by the single shell containing the lower
+ * end of its band intersection, so sweeping shells independently reports each pair once.
+ */
+public final class AltitudeShells {
+
+    private final double[] boundariesKm;
+    private final float[] bandLow;
+    private final float[] bandHigh;
+    private final int[][] members;
+    private final long overlappingPairs;
+
+    /**
+     * @param boundariesKm ascending shell edges in km altitude, n edges give n + 1 shells
+     * @param marginKm     slack on the TLE perigee/apogee for short-period and drag variation over the window
+     */
+    public AltitudeShells(List<SatelliteScanInfo> satellites, PositionSource positions, double[] boundariesKm,
+                          double marginKm, double toleranceKm) {
+        this.boundariesKm = boundariesKm.clone();
+        Arrays.sort(this.boundariesKm);
+
+        int numSatellites = positions.numSatellites();
+        MutableIntIntMap noradIdToArrayId = positions.noradIdToArrayId();
+        bandLow = new float[numSatellites];
+        bandHigh = new float[numSatellites];
+        // Satellites without orbit data get an unbounded band and land in every shell
+        Arrays.fill(bandLow, Float.NEGATIVE_INFINITY);
+        Arrays.fill(bandHigh, Float.POSITIVE_INFINITY);
+        double pad = marginKm + toleranceKm / 2;
+        for (SatelliteScanInfo sat : satellites) {
+            if (!noradIdToArrayId.containsKey(sat.noradCatId())) continue;
+            int idx = noradIdToArrayId.get(sat.noradCatId());
+            bandLow[idx] = (float) (Math.min(sat.perigeeKm(), sat.apogeeKm()) - pad);
+            bandHigh[idx] = (float) (Math.max(sat.perigeeKm(), sat.apogeeKm()) + pad);
+        }
+
+        IntArrayList[] shellMembers = new IntArrayList[this.boundariesKm.length + 1];
+        for (int k = 0; k < shellMembers.length; k++) shellMembers[k] = new IntArrayList();
+        for (int idx = 0; idx < numSatellites; idx++) {
+            for (int k = shellOf(bandLow[idx]); k <= shellOf(bandHigh[idx]); k++) {
+                shellMembers[k].add(idx);
+            }
+        }
+        members = new int[shellMembers.length][];
+        for (int k = 0; k < shellMembers.length; k++) members[k] = shellMembers[k].toArray();
+
+        overlappingPairs = countOverlappingPairs(bandLow, bandHigh);
+    }
+
+    /**
+     * Pairs with intersecting bands by interval sweep: in order of low end, a band overlaps every later band that
+     * starts before it ends.
+     */
+    private static long countOverlappingPairs(float[] low, float[] high) {
+        int n = low.length;
+        Integer[] byLow = new Integer[n];
+        for (int i = 0; i < n; i++) byLow[i] = i;
+        Arrays.sort(byLow, (a, b) -> Float.compare(low[a], low[b]));
+
+        float[] sortedLows = new float[n];
+        for (int p = 0; p < n; p++) sortedLows[p] = low[byLow[p]];
+
+        long pairs = 0;
+        for (int p = 0; p < n; p++) {
+            pairs += upperBound(sortedLows, high[byLow[p]]) - p - 1;
+        }
+        return pairs;
+    }
+
+    private static int upperBound(float[] sorted, float value) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] <= value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private int shellOf(double altitudeKm) {
+        int k = Arrays.binarySearch(boundariesKm, altitudeKm);
+        return k >= 0 ? k + 1 : -k - 1;
+    }
+
+    public int shellCount() {
+        return members.length;
+    }
+
+    public int[] members(int shell) {
+        return members[shell];
+    }
+
+    public boolean bandsIntersect(int a, int b) {
+        return Math.max(bandLow[a], bandLow[b]) <= Math.min(bandHigh[a], bandHigh[b]);
+    }
+
+    /**
+     * True if the pair's bands intersect and {@code shell} is the one that reports it.
+     */
+    public boolean owns(int shell, int a, int b) {
+        return bandsIntersect(a, b) && firstSharedShell(a, b) == shell;
+    }
+
+    /**
+     * Lowest shell holding both satellites, so a pair met in several shells is handled once.
+     */
+    public int firstSharedShell(int a, int b) {
+        return shellOf(Math.max(bandLow[a], bandLow[b]));
+    }
+
+    public long totalPairs() {
+        long n = bandLow.length;
+        return n * (n - 1) / 2;
+    }
+
+    /**
+     * Pairs that can never come within tolerance because their bands are disjoint.
+     */
+    public long eliminatedPairs() {
+        return totalPairs() - overlappingPairs;
+    }
+
+    /**
+     * Shell members seen through a dense local index, so a grid can be built over one shell only.
+     */
+    public PositionSource view(int shell, PositionSource positions) {
+        return new SubsetView(positions, members[shell]);
+    }
+}
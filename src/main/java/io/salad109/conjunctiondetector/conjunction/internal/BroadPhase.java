@@ -0,0 +1,86 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import java.util.Optional;
+
+/**
+ * Candidate pair generation for one step of positions. Implementations are stateless or keep their state per thread,
+ * so one instance can be shared by all sweep workers.
+ */
+public interface BroadPhase {
+
+    static BroadPhase create(BroadPhaseType type, GridType gridType, double toleranceKm, double cellSizeKm) {
+        return switch (type) {
+            case GRID -> new UniformGridBroadPhase(gridType, cellSizeKm);
+            case SWEEP_AND_PRUNE -> new SweepAndPruneBroadPhase(toleranceKm);
+            case KD_TREE -> new KdTreeBroadPhase(toleranceKm);
+            case ADAPTIVE_GRID -> new AdaptiveGridBroadPhase(toleranceKm);
+        };
+    }
+
+    /**
+     * Grid broad phase that only emits pairs involving a primary, see {@link PrimaryProbeBroadPhase}.
+     *
+     * @param primary primary flag by array index, from {@link PrimarySelection#mask}
+     */
+    static BroadPhase primariesAgainstCatalog(boolean[] primary, double cellSizeKm) {
+        return new PrimaryProbeBroadPhase(primary, cellSizeKm);
+    }
+
+    /**
+     * Broad phase over approximate positions, see {@link ErrorBoundedBroadPhase}.
+     *
+     * @param widened    broad phase with its cell and tolerance widened by {@code 2 * maxErrorKm}
+     * @param maxErrorKm largest bound in {@code errors}
+     */
+    static BroadPhase errorBounded(BroadPhase widened, PositionErrors errors, double maxErrorKm) {
+        return new ErrorBoundedBroadPhase(widened, errors, maxErrorKm);
+    }
+
+    /**
+     * Emit every candidate pair at {@code step} once, in either index order. Satellites with NaN positions are skipped.
+     */
+    void forEachCandidatePair(PositionSource positions, int step, SpatialGrid.IntBiConsumer consumer);
+
+    /**
+     * Emit candidate pairs whose squared distance is under {@code tolSq}, with that distance.
+     */
+    default void forEachPairWithin(PositionSource positions, int step, double tolSq, KernelType kernel,
+                                   SortedSpatialGrid.PairDistanceConsumer consumer) {
+        forEachCandidatePair(positions, step, (idxA, idxB) -> {
+            double distSq = positions.distanceSquaredAt(idxA, idxB, step);
+            if (distSq < tolSq) {
+                consumer.accept(idxA, idxB, (float) distSq);
+            }
+        });
+    }
+
+    /**
+     * Cell occupancy summed over every step swept so far, for broad phases that bin satellites into cells.
+     */
+    default Optional<Occupancy> occupancy() {
+        return Optional.empty();
+    }
+
+    /**
+     * Occupied cells and same-cell pairs summed over {@code steps}, plus the fullest cell seen. Same-cell pairs are
+     * checked all against all, so their count is the hot-cell cost of the sweep.
+     */
+    record Occupancy(long steps, long cells, int maxOccupancy, long sameCellPairs) {
+
+        public double cellsPerStep() {
+            return steps == 0 ? 0 : (double) cells / steps;
+        }
+
+        public double sameCellPairsPerStep() {
+            return steps == 0 ? 0 : (double) sameCellPairs / steps;
+        }
+
+        /**
+         * Totals of this and {@code other}, for sweeps split over several broad phase instances.
+         */
+        public Occupancy plus(Occupancy other) {
+            return new Occupancy(steps + other.steps, cells + other.cells,
+                    Math.max(maxOccupancy, other.maxOccupancy), sameCellPairs + other.sameCellPairs);
+        }
+    }
+}
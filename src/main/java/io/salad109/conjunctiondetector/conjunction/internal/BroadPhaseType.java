@@ -0,0 +1,24 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * Broad phase used by the coarse sweep to turn one step of positions into candidate pairs.
+ */
+public enum BroadPhaseType {
+    /**
+     * {@link UniformGridBroadPhase}: the spatial grid selected by {@link GridType}, candidates from neighboring cells.
+     */
+    GRID,
+    /**
+     * {@link SweepAndPruneBroadPhase}: satellites kept sorted on x between steps, overlapping intervals are candidates.
+     */
+    SWEEP_AND_PRUNE,
+    /**
+     * {@link KdTreeBroadPhase}: radius query per satellite against a KD-tree rebuilt every step.
+     */
+    KD_TREE,
+    /**
+     * {@link AdaptiveGridBroadPhase}: octree that splits cells until their occupancy is bounded, sparse space stays in
+     * large cells.
+     */
+    ADAPTIVE_GRID
+}
@@ -0,0 +1,170 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Per-satellite Chebyshev series of position over fixed time segments, fitted to SGP4 by
+ * {@link PropagationService#fitChebyshev}. Position and velocity evaluate at any time in the window, and every segment
+ * carries a bound on its fit error in km. Also a {@link PositionSource} on the step grid.
+ * <p>
+ * coefficients[sat][(segment * 3 + axis) * (degree + 1) + j] is the j-th coefficient, time mapped to [-1, 1] over the
+ * segment. A segment SGP4 could not sample has NaN coefficients and error, as do all segments after it.
+ */
+public record ChebyshevEphemeris(MutableIntIntMap noradIdToArrayId, int[] arrayIdToNoradId, OffsetDateTime[] times,
+                                 long stepNanos, int segmentSteps, int degree,
+                                 float[][] coefficients, float[][] errorKm) implements PositionSource {
+
+    private static final int NEWTON_ITERATIONS = 5;
+    private static final double NEWTON_TOLERANCE_SECONDS = 1e-3;
+
+    /**
+     * Segments covering {@code totalSteps} steps, the last one may extend past the window.
+     */
+    static int segmentCount(int totalSteps, int segmentSteps) {
+        return Math.max(1, (totalSteps - 1 + segmentSteps - 1) / segmentSteps);
+    }
+
+    public int segmentCount() {
+        return segmentCount(times.length, segmentSteps);
+    }
+
+    public double segmentSeconds() {
+        return segmentSteps * stepNanos / 1e9;
+    }
+
+    @Override
+    public int numSatellites() {
+        return coefficients.length;
+    }
+
+    @Override
+    public float x(int sat, int step) {
+        return (float) evaluate(sat, step * stepNanos / 1e9, 0);
+    }
+
+    @Override
+    public float y(int sat, int step) {
+        return (float) evaluate(sat, step * stepNanos / 1e9, 1);
+    }
+
+    @Override
+    public float z(int sat, int step) {
+        return (float) evaluate(sat, step * stepNanos / 1e9, 2);
+    }
+
+    @Override
+    public boolean isValid(int sat, int step) {
+        return !Float.isNaN(errorKm[sat][segment(step * stepNanos / 1e9)]);
+    }
+
+    /**
+     * Position (km) {@code seconds} after the window start into {@code out}, false if the satellite has none there.
+     */
+    public boolean position(int sat, double seconds, double[] out) {
+        for (int axis = 0; axis < 3; axis++) out[axis] = evaluate(sat, seconds, axis);
+        return !Double.isNaN(out[0]);
+    }
+
+    /**
+     * Velocity (km/s) {@code seconds} after the window start into {@code out}, from the derivative of the series.
+     */
+    public boolean velocity(int sat, double seconds, double[] out) {
+        int segment = segment(seconds);
+        double tau = tau(seconds, segment);
+        double scale = 2.0 / segmentSeconds();
+        float[] c = coefficients[sat];
+        for (int axis = 0; axis < 3; axis++) {
+            // sum of j c_j U_{j-1}(tau), Clenshaw over the U series
+            int base = (segment * 3 + axis) * (degree + 1);
+            double b1 = 0;
+            double b2 = 0;
+            for (int m = degree - 1; m >= 0; m--) {
+                double b0 = (m + 1) * c[base + m + 1] + 2 * tau * b1 - b2;
+                b2 = b1;
+                b1 = b0;
+            }
+            out[axis] = b1 * scale;
+        }
+        return !Double.isNaN(out[0]);
+    }
+
+    /**
+     * Fit error bound (km) of the segment holding {@code seconds}, NaN where the satellite has no position.
+     */
+    public double errorKm(int sat, double seconds) {
+        return errorKm[sat][segment(seconds)];
+    }
+
+    /**
+     * Fit error bound (km) of the segment holding {@code step}, the bound a sweep over {@link #x} and its kin allows.
+     */
+    public double stepErrorKm(int sat, int step) {
+        return errorKm(sat, step * stepNanos / 1e9);
+    }
+
+    /**
+     * Largest fit error bound over all satellites and segments, how far a sweep has to reach beyond the tolerance.
+     */
+    public double maxErrorKm() {
+        double max = 0;
+        for (float[] errors : errorKm) {
+            for (float error : errors) {
+                if (error > max) max = error;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Time (seconds after the window start) of the closest approach of two satellites within [from, to], by Newton
+     * steps on the range rate from {@code guess}.
+     */
+    public double closestApproach(int a, int b, double from, double to, double guess) {
+        double[] pa = new double[3];
+        double[] pb = new double[3];
+        double[] va = new double[3];
+        double[] vb = new double[3];
+        double t = guess;
+        for (int i = 0; i < NEWTON_ITERATIONS; i++) {
+            if (!position(a, t, pa) || !position(b, t, pb) || !velocity(a, t, va) || !velocity(b, t, vb)) break;
+            double rangeRate = 0;
+            double dvSq = 0;
+            for (int axis = 0; axis < 3; axis++) {
+                double dv = va[axis] - vb[axis];
+                rangeRate += (pa[axis] - pb[axis]) * dv;
+                dvSq += dv * dv;
+            }
+            if (dvSq == 0) break;
+            double next = Math.clamp(t - rangeRate / dvSq, from, to);
+            boolean converged = Math.abs(next - t) < NEWTON_TOLERANCE_SECONDS;
+            t = next;
+            if (converged) break;
+        }
+        return t;
+    }
+
+    double evaluate(int sat, double seconds, int axis) {
+        int segment = segment(seconds);
+        double tau = tau(seconds, segment);
+        float[] c = coefficients[sat];
+        int base = (segment * 3 + axis) * (degree + 1);
+        double b1 = 0;
+        double b2 = 0;
+        for (int j = degree; j >= 1; j--) {
+            double b0 = c[base + j] + 2 * tau * b1 - b2;
+            b2 = b1;
+            b1 = b0;
+        }
+        return c[base] + tau * b1 - b2;
+    }
+
+    private int segment(double seconds) {
+        return Math.clamp((int) (seconds / segmentSeconds()), 0, segmentCount() - 1);
+    }
+
+    private double tau(double seconds, int segment) {
+        return 2 * (seconds / segmentSeconds() - segment) - 1;
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +16,10 @@ public interface ConjunctionRepository extends JpaRepository<Conjunction, Long>
     @Query(value = "TRUNCATE TABLE conjunction", nativeQuery = true)
     void truncate();
 
+    @Modifying
+    @Query("DELETE FROM Conjunction c WHERE c.object1NoradId IN :noradIds OR c.object2NoradId IN :noradIds")
+    void deleteInvolving(Collection<Integer> noradIds);
+
     @Query("SELECT COUNT(c) FROM Conjunction c WHERE c.relativeVelocityMS > 10")
     long countActive();
 
@@ -0,0 +1,90 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import java.util.Arrays;
+
+/**
+ * Growable columnar buffer of coarse detections: packed pair key of array indices, squared distance and step.
+ * Pair keys put the smaller array index in the high word, so both orderings of a pair map to the same key.
+ */
+public final class DetectionBuffer implements DetectionSink {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] pairKeys;
+    private float[] distanceSq;
+    private int[] steps;
+    private int size;
+
+    public DetectionBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public DetectionBuffer(int capacity) {
+        pairKeys = new long[capacity];
+        distanceSq = new float[capacity];
+        steps = new int[capacity];
+    }
+
+    public static long pairKey(int idxA, int idxB) {
+        return ((long) Math.min(idxA, idxB) << 32) | Math.max(idxA, idxB);
+    }
+
+    public static int firstIndex(long pairKey) {
+        return (int) (pairKey >>> 32);
+    }
+
+    public static int secondIndex(long pairKey) {
+        return (int) pairKey;
+    }
+
+    public void add(int idxA, int idxB, float distSq, int step) {
+        add(pairKey(idxA, idxB), distSq, step);
+    }
+
+    @Override
+    public void add(long pairKey, float distSq, int step) {
+        if (size == pairKeys.length) grow(size + 1);
+        pairKeys[size] = pairKey;
+        distanceSq[size] = distSq;
+        steps[size] = step;
+        size++;
+    }
+
+    /**
+     * Append all of {@code other}, used to merge per-worker buffers.
+     */
+    public void addAll(DetectionBuffer other) {
+        if (size + other.size > pairKeys.length) grow(size + other.size);
+        System.arraycopy(other.pairKeys, 0, pairKeys, size, other.size);
+        System.arraycopy(other.distanceSq, 0, distanceSq, size, other.size);
+        System.arraycopy(other.steps, 0, steps, size, other.size);
+        size += other.size;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, pairKeys.length + (pairKeys.length >> 1) + 1);
+        pairKeys = Arrays.copyOf(pairKeys, capacity);
+        distanceSq = Arrays.copyOf(distanceSq, capacity);
+        steps = Arrays.copyOf(steps, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long pairKey(int i) {
+        return pairKeys[i];
+    }
+
+    public float distanceSq(int i) {
+        return distanceSq[i];
+    }
+
+    public int step(int i) {
+        return steps[i];
+    }
+}
@@ -0,0 +1,10 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * Receiver of coarse detections from a sweep worker: a raw {@link DetectionBuffer}, or an {@link EventReducer} that
+ * folds them into events as they arrive.
+ */
+interface DetectionSink {
+
+    void add(long pairKey, float distSq, int step);
+}
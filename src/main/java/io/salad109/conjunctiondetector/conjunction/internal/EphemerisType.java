@@ -0,0 +1,16 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * How positions between SGP4 evaluations are represented.
+ */
+public enum EphemerisType {
+    /**
+     * Cubic Hermite between knots at a fixed stride.
+     */
+    HERMITE,
+    /**
+     * Per-satellite Chebyshev series over time segments, evaluated at any time, with a fit error bound per segment
+     * that widens the sweep tolerance.
+     */
+    CHEBYSHEV
+}
@@ -0,0 +1,46 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import java.util.Optional;
+
+/**
+ * Broad phase over approximate positions. Both satellites of a pair may be off by their error bound, so a pair within
+ * tolerance can look up to the sum of the two bounds further apart. The wrapped broad phase is built with its reach
+ * (cell or tolerance) widened by twice the largest bound, and each candidate is held to the tolerance plus its own two
+ * bounds, so a single poorly approximated satellite does not widen the tolerance of every other pair.
+ */
+final class ErrorBoundedBroadPhase implements BroadPhase {
+
+    private final BroadPhase widened;
+    private final PositionErrors errors;
+    private final double maxErrorKm;
+
+    ErrorBoundedBroadPhase(BroadPhase widened, PositionErrors errors, double maxErrorKm) {
+        this.widened = widened;
+        this.errors = errors;
+        this.maxErrorKm = maxErrorKm;
+    }
+
+    @Override
+    public void forEachCandidatePair(PositionSource positions, int step, SpatialGrid.IntBiConsumer consumer) {
+        widened.forEachCandidatePair(positions, step, consumer);
+    }
+
+    /**
+     * {@code tolSq} is the tolerance on the approximated positions, each pair gets its own error bounds on top.
+     */
+    @Override
+    public void forEachPairWithin(PositionSource positions, int step, double tolSq, KernelType kernel,
+                                  SortedSpatialGrid.PairDistanceConsumer consumer) {
+        double toleranceKm = Math.sqrt(tolSq);
+        double reachKm = toleranceKm + 2 * maxErrorKm;
+        widened.forEachPairWithin(positions, step, reachKm * reachKm, kernel, (idxA, idxB, distSq) -> {
+            double limitKm = toleranceKm + errors.errorKm(idxA, step) + errors.errorKm(idxB, step);
+            if (distSq < limitKm * limitKm) consumer.accept(idxA, idxB, distSq);
+        });
+    }
+
+    @Override
+    public Optional<Occupancy> occupancy() {
+        return widened.occupancy();
+    }
+}
@@ -0,0 +1,224 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Folds the detections of one sweep worker into events as they are produced, with the same grouping as
+ * {@link ScanService#groupAndReduce(DetectionBuffer, int)}: a pair's detections form one event while consecutive ones
+ * are at most {@code maxGapSteps} apart, and the event keeps its closest detection, the earliest on ties. A pair may
+ * have a smaller gap of its own.
+ * <p>
+ * A reducer covers one contiguous step range and must see its steps in order. Open events sit in a primitive map keyed
+ * by pair and close once absent for more than {@code maxGapSteps} steps, so memory follows concurrently open events
+ * rather than detections. Events that may continue across the range's edges are held back until
+ * {@link #combine(EventReducer)} joins the reducer of the next range.
+ */
+final class EventReducer implements DetectionSink {
+
+    private static final int INITIAL_SLOTS = 256;
+
+    private final int maxGapSteps;
+    private final LongToIntFunction gapOf;
+
+    // Steps seen so far, [firstStep, currentStep]; -1 until the first detection
+    private int firstStep = -1;
+    private int currentStep = -1;
+
+    // Open events: pair -> slot
+    private final LongIntHashMap open = new LongIntHashMap();
+    private long[] slotPair = new long[INITIAL_SLOTS];
+    private int[] slotFirst = new int[INITIAL_SLOTS];
+    private int[] slotLast = new int[INITIAL_SLOTS];
+    private int[] slotBestStep = new int[INITIAL_SLOTS];
+    private float[] slotBestDistSq = new float[INITIAL_SLOTS];
+    private final IntArrayList freeSlots = new IntArrayList();
+    private int slotCount;
+
+    // Slots touched per step, ring over the last maxGapSteps + 1 steps, checked for expiry when they fall out
+    private final IntArrayList[] touched;
+
+    // Closed events that cannot join a neighbouring range
+    private final DetectionBuffer done = new DetectionBuffer();
+    // Events near either edge of the range, joined with neighbours in combine
+    private List<Event> edges = new ArrayList<>();
+
+    EventReducer(int maxGapSteps) {
+        this(maxGapSteps, pairKey -> maxGapSteps);
+    }
+
+    /**
+     * @param gapOf event gap of a pair, at most {@code maxGapSteps}
+     */
+    EventReducer(int maxGapSteps, LongToIntFunction gapOf) {
+        this.maxGapSteps = maxGapSteps;
+        this.gapOf = gapOf;
+        touched = new IntArrayList[maxGapSteps + 1];
+        for (int i = 0; i < touched.length; i++) touched[i] = new IntArrayList();
+    }
+
+    @Override
+    public void add(long pairKey, float distSq, int step) {
+        advanceTo(step);
+        int slot = open.getIfAbsent(pairKey, -1);
+        if (slot >= 0 && step - slotLast[slot] > gapOf.applyAsInt(pairKey)) {
+            close(slot);
+            slot = -1;
+        }
+        if (slot < 0) {
+            slot = allocate(pairKey, step);
+            slotBestDistSq[slot] = distSq;
+        } else if (distSq < slotBestDistSq[slot]) {
+            slotBestStep[slot] = step;
+            slotBestDistSq[slot] = distSq;
+        }
+        slotLast[slot] = step;
+        touched[step % touched.length].add(slot);
+    }
+
+    /**
+     * Close every open event whose last detection is more than {@code maxGapSteps} behind {@code step}.
+     */
+    private void advanceTo(int step) {
+        if (firstStep < 0) {
+            firstStep = step;
+            currentStep = step;
+            return;
+        }
+        for (; currentStep < step; currentStep++) {
+            int expiredStep = currentStep - maxGapSteps;
+            if (expiredStep < firstStep) continue;
+            IntArrayList expiring = touched[expiredStep % touched.length];
+            for (int i = 0; i < expiring.size(); i++) {
+                int slot = expiring.get(i);
+                // A reused slot was last touched later, so it never matches
+                if (slotFirst[slot] >= 0 && slotLast[slot] == expiredStep) close(slot);
+            }
+            expiring.clear();
+        }
+    }
+
+    private int allocate(long pairKey, int step) {
+        int slot;
+        if (freeSlots.notEmpty()) {
+            slot = freeSlots.removeAtIndex(freeSlots.size() - 1);
+        } else {
+            if (slotCount == slotPair.length) growSlots();
+            slot = slotCount++;
+        }
+        slotPair[slot] = pairKey;
+        slotFirst[slot] = step;
+        slotBestStep[slot] = step;
+        open.put(pairKey, slot);
+        return slot;
+    }
+
+    private void growSlots() {
+        int capacity = slotPair.length * 2;
+        slotPair = Arrays.copyOf(slotPair, capacity);
+        slotFirst = Arrays.copyOf(slotFirst, capacity);
+        slotLast = Arrays.copyOf(slotLast, capacity);
+        slotBestStep = Arrays.copyOf(slotBestStep, capacity);
+        slotBestDistSq = Arrays.copyOf(slotBestDistSq, capacity);
+    }
+
+    private void close(int slot) {
+        Event event = new Event(slotPair[slot], slotFirst[slot], slotLast[slot], slotBestStep[slot],
+                slotBestDistSq[slot]);
+        open.remove(slotPair[slot]);
+        slotFirst[slot] = -1;
+        freeSlots.add(slot);
+        keep(event, firstStep, currentStep + 1);
+    }
+
+    /**
+     * File a closed event as done, or as an edge if it may join an event of a neighbouring range outside [lo, hi).
+     */
+    private void keep(Event event, int lo, int hi) {
+        if (event.first() <= lo - 1 + maxGapSteps || event.last() >= hi - maxGapSteps) {
+            edges.add(event);
+        } else {
+            done.add(event.pairKey(), event.bestDistSq(), event.bestStep());
+        }
+    }
+
+    /**
+     * Close all open events and drop the per-step state; the reducer only combines after this.
+     */
+    private void seal() {
+        if (slotPair.length == 0) return;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slotFirst[slot] >= 0) close(slot);
+        }
+        slotPair = new long[0];
+        slotFirst = new int[0];
+        slotLast = new int[0];
+        slotBestStep = new int[0];
+        slotBestDistSq = new float[0];
+        freeSlots.clear();
+        slotCount = 0;
+        for (IntArrayList steps : touched) steps.clear();
+    }
+
+    /**
+     * Append the reducer of the step range right after this one, joining events that continue across the boundary.
+     */
+    void combine(EventReducer next) {
+        seal();
+        next.seal();
+        if (next.firstStep < 0) return;
+        done.addAll(next.done);
+        if (firstStep < 0) {
+            firstStep = next.firstStep;
+            currentStep = next.currentStep;
+            edges = next.edges;
+            return;
+        }
+
+        List<Event> candidates = new ArrayList<>(edges.size() + next.edges.size());
+        candidates.addAll(edges);
+        candidates.addAll(next.edges);
+        candidates.sort(Comparator.comparingLong(Event::pairKey).thenComparingInt(Event::first));
+        currentStep = next.currentStep;
+        edges = new ArrayList<>();
+
+        Event pending = null;
+        for (Event event : candidates) {
+            if (pending != null && pending.pairKey() == event.pairKey()
+                    && event.first() - pending.last() <= gapOf.applyAsInt(event.pairKey())) {
+                pending = pending.join(event);
+                continue;
+            }
+            if (pending != null) keep(pending, firstStep, currentStep + 1);
+            pending = event;
+        }
+        if (pending != null) keep(pending, firstStep, currentStep + 1);
+    }
+
+    /**
+     * Best detection per event once every range has been combined, in no particular order.
+     */
+    DetectionBuffer events() {
+        seal();
+        for (Event event : edges) done.add(event.pairKey(), event.bestDistSq(), event.bestStep());
+        edges = new ArrayList<>();
+        return done;
+    }
+
+    private record Event(long pairKey, int first, int last, int bestStep, float bestDistSq) {
+
+        /**
+         * This event continued by {@code later}, keeping the earlier detection when both are equally close.
+         */
+        Event join(Event later) {
+            Event best = later.bestDistSq < bestDistSq ? later : this;
+            return new Event(pairKey, first, later.last, best.bestStep, best.bestDistSq);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * Where coarse detections are reduced to the best detection per event.
+ */
+public enum EventReduction {
+    /**
+     * Collect every detection of the subwindow, then counting-sort them by pair and step and scan for events.
+     */
+    SORT,
+    /**
+     * Fold detections into open per-pair events inside each sweep worker and join them across worker ranges.
+     * Memory follows concurrently open events instead of total detections.
+     */
+    IN_SWEEP
+}
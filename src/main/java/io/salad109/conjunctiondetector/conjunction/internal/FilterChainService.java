@@ -0,0 +1,413 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfoPair;
+import org.eclipse.collections.impl.list.mutable.primitive.DoubleArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.time.AbsoluteDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Classical filter-chain screening on TLE mean elements:
+ * <ol>
+ *     <li>apogee/perigee: radial bands must overlap</li>
+ *     <li>orbit path: near at least one end of the mutual node line, the radii the two orbits can have must overlap</li>
+ *     <li>time: both objects must be near that end of the node line at the same time</li>
+ * </ol>
+ * Only the surviving time windows are sampled with SGP4, then grouped and refined like grid detections.
+ * <p>
+ * The filters use two-body orbits with secular J2 drift, so they are rigorous only up to the margin added to the
+ * threshold. The margin absorbs SGP4 short-period terms and the mean-to-osculating difference.
+ */
+@Service
+public class FilterChainService {
+
+    private static final Logger log = LoggerFactory.getLogger(FilterChainService.class);
+
+    private static final double MU_KM3_S2 = 398600.4418;
+    private static final double EARTH_RADIUS_KM = 6378.135;
+    private static final double J2 = 1.082616e-3;
+    private static final double TWO_PI = 2 * Math.PI;
+
+    // Node line drift allowed inside one geometry segment before the pair is split into more segments
+    private static final double MAX_SEGMENT_DRIFT_RAD = 0.02;
+    private static final int MAX_SEGMENTS = 96;
+
+    // Same event gap as groupAndReduce
+    private static final int EVENT_GAP_STEPS = 3;
+
+    private final PropagationService propagationService;
+    private final ScanService scanService;
+
+    public FilterChainService(PropagationService propagationService, ScanService scanService) {
+        this.propagationService = propagationService;
+        this.scanService = scanService;
+    }
+
+    /**
+     * Screen all pairs over [startTime, endTime]. Sampling uses the same step grid as the grid engine, and samples within
+     * tolerance are grouped and refined the same way, so the two engines report comparable events.
+     *
+     * @param marginKm slack on the threshold for the mean element filters
+     */
+    public ScreeningResult screen(ScanCatalog catalog, OffsetDateTime startTime, OffsetDateTime endTime, double stepSeconds,
+                                  double toleranceKm, double thresholdKm, double marginKm) {
+        long stepNanos = Math.round(stepSeconds * 1_000_000_000L);
+        int totalSteps = (int) Math.round(Duration.between(startTime, endTime).toNanos() / (stepSeconds * 1_000_000_000L)) + 1;
+        double windowSeconds = (totalSteps - 1) * stepSeconds;
+        double reachKm = thresholdKm + marginKm;
+        AbsoluteDate startDate = propagationService.toAbsoluteDate(startTime);
+
+        // Sort by low end of the radial band so each satellite only meets the ones whose band starts before its own ends
+        SatelliteScanInfo[] sorted = catalog.satellites().stream()
+                .sorted((a, b) -> Double.compare(bandLow(a, reachKm), bandLow(b, reachKm)))
+                .toArray(SatelliteScanInfo[]::new);
+        int n = sorted.length;
+        double[] low = new double[n];
+        double[] high = new double[n];
+        MeanOrbit[] orbits = new MeanOrbit[n];
+        for (int i = 0; i < n; i++) {
+            low[i] = bandLow(sorted[i], reachKm);
+            high[i] = Math.max(sorted[i].perigeeKm(), sorted[i].apogeeKm()) + reachKm / 2;
+            orbits[i] = MeanOrbit.of(catalog.propagator(sorted[i].noradCatId()).getTLE(), startDate);
+        }
+
+        LongAdder bandPairs = new LongAdder();
+        LongAdder pathPairs = new LongAdder();
+        LongAdder windows = new LongAdder();
+        LongAdder samples = new LongAdder();
+
+        List<ScanService.RefinedEvent> refined = IntStream.range(0, n)
+                .parallel()
+                .mapToObj(i -> {
+                    List<ScanService.RefinedEvent> found = new ArrayList<>();
+                    PairScratch scratch = new PairScratch();
+                    for (int j = i + 1; j < n && low[j] <= high[i]; j++) {
+                        bandPairs.increment();
+                        if (!timeWindows(orbits[i], orbits[j], windowSeconds, reachKm, scratch)) continue;
+                        pathPairs.increment();
+
+                        SatelliteScanInfoPair pair = sorted[i].noradCatId() < sorted[j].noradCatId()
+                                ? new SatelliteScanInfoPair(sorted[i], sorted[j])
+                                : new SatelliteScanInfoPair(sorted[j], sorted[i]);
+                        LongArrayList stepWindows = toStepWindows(scratch.windows, stepSeconds, totalSteps);
+                        windows.add(stepWindows.size());
+                        for (int w = 0; w < stepWindows.size(); w++) {
+                            int from = (int) (stepWindows.get(w) >>> 32);
+                            int to = (int) stepWindows.get(w);
+                            samples.add(to - from + 1L);
+                            sampleAndRefine(pair, from, to, startTime, stepNanos, catalog, stepSeconds,
+                                    toleranceKm, thresholdKm, found);
+                        }
+                    }
+                    return found;
+                })
+                .flatMap(List::stream)
+                .toList();
+
+        long totalPairs = (long) n * (n - 1) / 2;
+        log.debug("Filter chain: {} pairs, {} after apogee/perigee, {} after orbit path and time, {} windows, {} samples, {} refined",
+                totalPairs, bandPairs.sum(), pathPairs.sum(), windows.sum(), samples.sum(), refined.size());
+
+        return new ScreeningResult(totalPairs, bandPairs.sum(), pathPairs.sum(), windows.sum(), samples.sum(), refined);
+    }
+
+    private static double bandLow(SatelliteScanInfo sat, double reachKm) {
+        return Math.min(sat.perigeeKm(), sat.apogeeKm()) - reachKm / 2;
+    }
+
+    /**
+     * Orbit path and time filters. Fills scratch.windows with [start, end] pairs in seconds from the window start and
+     * returns whether any survived.
+     * <p>
+     * The distance between the objects is at least each one's distance from the other's orbit plane, r sin(u) sin(i_rel)
+     * with u the angle from the node line. So both must be within asin(reach / (r_p sin(i_rel))) of the same end of the
+     * node line, and the radii they can have on those arcs must come within reach.
+     */
+    private static boolean timeWindows(MeanOrbit a, MeanOrbit b, double windowSeconds, double reachKm,
+                                       PairScratch scratch) {
+        scratch.windows.clear();
+        PlaneGeometry ga = scratch.a;
+        PlaneGeometry gb = scratch.b;
+
+        ga.set(a, windowSeconds / 2);
+        gb.set(b, windowSeconds / 2);
+        double sinRel = ga.sinRelativeInclination(gb);
+        int segments = 1;
+        if (sinRel * Math.min(a.perigeeRadius, b.perigeeRadius) > reachKm) {
+            double drift = nodeDriftRate(a, b, sinRel) * windowSeconds;
+            segments = (int) Math.clamp(Math.ceil(drift / MAX_SEGMENT_DRIFT_RAD), 1, MAX_SEGMENTS);
+        }
+        double segmentSeconds = windowSeconds / segments;
+
+        for (int seg = 0; seg < segments; seg++) {
+            double t0 = seg * segmentSeconds;
+            double t1 = t0 + segmentSeconds;
+            ga.set(a, t0 + segmentSeconds / 2);
+            gb.set(b, t0 + segmentSeconds / 2);
+
+            double cx = ga.hy * gb.hz - ga.hz * gb.hy;
+            double cy = ga.hz * gb.hx - ga.hx * gb.hz;
+            double cz = ga.hx * gb.hy - ga.hy * gb.hx;
+            double s = Math.sqrt(cx * cx + cy * cy + cz * cz);
+
+            // Coplanar within reach: no node line to speak of, only the apogee/perigee filter applies
+            if (s * Math.min(a.perigeeRadius, b.perigeeRadius) <= reachKm) {
+                addWindow(scratch.windows, t0, t1);
+                continue;
+            }
+
+            double slack = nodeDriftRate(a, b, s) * segmentSeconds / 2;
+            double deltaA = Math.min(Math.PI, Math.asin(Math.min(1, reachKm / (s * a.perigeeRadius))) + slack);
+            double deltaB = Math.min(Math.PI, Math.asin(Math.min(1, reachKm / (s * b.perigeeRadius))) + slack);
+
+            for (int sign = 1; sign >= -1; sign -= 2) {
+                double dx = sign * cx / s;
+                double dy = sign * cy / s;
+                double dz = sign * cz / s;
+                double nuA = Math.atan2(dx * ga.qx + dy * ga.qy + dz * ga.qz, dx * ga.px + dy * ga.py + dz * ga.pz);
+                double nuB = Math.atan2(dx * gb.qx + dy * gb.qy + dz * gb.qz, dx * gb.px + dy * gb.py + dz * gb.pz);
+
+                if (!radiiOverlap(a, nuA, deltaA, b, nuB, deltaB, reachKm)) continue;
+
+                passes(a, nuA, deltaA, t0, t1, scratch.passesA);
+                passes(b, nuB, deltaB, t0, t1, scratch.passesB);
+                intersect(scratch.passesA, scratch.passesB, scratch.windows);
+            }
+        }
+        return !scratch.windows.isEmpty();
+    }
+
+    /**
+     * Upper bound on how fast the node line turns within either orbit plane, rad/s.
+     */
+    private static double nodeDriftRate(MeanOrbit a, MeanOrbit b, double sinRel) {
+        return (Math.abs(a.raanDot) + Math.abs(b.raanDot)) / sinRel + Math.abs(a.argpDot) + Math.abs(b.argpDot);
+    }
+
+    private static boolean radiiOverlap(MeanOrbit a, double nuA, double deltaA,
+                                        MeanOrbit b, double nuB, double deltaB, double reachKm) {
+        double minA = a.minRadius(nuA, deltaA);
+        double maxA = a.maxRadius(nuA, deltaA);
+        double minB = b.minRadius(nuB, deltaB);
+        double maxB = b.maxRadius(nuB, deltaB);
+        return minA - maxB <= reachKm && minB - maxA <= reachKm;
+    }
+
+    /**
+     * Times in [t0, t1] when the object's true anomaly is within delta of nuCenter, as [start, end] pairs.
+     */
+    private static void passes(MeanOrbit orbit, double nuCenter, double delta, double t0, double t1,
+                               DoubleArrayList out) {
+        out.clear();
+        if (delta >= Math.PI) {
+            addWindow(out, t0, t1);
+            return;
+        }
+        double meanLow = orbit.meanAnomaly(nuCenter - delta);
+        double meanSpan = mod2Pi(orbit.meanAnomaly(nuCenter + delta) - meanLow);
+        double meanAtT0 = orbit.meanAnomalyAt(t0);
+        double period = TWO_PI / orbit.meanAnomalyRate;
+
+        double start = t0 + (meanLow + TWO_PI * Math.floor((meanAtT0 - meanLow) / TWO_PI) - meanAtT0) / orbit.meanAnomalyRate;
+        for (; start < t1; start += period) {
+            double end = start + meanSpan / orbit.meanAnomalyRate;
+            if (end > t0) addWindow(out, Math.max(start, t0), Math.min(end, t1));
+        }
+    }
+
+    private static void intersect(DoubleArrayList a, DoubleArrayList b, DoubleArrayList out) {
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            double start = Math.max(a.get(i), b.get(j));
+            double end = Math.min(a.get(i + 1), b.get(j + 1));
+            if (start <= end) addWindow(out, start, end);
+            if (a.get(i + 1) < b.get(j + 1)) i += 2;
+            else j += 2;
+        }
+    }
+
+    private static void addWindow(DoubleArrayList windows, double start, double end) {
+        windows.add(start);
+        windows.add(end);
+    }
+
+    /**
+     * Widen time windows to whole steps plus one on each side so the best sample is bracketed, then merge overlaps.
+     * Returns (from << 32 | to) step ranges, inclusive.
+     */
+    private static LongArrayList toStepWindows(DoubleArrayList windows, double stepSeconds, int totalSteps) {
+        long[] ranges = new long[windows.size() / 2];
+        for (int w = 0; w < ranges.length; w++) {
+            int from = (int) Math.max(0, Math.floor(windows.get(2 * w) / stepSeconds) - 1);
+            int to = (int) Math.min(totalSteps - 1, Math.ceil(windows.get(2 * w + 1) / stepSeconds) + 1);
+            ranges[w] = (long) from << 32 | to;
+        }
+        Arrays.sort(ranges);
+
+        LongArrayList merged = new LongArrayList(ranges.length);
+        for (long range : ranges) {
+            int from = (int) (range >>> 32);
+            int to = (int) range;
+            if (!merged.isEmpty()) {
+                long last = merged.getLast();
+                int lastTo = (int) last;
+                // Windows closer than the event gap would be one event in the grid engine too
+                if (from <= lastTo + EVENT_GAP_STEPS + 1) {
+                    merged.set(merged.size() - 1, (last & 0xFFFFFFFF00000000L) | Math.max(lastTo, to));
+                    continue;
+                }
+            }
+            merged.add(range);
+        }
+        return merged;
+    }
+
+    /**
+     * SGP4 over one step window, group samples within tolerance into events and refine the best sample of each.
+     */
+    private void sampleAndRefine(SatelliteScanInfoPair pair, int from, int to, OffsetDateTime startTime,
+                                 long stepNanos, ScanCatalog catalog, double stepSeconds, double toleranceKm,
+                                 double thresholdKm, List<ScanService.RefinedEvent> out) {
+        OffsetDateTime[] times = new OffsetDateTime[to - from + 1];
+        for (int k = 0; k < times.length; k++) times[k] = startTime.plusNanos((from + k) * stepNanos);
+        PropagationService.PositionCache cache = propagationService.samplePair(pair, catalog, times);
+
+        double tolSq = toleranceKm * toleranceKm;
+        long pairKey = DetectionBuffer.pairKey(0, 1);
+        int bestStep = -1;
+        double bestDistSq = Double.MAX_VALUE;
+        int lastHit = Integer.MIN_VALUE / 2;
+        for (int k = 0; k < times.length; k++) {
+            if (!cache.isValid(0, k) || !cache.isValid(1, k)) continue;
+            double distSq = cache.distanceSquaredAt(0, 1, k);
+            if (distSq > tolSq) continue;
+            if (k - lastHit > EVENT_GAP_STEPS && bestStep >= 0) {
+                refine(pairKey, bestStep, catalog, cache, stepSeconds, thresholdKm, out);
+                bestDistSq = Double.MAX_VALUE;
+            }
+            if (distSq < bestDistSq) {
+                bestDistSq = distSq;
+                bestStep = k;
+            }
+            lastHit = k;
+        }
+        if (bestStep >= 0) refine(pairKey, bestStep, catalog, cache, stepSeconds, thresholdKm, out);
+    }
+
+    private void refine(long pairKey, int step, ScanCatalog catalog, PositionSource cache, double stepSeconds,
+                        double thresholdKm, List<ScanService.RefinedEvent> out) {
+        ScanService.RefinedEvent event = scanService.refineDetection(
+                pairKey, step, 1, catalog, cache, stepSeconds, thresholdKm);
+        if (event != null) out.add(event);
+    }
+
+    private static double mod2Pi(double angle) {
+        double r = angle % TWO_PI;
+        return r < 0 ? r + TWO_PI : r;
+    }
+
+    public record ScreeningResult(long totalPairs, long apogeePerigeePairs, long pathTimePairs, long windows,
+                                  long samples, List<ScanService.RefinedEvent> refined) {
+    }
+
+    /**
+     * Two-body orbit from TLE mean elements with secular J2 rates on the node and perigee. Angles in rad, times in s from
+     * the scan start. The TLE (Kozai) mean motion already is the anomalistic rate SGP4 advances the mean anomaly with.
+     */
+    private record MeanOrbit(double semiMajorAxis, double e, double inclination, double raan0, double raanDot,
+                             double argp0, double argpDot, double meanAnomaly0, double meanAnomalyRate,
+                             double epochSeconds, double perigeeRadius) {
+
+        static MeanOrbit of(TLE tle, AbsoluteDate startDate) {
+            double n = tle.getMeanMotion();
+            double e = tle.getE();
+            double i = tle.getI();
+            double a = Math.cbrt(MU_KM3_S2 / (n * n));
+            double p = a * (1 - e * e);
+            double sinI = Math.sin(i);
+            double j2Rate = 1.5 * J2 * (EARTH_RADIUS_KM / p) * (EARTH_RADIUS_KM / p) * n;
+            return new MeanOrbit(a, e, i,
+                    tle.getRaan(), -j2Rate * Math.cos(i),
+                    tle.getPerigeeArgument(), j2Rate * (2 - 2.5 * sinI * sinI),
+                    tle.getMeanAnomaly(), n,
+                    tle.getDate().durationFrom(startDate), a * (1 - e));
+        }
+
+        double meanAnomalyAt(double t) {
+            return meanAnomaly0 + meanAnomalyRate * (t - epochSeconds);
+        }
+
+        double meanAnomaly(double trueAnomaly) {
+            double eccentricAnomaly = 2 * Math.atan2(Math.sqrt(1 - e) * Math.sin(trueAnomaly / 2),
+                    Math.sqrt(1 + e) * Math.cos(trueAnomaly / 2));
+            return eccentricAnomaly - e * Math.sin(eccentricAnomaly);
+        }
+
+        double radius(double trueAnomaly) {
+            return semiMajorAxis * (1 - e * e) / (1 + e * Math.cos(trueAnomaly));
+        }
+
+        double minRadius(double nu, double delta) {
+            if (delta >= Math.PI || mod2Pi(-(nu - delta)) <= 2 * delta) return perigeeRadius;
+            return Math.min(radius(nu - delta), radius(nu + delta));
+        }
+
+        double maxRadius(double nu, double delta) {
+            if (delta >= Math.PI || mod2Pi(Math.PI - (nu - delta)) <= 2 * delta) return semiMajorAxis * (1 + e);
+            return Math.max(radius(nu - delta), radius(nu + delta));
+        }
+    }
+
+    /**
+     * Orbit normal h and perifocal axes P (to perigee), Q at one instant.
+     */
+    private static final class PlaneGeometry {
+        double hx, hy, hz, px, py, pz, qx, qy, qz;
+
+        void set(MeanOrbit orbit, double t) {
+            double raan = orbit.raan0 + orbit.raanDot * (t - orbit.epochSeconds);
+            double argp = orbit.argp0 + orbit.argpDot * (t - orbit.epochSeconds);
+            double cosO = Math.cos(raan), sinO = Math.sin(raan);
+            double cosW = Math.cos(argp), sinW = Math.sin(argp);
+            double cosI = Math.cos(orbit.inclination), sinI = Math.sin(orbit.inclination);
+            hx = sinI * sinO;
+            hy = -sinI * cosO;
+            hz = cosI;
+            px = cosO * cosW - sinO * sinW * cosI;
+            py = sinO * cosW + cosO * sinW * cosI;
+            pz = sinW * sinI;
+            qx = -cosO * sinW - sinO * cosW * cosI;
+            qy = -sinO * sinW + cosO * cosW * cosI;
+            qz = cosW * sinI;
+        }
+
+        double sinRelativeInclination(PlaneGeometry other) {
+            double cx = hy * other.hz - hz * other.hy;
+            double cy = hz * other.hx - hx * other.hz;
+            double cz = hx * other.hy - hy * other.hx;
+            return Math.sqrt(cx * cx + cy * cy + cz * cz);
+        }
+    }
+
+    // Reused across the pairs of one outer satellite
+    private static final class PairScratch {
+        final PlaneGeometry a = new PlaneGeometry();
+        final PlaneGeometry b = new PlaneGeometry();
+        final DoubleArrayList passesA = new DoubleArrayList();
+        final DoubleArrayList passesB = new DoubleArrayList();
+        final DoubleArrayList windows = new DoubleArrayList();
+    }
+}
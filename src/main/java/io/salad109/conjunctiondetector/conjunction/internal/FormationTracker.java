@@ -0,0 +1,143 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.eclipse.collections.api.set.primitive.MutableLongSet;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pairs that stay together for whole windows: docked modules, formation flyers and freshly deployed trains. They would
+ * otherwise be detected at every step only to be dropped as formations later. A pair is co-located over a window when
+ * at every knot its separation is under tolerance and its relative velocity under a bound. Tracked pairs that still
+ * hold are excluded from the sweep and get one summary event per window instead.
+ * <p>
+ * The tracked set lives in this service, so pairs spotted in one scan stay tracked in the next.
+ */
+@Service
+public class FormationTracker {
+
+    // NORAD ID pair keys
+    private final Set<Long> tracked = ConcurrentHashMap.newKeySet();
+
+    private final ScanService scanService;
+
+    public FormationTracker(ScanService scanService) {
+        this.scanService = scanService;
+    }
+
+    /**
+     * Tracked pairs that are still co-located over this window, as array-index pair keys. Pairs that broke formation
+     * or left the catalog stop being tracked and are swept normally again.
+     */
+    public LongSet verify(PropagationService.KnotCache knots, double separationKm, double maxVelocityKmS) {
+        return verify(knots, separationKm, maxVelocityKmS, null);
+    }
+
+    /**
+     * {@link #verify(PropagationService.KnotCache, double, double)} for the pairs with a satellite in {@code scope}
+     * (by array index) only, the others are left tracked as they are. A null scope covers every pair.
+     */
+    public LongSet verify(PropagationService.KnotCache knots, double separationKm, double maxVelocityKmS,
+                          boolean[] scope) {
+        MutableIntIntMap noradIdToArrayId = knots.noradIdToArrayId();
+        MutableLongSet holding = new LongHashSet();
+        tracked.removeIf(noradKey -> {
+            int noradA = DetectionBuffer.firstIndex(noradKey);
+            int noradB = DetectionBuffer.secondIndex(noradKey);
+            if (!noradIdToArrayId.containsKey(noradA) || !noradIdToArrayId.containsKey(noradB)) return true;
+            int idxA = noradIdToArrayId.get(noradA);
+            int idxB = noradIdToArrayId.get(noradB);
+            if (scope != null && !scope[idxA] && !scope[idxB]) return false;
+            if (!coLocated(knots, idxA, idxB, separationKm, maxVelocityKmS)) return true;
+            holding.add(DetectionBuffer.pairKey(idxA, idxB));
+            return false;
+        });
+        return holding;
+    }
+
+    /**
+     * Start tracking the pairs of {@code events} that were co-located over this whole window.
+     */
+    public void spot(DetectionBuffer events, PropagationService.KnotCache knots, double separationKm,
+                     double maxVelocityKmS) {
+        int[] arrayIdToNoradId = knots.arrayIdToNoradId();
+        for (int i = 0; i < events.size(); i++) {
+            long pairKey = events.pairKey(i);
+            int idxA = DetectionBuffer.firstIndex(pairKey);
+            int idxB = DetectionBuffer.secondIndex(pairKey);
+            if (coLocated(knots, idxA, idxB, separationKm, maxVelocityKmS)) {
+                tracked.add(DetectionBuffer.pairKey(arrayIdToNoradId[idxA], arrayIdToNoradId[idxB]));
+            }
+        }
+    }
+
+    /**
+     * One summary event per co-located pair: closest approach around its closest knot, measured with SGP4, kept if
+     * under the threshold.
+     */
+    public List<ScanService.RefinedEvent> summarize(LongSet pairs, PropagationService.KnotCache knots,
+                                                    ScanCatalog catalog, double stepSeconds,
+                                                    double thresholdKm) {
+        int span = knots.interpolationStride();
+
+        return Arrays.stream(pairs.toArray())
+                .parallel()
+                .mapToObj(pairKey -> {
+                    int knot = closestKnot(knots, DetectionBuffer.firstIndex(pairKey),
+                            DetectionBuffer.secondIndex(pairKey));
+                    return scanService.refineDetection(pairKey, knot * span, span, catalog, knots, stepSeconds,
+                            thresholdKm);
+                })
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    public int trackedCount() {
+        return tracked.size();
+    }
+
+    /**
+     * True if both satellites have every knot and stay within the separation and relative velocity bounds at all of
+     * them.
+     */
+    static boolean coLocated(PropagationService.KnotCache knots, int idxA, int idxB, double separationKm,
+                             double maxVelocityKmS) {
+        int numKnots = knots.numKnots();
+        if (numKnots < 2) return false;
+        double separationSq = separationKm * separationKm;
+        double velocitySq = maxVelocityKmS * maxVelocityKmS;
+        for (int k = 0; k < numKnots; k++) {
+            if (Float.isNaN(knots.x()[idxA][k]) || Float.isNaN(knots.x()[idxB][k])) return false;
+            if (squaredDifference(knots.x(), knots.y(), knots.z(), idxA, idxB, k) >= separationSq) return false;
+            if (squaredDifference(knots.vx(), knots.vy(), knots.vz(), idxA, idxB, k) > velocitySq) return false;
+        }
+        return true;
+    }
+
+    private static int closestKnot(PropagationService.KnotCache knots, int idxA, int idxB) {
+        int best = 0;
+        double bestSq = Double.MAX_VALUE;
+        for (int k = 0; k < knots.numKnots(); k++) {
+            double distSq = squaredDifference(knots.x(), knots.y(), knots.z(), idxA, idxB, k);
+            if (distSq < bestSq) {
+                bestSq = distSq;
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    private static double squaredDifference(float[][] x, float[][] y, float[][] z, int idxA, int idxB, int k) {
+        double dx = x[idxA][k] - x[idxB][k];
+        double dy = y[idxA][k] - y[idxB][k];
+        double dz = z[idxA][k] - z[idxB][k];
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -0,0 +1,15 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * Spatial grid implementation used by the coarse sweep.
+ */
+public enum GridType {
+    /**
+     * {@link SpatialGrid}: primitive hash map of 10-bit wrapped cell keys.
+     */
+    HASH,
+    /**
+     * {@link SortedSpatialGrid}: radix-sorted full-width cell keys in flat arrays.
+     */
+    SORTED
+}
@@ -0,0 +1,16 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * Hermite interpolation order between knots.
+ */
+public enum InterpolationOrder {
+    /**
+     * Position and velocity at both knots.
+     */
+    CUBIC,
+    /**
+     * Position, velocity and acceleration at both knots, the acceleration from two-body gravity plus J2 at the knot
+     * position. Holds accuracy at larger strides, so fewer SGP4 calls per window.
+     */
+    QUINTIC
+}
@@ -0,0 +1,127 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * KD-tree broad phase. Every step the valid satellites are partitioned in place around the median, cycling x, y, z, so
+ * the tree is implicit in the array order and needs no nodes. Each satellite then queries the tolerance cube, visiting
+ * only satellites later in tree order so every pair is reported once.
+ */
+final class KdTreeBroadPhase implements BroadPhase {
+
+    private static final int LEAF_SIZE = 8;
+
+    // Reuse to reduce hot path allocations
+    private static final ThreadLocal<Tree> TREE_POOL = ThreadLocal.withInitial(Tree::new);
+
+    private final double radiusKm;
+
+    KdTreeBroadPhase(double radiusKm) {
+        this.radiusKm = radiusKm;
+    }
+
+    @Override
+    public void forEachCandidatePair(PositionSource positions, int step, SpatialGrid.IntBiConsumer consumer) {
+        Tree tree = TREE_POOL.get();
+        tree.build(positions, step);
+        float r = (float) radiusKm;
+        for (int p = 0; p < tree.count; p++) {
+            tree.query(p, 0, tree.count, 0, r, consumer);
+        }
+    }
+
+    private static final class Tree {
+        int count;
+        int[] index = new int[0];
+        // coords[axis][i], in tree order
+        float[][] coords = new float[3][0];
+        // Split value of the node whose range has its midpoint at i; the element there moves when the children split
+        float[] split = new float[0];
+
+        void build(PositionSource positions, int step) {
+            int n = positions.numSatellites();
+            if (index.length < n) {
+                index = new int[n];
+                coords = new float[3][n];
+                split = new float[n];
+            }
+            count = 0;
+            for (int sat = 0; sat < n; sat++) {
+                float x = positions.x(sat, step);
+                if (Float.isNaN(x)) continue;
+                index[count] = sat;
+                coords[0][count] = x;
+                coords[1][count] = positions.y(sat, step);
+                coords[2][count] = positions.z(sat, step);
+                count++;
+            }
+            partition(0, count, 0);
+        }
+
+        /**
+         * Median split of [lo, hi) on the depth's axis: left half at most the value at mid, right half at least.
+         */
+        private void partition(int lo, int hi, int depth) {
+            if (hi - lo <= LEAF_SIZE) return;
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi - 1, mid, coords[depth % 3]);
+            split[mid] = coords[depth % 3][mid];
+            partition(lo, mid, depth + 1);
+            partition(mid, hi, depth + 1);
+        }
+
+        /**
+         * Quickselect: put the k-th smallest of [left, right] on the axis at k.
+         */
+        private void select(int left, int right, int k, float[] axis) {
+            while (right > left) {
+                float pivot = axis[(left + right) >>> 1];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (axis[i] < pivot) i++;
+                    while (axis[j] > pivot) j--;
+                    if (i <= j) {
+                        swap(i, j);
+                        i++;
+                        j--;
+                    }
+                }
+                if (k <= j) right = j;
+                else if (k >= i) left = i;
+                else return;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int t = index[i];
+            index[i] = index[j];
+            index[j] = t;
+            for (float[] axis : coords) {
+                float c = axis[i];
+                axis[i] = axis[j];
+                axis[j] = c;
+            }
+        }
+
+        /**
+         * Report satellites after p in [lo, hi) whose coordinates are all within r of p's.
+         */
+        void query(int p, int lo, int hi, int depth, float r, SpatialGrid.IntBiConsumer consumer) {
+            if (hi <= p + 1) return;
+            float[] xs = coords[0];
+            float[] ys = coords[1];
+            float[] zs = coords[2];
+            if (hi - lo <= LEAF_SIZE) {
+                for (int q = Math.max(lo, p + 1); q < hi; q++) {
+                    if (Math.abs(xs[q] - xs[p]) <= r && Math.abs(ys[q] - ys[p]) <= r && Math.abs(zs[q] - zs[p]) <= r) {
+                        consumer.accept(index[p], index[q]);
+                    }
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            float value = coords[depth % 3][p];
+            if (value - r <= split[mid]) query(p, lo, mid, depth + 1, r, consumer);
+            if (value + r >= split[mid]) query(p, mid, hi, depth + 1, r, consumer);
+        }
+    }
+}
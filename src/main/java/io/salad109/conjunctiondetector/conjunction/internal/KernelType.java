@@ -0,0 +1,23 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * Implementation of the interpolation and distance hot loops.
+ */
+public enum KernelType {
+    /**
+     * Plain scalar loops.
+     */
+    SCALAR,
+    /**
+     * {@code jdk.incubator.vector} kernels, needs {@code --add-modules jdk.incubator.vector} at runtime.
+     * Vectorizes satellite-major interpolation and the sorted-grid distance checks, everything else stays scalar.
+     */
+    VECTOR;
+
+    /**
+     * Whether the incubator module is resolved in this JVM. Checked without touching any vector class.
+     */
+    public static boolean isVectorApiAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+}
@@ -0,0 +1,15 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * Propagator used for knot generation. Refinement always uses Orekit.
+ */
+public enum KnotPropagator {
+    /**
+     * Orekit's {@code TLEPropagator} for every satellite.
+     */
+    OREKIT,
+    /**
+     * The batched SGP4 kernel for near-Earth satellites, Orekit's SDP4 for deep-space ones.
+     */
+    NATIVE
+}
@@ -0,0 +1,296 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+import org.eclipse.collections.api.map.primitive.MutableLongObjectMap;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Knots kept on disk across scans and restarts. Time is cut into a global lattice of knots {@code knotNanos} apart from
+ * the Unix epoch, and every {@link #BLOCK_KNOTS} lattice knots form a block held in one memory-mapped file. A block
+ * file has one record per satellite, stamped with the element set and the knot propagator it was propagated with, so a
+ * new element set invalidates only that satellite's records and a propagator switch only repropagates.
+ * <p>
+ * Consecutive scans overlap most of their window, so with the store a scan only propagates blocks that are new or
+ * stale. Callers synchronize on the store.
+ */
+public final class KnotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(KnotStore.class);
+
+    static final int BLOCK_KNOTS = 64;
+
+    private static final int MAGIC = 0x4B4E4F54; // "KNOT"
+    private static final int VERSION = 2;
+    // magic, version, knot spacing, block index, record count
+    private static final int FILE_HEADER_BYTES = 32;
+    // NORAD ID, element set number, epoch nanos, valid knots, knot propagator
+    private static final int RECORD_HEADER_BYTES = 24;
+    private static final int RECORD_BYTES = RECORD_HEADER_BYTES + 6 * BLOCK_KNOTS * Float.BYTES;
+    private static final int INITIAL_RECORDS = 1024;
+
+    private final Path directory;
+    // Block index -> open block, for the knot spacing in use
+    private final MutableLongObjectMap<Block> blocks = new LongObjectHashMap<>();
+    private long openKnotNanos;
+    private long propagatedRecords;
+
+    private KnotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public static KnotStore open(Path directory) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create knot store " + directory, e);
+        }
+        return new KnotStore(directory);
+    }
+
+    /**
+     * Knot spacing, rounded the same way as {@link PropagationService#computeKnots}.
+     */
+    public static long knotNanos(double stepSeconds, int interpolationStride) {
+        return Math.round(stepSeconds * 1_000_000_000L) * interpolationStride;
+    }
+
+    /**
+     * The lattice knot at or before {@code time}.
+     */
+    public static OffsetDateTime floorToLattice(OffsetDateTime time, long knotNanos) {
+        return latticeTime(Math.floorDiv(epochNanos(time), knotNanos), knotNanos);
+    }
+
+    static OffsetDateTime latticeTime(long knot, long knotNanos) {
+        return OffsetDateTime.ofInstant(Instant.EPOCH.plusNanos(knot * knotNanos), ZoneOffset.UTC);
+    }
+
+    static long epochNanos(OffsetDateTime time) {
+        Instant instant = time.toInstant();
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    /**
+     * The block of lattice knots {@code [index * BLOCK_KNOTS, (index + 1) * BLOCK_KNOTS)}, opened or created. Blocks
+     * before {@code index} and blocks of other spacings are closed but stay on disk until {@link #retainFrom}.
+     */
+    Block block(long knotNanos, long index) {
+        if (knotNanos != openKnotNanos) {
+            blocks.forEachValue(Block::close);
+            blocks.clear();
+            openKnotNanos = knotNanos;
+        }
+        for (long open : blocks.keySet().toArray()) {
+            if (open < index) blocks.remove(open).close();
+        }
+        Block block = blocks.get(index);
+        if (block == null) {
+            block = Block.open(directory.resolve("knots-" + knotNanos + "-" + index + ".bin"), knotNanos, index);
+            blocks.put(index, block);
+        }
+        return block;
+    }
+
+    /**
+     * {@link #retainFrom(long, long)} from the block holding {@code scanStart}. Called once per scan, before its first
+     * subwindow, so the blocks the scan and the next one overlap on stay on disk.
+     */
+    public void retainFrom(OffsetDateTime scanStart, long knotNanos) {
+        retainFrom(knotNanos, Math.floorDiv(Math.floorDiv(epochNanos(scanStart), knotNanos), BLOCK_KNOTS));
+    }
+
+    /**
+     * Satellite blocks propagated into the store since it was opened.
+     */
+    long propagatedRecords() {
+        return propagatedRecords;
+    }
+
+    void countPropagated(int records) {
+        propagatedRecords += records;
+    }
+
+    /**
+     * Delete the block files that end before block {@code firstIndex}, and every block of another spacing.
+     */
+    void retainFrom(long knotNanos, long firstIndex) {
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "knots-*.bin")) {
+            for (Path file : files) {
+                String[] parts = file.getFileName().toString().replace(".bin", "").split("-", -1);
+                if (parts.length != 3) continue;
+                long spacing = Long.parseLong(parts[1]);
+                long index = Long.parseLong(parts[2]);
+                if (spacing == knotNanos && index >= firstIndex) continue;
+                Block open = spacing == openKnotNanos ? blocks.remove(index) : null;
+                if (open != null) open.close();
+                Files.deleteIfExists(file);
+                deleted++;
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Knot store cleanup failed: {}", e.getMessage());
+        }
+        if (deleted > 0) log.debug("Knot store: {} old blocks deleted", deleted);
+    }
+
+    /**
+     * One block file. Records are only appended, and the record count in the header is written after the record's
+     * NORAD ID, so a crash leaves at most a record that is never read.
+     */
+    static final class Block {
+
+        private final FileChannel channel;
+        private final MutableIntIntMap noradIdToRecord = new IntIntHashMap();
+        private MappedByteBuffer buffer;
+        private FloatBuffer floats;
+        private int records;
+        private int capacity;
+
+        private Block(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        static Block open(Path file, long knotNanos, long index) {
+            try {
+                boolean exists = Files.exists(file) && Files.size(file) >= FILE_HEADER_BYTES;
+                Block block = new Block(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE));
+                int existing = exists ? (int) ((Files.size(file) - FILE_HEADER_BYTES) / RECORD_BYTES) : 0;
+                block.map(Math.max(INITIAL_RECORDS, existing));
+                MappedByteBuffer header = block.buffer;
+                if (exists && header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                        && header.getLong(8) == knotNanos && header.getLong(16) == index) {
+                    block.records = Math.min(header.getInt(24), existing);
+                    for (int r = 0; r < block.records; r++) {
+                        block.noradIdToRecord.put(header.getInt(recordOffset(r)), r);
+                    }
+                } else {
+                    header.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, knotNanos).putLong(16, index)
+                            .putInt(24, 0);
+                }
+                return block;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open knot block " + file, e);
+            }
+        }
+
+        /**
+         * Record index for each catalog satellite, appending records for satellites new to this block.
+         */
+        int[] records(ScanCatalog catalog) {
+            int[] result = new int[catalog.size()];
+            for (int s = 0; s < result.length; s++) {
+                int noradId = catalog.satellites().get(s).noradCatId();
+                int record = noradIdToRecord.getIfAbsent(noradId, -1);
+                if (record < 0) {
+                    if (records == capacity) map(capacity * 2);
+                    record = records++;
+                    buffer.putInt(recordOffset(record), noradId);
+                    buffer.putLong(recordOffset(record) + 8, Long.MIN_VALUE);
+                    buffer.putInt(24, records);
+                    noradIdToRecord.put(noradId, record);
+                }
+                result[s] = record;
+            }
+            return result;
+        }
+
+        /**
+         * Whether the record was propagated from the satellite's current element set with {@code propagator}.
+         */
+        boolean holds(int record, SatelliteScanInfo sat, KnotPropagator propagator) {
+            int offset = recordOffset(record);
+            return buffer.getLong(offset + 8) == epochNanos(sat.epoch())
+                    && buffer.getInt(offset + 4) == PropagatorRegistry.parseElementSetNo(sat.tleLine1())
+                    && buffer.getInt(offset + 20) == stamp(propagator);
+        }
+
+        /**
+         * Store a satellite's knots for the whole block, of which the first {@code valid} propagated.
+         */
+        void write(int record, SatelliteScanInfo sat, KnotPropagator propagator, float[][] rows, int valid) {
+            int offset = recordOffset(record);
+            int floatOffset = (offset + RECORD_HEADER_BYTES) / Float.BYTES;
+            for (int c = 0; c < 6; c++) floats.put(floatOffset + c * BLOCK_KNOTS, rows[c], 0, valid);
+            buffer.putInt(offset + 16, valid);
+            buffer.putInt(offset + 20, stamp(propagator));
+            buffer.putInt(offset + 4, PropagatorRegistry.parseElementSetNo(sat.tleLine1()));
+            buffer.putLong(offset + 8, epochNanos(sat.epoch()));
+        }
+
+        /**
+         * Copy {@code count} knots from block position {@code from} into the knot rows at {@code to}. Knots past the
+         * record's valid prefix are left untouched.
+         */
+        void read(int record, int from, int count, int to,
+                  float[] x, float[] y, float[] z, float[] vx, float[] vy, float[] vz) {
+            int offset = recordOffset(record);
+            int n = Math.min(count, buffer.getInt(offset + 16) - from);
+            if (n <= 0) return;
+            int floatOffset = (offset + RECORD_HEADER_BYTES) / Float.BYTES + from;
+            floats.get(floatOffset, x, to, n);
+            floats.get(floatOffset + BLOCK_KNOTS, y, to, n);
+            floats.get(floatOffset + 2 * BLOCK_KNOTS, z, to, n);
+            floats.get(floatOffset + 3 * BLOCK_KNOTS, vx, to, n);
+            floats.get(floatOffset + 4 * BLOCK_KNOTS, vy, to, n);
+            floats.get(floatOffset + 5 * BLOCK_KNOTS, vz, to, n);
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        /**
+         * Close the file. The mapping stays readable until it is collected.
+         */
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Knot block close failed: {}", e.getMessage());
+            }
+        }
+
+        private void map(int newCapacity) {
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        FILE_HEADER_BYTES + (long) newCapacity * RECORD_BYTES);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                floats = buffer.asFloatBuffer();
+                capacity = newCapacity;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map knot block", e);
+            }
+        }
+
+        private static int recordOffset(int record) {
+            return FILE_HEADER_BYTES + record * RECORD_BYTES;
+        }
+
+        // Fixed codes on disk, independent of the enum's declaration order
+        private static int stamp(KnotPropagator propagator) {
+            return switch (propagator) {
+                case OREKIT -> 1;
+                case NATIVE -> 2;
+            };
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import java.util.Arrays;
+
+/**
+ * Verlet neighbor list: candidate pairs gathered once with the tolerance inflated by a skin, then reused for the
+ * following steps. A pair outside the list at build time stays outside tolerance as long as no satellite has moved
+ * more than half the skin since the build, which {@link #exceedsSkin} checks.
+ */
+class NeighborList {
+
+    // Headroom on the speed estimate so slightly faster objects don't force an early rebuild
+    private static final double SKIN_MARGIN = 1.1;
+
+    private float[] anchorX = new float[0];
+    private float[] anchorY = new float[0];
+    private float[] anchorZ = new float[0];
+    private long[] pairs = new long[1024];
+    private int size;
+    private double halfSkinSq;
+
+    /**
+     * Build the list at {@code step}, sized to stay valid until {@code endStep} (exclusive).
+     * The skin is the largest single-step displacement at the build step scaled by the steps still to cover.
+     */
+    void build(PositionSource positions, int step, int endStep,
+               double toleranceKm, double cellSizeKm, GridType gridType) {
+        int numSatellites = positions.numSatellites();
+        if (anchorX.length < numSatellites) {
+            anchorX = new float[numSatellites];
+            anchorY = new float[numSatellites];
+            anchorZ = new float[numSatellites];
+        }
+
+        double maxStepDisplacementSq = 0;
+        boolean hasNext = step + 1 < endStep;
+        for (int sat = 0; sat < numSatellites; sat++) {
+            float x = positions.x(sat, step);
+            anchorX[sat] = x;
+            anchorY[sat] = positions.y(sat, step);
+            anchorZ[sat] = positions.z(sat, step);
+            if (hasNext && !Float.isNaN(x) && positions.isValid(sat, step + 1)) {
+                double dx = positions.x(sat, step + 1) - x;
+                double dy = positions.y(sat, step + 1) - anchorY[sat];
+                double dz = positions.z(sat, step + 1) - anchorZ[sat];
+                maxStepDisplacementSq = Math.max(maxStepDisplacementSq, dx * dx + dy * dy + dz * dz);
+            }
+        }
+
+        double halfSkin = Math.sqrt(maxStepDisplacementSq) * (endStep - 1 - step) * SKIN_MARGIN;
+        this.halfSkinSq = halfSkin * halfSkin;
+
+        // Two objects approaching each other can close the gap by twice the per-object budget, both for the
+        // tolerance and for the cell size that bounds what the per-step grid would report
+        double radiusKm = toleranceKm + 2 * halfSkin;
+        double radiusSq = radiusKm * radiusKm;
+        double listCellSizeKm = cellSizeKm + 2 * halfSkin;
+
+        size = 0;
+        SpatialGrid.IntBiConsumer collector = (idxA, idxB) -> {
+            if (positions.distanceSquaredAt(idxA, idxB, step) < radiusSq) {
+                if (size == pairs.length) pairs = Arrays.copyOf(pairs, size + (size >> 1));
+                pairs[size++] = DetectionBuffer.pairKey(idxA, idxB);
+            }
+        };
+        new UniformGridBroadPhase(gridType, listCellSizeKm).forEachCandidatePair(positions, step, collector);
+    }
+
+    /**
+     * True if any satellite moved more than half the skin since the build, or became valid after it.
+     */
+    boolean exceedsSkin(PositionSource positions, int step) {
+        for (int sat = 0; sat < positions.numSatellites(); sat++) {
+            float x = positions.x(sat, step);
+            if (Float.isNaN(x)) continue;
+            if (Float.isNaN(anchorX[sat])) return true;
+            double dx = x - anchorX[sat];
+            double dy = positions.y(sat, step) - anchorY[sat];
+            double dz = positions.z(sat, step) - anchorZ[sat];
+            if (dx * dx + dy * dy + dz * dz > halfSkinSq) return true;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long pair(int i) {
+        return pairs[i];
+    }
+}
@@ -0,0 +1,26 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe running totals behind {@link BroadPhase#occupancy()}, fed once per step by the sweep workers.
+ */
+final class OccupancyCounter {
+
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder cells = new LongAdder();
+    private final LongAdder sameCellPairs = new LongAdder();
+    private final LongAccumulator maxOccupancy = new LongAccumulator(Math::max, 0);
+
+    void record(int stepCells, int stepMaxOccupancy, long stepSameCellPairs) {
+        steps.increment();
+        cells.add(stepCells);
+        sameCellPairs.add(stepSameCellPairs);
+        maxOccupancy.accumulate(stepMaxOccupancy);
+    }
+
+    BroadPhase.Occupancy snapshot() {
+        return new BroadPhase.Occupancy(steps.sum(), cells.sum(), (int) maxOccupancy.get(), sameCellPairs.sum());
+    }
+}
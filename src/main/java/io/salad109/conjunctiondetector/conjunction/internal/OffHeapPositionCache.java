@@ -0,0 +1,146 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+
+/**
+ * Step-major position cache outside the Java heap: xyz[(step * numSatellites + sat) * 3 + axis] in one
+ * {@link MemorySegment} of a shared {@link Arena}. The collector never scans or copies it, and long indexing lifts the
+ * 2^31 float limit of {@link PropagationService.StepMajorPositionCache}, so long windows need no extra subwindows.
+ * <p>
+ * With a spill directory the segment maps a scratch file instead, for windows larger than RAM. The file is unlinked as
+ * soon as it is mapped, so nothing is left behind if the process dies. {@link #close()} frees the memory or unmaps the
+ * file at once; reads after that throw.
+ */
+public final class OffHeapPositionCache implements PositionSource, AutoCloseable {
+
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT;
+
+    private final MutableIntIntMap noradIdToArrayId;
+    private final int[] arrayIdToNoradId;
+    private final OffsetDateTime[] times;
+    private final int numSatellites;
+    private final Arena arena;
+    private final MemorySegment xyz;
+
+    private OffHeapPositionCache(MutableIntIntMap noradIdToArrayId, int[] arrayIdToNoradId, OffsetDateTime[] times,
+                                 int numSatellites, Arena arena, MemorySegment xyz) {
+        this.noradIdToArrayId = noradIdToArrayId;
+        this.arrayIdToNoradId = arrayIdToNoradId;
+        this.times = times;
+        this.numSatellites = numSatellites;
+        this.arena = arena;
+        this.xyz = xyz;
+    }
+
+    /**
+     * Uninitialized cache for every satellite at every step, in native memory or mapped from a scratch file in
+     * {@code spillDirectory} when it is not null.
+     */
+    static OffHeapPositionCache allocate(MutableIntIntMap noradIdToArrayId, int[] arrayIdToNoradId,
+                                         OffsetDateTime[] times, int numSatellites, Path spillDirectory) {
+        long bytes = (long) numSatellites * times.length * 3 * Float.BYTES;
+        Arena arena = Arena.ofShared();
+        try {
+            MemorySegment xyz = spillDirectory == null
+                    ? arena.allocate(Math.max(bytes, 1), FLOAT.byteAlignment())
+                    : map(spillDirectory, bytes, arena);
+            return new OffHeapPositionCache(noradIdToArrayId, arrayIdToNoradId, times, numSatellites, arena, xyz);
+        } catch (RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    private static MemorySegment map(Path spillDirectory, long bytes, Arena arena) {
+        try {
+            Files.createDirectories(spillDirectory);
+            Path file = Files.createTempFile(spillDirectory, "positions-", ".bin");
+            // The mapping outlives the channel, and the file goes with the channel
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(bytes, 1), arena);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map position cache in " + spillDirectory, e);
+        }
+    }
+
+    /**
+     * Copy one step of all satellites, x/y/z interleaved as {@link PropagationService#interpolateStep} writes them.
+     */
+    void writeStep(int step, float[] stepXyz) {
+        MemorySegment.copy(stepXyz, 0, xyz, FLOAT, index(0, step) * Float.BYTES, numSatellites * 3);
+    }
+
+    @Override
+    public MutableIntIntMap noradIdToArrayId() {
+        return noradIdToArrayId;
+    }
+
+    @Override
+    public int[] arrayIdToNoradId() {
+        return arrayIdToNoradId;
+    }
+
+    @Override
+    public OffsetDateTime[] times() {
+        return times;
+    }
+
+    @Override
+    public int numSatellites() {
+        return numSatellites;
+    }
+
+    @Override
+    public float x(int sat, int step) {
+        return xyz.getAtIndex(FLOAT, index(sat, step));
+    }
+
+    @Override
+    public float y(int sat, int step) {
+        return xyz.getAtIndex(FLOAT, index(sat, step) + 1);
+    }
+
+    @Override
+    public float z(int sat, int step) {
+        return xyz.getAtIndex(FLOAT, index(sat, step) + 2);
+    }
+
+    @Override
+    public double distanceSquaredAt(int a, int b, int step) {
+        long ia = index(a, step);
+        long ib = index(b, step);
+        float dx = xyz.getAtIndex(FLOAT, ia) - xyz.getAtIndex(FLOAT, ib);
+        float dy = xyz.getAtIndex(FLOAT, ia + 1) - xyz.getAtIndex(FLOAT, ib + 1);
+        float dz = xyz.getAtIndex(FLOAT, ia + 2) - xyz.getAtIndex(FLOAT, ib + 2);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    public long byteSize() {
+        return xyz.byteSize();
+    }
+
+    /**
+     * Free the native memory or unmap the file. Callers must be done with the cache on every thread.
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    private long index(int sat, int step) {
+        return ((long) step * numSatellites + sat) * 3;
+    }
+}
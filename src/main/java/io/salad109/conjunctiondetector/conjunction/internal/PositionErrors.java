@@ -0,0 +1,11 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * Bound (km) on the distance between a swept position and the position it approximates, for position sources that
+ * store less than the interpolated floats, such as quantized caches and fitted ephemerides.
+ */
+@FunctionalInterface
+public interface PositionErrors {
+
+    double errorKm(int sat, int step);
+}
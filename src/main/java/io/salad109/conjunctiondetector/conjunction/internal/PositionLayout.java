@@ -0,0 +1,16 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * Memory layout of the interpolated position cache.
+ */
+public enum PositionLayout {
+    /**
+     * {@link PropagationService.PositionCache}: one float array per satellite per axis, indexed by step.
+     */
+    SATELLITE_MAJOR,
+    /**
+     * {@link PropagationService.StepMajorPositionCache}: one flat array of contiguous per-step blocks with x/y/z
+     * interleaved, so a sweep over one step reads sequential memory.
+     */
+    STEP_MAJOR
+}
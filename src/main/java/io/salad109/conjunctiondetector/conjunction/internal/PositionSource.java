@@ -0,0 +1,37 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Read access to interpolated positions (km) by satellite array index and time step, independent of memory layout.
+ * NaN x marks a satellite without a valid position at that step.
+ */
+public interface PositionSource {
+
+    MutableIntIntMap noradIdToArrayId();
+
+    int[] arrayIdToNoradId();
+
+    OffsetDateTime[] times();
+
+    int numSatellites();
+
+    float x(int sat, int step);
+
+    float y(int sat, int step);
+
+    float z(int sat, int step);
+
+    default boolean isValid(int sat, int step) {
+        return !Float.isNaN(x(sat, step));
+    }
+
+    default double distanceSquaredAt(int a, int b, int step) {
+        float dx = x(a, step) - x(b, step);
+        float dy = y(a, step) - y(b, step);
+        float dz = z(a, step) - z(b, step);
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
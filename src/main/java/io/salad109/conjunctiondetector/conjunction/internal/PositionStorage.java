@@ -0,0 +1,21 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * Where the interpolated position cache lives.
+ */
+public enum PositionStorage {
+    /**
+     * Java arrays in the layout of {@link PositionLayout}.
+     */
+    HEAP,
+    /**
+     * {@link OffHeapPositionCache}: step-major native memory, or a mapped file when a spill directory is set. Freed when
+     * the subwindow is done rather than by the garbage collector.
+     */
+    OFF_HEAP,
+    /**
+     * {@link QuantizedPositionCache}: step-major 16-bit offsets, half the bytes of float positions. The quantization
+     * error is added to the sweep tolerance.
+     */
+    QUANTIZED
+}
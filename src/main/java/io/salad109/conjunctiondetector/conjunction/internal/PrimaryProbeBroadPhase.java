@@ -0,0 +1,149 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import java.util.Arrays;
+
+/**
+ * Primary-versus-catalog broad phase: only pairs with at least one primary satellite are candidates. Every step the
+ * secondaries are sorted on their cell key and each primary probes the 27 cells around its own, so the work is
+ * primaries times local density plus a sort, not all pairs of the catalog. Primaries are also indexed on their own and
+ * probed by each other.
+ * <p>
+ * Cells are the same as {@link UniformGridBroadPhase}'s, so the candidates are exactly the grid's candidates that
+ * involve a primary.
+ */
+final class PrimaryProbeBroadPhase implements BroadPhase {
+
+    // Reuse to reduce hot path allocations
+    private static final ThreadLocal<Index> INDEX_POOL = ThreadLocal.withInitial(Index::new);
+
+    // By array index of the full catalog
+    private final boolean[] primary;
+    private final double cellSizeKm;
+
+    PrimaryProbeBroadPhase(boolean[] primary, double cellSizeKm) {
+        this.primary = primary;
+        this.cellSizeKm = cellSizeKm;
+    }
+
+    @Override
+    public void forEachCandidatePair(PositionSource positions, int step, SpatialGrid.IntBiConsumer consumer) {
+        Index index = INDEX_POOL.get();
+        // Sub-catalog sweeps see local indices, the mask is by catalog index
+        int[] members = positions instanceof SubsetView view ? view.members() : null;
+        if (!index.build(positions, step, cellSizeKm, primary, members)) return;
+
+        for (int p = 0; p < index.primaryCount; p++) {
+            long cell = index.primaryKeys[p] >>> index.indexBits;
+            int sat = index.satellite(index.primaryKeys[p]);
+            // Three z-adjacent cells are consecutive keys, so 9 ranges cover the 27 neighbors
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    long from = cell + index.offset(dx, dy, -1);
+                    long to = cell + index.offset(dx, dy, 2);
+                    int lo = index.lowerBound(index.secondaryKeys, index.secondaryCount, from);
+                    int hi = index.lowerBound(index.secondaryKeys, index.secondaryCount, to);
+                    for (int s = lo; s < hi; s++) {
+                        consumer.accept(sat, index.satellite(index.secondaryKeys[s]));
+                    }
+                    lo = index.lowerBound(index.primaryKeys, index.primaryCount, from);
+                    hi = index.lowerBound(index.primaryKeys, index.primaryCount, to);
+                    for (int q = lo; q < hi; q++) {
+                        int other = index.satellite(index.primaryKeys[q]);
+                        if (sat < other) consumer.accept(sat, other);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Index {
+        int indexBits;
+        int axisBits;
+        long[] primaryKeys = new long[0];
+        long[] secondaryKeys = new long[0];
+        int primaryCount;
+        int secondaryCount;
+        int[] cx = new int[0];
+        int[] cy = new int[0];
+        int[] cz = new int[0];
+
+        /**
+         * Sort both groups on (cell key, satellite) packed in one long. False when no primary has a position.
+         */
+        boolean build(PositionSource positions, int step, double cellSizeKm, boolean[] primary, int[] members) {
+            int n = positions.numSatellites();
+            if (cx.length < n) {
+                cx = new int[n];
+                cy = new int[n];
+                cz = new int[n];
+                primaryKeys = new long[n];
+                secondaryKeys = new long[n];
+            }
+
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+            boolean anyPrimary = false;
+            for (int sat = 0; sat < n; sat++) {
+                float px = positions.x(sat, step);
+                if (Float.isNaN(px)) {
+                    cx[sat] = Integer.MIN_VALUE;
+                    continue;
+                }
+                cx[sat] = (int) Math.floor(px / cellSizeKm);
+                cy[sat] = (int) Math.floor(positions.y(sat, step) / cellSizeKm);
+                cz[sat] = (int) Math.floor(positions.z(sat, step) / cellSizeKm);
+                minX = Math.min(minX, cx[sat]);
+                minY = Math.min(minY, cy[sat]);
+                minZ = Math.min(minZ, cz[sat]);
+                anyPrimary |= primary[members == null ? sat : members[sat]];
+            }
+            if (!anyPrimary) return false;
+
+            // Coordinates are biased by +1 so that every neighbor of an occupied cell stays inside its bit field,
+            // far outliers are clamped into the edge cell (false positives only)
+            indexBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(n - 1));
+            axisBits = (63 - indexBits) / 3;
+            long maxCoord = (1L << axisBits) - 2;
+            primaryCount = 0;
+            secondaryCount = 0;
+            for (int sat = 0; sat < n; sat++) {
+                if (cx[sat] == Integer.MIN_VALUE) continue;
+                long rx = Math.min((long) cx[sat] - minX, maxCoord - 1) + 1;
+                long ry = Math.min((long) cy[sat] - minY, maxCoord - 1) + 1;
+                long rz = Math.min((long) cz[sat] - minZ, maxCoord - 1) + 1;
+                long cell = (rx << (2 * axisBits)) | (ry << axisBits) | rz;
+                long key = cell << indexBits | sat;
+                if (primary[members == null ? sat : members[sat]]) primaryKeys[primaryCount++] = key;
+                else secondaryKeys[secondaryCount++] = key;
+            }
+            Arrays.sort(primaryKeys, 0, primaryCount);
+            Arrays.sort(secondaryKeys, 0, secondaryCount);
+            return true;
+        }
+
+        int satellite(long key) {
+            return (int) (key & ((1L << indexBits) - 1));
+        }
+
+        /**
+         * Cell key delta of a neighbor offset, shifted into packed key units.
+         */
+        long offset(int dx, int dy, int dz) {
+            return ((long) dx << (2 * axisBits)) + ((long) dy << axisBits) + dz;
+        }
+
+        /**
+         * First position in keys[0..count) whose cell is at least {@code cell}.
+         */
+        int lowerBound(long[] keys, int count, long cell) {
+            long target = cell << indexBits;
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid] < target) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Interest list for primary-versus-catalog screening: satellites listed by NORAD ID or of a listed object type.
+ */
+public record PrimarySelection(Set<Integer> noradIds, Set<String> objectTypes) {
+
+    public PrimarySelection {
+        noradIds = Set.copyOf(noradIds);
+        objectTypes = objectTypes.stream()
+                .map(type -> type.toUpperCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public static PrimarySelection of(int[] noradIds, String[] objectTypes) {
+        return new PrimarySelection(Arrays.stream(noradIds).boxed().collect(Collectors.toSet()),
+                Arrays.stream(objectTypes).map(String::trim).filter(type -> !type.isEmpty()).collect(Collectors.toSet()));
+    }
+
+    public boolean isEmpty() {
+        return noradIds.isEmpty() && objectTypes.isEmpty();
+    }
+
+    public boolean includes(SatelliteScanInfo satellite) {
+        if (noradIds.contains(satellite.noradCatId())) return true;
+        return satellite.objectType() != null && objectTypes.contains(satellite.objectType().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Primary flag by array index of {@code positions}, for {@link BroadPhase#primariesAgainstCatalog}.
+     */
+    public boolean[] mask(List<SatelliteScanInfo> satellites, PositionSource positions) {
+        MutableIntIntMap noradIdToArrayId = positions.noradIdToArrayId();
+        boolean[] primary = new boolean[positions.numSatellites()];
+        for (SatelliteScanInfo satellite : satellites) {
+            if (includes(satellite) && noradIdToArrayId.containsKey(satellite.noradCatId())) {
+                primary[noradIdToArrayId.get(satellite.noradCatId())] = true;
+            }
+        }
+        return primary;
+    }
+}
@@ -14,12 +14,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.IntStream;
 
 @Service
@@ -27,23 +29,58 @@ public class PropagationService {
 
     private static final Logger log = LoggerFactory.getLogger(PropagationService.class);
 
-    public Map<Integer, TLEPropagator> buildPropagators(List<SatelliteScanInfo> satellites) {
-        Map<Integer, TLEPropagator> propagators = new HashMap<>();
+    // p0, v0, p1, v1 (xyz each) per satellite for one knot segment
+    private static final int SEGMENT_FLOATS = 12;
+    // WGS-72, as used by SGP4
+    private static final double MU_KM3_S2 = 398600.8;
+    private static final double EARTH_RADIUS_KM = 6378.135;
+    private static final double J2 = 0.001082616;
+    private static final ThreadLocal<float[]> SEGMENT_BUFFER = ThreadLocal.withInitial(() -> new float[0]);
+    // Reuse to reduce hot path allocations
+    private static final ThreadLocal<float[]> STEP_BUFFER = ThreadLocal.withInitial(() -> new float[0]);
+    // Reuse to reduce hot path allocations
+    private static final ThreadLocal<float[][]> BLOCK_ROWS =
+            ThreadLocal.withInitial(() -> new float[6][KnotStore.BLOCK_KNOTS]);
 
-        for (SatelliteScanInfo sat : satellites) {
-            TLE tle = new TLE(sat.tleLine1(), sat.tleLine2());
-            propagators.put(sat.noradCatId(), TLEPropagator.selectExtrapolator(tle));
-        }
+    /**
+     * Fresh propagators for every satellite, built in parallel. Scans take theirs from {@link PropagatorRegistry}, which
+     * keeps them across scans.
+     */
+    public ScanCatalog buildCatalog(List<SatelliteScanInfo> satellites) {
+        TLEPropagator[] propagators = satellites.parallelStream()
+                .map(PropagationService::buildPropagator)
+                .toArray(TLEPropagator[]::new);
+        return ScanCatalog.of(satellites, propagators);
+    }
 
-        return propagators;
+    static TLEPropagator buildPropagator(SatelliteScanInfo sat) {
+        return TLEPropagator.selectExtrapolator(new TLE(sat.tleLine1(), sat.tleLine2()));
     }
 
     /**
-     * Calculates SGP4 PV coordinates at stride points only. Returns SGP4 knot arrays sized [numSats][numKnots].
-     * Position in km, velocity in km/s.
+     * Calculates SGP4 PV coordinates at stride points only, with Orekit for every satellite.
      */
-    public KnotCache computeKnots(Map<Integer, TLEPropagator> propagators, OffsetDateTime startTime,
+    public KnotCache computeKnots(ScanCatalog catalog, OffsetDateTime startTime,
                                   OffsetDateTime endTime, double stepSeconds, int interpolationStride) {
+        return computeKnots(catalog, startTime, endTime, stepSeconds, interpolationStride, KnotPropagator.OREKIT);
+    }
+
+    /**
+     * Calculates SGP4 PV coordinates at stride points only, without a knot store.
+     */
+    public KnotCache computeKnots(ScanCatalog catalog, OffsetDateTime startTime, OffsetDateTime endTime,
+                                  double stepSeconds, int interpolationStride, KnotPropagator knotPropagator) {
+        return computeKnots(catalog, startTime, endTime, stepSeconds, interpolationStride, knotPropagator, null);
+    }
+
+    /**
+     * Calculates SGP4 PV coordinates at stride points only. Returns SGP4 knot arrays sized [numSats][numKnots], array
+     * indices in catalog order. Position in km, velocity in km/s. With a store and a start on its lattice, knots are
+     * read from the store and only missing or stale blocks are propagated.
+     */
+    public KnotCache computeKnots(ScanCatalog catalog, OffsetDateTime startTime, OffsetDateTime endTime,
+                                  double stepSeconds, int interpolationStride, KnotPropagator knotPropagator,
+                                  KnotStore store) {
         long stepNanos = Math.round(stepSeconds * 1_000_000_000L);
         int totalSteps = (int) Math.round(Duration.between(startTime, endTime).toNanos() / (stepSeconds * 1_000_000_000L)) + 1;
         OffsetDateTime[] times = new OffsetDateTime[totalSteps];
@@ -51,15 +88,15 @@ public class PropagationService {
             times[i] = startTime.plusNanos(i * stepNanos);
         }
 
-        Integer[] satIds = propagators.keySet().toArray(Integer[]::new);
-        MutableIntIntMap noradIdToArrayId = new IntIntHashMap(satIds.length);
-        int[] arrayIdToNoradId = new int[satIds.length];
-        for (int i = 0; i < satIds.length; i++) {
-            noradIdToArrayId.put(satIds[i], i);
-            arrayIdToNoradId[i] = satIds[i];
+        int numSats = catalog.size();
+        MutableIntIntMap noradIdToArrayId = new IntIntHashMap(numSats);
+        int[] arrayIdToNoradId = new int[numSats];
+        for (int i = 0; i < numSats; i++) {
+            int noradId = catalog.satellites().get(i).noradCatId();
+            noradIdToArrayId.put(noradId, i);
+            arrayIdToNoradId[i] = noradId;
         }
 
-        int numSats = satIds.length;
         int numKnots = (totalSteps - 1) / interpolationStride + 1;
 
         float[][] kx = new float[numSats][numKnots];
@@ -73,28 +110,431 @@ public class PropagationService {
             Arrays.fill(kx[s], Float.NaN);
         }
 
-        IntStream.range(0, numSats).parallel().forEach(s -> {
-            TLEPropagator prop = propagators.get(satIds[s]);
+        long knotNanos = interpolationStride * stepNanos;
+        if (store != null && Math.floorMod(KnotStore.epochNanos(startTime), knotNanos) == 0) {
+            synchronized (store) {
+                fillFromStore(store, catalog, startTime, knotNanos, numKnots, knotPropagator,
+                        kx, ky, kz, kvx, kvy, kvz);
+            }
+        } else {
+            Sgp4Batch batch = knotPropagator == KnotPropagator.NATIVE
+                    ? Sgp4Batch.of(catalog.propagators(), toAbsoluteDate(startTime))
+                    : null;
+            IntStream.range(0, numSats).parallel().forEach(s -> propagateKnots(catalog, batch, s, startTime,
+                    knotNanos, numKnots, kx[s], ky[s], kz[s], kvx[s], kvy[s], kvz[s]));
+        }
+
+        return new KnotCache(noradIdToArrayId, arrayIdToNoradId, times, stepNanos, interpolationStride,
+                kx, ky, kz, kvx, kvy, kvz);
+    }
+
+    /**
+     * Copy the window's knots out of the store block by block, propagating the whole block first for satellites whose
+     * record is missing, from an older element set or from the other knot propagator.
+     */
+    private void fillFromStore(KnotStore store, ScanCatalog catalog, OffsetDateTime startTime, long knotNanos,
+                               int numKnots, KnotPropagator knotPropagator, float[][] kx, float[][] ky, float[][] kz,
+                               float[][] kvx, float[][] kvy, float[][] kvz) {
+        long firstKnot = KnotStore.epochNanos(startTime) / knotNanos;
+        long firstBlock = Math.floorDiv(firstKnot, KnotStore.BLOCK_KNOTS);
+        long lastBlock = Math.floorDiv(firstKnot + numKnots - 1, KnotStore.BLOCK_KNOTS);
 
-            for (int k = 0; k < numKnots; k++) {
-                int step = k * interpolationStride;
-                if (step >= totalSteps) break;
+        AtomicInteger propagated = new AtomicInteger();
+        for (long b = firstBlock; b <= lastBlock; b++) {
+            KnotStore.Block block = store.block(knotNanos, b);
+            int[] records = block.records(catalog);
+            long blockKnot = b * KnotStore.BLOCK_KNOTS;
+            OffsetDateTime blockStart = KnotStore.latticeTime(blockKnot, knotNanos);
+            int from = (int) (Math.max(firstKnot, blockKnot) - blockKnot);
+            int to = (int) (Math.min(firstKnot + numKnots, blockKnot + KnotStore.BLOCK_KNOTS) - blockKnot);
+            int offset = (int) (blockKnot + from - firstKnot);
+
+            Sgp4Batch batch = knotPropagator == KnotPropagator.NATIVE
+                    ? Sgp4Batch.of(catalog.propagators(), toAbsoluteDate(blockStart))
+                    : null;
+            IntStream.range(0, catalog.size()).parallel().forEach(s -> {
+                SatelliteScanInfo sat = catalog.satellites().get(s);
+                if (!block.holds(records[s], sat, knotPropagator)) {
+                    float[][] rows = BLOCK_ROWS.get();
+                    Arrays.fill(rows[0], Float.NaN);
+                    propagateKnots(catalog, batch, s, blockStart, knotNanos, KnotStore.BLOCK_KNOTS,
+                            rows[0], rows[1], rows[2], rows[3], rows[4], rows[5]);
+                    int valid = 0;
+                    while (valid < KnotStore.BLOCK_KNOTS && !Float.isNaN(rows[0][valid])) valid++;
+                    block.write(records[s], sat, knotPropagator, rows, valid);
+                    propagated.incrementAndGet();
+                }
+                block.read(records[s], from, to - from, offset, kx[s], ky[s], kz[s], kvx[s], kvy[s], kvz[s]);
+            });
+            block.force();
+        }
+        store.countPropagated(propagated.get());
+        log.debug("Knot store: {} of {} satellite blocks propagated", propagated.get(),
+                (lastBlock - firstBlock + 1) * catalog.size());
+    }
+
+    /**
+     * One satellite's knots {@code knotNanos} apart from {@code start}, through the batched kernel when it covers the
+     * satellite and Orekit otherwise. Stops at the first failure, leaving the rest of the row untouched.
+     */
+    private void propagateKnots(ScanCatalog catalog, Sgp4Batch batch, int s, OffsetDateTime start, long knotNanos,
+                                int count, float[] x, float[] y, float[] z, float[] vx, float[] vy, float[] vz) {
+        if (batch != null && batch.covers(s)) {
+            batch.propagate(s, knotNanos / 60e9, count, x, y, z, vx, vy, vz);
+            return;
+        }
+        TLEPropagator prop = catalog.propagators()[s];
+
+        // Registry propagators are shared with any concurrent scan
+        synchronized (prop) {
+            for (int k = 0; k < count; k++) {
                 try {
-                    PVCoordinates pv = prop.getPVCoordinates(toAbsoluteDate(times[step]), prop.getFrame());
-                    kx[s][k] = (float) (pv.getPosition().getX() / 1000.0);
-                    ky[s][k] = (float) (pv.getPosition().getY() / 1000.0);
-                    kz[s][k] = (float) (pv.getPosition().getZ() / 1000.0);
-                    kvx[s][k] = (float) (pv.getVelocity().getX() / 1000.0);
-                    kvy[s][k] = (float) (pv.getVelocity().getY() / 1000.0);
-                    kvz[s][k] = (float) (pv.getVelocity().getZ() / 1000.0);
+                    PVCoordinates pv = prop.getPVCoordinates(toAbsoluteDate(start.plusNanos(k * knotNanos)),
+                            prop.getFrame());
+                    x[k] = (float) (pv.getPosition().getX() / 1000.0);
+                    y[k] = (float) (pv.getPosition().getY() / 1000.0);
+                    z[k] = (float) (pv.getPosition().getZ() / 1000.0);
+                    vx[k] = (float) (pv.getVelocity().getX() / 1000.0);
+                    vy[k] = (float) (pv.getVelocity().getY() / 1000.0);
+                    vz[k] = (float) (pv.getVelocity().getZ() / 1000.0);
                 } catch (Exception e) {
                     break; // bad TLE
                 }
             }
+        }
+    }
+
+    /**
+     * Chebyshev series of every satellite's position over segments of {@code segmentSteps} steps. Each segment is
+     * sampled at twice as many Chebyshev nodes as it keeps coefficients; the discarded coefficients plus the float
+     * rounding of the kept ones bound the fit error.
+     */
+    public ChebyshevEphemeris fitChebyshev(ScanCatalog catalog, OffsetDateTime startTime, OffsetDateTime endTime,
+                                           double stepSeconds, int segmentSteps, int degree,
+                                           KnotPropagator knotPropagator) {
+        long stepNanos = Math.round(stepSeconds * 1_000_000_000L);
+        int totalSteps = (int) Math.round(Duration.between(startTime, endTime).toNanos() / (stepSeconds * 1_000_000_000L)) + 1;
+        OffsetDateTime[] times = new OffsetDateTime[totalSteps];
+        for (int i = 0; i < totalSteps; i++) {
+            times[i] = startTime.plusNanos(i * stepNanos);
+        }
+
+        int numSats = catalog.size();
+        MutableIntIntMap noradIdToArrayId = new IntIntHashMap(numSats);
+        int[] arrayIdToNoradId = new int[numSats];
+        for (int i = 0; i < numSats; i++) {
+            int noradId = catalog.satellites().get(i).noradCatId();
+            noradIdToArrayId.put(noradId, i);
+            arrayIdToNoradId[i] = noradId;
+        }
+
+        int numSegments = ChebyshevEphemeris.segmentCount(totalSteps, segmentSteps);
+        double segmentSeconds = segmentSteps * stepNanos / 1e9;
+        int terms = degree + 1;
+        int nodes = 2 * terms;
+        double[][] basis = new double[nodes][nodes]; // T_j at node k
+        for (int j = 0; j < nodes; j++) {
+            for (int k = 0; k < nodes; k++) basis[j][k] = Math.cos(Math.PI * j * (k + 0.5) / nodes);
+        }
+
+        float[][] coefficients = new float[numSats][numSegments * 3 * terms];
+        float[][] errorKm = new float[numSats][numSegments];
+        AbsoluteDate start = toAbsoluteDate(startTime);
+        Sgp4Batch batch = knotPropagator == KnotPropagator.NATIVE ? Sgp4Batch.of(catalog.propagators(), start) : null;
+
+        IntStream.range(0, numSats).parallel().forEach(s -> {
+            double[][] samples = new double[3][nodes];
+            double[] pv = new double[6];
+            float[] c = coefficients[s];
+            int segment = 0;
+            for (; segment < numSegments; segment++) {
+                if (!sample(catalog, batch, s, start, segment * segmentSeconds, segmentSeconds, basis, samples, pv)) {
+                    break;
+                }
+                double errorSq = 0;
+                for (int axis = 0; axis < 3; axis++) {
+                    int base = (segment * 3 + axis) * terms;
+                    double axisError = 0;
+                    for (int j = 0; j < nodes; j++) {
+                        double cj = 0;
+                        for (int k = 0; k < nodes; k++) cj += samples[axis][k] * basis[j][k];
+                        cj *= (j == 0 ? 1.0 : 2.0) / nodes;
+                        if (j < terms) {
+                            c[base + j] = (float) cj;
+                            axisError += Math.abs(cj - c[base + j]);
+                        } else {
+                            axisError += Math.abs(cj);
+                        }
+                    }
+                    errorSq += axisError * axisError;
+                }
+                errorKm[s][segment] = (float) Math.sqrt(errorSq);
+            }
+            // Satellites stop at the first segment SGP4 fails in, like knots
+            for (; segment < numSegments; segment++) {
+                Arrays.fill(c, segment * 3 * terms, (segment + 1) * 3 * terms, Float.NaN);
+                errorKm[s][segment] = Float.NaN;
+            }
         });
 
-        return new KnotCache(noradIdToArrayId, arrayIdToNoradId, times, stepNanos, interpolationStride,
-                kx, ky, kz, kvx, kvy, kvz);
+        return new ChebyshevEphemeris(noradIdToArrayId, arrayIdToNoradId, times, stepNanos, segmentSteps, degree,
+                coefficients, errorKm);
+    }
+
+    /**
+     * Positions at the Chebyshev nodes of one segment, node k at cos(pi (k + 1/2) / nodes) = basis[1][k].
+     */
+    private boolean sample(ScanCatalog catalog, Sgp4Batch batch, int s, AbsoluteDate start, double segmentStart,
+                           double segmentSeconds, double[][] basis, double[][] samples, double[] pv) {
+        int nodes = samples[0].length;
+        TLEPropagator prop = catalog.propagators()[s];
+        for (int k = 0; k < nodes; k++) {
+            double seconds = segmentStart + (basis[1][k] + 1) * 0.5 * segmentSeconds;
+            if (batch != null && batch.covers(s)) {
+                if (!batch.propagate(s, seconds / 60.0, pv)) return false;
+            } else {
+                try {
+                    // Registry propagators are shared with any concurrent scan
+                    PVCoordinates coordinates;
+                    synchronized (prop) {
+                        coordinates = prop.getPVCoordinates(start.shiftedBy(seconds), prop.getFrame());
+                    }
+                    pv[0] = coordinates.getPosition().getX() / 1000.0;
+                    pv[1] = coordinates.getPosition().getY() / 1000.0;
+                    pv[2] = coordinates.getPosition().getZ() / 1000.0;
+                } catch (Exception e) {
+                    return false; // bad TLE
+                }
+            }
+            samples[0][k] = pv[0];
+            samples[1][k] = pv[1];
+            samples[2][k] = pv[2];
+        }
+        return true;
+    }
+
+    /**
+     * Ephemeris positions at every step, into the requested cache layout for the sweep.
+     */
+    public PositionSource evaluate(ChebyshevEphemeris ephemeris, PositionLayout layout) {
+        int numSats = ephemeris.numSatellites();
+        int totalSteps = ephemeris.times().length;
+        if (layout == PositionLayout.SATELLITE_MAJOR) {
+            float[][] x = new float[numSats][totalSteps];
+            float[][] y = new float[numSats][totalSteps];
+            float[][] z = new float[numSats][totalSteps];
+            IntStream.range(0, numSats).parallel().forEach(s -> {
+                for (int step = 0; step < totalSteps; step++) {
+                    x[s][step] = ephemeris.x(s, step);
+                    y[s][step] = ephemeris.y(s, step);
+                    z[s][step] = ephemeris.z(s, step);
+                }
+            });
+            return new PositionCache(ephemeris.noradIdToArrayId(), ephemeris.arrayIdToNoradId(), ephemeris.times(),
+                    x, y, z);
+        }
+
+        long floats = (long) numSats * totalSteps * 3;
+        if (floats > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Step-major position cache of " + floats
+                    + " floats exceeds the maximum array size, increase conjunction.subwindow-count");
+        }
+        float[] xyz = new float[(int) floats];
+        IntStream.range(0, numSats).parallel().forEach(s -> {
+            for (int step = 0; step < totalSteps; step++) {
+                int i = (step * numSats + s) * 3;
+                xyz[i] = ephemeris.x(s, step);
+                xyz[i + 1] = ephemeris.y(s, step);
+                xyz[i + 2] = ephemeris.z(s, step);
+            }
+        });
+        return new StepMajorPositionCache(ephemeris.noradIdToArrayId(), ephemeris.arrayIdToNoradId(),
+                ephemeris.times(), numSats, xyz);
+    }
+
+    /**
+     * Knots with the satellites renumbered in the given order and both id maps remapped. The rows themselves are
+     * shared with {@code knots}, only the references are put in the new order.
+     */
+    public KnotCache reorder(KnotCache knots, SatelliteOrdering ordering) {
+        if (ordering == SatelliteOrdering.CATALOG) return knots;
+
+        int[] order = mortonOrder(knots);
+        int numSats = order.length;
+        MutableIntIntMap noradIdToArrayId = new IntIntHashMap(numSats);
+        int[] arrayIdToNoradId = new int[numSats];
+        for (int i = 0; i < numSats; i++) {
+            int noradId = knots.arrayIdToNoradId()[order[i]];
+            noradIdToArrayId.put(noradId, i);
+            arrayIdToNoradId[i] = noradId;
+        }
+        return new KnotCache(noradIdToArrayId, arrayIdToNoradId, knots.times(), knots.stepNanos(),
+                knots.interpolationStride(), reorderRows(knots.x(), order), reorderRows(knots.y(), order),
+                reorderRows(knots.z(), order), reorderRows(knots.vx(), order), reorderRows(knots.vy(), order),
+                reorderRows(knots.vz(), order));
+    }
+
+    /**
+     * Array indices sorted by the Morton code of each satellite's first valid knot, quantized to 21 bits per axis over
+     * the bounding cube of those knots. Satellites without a valid knot go last, in catalog order.
+     */
+    static int[] mortonOrder(KnotCache knots) {
+        int numSats = knots.numSatellites();
+        int[] firstKnot = new int[numSats];
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int s = 0; s < numSats; s++) {
+            float[] kx = knots.x()[s];
+            int k = 0;
+            while (k < kx.length && Float.isNaN(kx[k])) k++;
+            firstKnot[s] = k < kx.length ? k : -1;
+            if (firstKnot[s] < 0) continue;
+            float y = knots.y()[s][k];
+            float z = knots.z()[s][k];
+            min = Math.min(min, Math.min(kx[k], Math.min(y, z)));
+            max = Math.max(max, Math.max(kx[k], Math.max(y, z)));
+        }
+
+        double scale = max > min ? ((1 << 21) - 1) / (max - min) : 0;
+        long[] codes = new long[numSats];
+        for (int s = 0; s < numSats; s++) {
+            int k = firstKnot[s];
+            if (k < 0) continue;
+            codes[s] = AdaptiveGridBroadPhase.morton(
+                    (long) ((knots.x()[s][k] - min) * scale),
+                    (long) ((knots.y()[s][k] - min) * scale),
+                    (long) ((knots.z()[s][k] - min) * scale));
+        }
+        return IntStream.range(0, numSats).boxed()
+                .sorted(Comparator.<Integer>comparingInt(s -> firstKnot[s] < 0 ? 1 : 0)
+                        .thenComparingLong(s -> codes[s]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static float[][] reorderRows(float[][] rows, int[] order) {
+        float[][] reordered = new float[order.length][];
+        for (int i = 0; i < order.length; i++) reordered[i] = rows[order[i]];
+        return reordered;
+    }
+
+    /**
+     * Hermite interpolation from knot points into the requested cache layout.
+     */
+    public PositionSource interpolate(KnotCache knots, PositionLayout layout) {
+        return interpolate(knots, layout, KernelType.SCALAR);
+    }
+
+    /**
+     * Hermite interpolation from knot points into the requested cache layout. The vector kernel only applies to the
+     * satellite-major layout, where a segment's steps are contiguous; step-major writes are strided and stay scalar.
+     */
+    public PositionSource interpolate(KnotCache knots, PositionLayout layout, KernelType kernel) {
+        return switch (layout) {
+            case SATELLITE_MAJOR -> interpolate(knots, kernel);
+            case STEP_MAJOR -> interpolateStepMajor(knots);
+        };
+    }
+
+    /**
+     * {@link #interpolate(KnotCache, PositionLayout, KernelType)} at the given order. Quintic is scalar only.
+     */
+    public PositionSource interpolate(KnotCache knots, PositionLayout layout, KernelType kernel,
+                                      InterpolationOrder order) {
+        return order == InterpolationOrder.QUINTIC && knots.interpolationStride > 1
+                ? interpolateQuintic(knots, layout)
+                : interpolate(knots, layout, kernel);
+    }
+
+    /**
+     * Quintic Hermite interpolation into the requested layout. Matches acceleration at both knots as well, so the error
+     * grows with the sixth power of the knot spacing instead of the fourth. Satellite-major runs parallel over
+     * satellites, step-major over segments like {@link #interpolateStepMajor}.
+     */
+    public PositionSource interpolateQuintic(KnotCache knots, PositionLayout layout) {
+        int numSats = knots.numSatellites();
+        int totalSteps = knots.times.length;
+        int segments = knots.numKnots() - 1;
+
+        if (layout == PositionLayout.SATELLITE_MAJOR) {
+            float[][] x = new float[numSats][totalSteps];
+            float[][] y = new float[numSats][totalSteps];
+            float[][] z = new float[numSats][totalSteps];
+            IntStream.range(0, numSats).parallel().forEach(s -> {
+                Arrays.fill(x[s], Float.NaN);
+                for (int k = 0; k < segments; k++) {
+                    quinticSegment(knots, s, k, x[s], 0, y[s], 0, z[s], 0, 1);
+                }
+            });
+            return new PositionCache(knots.noradIdToArrayId, knots.arrayIdToNoradId, knots.times, x, y, z);
+        }
+
+        long floats = (long) numSats * totalSteps * 3;
+        if (floats > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Step-major position cache of " + floats
+                    + " floats exceeds the maximum array size, increase conjunction.subwindow-count");
+        }
+        float[] xyz = new float[(int) floats];
+        Arrays.fill(xyz, Float.NaN);
+        int stepStride = numSats * 3;
+        IntStream.range(0, Math.max(0, segments)).parallel().forEach(k -> {
+            for (int s = 0; s < numSats; s++) {
+                quinticSegment(knots, s, k, xyz, s * 3, xyz, s * 3 + 1, xyz, s * 3 + 2, stepStride);
+            }
+        });
+        return new StepMajorPositionCache(knots.noradIdToArrayId, knots.arrayIdToNoradId, knots.times, numSats, xyz);
+    }
+
+    /**
+     * One satellite's steps of knot segment k, both knot steps included, written at offset + step * stepStride of each
+     * axis array. Skipped if either knot is missing.
+     */
+    private static void quinticSegment(KnotCache knots, int s, int k, float[] xs, int xOffset, float[] ys, int yOffset,
+                                       float[] zs, int zOffset, int stepStride) {
+        float[] kx = knots.x[s];
+        if (Float.isNaN(kx[k]) || Float.isNaN(kx[k + 1])) return;
+
+        double h = knots.stepNanos * knots.interpolationStride / 1e9; // seconds between knots
+        double[] a0 = gravity(kx[k], knots.y[s][k], knots.z[s][k]);
+        double[] a1 = gravity(kx[k + 1], knots.y[s][k + 1], knots.z[s][k + 1]);
+        int stepStart = k * knots.interpolationStride;
+        int stepEnd = stepStart + knots.interpolationStride;
+
+        for (int step = stepStart; step <= stepEnd; step++) {
+            double t = (double) (step - stepStart) / knots.interpolationStride;
+            double t2 = t * t;
+            double t3 = t2 * t;
+            double t4 = t3 * t;
+            double t5 = t4 * t;
+
+            double h0 = 1 - 10 * t3 + 15 * t4 - 6 * t5;                      // p0
+            double h1 = (t - 6 * t3 + 8 * t4 - 3 * t5) * h;                  // v0
+            double h2 = (0.5 * t2 - 1.5 * t3 + 1.5 * t4 - 0.5 * t5) * h * h; // a0
+            double h3 = (0.5 * t3 - t4 + 0.5 * t5) * h * h;                  // a1
+            double h4 = (-4 * t3 + 7 * t4 - 3 * t5) * h;                     // v1
+            double h5 = 10 * t3 - 15 * t4 + 6 * t5;                          // p1
+
+            xs[xOffset + step * stepStride] = (float) (h0 * kx[k] + h1 * knots.vx[s][k] + h2 * a0[0]
+                    + h3 * a1[0] + h4 * knots.vx[s][k + 1] + h5 * kx[k + 1]);
+            ys[yOffset + step * stepStride] = (float) (h0 * knots.y[s][k] + h1 * knots.vy[s][k] + h2 * a0[1]
+                    + h3 * a1[1] + h4 * knots.vy[s][k + 1] + h5 * knots.y[s][k + 1]);
+            zs[zOffset + step * stepStride] = (float) (h0 * knots.z[s][k] + h1 * knots.vz[s][k] + h2 * a0[2]
+                    + h3 * a1[2] + h4 * knots.vz[s][k + 1] + h5 * knots.z[s][k + 1]);
+        }
+    }
+
+    /**
+     * Two-body plus J2 acceleration (km/s^2) at a TEME position (km), WGS-72 constants as in SGP4.
+     */
+    static double[] gravity(double x, double y, double z) {
+        double r2 = x * x + y * y + z * z;
+        double r = Math.sqrt(r2);
+        double muOverR3 = MU_KM3_S2 / (r2 * r);
+        double j2Term = 1.5 * J2 * EARTH_RADIUS_KM * EARTH_RADIUS_KM / r2;
+        double z2OverR2 = z * z / r2;
+        double equatorial = 1 + j2Term * (1 - 5 * z2OverR2);
+        double polar = 1 + j2Term * (3 - 5 * z2OverR2);
+        return new double[]{-muOverR3 * x * equatorial, -muOverR3 * y * equatorial, -muOverR3 * z * polar};
     }
 
     /**
@@ -102,6 +542,27 @@ public class PropagationService {
      * H(t) = (2t^3 - 3t^2 + 1)*p0 + (t^3 - 2t^2 + t)*v0*dt + (-2t^3 + 3t^2)*p1 + (t^3 - t^2)*v1*dt
      */
     public PositionCache interpolate(KnotCache knots) {
+        return interpolate(knots, KernelType.SCALAR);
+    }
+
+    /**
+     * {@link #interpolate(KnotCache)} with a selectable kernel. The vector kernel evaluates all interior steps of a
+     * segment from a precomputed basis table, many steps per vector op, with bit-identical results.
+     */
+    public PositionCache interpolate(KnotCache knots, KernelType kernel) {
+        return interpolate(knots, kernel, s -> 1);
+    }
+
+    /**
+     * {@link #interpolate(KnotCache, KernelType)} for a multi-rate sweep: a satellite is only interpolated at steps that
+     * are multiples of its regime stride, the others stay NaN. Stride 1 satellites take the selected kernel.
+     */
+    public PositionCache interpolate(KnotCache knots, KernelType kernel, TimeStepRegimes regimes) {
+        int[] strides = regimes.strides();
+        return interpolate(knots, kernel, s -> strides[s]);
+    }
+
+    private PositionCache interpolate(KnotCache knots, KernelType kernel, IntUnaryOperator strideOf) {
         int numSats = knots.x.length;
         int totalSteps = knots.times.length;
         int interpolationStride = knots.interpolationStride;
@@ -122,8 +583,12 @@ public class PropagationService {
             Arrays.fill(x[s], Float.NaN);
         }
 
+        // Every segment spans exactly one stride, so one basis table serves all of them
+        float[][] basis = kernel == KernelType.VECTOR ? VectorKernels.hermiteBasis(interpolationStride) : null;
+
         IntStream.range(0, numSats).parallel().forEach(s -> {
             int numKnots = knots.x[s].length;
+            int satStride = strideOf.applyAsInt(s);
 
             for (int k = 0; k < numKnots - 1; k++) {
                 if (Float.isNaN(knots.x[s][k]) || Float.isNaN(knots.x[s][k + 1])) continue;
@@ -139,7 +604,16 @@ public class PropagationService {
                 y[s][stepEnd] = knots.y[s][k + 1];
                 z[s][stepEnd] = knots.z[s][k + 1];
 
-                for (int step = stepStart + 1; step < stepEnd; step++) {
+                if (basis != null && satStride == 1) {
+                    VectorKernels.hermite(basis, knots.x[s][k], knots.vx[s][k], knots.x[s][k + 1], knots.vx[s][k + 1], dt, x[s], stepStart + 1);
+                    VectorKernels.hermite(basis, knots.y[s][k], knots.vy[s][k], knots.y[s][k + 1], knots.vy[s][k + 1], dt, y[s], stepStart + 1);
+                    VectorKernels.hermite(basis, knots.z[s][k], knots.vz[s][k], knots.z[s][k + 1], knots.vz[s][k + 1], dt, z[s], stepStart + 1);
+                    continue;
+                }
+
+                // First step after the segment start on this satellite's lattice
+                int firstStep = (stepStart / satStride + 1) * satStride;
+                for (int step = firstStep; step < stepEnd; step += satStride) {
                     float t = (float) (step - stepStart) / (stepEnd - stepStart);
                     float t2 = t * t;
                     float t3 = t2 * t;
@@ -160,26 +634,259 @@ public class PropagationService {
     }
 
     /**
-     * Propagate both satellites to a given time and return distance, relative velocity, and PV coordinates.
+     * Same interpolation as {@link #interpolate(KnotCache)}, written into contiguous per-step blocks.
+     * Parallel over knot segments: the Hermite basis is shared by all satellites at a step, and each segment owns its
+     * own step range so no two tasks write the same step.
      */
-    MeasurementResult propagateAndMeasure(SatelliteScanInfoPair pair, Map<Integer, TLEPropagator> propagators,
-                                          OffsetDateTime time, double thresholdKm) {
-        AbsoluteDate date = toAbsoluteDate(time);
+    public StepMajorPositionCache interpolateStepMajor(KnotCache knots) {
+        int numSats = knots.numSatellites();
+        int totalSteps = knots.times.length;
+
+        long floats = (long) numSats * totalSteps * 3;
+        if (floats > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Step-major position cache of " + floats
+                    + " floats exceeds the maximum array size, increase conjunction.subwindow-count");
+        }
+        float[] xyz = new float[(int) floats];
+
+        IntStream.range(0, knots.segmentCount()).parallel().forEach(k -> {
+            float[] segment = gatherSegment(knots, k);
+            for (int step = knots.segmentStart(k); step < knots.segmentEnd(k); step++) {
+                interpolateStep(knots, segment, k, step, xyz, step * numSats * 3);
+            }
+        });
+
+        return new StepMajorPositionCache(knots.noradIdToArrayId, knots.arrayIdToNoradId, knots.times, numSats, xyz);
+    }
+
+    /**
+     * Same interpolation as {@link #interpolateStepMajor}, into an {@link OffHeapPositionCache} in native memory, or
+     * mapped from a scratch file in {@code spillDirectory} when it is not null. Each step is interpolated into a
+     * thread-local block and copied out, so the results are bit-identical. The caller closes the cache.
+     */
+    public OffHeapPositionCache interpolateOffHeap(KnotCache knots, Path spillDirectory) {
+        int numSats = knots.numSatellites();
+        OffHeapPositionCache cache = OffHeapPositionCache.allocate(
+                knots.noradIdToArrayId, knots.arrayIdToNoradId, knots.times, numSats, spillDirectory);
 
         try {
-            TLEPropagator propA = propagators.get(pair.a().noradCatId());
-            TLEPropagator propB = propagators.get(pair.b().noradCatId());
+            IntStream.range(0, knots.segmentCount()).parallel().forEach(k -> {
+                float[] segment = gatherSegment(knots, k);
+                float[] step = STEP_BUFFER.get();
+                if (step.length < numSats * 3) {
+                    step = new float[numSats * 3];
+                    STEP_BUFFER.set(step);
+                }
+                for (int s = knots.segmentStart(k); s < knots.segmentEnd(k); s++) {
+                    interpolateStep(knots, segment, k, s, step, 0);
+                    cache.writeStep(s, step);
+                }
+            });
+        } catch (RuntimeException e) {
+            cache.close();
+            throw e;
+        }
+        return cache;
+    }
+
+    /**
+     * Same interpolation as {@link #interpolateStepMajor}, stored as 16-bit offsets from each satellite's position at
+     * the start of its segment. A cubic Hermite segment stays within |p1 - p0| + 4/27 dt (|v0| + |v1|) of p0 on each
+     * axis, and the largest such bound over the window sets the offset unit. Parallel over knot segments.
+     */
+    public QuantizedPositionCache interpolateQuantized(KnotCache knots) {
+        int numSats = knots.numSatellites();
+        int totalSteps = knots.times.length;
+        int segments = knots.segmentCount();
+
+        long shorts = (long) numSats * totalSteps * 3;
+        if (shorts > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Quantized position cache of " + shorts
+                    + " values exceeds the maximum array size, increase conjunction.subwindow-count");
+        }
+
+        double dt = knots.stepNanos * knots.interpolationStride / 1e9;
+        double boundKm = IntStream.range(0, numSats).parallel().mapToDouble(s -> {
+            double max = 0;
+            for (int k = 0; k + 1 < knots.numKnots(); k++) {
+                if (Float.isNaN(knots.x[s][k]) || Float.isNaN(knots.x[s][k + 1])) continue;
+                max = Math.max(max, displacementBound(knots.x[s], knots.vx[s], k, dt));
+                max = Math.max(max, displacementBound(knots.y[s], knots.vy[s], k, dt));
+                max = Math.max(max, displacementBound(knots.z[s], knots.vz[s], k, dt));
+            }
+            return max;
+        }).max().orElse(0);
+        // 1% over the bound absorbs float rounding in the interpolation
+        float kmPerUnit = (float) (Math.max(boundKm, 1e-3) * 1.01 / Short.MAX_VALUE);
 
-            PVCoordinates pvA, pvB;
-            Frame frame;
+        int[] segmentOfStep = new int[totalSteps];
+        for (int k = 0; k < segments; k++) {
+            Arrays.fill(segmentOfStep, knots.segmentStart(k), knots.segmentEnd(k), k);
+        }
+        float[] anchors = new float[segments * numSats * 3];
+        Arrays.fill(anchors, Float.NaN);
+        short[] xyz = new short[(int) shorts];
+
+        double maxErrorSq = IntStream.range(0, segments).parallel().mapToDouble(k -> {
+            float[] segment = gatherSegment(knots, k);
+            float[] step = STEP_BUFFER.get();
+            if (step.length < numSats * 3) {
+                step = new float[numSats * 3];
+                STEP_BUFFER.set(step);
+            }
+            double max = 0;
+            for (int s = knots.segmentStart(k); s < knots.segmentEnd(k); s++) {
+                interpolateStep(knots, segment, k, s, step, 0);
+                for (int sat = 0; sat < numSats; sat++) {
+                    int i = (s * numSats + sat) * 3;
+                    int a = (k * numSats + sat) * 3;
+                    if (Float.isNaN(step[sat * 3])) {
+                        xyz[i] = QuantizedPositionCache.INVALID;
+                        continue;
+                    }
+                    // First valid position of the segment is the origin, normally the knot itself
+                    if (Float.isNaN(anchors[a])) System.arraycopy(step, sat * 3, anchors, a, 3);
+                    double errorSq = 0;
+                    for (int axis = 0; axis < 3; axis++) {
+                        short q = (short) Math.clamp(Math.round((step[sat * 3 + axis] - anchors[a + axis]) / kmPerUnit),
+                                -Short.MAX_VALUE, Short.MAX_VALUE);
+                        xyz[i + axis] = q;
+                        double error = anchors[a + axis] + q * kmPerUnit - step[sat * 3 + axis];
+                        errorSq += error * error;
+                    }
+                    max = Math.max(max, errorSq);
+                }
+            }
+            return max;
+        }).max().orElse(0);
+
+        return new QuantizedPositionCache(knots.noradIdToArrayId, knots.arrayIdToNoradId, knots.times, numSats,
+                segmentOfStep, anchors, kmPerUnit, xyz, Math.sqrt(maxErrorSq));
+    }
+
+    private static double displacementBound(float[] p, float[] v, int k, double dt) {
+        return Math.abs(p[k + 1] - p[k]) + 4.0 / 27.0 * dt * (Math.abs(v[k]) + Math.abs(v[k + 1]));
+    }
+
+    /**
+     * Gathers knot segment k into a contiguous thread-local block: p0, v0, p1, v1 (xyz each) per satellite.
+     * p0.x is NaN when the knot step has no valid position, v0.x is NaN when the segment cannot be interpolated.
+     * The block is reused by the next call on the same thread.
+     */
+    float[] gatherSegment(KnotCache knots, int k) {
+        int numSats = knots.numSatellites();
+        float[] seg = SEGMENT_BUFFER.get();
+        if (seg.length < numSats * SEGMENT_FLOATS) {
+            seg = new float[numSats * SEGMENT_FLOATS];
+            SEGMENT_BUFFER.set(seg);
+        }
+        if (knots.interpolationStride == 1 || knots.numKnots() < 2) return seg; // unused
+
+        for (int s = 0; s < numSats; s++) {
+            int j = s * SEGMENT_FLOATS;
+            float[] kx = knots.x[s];
+            boolean valid = !Float.isNaN(kx[k]) && !Float.isNaN(kx[k + 1]);
+            // Knot step is still valid if the previous segment is
+            boolean heldFromPrevious = !valid && k > 0 && !Float.isNaN(kx[k]) && !Float.isNaN(kx[k - 1]);
+            seg[j] = valid || heldFromPrevious ? kx[k] : Float.NaN;
+            seg[j + 1] = knots.y[s][k];
+            seg[j + 2] = knots.z[s][k];
+            seg[j + 3] = valid ? knots.vx[s][k] : Float.NaN;
+            seg[j + 4] = knots.vy[s][k];
+            seg[j + 5] = knots.vz[s][k];
+            seg[j + 6] = kx[k + 1];
+            seg[j + 7] = knots.y[s][k + 1];
+            seg[j + 8] = knots.z[s][k + 1];
+            seg[j + 9] = knots.vx[s][k + 1];
+            seg[j + 10] = knots.vy[s][k + 1];
+            seg[j + 11] = knots.vz[s][k + 1];
+        }
+        return seg;
+    }
 
-            synchronized (propA) {
-                frame = propA.getFrame();
-                pvA = propA.getPVCoordinates(date, frame);
+    /**
+     * Interpolates all satellites at one step of segment k into out[offset..], x/y/z interleaved.
+     * Results are bit-identical to {@link #interpolate(KnotCache)}.
+     */
+    void interpolateStep(KnotCache knots, float[] seg, int k, int step, float[] out, int offset) {
+        int numSats = knots.numSatellites();
+        int interpolationStride = knots.interpolationStride;
+
+        if (interpolationStride == 1 || knots.numKnots() < 2) {
+            // Knots used as-is at stride 1, otherwise no segment means no valid positions
+            boolean copyKnots = interpolationStride == 1;
+            for (int s = 0; s < numSats; s++) {
+                int i = offset + s * 3;
+                out[i] = copyKnots ? knots.x[s][step] : Float.NaN;
+                out[i + 1] = copyKnots ? knots.y[s][step] : Float.NaN;
+                out[i + 2] = copyKnots ? knots.z[s][step] : Float.NaN;
             }
-            synchronized (propB) {
-                pvB = propB.getPVCoordinates(date, frame);
+            return;
+        }
+
+        int stepStart = k * interpolationStride;
+        int stepEnd = stepStart + interpolationStride;
+
+        if (step == stepStart || step == stepEnd) {
+            // Knot step: p0 at the start, p1 at the end of the last segment
+            int p = step == stepStart ? 0 : 6;
+            for (int s = 0; s < numSats; s++) {
+                int j = s * SEGMENT_FLOATS;
+                int i = offset + s * 3;
+                boolean valid = step == stepStart ? !Float.isNaN(seg[j]) : !Float.isNaN(seg[j + 3]);
+                out[i] = valid ? seg[j + p] : Float.NaN;
+                out[i + 1] = valid ? seg[j + p + 1] : Float.NaN;
+                out[i + 2] = valid ? seg[j + p + 2] : Float.NaN;
             }
+            return;
+        }
+
+        if (step > stepEnd) {
+            // Tail after the last knot is never covered
+            Arrays.fill(out, offset, offset + numSats * 3, Float.NaN);
+            return;
+        }
+
+        float dt = (float) (knots.stepNanos * interpolationStride / 1e9); // seconds between knots
+        float t = (float) (step - stepStart) / (stepEnd - stepStart);
+        float t2 = t * t;
+        float t3 = t2 * t;
+
+        float h00 = 2 * t3 - 3 * t2 + 1;  // p0
+        float h10 = t3 - 2 * t2 + t;       // v0
+        float h01 = -2 * t3 + 3 * t2;      // p1
+        float h11 = t3 - t2;                // v1
+
+        for (int s = 0; s < numSats; s++) {
+            int j = s * SEGMENT_FLOATS;
+            int i = offset + s * 3;
+            if (Float.isNaN(seg[j + 3])) {
+                out[i] = Float.NaN;
+                out[i + 1] = Float.NaN;
+                out[i + 2] = Float.NaN;
+                continue;
+            }
+            out[i] = h00 * seg[j] + h10 * seg[j + 3] * dt + h01 * seg[j + 6] + h11 * seg[j + 9] * dt;
+            out[i + 1] = h00 * seg[j + 1] + h10 * seg[j + 4] * dt + h01 * seg[j + 7] + h11 * seg[j + 10] * dt;
+            out[i + 2] = h00 * seg[j + 2] + h10 * seg[j + 5] * dt + h01 * seg[j + 8] + h11 * seg[j + 11] * dt;
+        }
+    }
+
+    /**
+     * Propagate both satellites to a given time and return distance, relative velocity, and PV coordinates.
+     * Uses the calling thread's own propagators, so workers refining events of the same object never wait on each other.
+     */
+    MeasurementResult propagateAndMeasure(SatelliteScanInfoPair pair, ScanCatalog catalog,
+                                          OffsetDateTime time, double thresholdKm) {
+        AbsoluteDate date = toAbsoluteDate(time);
+
+        try {
+            TLEPropagator propA = ThreadPropagators.of(catalog.propagator(pair.a().noradCatId()));
+            TLEPropagator propB = ThreadPropagators.of(catalog.propagator(pair.b().noradCatId()));
+
+            Frame frame = propA.getFrame();
+            PVCoordinates pvA = propA.getPVCoordinates(date, frame);
+            PVCoordinates pvB = propB.getPVCoordinates(date, frame);
 
             double distance = calculateDistance(pvA, pvB);
             double velocity = distance <= thresholdKm ? calculateRelativeVelocity(pvA, pvB) : 0.0;
@@ -191,6 +898,48 @@ public class PropagationService {
         }
     }
 
+    /**
+     * SGP4 positions of both satellites of a pair at the given times, as a two-satellite cache with array IDs 0 and 1.
+     * Steps where propagation fails are NaN.
+     */
+    PositionCache samplePair(SatelliteScanInfoPair pair, ScanCatalog catalog, OffsetDateTime[] times) {
+        int n = times.length;
+        AbsoluteDate[] dates = new AbsoluteDate[n];
+        for (int k = 0; k < n; k++) dates[k] = toAbsoluteDate(times[k]);
+
+        TLEPropagator propA = ThreadPropagators.of(catalog.propagator(pair.a().noradCatId()));
+        TLEPropagator propB = ThreadPropagators.of(catalog.propagator(pair.b().noradCatId()));
+        float[][] x = new float[2][n];
+        float[][] y = new float[2][n];
+        float[][] z = new float[2][n];
+
+        Frame frame = propA.getFrame();
+        samplePositions(propA, frame, dates, x[0], y[0], z[0]);
+        samplePositions(propB, frame, dates, x[1], y[1], z[1]);
+
+        MutableIntIntMap noradIdToArrayId = new IntIntHashMap(2);
+        noradIdToArrayId.put(pair.a().noradCatId(), 0);
+        noradIdToArrayId.put(pair.b().noradCatId(), 1);
+        return new PositionCache(noradIdToArrayId, new int[]{pair.a().noradCatId(), pair.b().noradCatId()}, times,
+                x, y, z);
+    }
+
+    private static void samplePositions(TLEPropagator prop, Frame frame, AbsoluteDate[] dates,
+                                        float[] x, float[] y, float[] z) {
+        for (int k = 0; k < dates.length; k++) {
+            try {
+                PVCoordinates pv = prop.getPVCoordinates(dates[k], frame);
+                x[k] = (float) (pv.getPosition().getX() / 1000.0);
+                y[k] = (float) (pv.getPosition().getY() / 1000.0);
+                z[k] = (float) (pv.getPosition().getZ() / 1000.0);
+            } catch (Exception e) {
+                x[k] = Float.NaN;
+                y[k] = Float.NaN;
+                z[k] = Float.NaN;
+            }
+        }
+    }
+
     /**
      * Calculate distance in kilometers between two PVCoordinates.
      */
@@ -211,7 +960,7 @@ public class PropagationService {
         return Math.sqrt(dvx * dvx + dvy * dvy + dvz * dvz);
     }
 
-    private AbsoluteDate toAbsoluteDate(OffsetDateTime dateTime) {
+    AbsoluteDate toAbsoluteDate(OffsetDateTime dateTime) {
         return new AbsoluteDate(
                 dateTime.getYear(),
                 dateTime.getMonthValue(),
@@ -223,19 +972,118 @@ public class PropagationService {
         );
     }
 
+    /**
+     * SGP4 knots. Also a {@link PositionSource} that evaluates the Hermite interpolant on demand, so consumers that
+     * touch few steps (refinement in streaming mode) never need a materialized position cache.
+     */
     public record KnotCache(MutableIntIntMap noradIdToArrayId, int[] arrayIdToNoradId, OffsetDateTime[] times,
                             long stepNanos, int interpolationStride,
                             float[][] x, float[][] y, float[][] z,
-                            float[][] vx, float[][] vy, float[][] vz) {
+                            float[][] vx, float[][] vy, float[][] vz) implements PositionSource {
+
+        public int numKnots() {
+            return (times.length - 1) / interpolationStride + 1;
+        }
+
+        /**
+         * Interpolation blocks: one per knot segment, the last one extended to the end of the window.
+         */
+        public int segmentCount() {
+            return Math.max(1, numKnots() - 1);
+        }
+
+        public int segmentStart(int k) {
+            return k * interpolationStride;
+        }
+
+        public int segmentEnd(int k) {
+            return k == segmentCount() - 1 ? times.length : (k + 1) * interpolationStride;
+        }
+
+        @Override
+        public int numSatellites() {
+            return x.length;
+        }
+
+        @Override
+        public float x(int sat, int step) {
+            return hermite(x, vx, sat, step);
+        }
+
+        @Override
+        public float y(int sat, int step) {
+            return hermite(y, vy, sat, step);
+        }
+
+        @Override
+        public float z(int sat, int step) {
+            return hermite(z, vz, sat, step);
+        }
+
+        /**
+         * Single-satellite, single-axis form of {@link PropagationService#interpolate(KnotCache)}, same float ops.
+         */
+        private float hermite(float[][] p, float[][] v, int sat, int step) {
+            if (interpolationStride == 1) return p[sat][step];
+
+            int numKnots = numKnots();
+            int k = Math.min(step / interpolationStride, numKnots - 2);
+            if (k < 0) return Float.NaN;
+            int stepStart = k * interpolationStride;
+            int stepEnd = stepStart + interpolationStride;
+            float[] kx = x[sat];
+            boolean valid = !Float.isNaN(kx[k]) && !Float.isNaN(kx[k + 1]);
+
+            if (step == stepStart) {
+                boolean heldFromPrevious = k > 0 && !Float.isNaN(kx[k]) && !Float.isNaN(kx[k - 1]);
+                return valid || heldFromPrevious ? p[sat][k] : Float.NaN;
+            }
+            if (!valid || step > stepEnd) return Float.NaN;
+            if (step == stepEnd) return p[sat][k + 1];
+
+            float dt = (float) (stepNanos * interpolationStride / 1e9); // seconds between knots
+            float t = (float) (step - stepStart) / (stepEnd - stepStart);
+            float t2 = t * t;
+            float t3 = t2 * t;
+
+            float h00 = 2 * t3 - 3 * t2 + 1;  // p0
+            float h10 = t3 - 2 * t2 + t;       // v0
+            float h01 = -2 * t3 + 3 * t2;      // p1
+            float h11 = t3 - t2;                // v1
+
+            return h00 * p[sat][k] + h10 * v[sat][k] * dt + h01 * p[sat][k + 1] + h11 * v[sat][k + 1] * dt;
+        }
     }
 
     public record PositionCache(MutableIntIntMap noradIdToArrayId, int[] arrayIdToNoradId, OffsetDateTime[] times,
-                                float[][] x, float[][] y, float[][] z) {
-        boolean isValid(int sat, int step) {
+                                float[][] x, float[][] y, float[][] z) implements PositionSource {
+        @Override
+        public int numSatellites() {
+            return x.length;
+        }
+
+        @Override
+        public float x(int sat, int step) {
+            return x[sat][step];
+        }
+
+        @Override
+        public float y(int sat, int step) {
+            return y[sat][step];
+        }
+
+        @Override
+        public float z(int sat, int step) {
+            return z[sat][step];
+        }
+
+        @Override
+        public boolean isValid(int sat, int step) {
             return !Float.isNaN(x[sat][step]);
         }
 
-        double distanceSquaredAt(int a, int b, int step) {
+        @Override
+        public double distanceSquaredAt(int a, int b, int step) {
             float dx = x[a][step] - x[b][step];
             float dy = y[a][step] - y[b][step];
             float dz = z[a][step] - z[b][step];
@@ -243,6 +1091,39 @@ public class PropagationService {
         }
     }
 
+    /**
+     * Flat step-major cache: xyz[(step * numSatellites + sat) * 3 + axis].
+     */
+    public record StepMajorPositionCache(MutableIntIntMap noradIdToArrayId, int[] arrayIdToNoradId,
+                                         OffsetDateTime[] times, int numSatellites,
+                                         float[] xyz) implements PositionSource {
+        @Override
+        public float x(int sat, int step) {
+            return xyz[(step * numSatellites + sat) * 3];
+        }
+
+        @Override
+        public float y(int sat, int step) {
+            return xyz[(step * numSatellites + sat) * 3 + 1];
+        }
+
+        @Override
+        public float z(int sat, int step) {
+            return xyz[(step * numSatellites + sat) * 3 + 2];
+        }
+
+        @Override
+        public double distanceSquaredAt(int a, int b, int step) {
+            int base = step * numSatellites;
+            int ia = (base + a) * 3;
+            int ib = (base + b) * 3;
+            float dx = xyz[ia] - xyz[ib];
+            float dy = xyz[ia + 1] - xyz[ib + 1];
+            float dz = xyz[ia + 2] - xyz[ib + 2];
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+
     record MeasurementResult(double distanceKm, double velocityMS, PVCoordinates pvA, PVCoordinates pvB, Frame frame,
                              AbsoluteDate absoluteDate) {
     }
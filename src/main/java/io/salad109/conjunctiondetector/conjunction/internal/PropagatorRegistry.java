@@ -0,0 +1,105 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.DataChangedEvent;
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import io.salad109.conjunctiondetector.satellite.SatelliteService;
+import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Propagators kept across scans, one per satellite for the element set it was built from. Most element sets are
+ * unchanged between syncs, so a scan only parses and builds the new or updated ones, in parallel.
+ * <p>
+ * The registry follows catalog syncs through {@link DataChangedEvent}, so the build cost lands after the sync rather
+ * than at the start of the next scan. Each scan still checks its own satellites, which covers scans that run in the
+ * same transaction as the sync. Propagators are shared by concurrent scans: knot generation synchronizes on the propagator,
+ * refinement propagates from {@link ThreadPropagators} copies.
+ */
+@Service
+public class PropagatorRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(PropagatorRegistry.class);
+
+    private final SatelliteService satelliteService;
+
+    // NORAD ID -> propagator and the element set it was built from
+    private final IntObjectHashMap<Entry> entries = new IntObjectHashMap<>();
+
+    public PropagatorRegistry(SatelliteService satelliteService) {
+        this.satelliteService = satelliteService;
+    }
+
+    /**
+     * Propagators for the scan's satellites, aligned with the list.
+     */
+    public synchronized ScanCatalog catalog(List<SatelliteScanInfo> satellites) {
+        update(satellites);
+        TLEPropagator[] propagators = new TLEPropagator[satellites.size()];
+        for (int i = 0; i < propagators.length; i++) {
+            propagators[i] = entries.get(satellites.get(i).noradCatId()).propagator();
+        }
+        return ScanCatalog.of(satellites, propagators);
+    }
+
+    /**
+     * Build propagators for element sets that changed in the sync and drop satellites no longer in the catalog. Scans
+     * publish the same event and are ignored, they change no element set.
+     */
+    @TransactionalEventListener
+    public synchronized void refresh(DataChangedEvent event) {
+        if (!event.catalogChanged()) return;
+        List<SatelliteScanInfo> satellites = satelliteService.getAllScanInfo();
+        update(satellites);
+
+        IntHashSet current = new IntHashSet(satellites.size());
+        for (SatelliteScanInfo sat : satellites) current.add(sat.noradCatId());
+        int before = entries.size();
+        entries.keySet().retainAll(current);
+        if (entries.size() < before) log.debug("Propagator registry: {} removed", before - entries.size());
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void update(List<SatelliteScanInfo> satellites) {
+        List<SatelliteScanInfo> stale = satellites.stream()
+                .filter(sat -> {
+                    Entry entry = entries.get(sat.noradCatId());
+                    return entry == null || !entry.builtFrom(sat);
+                })
+                .toList();
+        if (stale.isEmpty()) return;
+
+        List<Entry> built = stale.parallelStream().map(Entry::of).toList();
+        for (Entry entry : built) entries.put(entry.noradId(), entry);
+        log.debug("Propagator registry: {} built, {} reused", built.size(), satellites.size() - built.size());
+    }
+
+    /**
+     * Element set number, columns 65-68 of TLE line 1.
+     */
+    static int parseElementSetNo(String tleLine1) {
+        return Integer.parseInt(tleLine1.substring(64, 68).trim());
+    }
+
+    private record Entry(int noradId, OffsetDateTime epoch, int elementSetNo, TLEPropagator propagator) {
+
+        static Entry of(SatelliteScanInfo sat) {
+            return new Entry(sat.noradCatId(), sat.epoch(), parseElementSetNo(sat.tleLine1()),
+                    PropagationService.buildPropagator(sat));
+        }
+
+        boolean builtFrom(SatelliteScanInfo sat) {
+            return epoch.isEqual(sat.epoch()) && elementSetNo == parseElementSetNo(sat.tleLine1());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Step-major position cache at half the bytes: each coordinate is a 16-bit offset from the satellite's position at the
+ * start of its knot segment, in units of {@code kmPerUnit}. The unit is sized from a bound on how far a Hermite segment
+ * can move from its start knot, so offsets never clip and stay well under a kilometre at the usual strides.
+ * <p>
+ * xyz[(step * numSatellites + sat) * 3 + axis] holds the offsets, {@link #INVALID} in x marks a missing position, and
+ * anchors[(segment * numSatellites + sat) * 3 + axis] the per-segment origins. {@code maxErrorKm} is the largest
+ * distance between a stored position and the float it was quantized from, to add to the sweep tolerance once per
+ * satellite.
+ */
+public record QuantizedPositionCache(MutableIntIntMap noradIdToArrayId, int[] arrayIdToNoradId, OffsetDateTime[] times,
+                                     int numSatellites, int[] segmentOfStep, float[] anchors, float kmPerUnit,
+                                     short[] xyz, double maxErrorKm) implements PositionSource {
+
+    static final short INVALID = Short.MIN_VALUE;
+
+    @Override
+    public float x(int sat, int step) {
+        short q = xyz[(step * numSatellites + sat) * 3];
+        return q == INVALID ? Float.NaN : anchors[anchor(sat, step)] + q * kmPerUnit;
+    }
+
+    @Override
+    public float y(int sat, int step) {
+        return anchors[anchor(sat, step) + 1] + xyz[(step * numSatellites + sat) * 3 + 1] * kmPerUnit;
+    }
+
+    @Override
+    public float z(int sat, int step) {
+        return anchors[anchor(sat, step) + 2] + xyz[(step * numSatellites + sat) * 3 + 2] * kmPerUnit;
+    }
+
+    @Override
+    public boolean isValid(int sat, int step) {
+        return xyz[(step * numSatellites + sat) * 3] != INVALID;
+    }
+
+    @Override
+    public double distanceSquaredAt(int a, int b, int step) {
+        int ia = (step * numSatellites + a) * 3;
+        int ib = (step * numSatellites + b) * 3;
+        int anchorA = anchor(a, step);
+        int anchorB = anchor(b, step);
+        float dx = anchors[anchorA] + xyz[ia] * kmPerUnit - (anchors[anchorB] + xyz[ib] * kmPerUnit);
+        float dy = anchors[anchorA + 1] + xyz[ia + 1] * kmPerUnit - (anchors[anchorB + 1] + xyz[ib + 1] * kmPerUnit);
+        float dz = anchors[anchorA + 2] + xyz[ia + 2] * kmPerUnit - (anchors[anchorB + 2] + xyz[ib + 2] * kmPerUnit);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private int anchor(int sat, int step) {
+        return (segmentOfStep[step] * numSatellites + sat) * 3;
+    }
+}
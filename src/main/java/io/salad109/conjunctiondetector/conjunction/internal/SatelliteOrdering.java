@@ -0,0 +1,16 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * Order of satellites in the knot and position arrays.
+ */
+public enum SatelliteOrdering {
+    /**
+     * Whatever order the propagators come in.
+     */
+    CATALOG,
+    /**
+     * Along a Morton curve of each satellite's position at the subwindow start, so satellites close in space are close
+     * in memory and a grid cell's members share cache lines.
+     */
+    MORTON
+}
@@ -0,0 +1,34 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+
+import java.util.List;
+
+/**
+ * The satellites of one scan and their propagators, aligned by scan index. {@link PropagationService#computeKnots}
+ * numbers satellites in this order, and NORAD IDs resolve through a primitive map.
+ */
+public record ScanCatalog(List<SatelliteScanInfo> satellites, TLEPropagator[] propagators,
+                          MutableIntIntMap noradIdToIndex) {
+
+    public static ScanCatalog of(List<SatelliteScanInfo> satellites, TLEPropagator[] propagators) {
+        MutableIntIntMap noradIdToIndex = new IntIntHashMap(satellites.size());
+        for (int i = 0; i < satellites.size(); i++) noradIdToIndex.put(satellites.get(i).noradCatId(), i);
+        return new ScanCatalog(satellites, propagators, noradIdToIndex);
+    }
+
+    public int size() {
+        return propagators.length;
+    }
+
+    public SatelliteScanInfo satellite(int noradId) {
+        return satellites.get(noradIdToIndex.get(noradId));
+    }
+
+    public TLEPropagator propagator(int noradId) {
+        return propagators[noradIdToIndex.get(noradId)];
+    }
+}
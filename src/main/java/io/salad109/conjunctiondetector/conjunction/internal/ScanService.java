@@ -2,20 +2,34 @@ package io.salad109.conjunctiondetector.conjunction.internal;
 
 import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
 import io.salad109.conjunctiondetector.satellite.SatelliteScanInfoPair;
-import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.eclipse.collections.impl.factory.primitive.LongSets;
 import org.orekit.frames.Frame;
-import org.orekit.propagation.analytical.tle.TLEPropagator;
 import org.orekit.time.AbsoluteDate;
 import org.orekit.utils.PVCoordinates;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongToIntFunction;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
 @Service
 public class ScanService {
 
+    private static final Logger log = LoggerFactory.getLogger(ScanService.class);
+
+    // One interpolated step per worker in streaming mode
+    private static final ThreadLocal<float[]> STEP_BUFFER = ThreadLocal.withInitial(() -> new float[0]);
+
+    // Reuse to reduce hot path allocations
+    private static final ThreadLocal<NeighborList> NEIGHBOR_LIST_POOL = ThreadLocal.withInitial(NeighborList::new);
+
     private final PropagationService propagationService;
 
     public ScanService(PropagationService propagationService) {
@@ -23,97 +37,484 @@ public class ScanService {
     }
 
     /**
-     * Check for close approaches using spatial indexing
+     * Check for close approaches using spatial indexing.
+     * Each parallel split fills its own primitive buffer, satellites are only resolved after reduction.
+     */
+    public DetectionBuffer checkPairs(PositionSource precomputedPositions,
+                                      double toleranceKm, double cellSizeKm, GridType gridType) {
+        return checkPairs(precomputedPositions, toleranceKm, cellSizeKm, gridType, KernelType.SCALAR);
+    }
+
+    /**
+     * {@link #checkPairs(PositionSource, double, double, GridType)} with a selectable distance kernel.
+     */
+    public DetectionBuffer checkPairs(PositionSource precomputedPositions, double toleranceKm, double cellSizeKm,
+                                      GridType gridType, KernelType kernel) {
+        return checkPairs(precomputedPositions, toleranceKm, new UniformGridBroadPhase(gridType, cellSizeKm), kernel);
+    }
+
+    /**
+     * {@link #checkPairs(PositionSource, double, double, GridType)} with a selectable broad phase and distance kernel.
+     */
+    public DetectionBuffer checkPairs(PositionSource precomputedPositions, double toleranceKm, BroadPhase broadPhase,
+                                      KernelType kernel) {
+        return checkPairs(precomputedPositions, toleranceKm, broadPhase, kernel, LongSets.immutable.empty());
+    }
+
+    /**
+     * {@link #checkPairs(PositionSource, double, BroadPhase, KernelType)} that never emits the pairs in
+     * {@code excludedPairs} (array-index pair keys), such as tracked formations.
+     */
+    public DetectionBuffer checkPairs(PositionSource precomputedPositions, double toleranceKm, BroadPhase broadPhase,
+                                      KernelType kernel, LongSet excludedPairs) {
+        return sweep(precomputedPositions, toleranceKm, broadPhase, kernel, excludedPairs,
+                DetectionBuffer::new, DetectionBuffer::addAll);
+    }
+
+    /**
+     * {@link #checkPairs(PositionSource, double, BroadPhase, KernelType, LongSet)} reduced to the best detection per
+     * event inside the sweep, same result as {@link #groupAndReduce(DetectionBuffer)} without materializing every
+     * detection.
      */
-    public List<CoarseDetection> checkPairs(List<SatelliteScanInfo> satellites,
-                                            PropagationService.PositionCache precomputedPositions,
-                                            double toleranceKm, double cellSizeKm) {
-        IntObjectHashMap<SatelliteScanInfo> satelliteById = new IntObjectHashMap<>(satellites.size());
-        for (SatelliteScanInfo s : satellites) satelliteById.put(s.noradCatId(), s);
+    public DetectionBuffer checkPairsReduced(PositionSource precomputedPositions, double toleranceKm,
+                                             BroadPhase broadPhase, KernelType kernel, LongSet excludedPairs) {
+        return inPairAndStepOrder(sweep(precomputedPositions, toleranceKm, broadPhase, kernel, excludedPairs,
+                () -> new EventReducer(3), EventReducer::combine).events());
+    }
+
+    private static <S extends DetectionSink> S sweep(PositionSource precomputedPositions, double toleranceKm,
+                                                     BroadPhase broadPhase, KernelType kernel, LongSet excludedPairs,
+                                                     Supplier<S> sinks, BiConsumer<S, S> combiner) {
         int totalSteps = precomputedPositions.times().length;
         double tolSq = toleranceKm * toleranceKm; // skip sqrt by comparing squared distances
 
-        // Parallelize over time steps
+        // Parallelize over time steps, each split covers a contiguous range and sees it in order
         return IntStream.range(0, totalSteps)
                 .parallel()
-                .boxed()
-                .<CoarseDetection>mapMulti((step, consumer) -> {
-                    SpatialGrid grid = new SpatialGrid(cellSizeKm, precomputedPositions.x(), precomputedPositions.y(), precomputedPositions.z(), step);
-
-                    grid.forEachCandidatePair((idxA, idxB) -> {
-                        double distSq = precomputedPositions.distanceSquaredAt(idxA, idxB, step);
-                        if (distSq < tolSq) {
-                            int noradA = precomputedPositions.arrayIdToNoradId()[idxA];
-                            int noradB = precomputedPositions.arrayIdToNoradId()[idxB];
-                            SatelliteScanInfo satA = satelliteById.get(noradA);
-                            SatelliteScanInfo satB = satelliteById.get(noradB);
-                            SatelliteScanInfoPair pair = noradA < noradB
-                                    ? new SatelliteScanInfoPair(satA, satB)
-                                    : new SatelliteScanInfoPair(satB, satA);
-                            consumer.accept(new CoarseDetection(pair, distSq, step));
+                .collect(sinks,
+                        (sink, step) -> sweepStep(precomputedPositions, step, step, tolSq, broadPhase, kernel,
+                                excludedPairs, sink),
+                        combiner);
+    }
+
+    /**
+     * Neighbor-list variant of {@link #checkPairs}: candidate pairs are gathered once per block of
+     * {@code rebuildSteps} steps with the tolerance inflated by a skin covering the fastest object's motion over the
+     * block, and only that list is checked until the block ends. The list is rebuilt early if any object outruns its
+     * share of the skin.
+     */
+    public DetectionBuffer checkPairsNeighborList(PositionSource precomputedPositions, double toleranceKm,
+                                                  double cellSizeKm, GridType gridType, int rebuildSteps) {
+        int totalSteps = precomputedPositions.times().length;
+        int blockCount = (totalSteps + rebuildSteps - 1) / rebuildSteps;
+        double tolSq = toleranceKm * toleranceKm;
+
+        // Parallelize over blocks, each block is checked sequentially against its own list
+        return IntStream.range(0, blockCount)
+                .parallel()
+                .collect(DetectionBuffer::new, (buffer, block) -> {
+                    int blockStart = block * rebuildSteps;
+                    int blockEnd = Math.min(blockStart + rebuildSteps, totalSteps);
+                    NeighborList neighbors = NEIGHBOR_LIST_POOL.get();
+                    neighbors.build(precomputedPositions, blockStart, blockEnd, toleranceKm, cellSizeKm, gridType);
+
+                    for (int step = blockStart; step < blockEnd; step++) {
+                        if (step > blockStart && neighbors.exceedsSkin(precomputedPositions, step)) {
+                            neighbors.build(precomputedPositions, step, blockEnd, toleranceKm, cellSizeKm, gridType);
                         }
-                    });
-                })
-                .toList();
+                        for (int i = 0; i < neighbors.size(); i++) {
+                            long pairKey = neighbors.pair(i);
+                            double distSq = precomputedPositions.distanceSquaredAt(
+                                    DetectionBuffer.firstIndex(pairKey), DetectionBuffer.secondIndex(pairKey), step);
+                            if (distSq < tolSq) {
+                                buffer.add(pairKey, (float) distSq, step);
+                            }
+                        }
+                    }
+                }, DetectionBuffer::addAll);
+    }
+
+    /**
+     * Shell-partitioned variant of {@link #checkPairs}: every altitude shell is gridded and swept on its own, and
+     * candidates whose radial bands cannot intersect are dropped before the distance check. Logs how many catalog
+     * pairs the bands rule out and how many grid candidates the filter dropped.
+     */
+    public DetectionBuffer checkPairsByShell(PositionSource precomputedPositions, AltitudeShells shells,
+                                             double toleranceKm, double cellSizeKm, GridType gridType) {
+        int totalSteps = precomputedPositions.times().length;
+        double tolSq = toleranceKm * toleranceKm;
+        LongAdder droppedCandidates = new LongAdder();
+        BroadPhase grid = new UniformGridBroadPhase(gridType, cellSizeKm);
+
+        DetectionBuffer detections = IntStream.range(0, totalSteps)
+                .parallel()
+                .collect(DetectionBuffer::new, (buffer, step) -> {
+                    for (int shell = 0; shell < shells.shellCount(); shell++) {
+                        int currentShell = shell;
+                        int[] members = shells.members(shell);
+                        if (members.length < 2) continue;
+                        PositionSource shellPositions = shells.view(shell, precomputedPositions);
+
+                        SpatialGrid.IntBiConsumer candidateConsumer = (localA, localB) -> {
+                            int idxA = members[localA];
+                            int idxB = members[localB];
+                            if (!shells.bandsIntersect(idxA, idxB)) {
+                                // No distance check, that is what the filter saves
+                                if (shells.firstSharedShell(idxA, idxB) == currentShell) {
+                                    droppedCandidates.increment();
+                                }
+                                return;
+                            }
+                            if (!shells.owns(currentShell, idxA, idxB)) return; // reported by a lower shell
+                            double distSq = precomputedPositions.distanceSquaredAt(idxA, idxB, step);
+                            if (distSq < tolSq) {
+                                buffer.add(idxA, idxB, (float) distSq, step);
+                            }
+                        };
+
+                        grid.forEachCandidatePair(shellPositions, step, candidateConsumer);
+                    }
+                }, DetectionBuffer::addAll);
+
+        log.debug("Altitude shells: {} shells, {} of {} pairs eliminated by band, {} candidates dropped",
+                shells.shellCount(), shells.eliminatedPairs(), shells.totalPairs(), droppedCandidates.sum());
+        return detections;
+    }
+
+    /**
+     * Multi-rate variant of {@link #checkPairs}: each step only sweeps the satellites whose regime stride divides it, so
+     * slow regimes are checked on a coarser sub-lattice of the same steps and fast satellites still meet them at every
+     * fine step. Positions off a satellite's lattice are never read.
+     */
+    public DetectionBuffer checkPairsMultiRate(PositionSource precomputedPositions, TimeStepRegimes regimes,
+                                               double toleranceKm, BroadPhase broadPhase, KernelType kernel) {
+        return checkPairsMultiRate(precomputedPositions, regimes, toleranceKm, broadPhase, kernel,
+                LongSets.immutable.empty());
+    }
+
+    /**
+     * {@link #checkPairsMultiRate(PositionSource, TimeStepRegimes, double, BroadPhase, KernelType)} that never emits
+     * the pairs in {@code excludedPairs}.
+     */
+    public DetectionBuffer checkPairsMultiRate(PositionSource precomputedPositions, TimeStepRegimes regimes,
+                                               double toleranceKm, BroadPhase broadPhase, KernelType kernel,
+                                               LongSet excludedPairs) {
+        return sweepMultiRate(precomputedPositions, regimes, toleranceKm, broadPhase, kernel, excludedPairs,
+                DetectionBuffer::new, DetectionBuffer::addAll);
+    }
+
+    /**
+     * {@link #checkPairsMultiRate(PositionSource, TimeStepRegimes, double, BroadPhase, KernelType, LongSet)} reduced
+     * to the best detection per event inside the sweep, same result as
+     * {@link #groupAndReduce(DetectionBuffer, TimeStepRegimes)}.
+     */
+    public DetectionBuffer checkPairsMultiRateReduced(PositionSource precomputedPositions, TimeStepRegimes regimes,
+                                                      double toleranceKm, BroadPhase broadPhase, KernelType kernel,
+                                                      LongSet excludedPairs) {
+        int maxGapSteps = 3 * regimes.maxStride();
+        return inPairAndStepOrder(sweepMultiRate(precomputedPositions, regimes, toleranceKm, broadPhase, kernel,
+                excludedPairs, () -> new EventReducer(maxGapSteps, regimes::pairGapSteps), EventReducer::combine)
+                .events());
+    }
+
+    private static <S extends DetectionSink> S sweepMultiRate(PositionSource precomputedPositions,
+                                                              TimeStepRegimes regimes, double toleranceKm,
+                                                              BroadPhase broadPhase, KernelType kernel,
+                                                              LongSet excludedPairs, Supplier<S> sinks,
+                                                              BiConsumer<S, S> combiner) {
+        int totalSteps = precomputedPositions.times().length;
+        int numSats = precomputedPositions.numSatellites();
+        double tolSq = toleranceKm * toleranceKm;
+
+        return IntStream.range(0, totalSteps)
+                .parallel()
+                .collect(sinks, (buffer, step) -> {
+                    int[] active = regimes.activeAt(step);
+                    if (active.length == numSats) {
+                        sweepStep(precomputedPositions, step, step, tolSq, broadPhase, kernel, excludedPairs, buffer);
+                        return;
+                    }
+                    boolean filter = !excludedPairs.isEmpty();
+                    broadPhase.forEachPairWithin(new SubsetView(precomputedPositions, active), step, tolSq, kernel,
+                            (localA, localB, distSq) -> {
+                                long pairKey = DetectionBuffer.pairKey(active[localA], active[localB]);
+                                if (!filter || !excludedPairs.contains(pairKey)) buffer.add(pairKey, distSq, step);
+                            });
+                }, combiner);
+    }
+
+    /**
+     * Streaming variant of {@link #checkPairs}: each worker takes one knot segment, interpolates it a step at a time
+     * into a thread-local buffer and sweeps that buffer. No position cache is materialized, peak memory is the knots
+     * plus one segment and one step per worker.
+     */
+    public DetectionBuffer checkPairsStreaming(PropagationService.KnotCache knots,
+                                               double toleranceKm, double cellSizeKm, GridType gridType) {
+        return checkPairsStreaming(knots, toleranceKm, cellSizeKm, gridType, KernelType.SCALAR);
+    }
+
+    /**
+     * {@link #checkPairsStreaming(PropagationService.KnotCache, double, double, GridType)} with a selectable distance
+     * kernel.
+     */
+    public DetectionBuffer checkPairsStreaming(PropagationService.KnotCache knots, double toleranceKm,
+                                               double cellSizeKm, GridType gridType, KernelType kernel) {
+        return checkPairsStreaming(knots, toleranceKm, new UniformGridBroadPhase(gridType, cellSizeKm), kernel);
+    }
+
+    /**
+     * {@link #checkPairsStreaming(PropagationService.KnotCache, double, double, GridType)} with a selectable broad
+     * phase and distance kernel.
+     */
+    public DetectionBuffer checkPairsStreaming(PropagationService.KnotCache knots, double toleranceKm,
+                                               BroadPhase broadPhase, KernelType kernel) {
+        return checkPairsStreaming(knots, toleranceKm, broadPhase, kernel, LongSets.immutable.empty());
+    }
+
+    /**
+     * {@link #checkPairsStreaming(PropagationService.KnotCache, double, BroadPhase, KernelType)} that never emits the
+     * pairs in {@code excludedPairs}.
+     */
+    public DetectionBuffer checkPairsStreaming(PropagationService.KnotCache knots, double toleranceKm,
+                                               BroadPhase broadPhase, KernelType kernel, LongSet excludedPairs) {
+        return sweepStreaming(knots, toleranceKm, broadPhase, kernel, excludedPairs,
+                DetectionBuffer::new, DetectionBuffer::addAll);
+    }
+
+    /**
+     * {@link #checkPairsStreaming(PropagationService.KnotCache, double, BroadPhase, KernelType, LongSet)} reduced to
+     * the best detection per event inside the sweep, same result as {@link #groupAndReduce(DetectionBuffer)}.
+     */
+    public DetectionBuffer checkPairsStreamingReduced(PropagationService.KnotCache knots, double toleranceKm,
+                                                      BroadPhase broadPhase, KernelType kernel,
+                                                      LongSet excludedPairs) {
+        return inPairAndStepOrder(sweepStreaming(knots, toleranceKm, broadPhase, kernel, excludedPairs,
+                () -> new EventReducer(3), EventReducer::combine).events());
+    }
+
+    private <S extends DetectionSink> S sweepStreaming(PropagationService.KnotCache knots, double toleranceKm,
+                                                       BroadPhase broadPhase, KernelType kernel,
+                                                       LongSet excludedPairs, Supplier<S> sinks,
+                                                       BiConsumer<S, S> combiner) {
+        int numSats = knots.numSatellites();
+        double tolSq = toleranceKm * toleranceKm;
+
+        return IntStream.range(0, knots.segmentCount())
+                .parallel()
+                .collect(sinks, (buffer, k) -> {
+                    float[] segment = propagationService.gatherSegment(knots, k);
+                    float[] stepBuffer = STEP_BUFFER.get();
+                    if (stepBuffer.length < numSats * 3) {
+                        stepBuffer = new float[numSats * 3];
+                        STEP_BUFFER.set(stepBuffer);
+                    }
+                    PositionSource stepPositions = new PropagationService.StepMajorPositionCache(
+                            knots.noradIdToArrayId(), knots.arrayIdToNoradId(), knots.times(), numSats, stepBuffer);
+
+                    for (int step = knots.segmentStart(k); step < knots.segmentEnd(k); step++) {
+                        propagationService.interpolateStep(knots, segment, k, step, stepBuffer, 0);
+                        sweepStep(stepPositions, 0, step, tolSq, broadPhase, kernel, excludedPairs, buffer);
+                    }
+                }, combiner);
+    }
+
+    /**
+     * Knot-resolution variant of {@link #checkPairs}: segment bounding boxes between knots pick the candidate pairs
+     * and the step intervals where they can be within tolerance, see {@link SegmentBoxSweep}. Nothing is interpolated
+     * for the whole catalog, and the detections are those of the cached sweep in a different order. Logs how many pair
+     * steps the boxes ruled out.
+     */
+    public DetectionBuffer checkPairsBySegmentBoxes(PropagationService.KnotCache knots, double toleranceKm) {
+        return checkPairsBySegmentBoxes(knots, toleranceKm, LongSets.immutable.empty());
+    }
+
+    /**
+     * {@link #checkPairsBySegmentBoxes(PropagationService.KnotCache, double)} that never emits the pairs in
+     * {@code excludedPairs}.
+     */
+    public DetectionBuffer checkPairsBySegmentBoxes(PropagationService.KnotCache knots, double toleranceKm,
+                                                    LongSet excludedPairs) {
+        SegmentBoxSweep sweep = new SegmentBoxSweep(knots, toleranceKm, excludedPairs);
+
+        DetectionBuffer detections = IntStream.range(0, knots.segmentCount())
+                .parallel()
+                .collect(DetectionBuffer::new, (buffer, k) -> sweep.sweepSegment(k, buffer), DetectionBuffer::addAll);
+
+        log.debug("Segment boxes: {} candidate pair segments, {} of {} pair steps checked",
+                sweep.candidatePairs(), sweep.checkedPairSteps(), sweep.candidatePairSteps());
+        return detections;
+    }
+
+    /**
+     * Run the broad phase over one step of positions and record every pair under tolerance that is not excluded,
+     * tagged with the window step index.
+     */
+    private static void sweepStep(PositionSource positions, int step, int windowStep, double tolSq,
+                                  BroadPhase broadPhase, KernelType kernel, LongSet excludedPairs,
+                                  DetectionSink buffer) {
+        if (excludedPairs.isEmpty()) {
+            broadPhase.forEachPairWithin(positions, step, tolSq, kernel,
+                    (idxA, idxB, distSq) -> buffer.add(DetectionBuffer.pairKey(idxA, idxB), distSq, windowStep));
+            return;
+        }
+        broadPhase.forEachPairWithin(positions, step, tolSq, kernel, (idxA, idxB, distSq) -> {
+            long pairKey = DetectionBuffer.pairKey(idxA, idxB);
+            if (!excludedPairs.contains(pairKey)) buffer.add(pairKey, distSq, windowStep);
+        });
     }
 
     /**
      * Sort detections, cluster by pair and step gap, extract the best detection per event.
      * Two detections belong to the same event if they're within 3 steps of each other.
      */
-    public List<CoarseDetection> groupAndReduce(List<CoarseDetection> detections) {
-        List<CoarseDetection> sorted = detections.parallelStream()
-                .sorted(Comparator
-                        .comparingInt((CoarseDetection d) -> d.pair().a().noradCatId())
-                        .thenComparingInt(d -> d.pair().b().noradCatId())
-                        .thenComparingInt(CoarseDetection::stepIndex))
-                .toList();
+    public DetectionBuffer groupAndReduce(DetectionBuffer detections) {
+        return groupAndReduce(detections, 3);
+    }
 
-        List<CoarseDetection> bestPerEvent = new ArrayList<>();
+    /**
+     * {@link #groupAndReduce(DetectionBuffer)} with a wider event gap, for sweeps that check some pairs only every few
+     * steps.
+     */
+    public DetectionBuffer groupAndReduce(DetectionBuffer detections, int maxGapSteps) {
+        return groupAndReduce(detections, pairKey -> maxGapSteps);
+    }
+
+    /**
+     * {@link #groupAndReduce(DetectionBuffer)} for a multi-rate sweep, each pair with a gap of three of its own checks.
+     */
+    public DetectionBuffer groupAndReduce(DetectionBuffer detections, TimeStepRegimes regimes) {
+        return groupAndReduce(detections, regimes::pairGapSteps);
+    }
+
+    private static DetectionBuffer groupAndReduce(DetectionBuffer detections, LongToIntFunction gapOf) {
+        DetectionBuffer bestPerEvent = new DetectionBuffer();
+        if (detections.isEmpty()) {
+            return bestPerEvent;
+        }
 
-        CoarseDetection best = sorted.getFirst();
-        SatelliteScanInfoPair currentPair = best.pair();
+        int[] sorted = sortByPairAndStep(detections);
 
-        for (int i = 1; i < sorted.size(); i++) {
-            CoarseDetection prev = sorted.get(i - 1);
-            CoarseDetection curr = sorted.get(i);
+        int best = sorted[0];
+        for (int i = 1; i < sorted.length; i++) {
+            int prev = sorted[i - 1];
+            int curr = sorted[i];
 
-            if (!curr.pair().equals(currentPair) || curr.stepIndex() - prev.stepIndex() > 3) {
-                // Event boundary: different pair or time gap > 3 steps
-                bestPerEvent.add(best);   // emit winner of the finished event
-                best = curr;              // start new event with curr as initial best
-                currentPair = curr.pair();
-            } else if (curr.distanceSq() < best.distanceSq()) {
-                best = curr;              // same event, curr is closer - new best
+            if (detections.pairKey(curr) != detections.pairKey(best)
+                    || detections.step(curr) - detections.step(prev) > gapOf.applyAsInt(detections.pairKey(curr))) {
+                // Event boundary: different pair or time gap > the pair's gap
+                emit(detections, best, bestPerEvent);   // emit winner of the finished event
+                best = curr;                            // start new event with curr as initial best
+            } else if (detections.distanceSq(curr) < detections.distanceSq(best)) {
+                best = curr;                            // same event, curr is closer - new best
             }
             // else: same event, curr is farther - skip
         }
         // Close last event
-        bestPerEvent.add(best);
+        emit(detections, best, bestPerEvent);
 
         return bestPerEvent;
     }
 
+    /**
+     * Events from the in-sweep reducers in the order {@link #groupAndReduce(DetectionBuffer)} returns them.
+     */
+    private static DetectionBuffer inPairAndStepOrder(DetectionBuffer events) {
+        DetectionBuffer ordered = new DetectionBuffer(Math.max(events.size(), 1));
+        if (events.isEmpty()) {
+            return ordered;
+        }
+        for (int i : sortByPairAndStep(events)) emit(events, i, ordered);
+        return ordered;
+    }
+
+    private static void emit(DetectionBuffer from, int i, DetectionBuffer to) {
+        to.add(from.pairKey(i), from.distanceSq(i), from.step(i));
+    }
+
+    /**
+     * Stable LSD counting sort of detection indices by (first index, second index, step).
+     * Both key ranges are small (satellite count and steps per window), so three linear passes beat a comparison sort.
+     */
+    private static int[] sortByPairAndStep(DetectionBuffer detections) {
+        int n = detections.size();
+        int maxStep = 0;
+        int maxIndex = 0;
+        for (int i = 0; i < n; i++) {
+            maxStep = Math.max(maxStep, detections.step(i));
+            maxIndex = Math.max(maxIndex, DetectionBuffer.secondIndex(detections.pairKey(i)));
+        }
+
+        int[] order = new int[n];
+        int[] scratch = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+
+        countingPass(detections, order, scratch, SortField.STEP, maxStep + 1);
+        countingPass(detections, scratch, order, SortField.SECOND, maxIndex + 1);
+        countingPass(detections, order, scratch, SortField.FIRST, maxIndex + 1);
+        return scratch;
+    }
+
+    private static void countingPass(DetectionBuffer detections, int[] src, int[] dst, SortField field, int range) {
+        int[] offsets = new int[range + 1];
+        for (int i : src) offsets[field.of(detections, i) + 1]++;
+        for (int k = 1; k <= range; k++) offsets[k] += offsets[k - 1];
+        for (int i : src) dst[offsets[field.of(detections, i)]++] = i;
+    }
+
+    private enum SortField {
+        FIRST, SECOND, STEP;
+
+        int of(DetectionBuffer detections, int i) {
+            return switch (this) {
+                case FIRST -> DetectionBuffer.firstIndex(detections.pairKey(i));
+                case SECOND -> DetectionBuffer.secondIndex(detections.pairKey(i));
+                case STEP -> detections.step(i);
+            };
+        }
+    }
+
     /**
      * Refine coarse detections to find accurate TCA and minimum distance.
      * Call SGP4 only for events that survive the analytical threshold check.
      */
-    public List<RefinedEvent> refine(List<CoarseDetection> events, PropagationService.PositionCache cache,
-                                     Map<Integer, TLEPropagator> propagators, double stepSeconds, double thresholdKm) {
-        return events.parallelStream()
-                .map(det -> refineDetection(det, cache, propagators, stepSeconds, thresholdKm))
+    public List<RefinedEvent> refine(DetectionBuffer events, ScanCatalog catalog, PositionSource cache,
+                                     double stepSeconds, double thresholdKm) {
+        return IntStream.range(0, events.size())
+                .parallel()
+                .mapToObj(i -> refineDetection(events.pairKey(i), events.step(i), 1, catalog, cache,
+                        stepSeconds, thresholdKm))
                 .filter(Objects::nonNull)
                 .toList();
     }
 
-    private RefinedEvent refineDetection(CoarseDetection best, PropagationService.PositionCache cache,
-                                         Map<Integer, TLEPropagator> propagators, double stepSeconds, double thresholdKm) {
-        SatelliteScanInfoPair pair = best.pair();
-        int step = best.stepIndex();
+    /**
+     * {@link #refine} for a multi-rate sweep: each pair's closest approach is searched over its own stride on either
+     * side of the detection, between steps where both satellites have positions.
+     */
+    public List<RefinedEvent> refine(DetectionBuffer events, ScanCatalog catalog, PositionSource cache,
+                                     double stepSeconds, double thresholdKm, TimeStepRegimes regimes) {
+        return IntStream.range(0, events.size())
+                .parallel()
+                .mapToObj(i -> {
+                    long pairKey = events.pairKey(i);
+                    int span = regimes.pairStride(DetectionBuffer.firstIndex(pairKey),
+                            DetectionBuffer.secondIndex(pairKey));
+                    return refineDetection(pairKey, events.step(i), span, catalog, cache, stepSeconds,
+                            thresholdKm);
+                })
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Closest approach around {@code step}, over the intervals to the steps {@code span} before and after it.
+     */
+    RefinedEvent refineDetection(long pairKey, int step, int span, ScanCatalog catalog, PositionSource cache,
+                                 double stepSeconds, double thresholdKm) {
         int totalSteps = cache.times().length;
 
-        int idxA = cache.noradIdToArrayId().get(pair.a().noradCatId());
-        int idxB = cache.noradIdToArrayId().get(pair.b().noradCatId());
+        int idxA = DetectionBuffer.firstIndex(pairKey);
+        int idxB = DetectionBuffer.secondIndex(pairKey);
 
         double gateKm = thresholdKm * 1.1;
         double gateSq = gateKm * gateKm;
@@ -121,21 +522,21 @@ public class ScanService {
         double bestT = 0;
         int bestIntervalStart = step;
 
-        // Check interval (step-1, step)
-        if (step > 0 && cache.isValid(idxA, step - 1) && cache.isValid(idxB, step - 1)
+        // Check interval (step-span, step)
+        if (step >= span && cache.isValid(idxA, step - span) && cache.isValid(idxB, step - span)
                 && cache.isValid(idxA, step) && cache.isValid(idxB, step)) {
-            double[] result = analyticalMin(cache, idxA, idxB, step - 1, step);
+            double[] result = analyticalMin(cache, idxA, idxB, step - span, step);
             if (result[0] < bestDistSq) {
                 bestDistSq = result[0];
                 bestT = result[1];
-                bestIntervalStart = step - 1;
+                bestIntervalStart = step - span;
             }
         }
 
-        // Check interval (step, step+1)
-        if (step < totalSteps - 1 && cache.isValid(idxA, step) && cache.isValid(idxB, step)
-                && cache.isValid(idxA, step + 1) && cache.isValid(idxB, step + 1)) {
-            double[] result = analyticalMin(cache, idxA, idxB, step, step + 1);
+        // Check interval (step, step+span)
+        if (step < totalSteps - span && cache.isValid(idxA, step) && cache.isValid(idxB, step)
+                && cache.isValid(idxA, step + span) && cache.isValid(idxB, step + span)) {
+            double[] result = analyticalMin(cache, idxA, idxB, step, step + span);
             if (result[0] < bestDistSq) {
                 bestDistSq = result[0];
                 bestT = result[1];
@@ -149,10 +550,26 @@ public class ScanService {
         }
 
         // Convert fractional t to absolute timestamp
-        long intervalNanos = Math.round(stepSeconds * 1_000_000_000.0);
+        long intervalNanos = Math.round(span * stepSeconds * 1_000_000_000.0);
         OffsetDateTime tca = cache.times()[bestIntervalStart].plusNanos((long) (bestT * intervalNanos));
+        if (cache instanceof ChebyshevEphemeris ephemeris) {
+            // The series evaluates at any time, so follow the range rate to its zero instead of the chord minimum
+            double from = bestIntervalStart * stepSeconds;
+            double seconds = ephemeris.closestApproach(idxA, idxB, from, from + span * stepSeconds,
+                    from + bestT * span * stepSeconds);
+            tca = cache.times()[0].plusNanos(Math.round(seconds * 1_000_000_000.0));
+        }
+
+        // Resolve satellites only for surviving events, pair ordered by NORAD ID
+        int noradA = cache.arrayIdToNoradId()[idxA];
+        int noradB = cache.arrayIdToNoradId()[idxB];
+        SatelliteScanInfo satA = catalog.satellite(noradA);
+        SatelliteScanInfo satB = catalog.satellite(noradB);
+        SatelliteScanInfoPair pair = noradA < noradB
+                ? new SatelliteScanInfoPair(satA, satB)
+                : new SatelliteScanInfoPair(satB, satA);
 
-        PropagationService.MeasurementResult measurement = propagationService.propagateAndMeasure(pair, propagators, tca, thresholdKm);
+        PropagationService.MeasurementResult measurement = propagationService.propagateAndMeasure(pair, catalog, tca, thresholdKm);
 
         if (measurement.distanceKm() > thresholdKm) {
             return null;
@@ -166,14 +583,14 @@ public class ScanService {
      * With linear interpolation between two positions, squared distance is a quadratic in t.
      * Solve for the minimum analytically. Returns {minDistSq, t} where t in [0,1].
      */
-    double[] analyticalMin(PropagationService.PositionCache cache, int idxA, int idxB,
+    double[] analyticalMin(PositionSource cache, int idxA, int idxB,
                            int s0, int s1) {
-        double sepX = cache.x()[idxA][s0] - cache.x()[idxB][s0];
-        double sepY = cache.y()[idxA][s0] - cache.y()[idxB][s0];
-        double sepZ = cache.z()[idxA][s0] - cache.z()[idxB][s0];
-        double deltaSepX = (cache.x()[idxA][s1] - cache.x()[idxA][s0]) - (cache.x()[idxB][s1] - cache.x()[idxB][s0]);
-        double deltaSepY = (cache.y()[idxA][s1] - cache.y()[idxA][s0]) - (cache.y()[idxB][s1] - cache.y()[idxB][s0]);
-        double deltaSepZ = (cache.z()[idxA][s1] - cache.z()[idxA][s0]) - (cache.z()[idxB][s1] - cache.z()[idxB][s0]);
+        double sepX = cache.x(idxA, s0) - cache.x(idxB, s0);
+        double sepY = cache.y(idxA, s0) - cache.y(idxB, s0);
+        double sepZ = cache.z(idxA, s0) - cache.z(idxB, s0);
+        double deltaSepX = (cache.x(idxA, s1) - cache.x(idxA, s0)) - (cache.x(idxB, s1) - cache.x(idxB, s0));
+        double deltaSepY = (cache.y(idxA, s1) - cache.y(idxA, s0)) - (cache.y(idxB, s1) - cache.y(idxB, s0));
+        double deltaSepZ = (cache.z(idxA, s1) - cache.z(idxA, s0)) - (cache.z(idxB, s1) - cache.z(idxB, s0));
 
         double distSq0 = sepX * sepX + sepY * sepY + sepZ * sepZ;
         double sepDotDelta = sepX * deltaSepX + sepY * deltaSepY + sepZ * deltaSepZ;
@@ -203,9 +620,6 @@ public class ScanService {
     }
 
 
-    public record CoarseDetection(SatelliteScanInfoPair pair, double distanceSq, int stepIndex) {
-    }
-
     public record RefinedEvent(SatelliteScanInfoPair pair, double distanceKm, OffsetDateTime tca,
                                double relativeVelocityMS,
                                PVCoordinates pvA, PVCoordinates pvB, Frame frame, AbsoluteDate absoluteDate) {
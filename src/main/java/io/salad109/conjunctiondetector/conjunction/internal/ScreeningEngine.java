@@ -0,0 +1,15 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * How candidate pairs are found before refinement.
+ */
+public enum ScreeningEngine {
+    /**
+     * Propagate every satellite at every step and sweep a spatial grid.
+     */
+    GRID,
+    /**
+     * Apogee/perigee, orbit path and time filters on mean elements, SGP4 only inside the surviving time windows.
+     */
+    FILTER_CHAIN
+}
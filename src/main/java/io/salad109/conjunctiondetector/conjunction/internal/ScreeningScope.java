@@ -0,0 +1,15 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * Which pairs a scan screens.
+ */
+public enum ScreeningScope {
+    /**
+     * Every pair of the catalog.
+     */
+    ALL,
+    /**
+     * Only pairs involving a primary from {@link PrimarySelection}, each primary against the full catalog.
+     */
+    PRIMARIES
+}
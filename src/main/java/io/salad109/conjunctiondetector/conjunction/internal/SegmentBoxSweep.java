@@ -0,0 +1,239 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import org.eclipse.collections.api.set.primitive.LongSet;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coarse sweep at knot resolution. Between two knots a satellite follows the cubic Hermite segment the interpolation
+ * uses, which is a cubic Bezier curve with control points p0, p0 + m0 / 3, p1 - m1 / 3, p1 and so lies inside their
+ * bounding box. Segment boxes closer than tolerance give the candidate pairs of a knot interval, found with a sweep and
+ * prune on x.
+ * <p>
+ * Each candidate pair then descends a temporal hierarchy: the interval is halved and both satellites re-boxed over each
+ * half from the sub-curve, and halves whose boxes are further apart than tolerance are dropped. Only leaves of at most
+ * {@link #LEAF_STEPS} steps are checked step by step, with the same interpolated positions as the cached sweep.
+ */
+final class SegmentBoxSweep {
+
+    static final int LEAF_STEPS = 4;
+
+    // Covers float rounding in the interpolated positions, so a box gap never prunes a pair the step check accepts
+    private static final double BOX_SLACK_KM = 0.01;
+
+    // Reuse to reduce hot path allocations
+    private static final ThreadLocal<Scratch> SCRATCH_POOL = ThreadLocal.withInitial(Scratch::new);
+
+    private final PropagationService.KnotCache knots;
+    private final double tolSq;
+    private final double reachKm;
+    private final double reachSq;
+    private final double knotSeconds;
+    private final LongSet excludedPairs;
+
+    private final LongAdder candidatePairs = new LongAdder();
+    private final LongAdder checkedPairSteps = new LongAdder();
+    private final LongAdder candidatePairSteps = new LongAdder();
+
+    SegmentBoxSweep(PropagationService.KnotCache knots, double toleranceKm, LongSet excludedPairs) {
+        this.knots = knots;
+        this.tolSq = toleranceKm * toleranceKm;
+        this.reachKm = toleranceKm + BOX_SLACK_KM;
+        this.reachSq = reachKm * reachKm;
+        this.knotSeconds = knots.stepNanos() * knots.interpolationStride() / 1e9;
+        this.excludedPairs = excludedPairs;
+    }
+
+    /**
+     * Record every pair under tolerance at the steps of knot segment {@code k}.
+     */
+    void sweepSegment(int k, DetectionBuffer buffer) {
+        int stride = knots.interpolationStride();
+        int start = knots.segmentStart(k);
+        // Past the last knot there are no positions, the extended last segment stops one step after it
+        int end = Math.min(knots.segmentEnd(k), start + stride + 1);
+        if (k + 1 >= knots.numKnots() && stride > 1) return;
+
+        int n = knots.numSatellites();
+        Scratch s = SCRATCH_POOL.get();
+        s.ensure(n);
+        double t1 = Math.min(1.0, (double) (end - 1 - start) / stride);
+
+        int valid = 0;
+        for (int sat = 0; sat < n; sat++) {
+            if (!box(sat, k, 0, t1, s.boxes, sat * 6)) continue;
+            s.sorted[valid++] = sortKey(s.boxes[sat * 6], sat);
+        }
+        Arrays.sort(s.sorted, 0, valid);
+        for (int i = 0; i < valid; i++) {
+            int sat = (int) s.sorted[i];
+            s.order[i] = sat;
+            s.keys[i] = floorToFloat(s.boxes[sat * 6]);
+        }
+
+        for (int i = 0; i < valid; i++) {
+            int a = s.order[i];
+            double maxX = s.boxes[a * 6 + 1] + reachKm;
+            for (int j = i + 1; j < valid && s.keys[j] <= maxX; j++) {
+                int b = s.order[j];
+                if (boxGapSq(s.boxes, a * 6, s.boxes, b * 6) > reachSq) continue;
+                long pairKey = DetectionBuffer.pairKey(a, b);
+                if (!excludedPairs.isEmpty() && excludedPairs.contains(pairKey)) continue;
+                candidatePairs.increment();
+                candidatePairSteps.add(end - start);
+                descend(s, 0, pairKey, a, b, k, start, end, buffer);
+            }
+        }
+    }
+
+    /**
+     * Check the pair over steps [from, to) of segment {@code k}: drop the range if the sub-curve boxes are too far
+     * apart, check it step by step if it is a leaf, otherwise halve it.
+     */
+    private void descend(Scratch s, int depth, long pairKey, int a, int b, int k, int from, int to,
+                         DetectionBuffer buffer) {
+        if (depth > 0) {
+            int stride = knots.interpolationStride();
+            int start = knots.segmentStart(k);
+            double t0 = (double) (from - start) / stride;
+            double t1 = Math.min(1.0, (double) (to - 1 - start) / stride);
+            double[] row = s.level(depth);
+            box(a, k, t0, t1, row, 0);
+            box(b, k, t0, t1, row, 6);
+            if (boxGapSq(row, 0, row, 6) > reachSq) return;
+        }
+
+        if (to - from <= LEAF_STEPS) {
+            checkedPairSteps.add(to - from);
+            for (int step = from; step < to; step++) {
+                double distSq = knots.distanceSquaredAt(a, b, step);
+                if (distSq < tolSq) buffer.add(pairKey, (float) distSq, step);
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        descend(s, depth + 1, pairKey, a, b, k, from, mid, buffer);
+        descend(s, depth + 1, pairKey, a, b, k, mid, to, buffer);
+    }
+
+    /**
+     * Bounding box (min x, max x, min y, max y, min z, max z) of satellite {@code sat} over [t0, t1] of segment
+     * {@code k}, written at {@code out[offset]}. A satellite with only one valid knot is boxed at that knot, one with
+     * none is skipped.
+     */
+    private boolean box(int sat, int k, double t0, double t1, double[] out, int offset) {
+        boolean startValid = !Float.isNaN(knots.x()[sat][k]);
+        boolean endValid = k + 1 < knots.numKnots() && !Float.isNaN(knots.x()[sat][k + 1]);
+        if (!startValid && !endValid) return false;
+        if (!startValid || !endValid) {
+            int knot = startValid ? k : k + 1;
+            point(knots.x()[sat][knot], out, offset);
+            point(knots.y()[sat][knot], out, offset + 2);
+            point(knots.z()[sat][knot], out, offset + 4);
+            return true;
+        }
+        curve(knots.x()[sat], knots.vx()[sat], k, t0, t1, out, offset);
+        curve(knots.y()[sat], knots.vy()[sat], k, t0, t1, out, offset + 2);
+        curve(knots.z()[sat], knots.vz()[sat], k, t0, t1, out, offset + 4);
+        return true;
+    }
+
+    private static void point(float p, double[] out, int offset) {
+        out[offset] = p;
+        out[offset + 1] = p;
+    }
+
+    /**
+     * Box of one axis of the Hermite segment restricted to [t0, t1], from the Bezier control points of that piece.
+     */
+    private void curve(float[] p, float[] v, int k, double t0, double t1, double[] out, int offset) {
+        double p0 = p[k];
+        double p1 = p[k + 1];
+        double m0 = v[k] * knotSeconds;
+        double m1 = v[k + 1] * knotSeconds;
+
+        double a = hermite(p0, m0, p1, m1, t0);
+        double b = hermite(p0, m0, p1, m1, t1);
+        double third = (t1 - t0) / 3;
+        double c0 = a + third * derivative(p0, m0, p1, m1, t0);
+        double c1 = b - third * derivative(p0, m0, p1, m1, t1);
+        out[offset] = Math.min(Math.min(a, b), Math.min(c0, c1));
+        out[offset + 1] = Math.max(Math.max(a, b), Math.max(c0, c1));
+    }
+
+    private static double hermite(double p0, double m0, double p1, double m1, double t) {
+        double t2 = t * t;
+        double t3 = t2 * t;
+        return (2 * t3 - 3 * t2 + 1) * p0 + (t3 - 2 * t2 + t) * m0 + (-2 * t3 + 3 * t2) * p1 + (t3 - t2) * m1;
+    }
+
+    private static double derivative(double p0, double m0, double p1, double m1, double t) {
+        double t2 = t * t;
+        return (6 * t2 - 6 * t) * p0 + (3 * t2 - 4 * t + 1) * m0 + (-6 * t2 + 6 * t) * p1 + (3 * t2 - 2 * t) * m1;
+    }
+
+    private static double boxGapSq(double[] a, int oa, double[] b, int ob) {
+        double sum = 0;
+        for (int axis = 0; axis < 6; axis += 2) {
+            double gap = Math.max(0, Math.max(a[oa + axis], b[ob + axis]) - Math.min(a[oa + axis + 1], b[ob + axis + 1]));
+            sum += gap * gap;
+        }
+        return sum;
+    }
+
+    /**
+     * Sort key of a box: its min x rounded down to float, as an int that orders like the float, in the high word and
+     * the satellite in the low word. Rounding down keeps the sweep's early exit conservative.
+     */
+    private static long sortKey(double minX, int sat) {
+        int bits = Float.floatToRawIntBits(floorToFloat(minX));
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return (long) bits << 32 | sat;
+    }
+
+    private static float floorToFloat(double value) {
+        float rounded = (float) value;
+        return rounded > value ? Math.nextDown(rounded) : rounded;
+    }
+
+    long candidatePairs() {
+        return candidatePairs.sum();
+    }
+
+    long candidatePairSteps() {
+        return candidatePairSteps.sum();
+    }
+
+    long checkedPairSteps() {
+        return checkedPairSteps.sum();
+    }
+
+    private static final class Scratch {
+        double[] boxes = new double[0];
+        long[] sorted = new long[0];
+        float[] keys = new float[0];
+        int[] order = new int[0];
+        // Sub-range boxes of both satellites, one row per depth so recursion does not clobber them
+        double[][] levels = new double[0][];
+
+        void ensure(int n) {
+            if (order.length < n) {
+                boxes = new double[n * 6];
+                sorted = new long[n];
+                keys = new float[n];
+                order = new int[n];
+            }
+        }
+
+        double[] level(int depth) {
+            if (depth >= levels.length) {
+                levels = Arrays.copyOf(levels, depth + 1);
+                for (int d = 0; d < levels.length; d++) {
+                    if (levels[d] == null) levels[d] = new double[12];
+                }
+            }
+            return levels[depth];
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import org.orekit.propagation.analytical.tle.SGP4;
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+import org.orekit.time.AbsoluteDate;
+
+/**
+ * Near-Earth SGP4 for many satellites at once, for knot generation. The same equations as Orekit's {@link SGP4}
+ * (Spacetrack Report #3 with its Dundee and Kepler solver changes, WGS-72 constants, TEME output), with the per-satellite
+ * initialization held in parallel arrays and a time grid of plain minutes, so propagation allocates nothing.
+ * <p>
+ * Deep-space satellites (period of 225 minutes or more) are not covered, {@link #covers(int)} is false for them and
+ * they stay on Orekit's SDP4. Orekit also remains the propagator for refinement.
+ */
+final class Sgp4Batch {
+
+    private static final double TWO_PI = 2 * Math.PI;
+    private static final double TWO_THIRD = 2.0 / 3.0;
+    private static final double EARTH_RADIUS_KM = 6378.135;
+    private static final double XKE = 0.07436691613317341;
+    private static final double CK2 = 5.41308E-4;
+    private static final double CK4 = 6.209887499999999E-7;
+    private static final double S = 1.0122292801892716;
+    private static final double QOMS2T = 1.8802791590152705E-9;
+    private static final double A3OVK2 = 0.004690139440023056;
+    private static final double KEPLER_EPSILON = 1e-12;
+    private static final int KEPLER_ITERATIONS = 10;
+    // Reuse to reduce hot path allocations
+    private static final ThreadLocal<double[]> PV_BUFFER = ThreadLocal.withInitial(() -> new double[6]);
+
+    private final boolean[] covered;
+    // Minutes from each satellite's TLE epoch to the window start
+    private final double[] startMinutes;
+
+    // Mean elements at epoch
+    private final double[] e0;
+    private final double[] i0;
+    private final double[] raan0;
+    private final double[] omega0;
+    private final double[] m0;
+    private final double[] bStar;
+
+    // Initialization, as in Orekit's TLEPropagator and SGP4
+    private final double[] a0dp;
+    private final double[] xn0dp;
+    private final double[] cosi0;
+    private final double[] sini0;
+    private final double[] xmdot;
+    private final double[] omgdot;
+    private final double[] xnodot;
+    private final double[] xnodcf;
+    private final double[] eta;
+    private final double[] c1;
+    private final double[] c4;
+    private final double[] c5;
+    private final double[] t2cof;
+    private final boolean[] lessThan220;
+    private final double[] delM0;
+    private final double[] d2;
+    private final double[] d3;
+    private final double[] d4;
+    private final double[] t3cof;
+    private final double[] t4cof;
+    private final double[] t5cof;
+    private final double[] sinM0;
+    private final double[] omgcof;
+    private final double[] xmcof;
+    private final double[] xlcof;
+    private final double[] aycof;
+
+    private Sgp4Batch(int n) {
+        covered = new boolean[n];
+        startMinutes = new double[n];
+        e0 = new double[n];
+        i0 = new double[n];
+        raan0 = new double[n];
+        omega0 = new double[n];
+        m0 = new double[n];
+        bStar = new double[n];
+        a0dp = new double[n];
+        xn0dp = new double[n];
+        cosi0 = new double[n];
+        sini0 = new double[n];
+        xmdot = new double[n];
+        omgdot = new double[n];
+        xnodot = new double[n];
+        xnodcf = new double[n];
+        eta = new double[n];
+        c1 = new double[n];
+        c4 = new double[n];
+        c5 = new double[n];
+        t2cof = new double[n];
+        lessThan220 = new boolean[n];
+        delM0 = new double[n];
+        d2 = new double[n];
+        d3 = new double[n];
+        d4 = new double[n];
+        t3cof = new double[n];
+        t4cof = new double[n];
+        t5cof = new double[n];
+        sinM0 = new double[n];
+        omgcof = new double[n];
+        xmcof = new double[n];
+        xlcof = new double[n];
+        aycof = new double[n];
+    }
+
+    /**
+     * Initialize every near-Earth satellite of {@code propagators}, with time measured from {@code start}.
+     */
+    static Sgp4Batch of(TLEPropagator[] propagators, AbsoluteDate start) {
+        Sgp4Batch batch = new Sgp4Batch(propagators.length);
+        for (int s = 0; s < propagators.length; s++) {
+            // Orekit picks SGP4 or SDP4 from the period, follow its choice
+            if (!(propagators[s] instanceof SGP4)) continue;
+            TLE tle = propagators[s].getTLE();
+            batch.covered[s] = true;
+            batch.startMinutes[s] = start.durationFrom(tle.getDate()) / 60.0;
+            batch.initialize(s, tle);
+        }
+        return batch;
+    }
+
+    boolean covers(int s) {
+        return covered[s];
+    }
+
+    private void initialize(int s, TLE tle) {
+        double e = tle.getE();
+        double i = tle.getI();
+        double meanMotion = tle.getMeanMotion() * 60.0; // rad/min
+        e0[s] = e;
+        i0[s] = i;
+        raan0[s] = tle.getRaan();
+        omega0[s] = tle.getPerigeeArgument();
+        m0[s] = tle.getMeanAnomaly();
+        bStar[s] = tle.getBStar();
+
+        // Recover original mean motion and semi-major axis from the Kozai elements
+        double a1 = Math.pow(XKE / meanMotion, TWO_THIRD);
+        cosi0[s] = Math.cos(i);
+        double theta2 = cosi0[s] * cosi0[s];
+        double x3thm1 = 3.0 * theta2 - 1.0;
+        double e0sq = e * e;
+        double beta02 = 1.0 - e0sq;
+        double beta0 = Math.sqrt(beta02);
+        double tval = CK2 * 1.5 * x3thm1 / (beta0 * beta02);
+        double delta1 = tval / (a1 * a1);
+        double a0 = a1 * (1.0 - delta1 * (1.0 / 3.0 + delta1 * (1.0 + 134.0 / 81.0 * delta1)));
+        double delta0 = tval / (a0 * a0);
+        xn0dp[s] = meanMotion / (delta0 + 1.0);
+        a0dp[s] = a0 / (1.0 - delta0);
+
+        // Atmosphere boundary for low perigees
+        double s4 = S;
+        double q0ms24 = QOMS2T;
+        double perige = (a0dp[s] * (1.0 - e) - 1.0) * EARTH_RADIUS_KM;
+        if (perige < 156.0) {
+            s4 = perige <= 98.0 ? 20.0 : perige - 78.0;
+            double tempVal = (120.0 - s4) / EARTH_RADIUS_KM;
+            double tempValSquared = tempVal * tempVal;
+            q0ms24 = tempValSquared * tempValSquared;
+            s4 = s4 / EARTH_RADIUS_KM + 1.0;
+        }
+
+        double pinv = 1.0 / (a0dp[s] * beta02);
+        double pinvsq = pinv * pinv;
+        double tsi = 1.0 / (a0dp[s] - s4);
+        eta[s] = a0dp[s] * e * tsi;
+        double etasq = eta[s] * eta[s];
+        double eeta = e * eta[s];
+        double psisq = Math.abs(1.0 - etasq);
+        double tsiSquared = tsi * tsi;
+        double coef = q0ms24 * tsiSquared * tsiSquared;
+        double coef1 = coef / Math.pow(psisq, 3.5);
+
+        double c2 = coef1 * xn0dp[s] * (a0dp[s] * (1.0 + 1.5 * etasq + eeta * (4.0 + etasq))
+                + 0.75 * CK2 * tsi / psisq * x3thm1 * (8.0 + 3.0 * etasq * (8.0 + etasq)));
+        c1[s] = bStar[s] * c2;
+        sini0[s] = Math.sin(i);
+        double x1mth2 = 1.0 - theta2;
+
+        c4[s] = 2.0 * xn0dp[s] * coef1 * a0dp[s] * beta02 * (eta[s] * (2.0 + 0.5 * etasq)
+                + e * (0.5 + 2.0 * etasq)
+                - 2.0 * CK2 * tsi / (a0dp[s] * psisq)
+                * (-3.0 * x3thm1 * (1.0 - 2.0 * eeta + etasq * (1.5 - 0.5 * eeta))
+                + 0.75 * x1mth2 * (2.0 * etasq - eeta * (1.0 + etasq)) * Math.cos(2.0 * omega0[s])));
+
+        double theta4 = theta2 * theta2;
+        double temp1 = 3.0 * CK2 * pinvsq * xn0dp[s];
+        double temp2 = temp1 * CK2 * pinvsq;
+        double temp3 = 1.25 * CK4 * pinvsq * pinvsq * xn0dp[s];
+        xmdot[s] = xn0dp[s] + 0.5 * temp1 * beta0 * x3thm1
+                + 0.0625 * temp2 * beta0 * (13.0 - 78.0 * theta2 + 137.0 * theta4);
+        double x1m5th = 1.0 - 5.0 * theta2;
+        omgdot[s] = -0.5 * temp1 * x1m5th + 0.0625 * temp2 * (7.0 - 114.0 * theta2 + 395.0 * theta4)
+                + temp3 * (3.0 - 36.0 * theta2 + 49.0 * theta4);
+        double xhdot1 = -temp1 * cosi0[s];
+        xnodot[s] = xhdot1 + (0.5 * temp2 * (4.0 - 19.0 * theta2) + 2.0 * temp3 * (3.0 - 7.0 * theta2)) * cosi0[s];
+        xnodcf[s] = 3.5 * beta02 * xhdot1 * c1[s];
+        t2cof[s] = 1.5 * c1[s];
+
+        // Below 220 km perigee the drag terms are truncated
+        lessThan220[s] = perige < 220.0;
+        if (!lessThan220[s]) {
+            double c1sq = c1[s] * c1[s];
+            double delM0Base = 1.0 + eta[s] * Math.cos(m0[s]);
+            delM0[s] = delM0Base * delM0Base * delM0Base;
+            d2[s] = 4.0 * a0dp[s] * tsi * c1sq;
+            double temp = d2[s] * tsi * c1[s] / 3.0;
+            d3[s] = (17.0 * a0dp[s] + s4) * temp;
+            d4[s] = 0.5 * temp * a0dp[s] * tsi * (221.0 * a0dp[s] + 31.0 * s4) * c1[s];
+            t3cof[s] = d2[s] + 2.0 * c1sq;
+            t4cof[s] = 0.25 * (3.0 * d3[s] + c1[s] * (12.0 * d2[s] + 10.0 * c1sq));
+            t5cof[s] = 0.2 * (3.0 * d4[s] + 12.0 * c1[s] * d3[s] + 6.0 * d2[s] * d2[s]
+                    + 15.0 * c1sq * (2.0 * d2[s] + c1sq));
+            sinM0[s] = Math.sin(m0[s]);
+            if (e >= 1e-4) {
+                double c3 = coef * tsi * A3OVK2 * xn0dp[s] * sini0[s] / e;
+                xmcof[s] = -TWO_THIRD * coef * bStar[s] / eeta;
+                omgcof[s] = bStar[s] * c3 * Math.cos(omega0[s]);
+            }
+        }
+        c5[s] = 2.0 * coef1 * a0dp[s] * beta02 * (1.0 + 2.75 * (etasq + eeta) + eeta * etasq);
+
+        // Long period periodics, guarded against the 180 degree inclination singularity
+        double cosi0Plus1 = 1.0 + cosi0[s];
+        if (Math.abs(cosi0Plus1) < 1.5e-12) cosi0Plus1 = 1.5e-12;
+        xlcof[s] = 0.125 * A3OVK2 * sini0[s] * (3.0 + 5.0 * cosi0[s]) / cosi0Plus1;
+        aycof[s] = 0.25 * A3OVK2 * sini0[s];
+    }
+
+    /**
+     * Positions (km) and velocities (km/s) of satellite {@code s} at {@code count} knots {@code knotMinutes} apart from
+     * the window start, written into the knot rows. Stops where Orekit would throw, leaving the rest untouched.
+     */
+    void propagate(int s, double knotMinutes, int count,
+                   float[] x, float[] y, float[] z, float[] vx, float[] vy, float[] vz) {
+        double[] pv = PV_BUFFER.get();
+        for (int k = 0; k < count; k++) {
+            if (!propagate(s, k * knotMinutes, pv)) return;
+            x[k] = (float) pv[0];
+            y[k] = (float) pv[1];
+            z[k] = (float) pv[2];
+            vx[k] = (float) pv[3];
+            vy[k] = (float) pv[4];
+            vz[k] = (float) pv[5];
+        }
+    }
+
+    /**
+     * Position (km) and velocity (km/s) of satellite {@code s} {@code minutes} after the window start into {@code pv},
+     * false where Orekit would throw.
+     */
+    boolean propagate(int s, double minutes, double[] pv) {
+        double tSince = startMinutes[s] + minutes;
+
+        // Secular gravity and atmospheric drag
+        double xmdf = m0[s] + xmdot[s] * tSince;
+        double omgadf = omega0[s] + omgdot[s] * tSince;
+        double xn0ddf = raan0[s] + xnodot[s] * tSince;
+        double omega = omgadf;
+        double xmp = xmdf;
+        double tsq = tSince * tSince;
+        double xnode = xn0ddf + xnodcf[s] * tsq;
+        double tempa = 1.0 - c1[s] * tSince;
+        double tempe = bStar[s] * c4[s] * tSince;
+        double templ = t2cof[s] * tsq;
+        if (!lessThan220[s]) {
+            double delomg = omgcof[s] * tSince;
+            double delmBase = 1.0 + eta[s] * Math.cos(xmdf);
+            double delm = xmcof[s] * (delmBase * delmBase * delmBase - delM0[s]);
+            double temp = delomg + delm;
+            xmp = xmdf + temp;
+            omega = omgadf - temp;
+            double tcube = tsq * tSince;
+            double tfour = tSince * tcube;
+            tempa = tempa - d2[s] * tsq - d3[s] * tcube - d4[s] * tfour;
+            tempe = tempe + bStar[s] * c5[s] * (Math.sin(xmp) - sinM0[s]);
+            templ = templ + t3cof[s] * tcube + tfour * (t4cof[s] + tSince * t5cof[s]);
+        }
+        double a = a0dp[s] * tempa * tempa;
+        double e = Math.max(e0[s] - tempe, 1e-6);
+        double xl = xmp + omega + xnode + xn0dp[s] * templ;
+
+        // Long period periodics
+        double axn = e * Math.cos(omega);
+        double temp = 1.0 / (a * (1.0 - e * e));
+        double xll = temp * xlcof[s] * axn;
+        double aynl = temp * aycof[s];
+        double xlt = xl + xll;
+        double ayn = e * Math.sin(omega) + aynl;
+        double elsq = axn * axn + ayn * ayn;
+        double capu = normalizeAngle(xlt - xnode);
+        if (e > 1 - 1e-6) return false;
+
+        // Kepler's equation, Newton-Raphson with a bounded first step
+        double epw = capu;
+        double ecosE = 0;
+        double esinE = 0;
+        double sinEPW = 0;
+        double cosEPW = 0;
+        for (int j = 0; j < KEPLER_ITERATIONS; j++) {
+            boolean secondOrder = true;
+            sinEPW = Math.sin(epw);
+            cosEPW = Math.cos(epw);
+            ecosE = axn * cosEPW + ayn * sinEPW;
+            esinE = axn * sinEPW - ayn * cosEPW;
+            double f = capu - epw + esinE;
+            if (Math.abs(f) < KEPLER_EPSILON) break;
+            double fdot = 1.0 - ecosE;
+            double deltaEpw = f / fdot;
+            if (j == 0) {
+                double maxStep = 1.25 * Math.abs(e);
+                secondOrder = false;
+                if (deltaEpw > maxStep) deltaEpw = maxStep;
+                else if (deltaEpw < -maxStep) deltaEpw = -maxStep;
+                else secondOrder = true;
+            }
+            if (secondOrder) deltaEpw = f / (fdot + 0.5 * esinE * deltaEpw);
+            epw += deltaEpw;
+        }
+
+        // Short period preliminary quantities
+        temp = 1.0 - elsq;
+        double pl = a * temp;
+        double r = a * (1.0 - ecosE);
+        double temp2 = a / r;
+        double betal = Math.sqrt(temp);
+        temp = esinE / (1.0 + betal);
+        double cosu = temp2 * (cosEPW - axn + ayn * temp);
+        double sinu = temp2 * (sinEPW - ayn - axn * temp);
+        double u = Math.atan2(sinu, cosu);
+        double sin2u = 2.0 * sinu * cosu;
+        double cos2u = 2.0 * cosu * cosu - 1.0;
+        double temp1 = CK2 / pl;
+        temp2 = temp1 / pl;
+
+        // Short periodics
+        double cosiSq = cosi0[s] * cosi0[s];
+        double x3thm1 = 3.0 * cosiSq - 1.0;
+        double x1mth2 = 1.0 - cosiSq;
+        double x7thm1 = 7.0 * cosiSq - 1.0;
+        double rk = r * (1.0 - 1.5 * temp2 * betal * x3thm1) + 0.5 * temp1 * x1mth2 * cos2u;
+        double uk = u - 0.25 * temp2 * x7thm1 * sin2u;
+        double xnodek = xnode + 1.5 * temp2 * cosi0[s] * sin2u;
+        double xinck = i0[s] + 1.5 * temp2 * cosi0[s] * sini0[s] * cos2u;
+
+        // Orientation vectors
+        double sinuk = Math.sin(uk);
+        double cosuk = Math.cos(uk);
+        double sinik = Math.sin(xinck);
+        double cosik = Math.cos(xinck);
+        double sinnok = Math.sin(xnodek);
+        double cosnok = Math.cos(xnodek);
+        double xmx = -sinnok * cosik;
+        double xmy = cosnok * cosik;
+        double ux = xmx * sinuk + cosnok * cosuk;
+        double uy = xmy * sinuk + sinnok * cosuk;
+        double uz = sinik * sinuk;
+
+        double rdot = XKE * Math.sqrt(a) * esinE / r;
+        double rfdot = XKE * Math.sqrt(pl) / r;
+        double xn = XKE / (a * Math.sqrt(a));
+        double rdotk = rdot - xn * temp1 * x1mth2 * sin2u;
+        double rfdotk = rfdot + xn * temp1 * (x1mth2 * cos2u + 1.5 * x3thm1);
+        double wx = xmx * cosuk - cosnok * sinuk;
+        double wy = xmy * cosuk - sinnok * sinuk;
+        double wz = sinik * cosuk;
+
+        double cr = rk * EARTH_RADIUS_KM;
+        double cv = EARTH_RADIUS_KM / 60.0;
+        pv[0] = cr * ux;
+        pv[1] = cr * uy;
+        pv[2] = cr * uz;
+        pv[3] = cv * (rdotk * ux + rfdotk * wx);
+        pv[4] = cv * (rdotk * uy + rfdotk * wy);
+        pv[5] = cv * (rdotk * uz + rfdotk * wz);
+        return true;
+    }
+
+    /**
+     * Angle in [0, 2 pi).
+     */
+    private static double normalizeAngle(double angle) {
+        return angle - TWO_PI * Math.floor(angle / TWO_PI);
+    }
+}
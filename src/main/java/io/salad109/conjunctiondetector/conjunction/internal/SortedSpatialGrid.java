@@ -0,0 +1,303 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid built by radix-sorting satellites on a full-width cell key (CSR layout).
+ * Cell coordinates never wrap, so distant cells cannot alias the way they do in {@link SpatialGrid}.
+ */
+public class SortedSpatialGrid {
+
+    // 13 positive neighbor offsets (half of 26 neighbors to avoid duplicate pairs)
+    private static final int[][] HALF_NEIGHBOR_OFFSETS = {
+            {1, 0, 0},    // +x
+            {0, 1, 0},    // +y
+            {0, 0, 1},    // +z
+            {1, 1, 0},    // +x+y
+            {1, 0, 1},    // +x+z
+            {0, 1, 1},    // +y+z
+            {1, 1, 1},    // +x+y+z
+            {1, -1, 0},   // +x-y
+            {1, 0, -1},   // +x-z
+            {0, 1, -1},   // +y-z
+            {1, 1, -1},   // +x+y-z
+            {1, -1, 1},   // +x-y+z
+            {1, -1, -1},  // +x-y-z
+    };
+
+    // 3 * 21 bits fits a non-negative long. Far outliers get clamped into the edge cell (false positives only).
+    private static final int MAX_AXIS_BITS = 21;
+    private static final int MAX_AXIS_SPAN = (1 << MAX_AXIS_BITS) - 3;
+
+    private static final int RADIX_BITS = 11;
+    private static final int RADIX_SIZE = 1 << RADIX_BITS;
+
+    // Reuse to reduce hot path allocations
+    private static final ThreadLocal<Buffers> BUFFER_POOL = ThreadLocal.withInitial(Buffers::new);
+
+    private final Buffers buffers;
+    private final long[] neighborDeltas = new long[HALF_NEIGHBOR_OFFSETS.length];
+    private final int cellCount;
+
+    public SortedSpatialGrid(double cellSizeKm, float[][] x, float[][] y, float[][] z, int step) {
+        this(cellSizeKm, new PropagationService.PositionCache(null, null, null, x, y, z), step);
+    }
+
+    public SortedSpatialGrid(double cellSizeKm, PositionSource positions, int step) {
+        int numSatellites = positions.numSatellites();
+        Buffers b = BUFFER_POOL.get();
+        b.ensureCapacity(numSatellites);
+        this.buffers = b;
+
+        // Cell coordinates and bounds
+        int count = 0;
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (int satIdx = 0; satIdx < numSatellites; satIdx++) {
+            float px = positions.x(satIdx, step);
+            if (Float.isNaN(px)) continue;
+
+            int cx = (int) Math.floor(px / cellSizeKm);
+            int cy = (int) Math.floor(positions.y(satIdx, step) / cellSizeKm);
+            int cz = (int) Math.floor(positions.z(satIdx, step) / cellSizeKm);
+            b.cx[count] = cx;
+            b.cy[count] = cy;
+            b.cz[count] = cz;
+            b.order[count] = satIdx;
+            minX = Math.min(minX, cx);
+            minY = Math.min(minY, cy);
+            minZ = Math.min(minZ, cz);
+            maxY = Math.max(maxY, cy);
+            maxZ = Math.max(maxZ, cz);
+            count++;
+        }
+
+        if (count == 0) {
+            this.cellCount = 0;
+            return;
+        }
+
+        // Coordinates are biased by +1 so that every neighbor of an occupied cell stays inside its bit field.
+        // X is the top field, so its width only matters for the radix pass count.
+        int bitsY = axisBits((long) maxY - minY);
+        int bitsZ = axisBits((long) maxZ - minZ);
+        int shiftX = bitsY + bitsZ;
+        long maxKey = 0;
+        for (int i = 0; i < count; i++) {
+            long rx = Math.min((long) b.cx[i] - minX, MAX_AXIS_SPAN) + 1;
+            long ry = Math.min((long) b.cy[i] - minY, MAX_AXIS_SPAN) + 1;
+            long rz = Math.min((long) b.cz[i] - minZ, MAX_AXIS_SPAN) + 1;
+            long key = (rx << shiftX) | (ry << bitsZ) | rz;
+            b.keys[i] = key;
+            maxKey = Math.max(maxKey, key);
+        }
+
+        for (int o = 0; o < HALF_NEIGHBOR_OFFSETS.length; o++) {
+            int[] offset = HALF_NEIGHBOR_OFFSETS[o];
+            neighborDeltas[o] = ((long) offset[0] << shiftX) + ((long) offset[1] << bitsZ) + offset[2];
+        }
+
+        radixSort(b, count, 64 - Long.numberOfLeadingZeros(maxKey));
+
+        // Collapse sorted keys into cells
+        int cells = 0;
+        long previous = -1;
+        for (int i = 0; i < count; i++) {
+            long key = b.keys[i];
+            if (key != previous) {
+                b.cellKeys[cells] = key;
+                b.cellStart[cells] = i;
+                cells++;
+                previous = key;
+            }
+        }
+        b.cellStart[cells] = count;
+        this.cellCount = cells;
+    }
+
+    /**
+     * Bits needed for a biased axis coordinate in [0, span + 2].
+     */
+    private static int axisBits(long span) {
+        long clamped = Math.min(span, MAX_AXIS_SPAN);
+        return 64 - Long.numberOfLeadingZeros(clamped + 2);
+    }
+
+    /**
+     * LSD radix sort of keys[0..count) carrying order[] along. Stable, so same-cell satellites stay in index order.
+     */
+    private static void radixSort(Buffers b, int count, int keyBits) {
+        long[] keys = b.keys;
+        int[] order = b.order;
+        long[] keysTmp = b.keysTmp;
+        int[] orderTmp = b.orderTmp;
+        int[] histogram = b.histogram;
+
+        for (int shift = 0; shift < keyBits; shift += RADIX_BITS) {
+            Arrays.fill(histogram, 0);
+            for (int i = 0; i < count; i++) {
+                histogram[(int) ((keys[i] >>> shift) & (RADIX_SIZE - 1)) + 1]++;
+            }
+            for (int d = 1; d <= RADIX_SIZE; d++) {
+                histogram[d] += histogram[d - 1];
+            }
+            for (int i = 0; i < count; i++) {
+                int dest = histogram[(int) ((keys[i] >>> shift) & (RADIX_SIZE - 1))]++;
+                keysTmp[dest] = keys[i];
+                orderTmp[dest] = order[i];
+            }
+
+            long[] swapKeys = keys;
+            keys = keysTmp;
+            keysTmp = swapKeys;
+            int[] swapOrder = order;
+            order = orderTmp;
+            orderTmp = swapOrder;
+        }
+
+        // Odd pass count leaves the result in the scratch arrays
+        b.keys = keys;
+        b.order = order;
+        b.keysTmp = keysTmp;
+        b.orderTmp = orderTmp;
+    }
+
+    /**
+     * Iterate all candidate pairs that could be within tolerance.
+     */
+    public void forEachCandidatePair(SpatialGrid.IntBiConsumer consumer) {
+        int[] order = buffers.order;
+        forEachCellPair((start, end, otherStart, otherEnd) -> {
+            for (int i = start; i < end; i++) {
+                int idxA = order[i];
+                for (int j = otherStart == start ? i + 1 : otherStart; j < otherEnd; j++) {
+                    consumer.accept(idxA, order[j]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Iterate candidate pairs under {@code tolSq} at {@code step}, testing each satellite against a whole neighbor
+     * cell per call with the vector distance kernel. Cells are contiguous in sorted order, so each bucket is a plain
+     * slice of the gathered coordinates. Distances match {@link PositionSource#distanceSquaredAt} exactly.
+     */
+    public void forEachPairWithin(PositionSource positions, int step, double tolSq, PairDistanceConsumer consumer) {
+        Buffers b = buffers;
+        int[] order = b.order;
+        int count = cellCount == 0 ? 0 : b.cellStart[cellCount];
+        for (int i = 0; i < count; i++) {
+            b.sx[i] = positions.x(order[i], step);
+            b.sy[i] = positions.y(order[i], step);
+            b.sz[i] = positions.z(order[i], step);
+        }
+
+        // Inclusive float bound that admits every float distance below the double tolerance
+        float limitSq = (float) tolSq;
+        forEachCellPair((start, end, otherStart, otherEnd) -> {
+            for (int i = start; i < end; i++) {
+                int from = otherStart == start ? i + 1 : otherStart;
+                int hits = VectorKernels.withinDistance(b.sx[i], b.sy[i], b.sz[i], b.sx, b.sy, b.sz,
+                        from, otherEnd, limitSq, b.hitIndex, b.hitDistSq);
+                for (int h = 0; h < hits; h++) {
+                    if (b.hitDistSq[h] < tolSq) {
+                        consumer.accept(order[i], order[b.hitIndex[h]], b.hitDistSq[h]);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Visit every occupied cell with itself and with each of its 13 "half" neighbors, as sorted-order ranges.
+     * Neighbor cells are found by walking one cursor per offset forward through the sorted cell keys.
+     */
+    private void forEachCellPair(CellPairConsumer consumer) {
+        long[] cellKeys = buffers.cellKeys;
+        int[] cellStart = buffers.cellStart;
+        int[] cursors = buffers.cursors;
+        Arrays.fill(cursors, 0);
+
+        for (int cell = 0; cell < cellCount; cell++) {
+            int start = cellStart[cell];
+            int end = cellStart[cell + 1];
+
+            // Same-cell pairs
+            consumer.accept(start, end, start, end);
+
+            // Adjacent-cell pairs, every delta is positive so cursors only move forward
+            long cellKey = cellKeys[cell];
+            for (int o = 0; o < cursors.length; o++) {
+                long target = cellKey + neighborDeltas[o];
+                int cursor = cursors[o];
+                while (cursor < cellCount && cellKeys[cursor] < target) cursor++;
+                cursors[o] = cursor;
+                if (cursor == cellCount || cellKeys[cursor] != target) continue;
+
+                consumer.accept(start, end, cellStart[cursor], cellStart[cursor + 1]);
+            }
+        }
+    }
+
+    /**
+     * Add this step's occupied cells, fullest cell and same-cell pair count to {@code counter}.
+     */
+    void recordOccupancy(OccupancyCounter counter) {
+        int[] cellStart = buffers.cellStart;
+        int maxOccupancy = 0;
+        long sameCellPairs = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            int occupancy = cellStart[cell + 1] - cellStart[cell];
+            maxOccupancy = Math.max(maxOccupancy, occupancy);
+            sameCellPairs += (long) occupancy * (occupancy - 1) / 2;
+        }
+        counter.record(cellCount, maxOccupancy, sameCellPairs);
+    }
+
+    @FunctionalInterface
+    public interface PairDistanceConsumer {
+        void accept(int idxA, int idxB, float distanceSq);
+    }
+
+    @FunctionalInterface
+    private interface CellPairConsumer {
+        void accept(int start, int end, int otherStart, int otherEnd);
+    }
+
+    private static final class Buffers {
+        final int[] histogram = new int[RADIX_SIZE + 1];
+        final int[] cursors = new int[HALF_NEIGHBOR_OFFSETS.length];
+        int[] cx = new int[0];
+        int[] cy = new int[0];
+        int[] cz = new int[0];
+        long[] keys = new long[0];
+        long[] keysTmp = new long[0];
+        int[] order = new int[0];
+        int[] orderTmp = new int[0];
+        long[] cellKeys = new long[0];
+        int[] cellStart = new int[1];
+        float[] sx = new float[0];
+        float[] sy = new float[0];
+        float[] sz = new float[0];
+        int[] hitIndex = new int[0];
+        float[] hitDistSq = new float[0];
+
+        void ensureCapacity(int n) {
+            if (keys.length >= n) return;
+            cx = new int[n];
+            cy = new int[n];
+            cz = new int[n];
+            keys = new long[n];
+            keysTmp = new long[n];
+            order = new int[n];
+            orderTmp = new int[n];
+            cellKeys = new long[n];
+            cellStart = new int[n + 1];
+            sx = new float[n];
+            sy = new float[n];
+            sz = new float[n];
+            hitIndex = new int[n];
+            hitDistSq = new float[n];
+        }
+    }
+}
@@ -34,6 +34,10 @@ public class SpatialGrid {
     private final IntObjectHashMap<IntArrayList> grid;
 
     public SpatialGrid(double cellSizeKm, float[][] x, float[][] y, float[][] z, int step) {
+        this(cellSizeKm, new PropagationService.PositionCache(null, null, null, x, y, z), step);
+    }
+
+    public SpatialGrid(double cellSizeKm, PositionSource positions, int step) {
         this.cellSizeKm = cellSizeKm;
 
         IntObjectHashMap<IntArrayList> map = MAP_POOL.get();
@@ -45,11 +49,12 @@ public class SpatialGrid {
         });
         map.clear();
 
-        int numSatellites = x.length;
+        int numSatellites = positions.numSatellites();
         for (int satIdx = 0; satIdx < numSatellites; satIdx++) {
-            if (Float.isNaN(x[satIdx][step])) continue;
+            float px = positions.x(satIdx, step);
+            if (Float.isNaN(px)) continue;
 
-            int cellKey = cellHash(x[satIdx][step], y[satIdx][step], z[satIdx][step]);
+            int cellKey = cellHash(px, positions.y(satIdx, step), positions.z(satIdx, step));
             IntArrayList bucket = map.get(cellKey);
             if (bucket == null) {
                 bucket = bucketPool.isEmpty() ? new IntArrayList(4) : bucketPool.removeLast();
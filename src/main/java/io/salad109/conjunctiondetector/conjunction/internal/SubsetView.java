@@ -0,0 +1,46 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Some satellites of a position source seen through a dense local index, so a broad phase can run over just them.
+ * Local index i is satellite {@code members[i]} of the base source.
+ */
+record SubsetView(PositionSource base, int[] members) implements PositionSource {
+    @Override
+    public MutableIntIntMap noradIdToArrayId() {
+        return base.noradIdToArrayId();
+    }
+
+    @Override
+    public int[] arrayIdToNoradId() {
+        return base.arrayIdToNoradId();
+    }
+
+    @Override
+    public OffsetDateTime[] times() {
+        return base.times();
+    }
+
+    @Override
+    public int numSatellites() {
+        return members.length;
+    }
+
+    @Override
+    public float x(int sat, int step) {
+        return base.x(members[sat], step);
+    }
+
+    @Override
+    public float y(int sat, int step) {
+        return base.y(members[sat], step);
+    }
+
+    @Override
+    public float z(int sat, int step) {
+        return base.z(members[sat], step);
+    }
+}
@@ -0,0 +1,141 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Sweep and prune on the x axis. Each worker keeps its satellites sorted by x from the previous step and repairs the
+ * order with insertion sort, which is close to O(n) because satellites move little relative to each other per step.
+ * The order is only kept for the step after the one it was sorted at, on the same source. Anything else, a worker's
+ * first step, a new subwindow or a multi-rate subset, starts from a full sort. Pairs whose x intervals overlap are then
+ * checked on y and z, so candidates are exactly the pairs inside the tolerance cube.
+ */
+final class SweepAndPruneBroadPhase implements BroadPhase {
+
+    // Sorted order survives between steps on the same worker, that is the temporal coherence
+    private static final ThreadLocal<State> STATE_POOL = ThreadLocal.withInitial(State::new);
+
+    private final double radiusKm;
+
+    SweepAndPruneBroadPhase(double radiusKm) {
+        this.radiusKm = radiusKm;
+    }
+
+    @Override
+    public void forEachCandidatePair(PositionSource positions, int step, SpatialGrid.IntBiConsumer consumer) {
+        int n = positions.numSatellites();
+        State s = STATE_POOL.get();
+        int[] order;
+        float[] keys;
+        if (s.continues(positions, step, n)) {
+            order = s.order;
+            keys = s.keys;
+            for (int i = 0; i < n; i++) keys[i] = key(positions.x(order[i], step));
+            insertionSort(keys, order, n);
+        } else {
+            s.reset(positions, n);
+            order = s.order;
+            keys = s.keys;
+            fullSort(positions, step, keys, order, s.packed, n);
+        }
+        s.lastStep = step;
+
+        float[] ys = s.ys;
+        float[] zs = s.zs;
+        int valid = 0;
+        while (valid < n && keys[valid] != Float.POSITIVE_INFINITY) {
+            ys[valid] = positions.y(order[valid], step);
+            zs[valid] = positions.z(order[valid], step);
+            valid++;
+        }
+
+        float r = (float) radiusKm;
+        for (int i = 0; i < valid; i++) {
+            float xi = keys[i];
+            float yi = ys[i];
+            float zi = zs[i];
+            for (int j = i + 1; j < valid && keys[j] - xi <= r; j++) {
+                if (Math.abs(ys[j] - yi) <= r && Math.abs(zs[j] - zi) <= r) {
+                    consumer.accept(order[i], order[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalid satellites sort to the end and stop the sweep.
+     */
+    private static float key(float x) {
+        return Float.isNaN(x) ? Float.POSITIVE_INFINITY : x;
+    }
+
+    /**
+     * Sort by x from scratch, as (x bits flipped to sort as a signed int) << 32 | index.
+     */
+    private static void fullSort(PositionSource positions, int step, float[] keys, int[] order, long[] packed, int n) {
+        for (int i = 0; i < n; i++) {
+            packed[i] = (long) sortableBits(key(positions.x(i, step))) << 32 | i;
+        }
+        Arrays.sort(packed, 0, n);
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) packed[i];
+            keys[i] = Float.intBitsToFloat(sortableBits((int) (packed[i] >> 32)));
+        }
+    }
+
+    /**
+     * Float bits reordered to compare as a signed int, its own inverse.
+     */
+    private static int sortableBits(float value) {
+        return sortableBits(Float.floatToRawIntBits(value));
+    }
+
+    private static int sortableBits(int bits) {
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+
+    private static void insertionSort(float[] keys, int[] order, int n) {
+        for (int i = 1; i < n; i++) {
+            float key = keys[i];
+            if (key >= keys[i - 1]) continue;
+            int idx = order[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                order[j + 1] = order[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            order[j + 1] = idx;
+        }
+    }
+
+    private static final class State {
+        int[] order = new int[0];
+        float[] keys = new float[0];
+        float[] ys = new float[0];
+        float[] zs = new float[0];
+        long[] packed = new long[0];
+        // Weak, a finished scan's positions must not stay reachable from the worker
+        WeakReference<PositionSource> source = new WeakReference<>(null);
+        int lastStep;
+
+        /**
+         * Whether the order was sorted on the same source at the previous step. The same step again also counts, that
+         * is a buffer rewritten in place with the next step, like the streaming sweep's.
+         */
+        boolean continues(PositionSource positions, int step, int n) {
+            return source.get() == positions && order.length == n && (step == lastStep || step == lastStep + 1);
+        }
+
+        void reset(PositionSource positions, int n) {
+            source = new WeakReference<>(positions);
+            if (order.length == n) return;
+            order = new int[n];
+            keys = new float[n];
+            ys = new float[n];
+            zs = new float[n];
+            packed = new long[n];
+        }
+    }
+}
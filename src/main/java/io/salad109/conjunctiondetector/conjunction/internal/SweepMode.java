@@ -0,0 +1,21 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+/**
+ * How the coarse sweep gets its positions.
+ */
+public enum SweepMode {
+    /**
+     * Interpolate the whole subwindow into a position cache, then sweep it.
+     */
+    CACHED,
+    /**
+     * Interpolate and sweep one step at a time from the knots, refinement reads the knots directly.
+     * Peak memory is O(satellites x knots) instead of O(satellites x steps).
+     */
+    STREAMING,
+    /**
+     * Intersect bounding boxes of the Hermite segments between knots, then check single steps only for overlapping
+     * pairs inside the sub-intervals where they still overlap. Reads the knots directly like {@link #STREAMING}.
+     */
+    SEGMENT_BOXES
+}
@@ -0,0 +1,40 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+
+/**
+ * Thread-confined copies of the registry propagators, so refinement never locks a shared one. {@link TLEPropagator}
+ * keeps mutable state per call, but its {@link TLE} is immutable and already parsed, and building a propagator from it
+ * is only the SGP4 initialization.
+ * <p>
+ * Each thread keeps a small direct-mapped table by NORAD ID. Objects in many events, like the ISS or a debris cloud,
+ * stay resident on every worker, a colliding satellite is rebuilt in place, and a new element set is picked up because
+ * the copy no longer holds the registry's TLE. Memory is bounded by {@link #SLOTS} per thread.
+ */
+final class ThreadPropagators {
+
+    private static final int SLOTS = 4096; // power of two
+
+    // Per-thread propagator copies indexed by NORAD ID modulo SLOTS, a colliding satellite evicts the one it lands on
+    private static final ThreadLocal<TLEPropagator[]> LOCAL = ThreadLocal.withInitial(() -> new TLEPropagator[SLOTS]);
+
+    private ThreadPropagators() {
+    }
+
+    /**
+     * A propagator for the same element set as {@code shared}, owned by the calling thread.
+     */
+    @SuppressWarnings("ReferenceEquality") // the registry replaces the TLE object with the element set
+    static TLEPropagator of(TLEPropagator shared) {
+        TLE tle = shared.getTLE();
+        TLEPropagator[] slots = LOCAL.get();
+        int slot = tle.getSatelliteNumber() & (SLOTS - 1);
+        TLEPropagator local = slots[slot];
+        if (local == null || local.getTLE() != tle) {
+            local = TLEPropagator.selectExtrapolator(tle);
+            slots[slot] = local;
+        }
+        return local;
+    }
+}
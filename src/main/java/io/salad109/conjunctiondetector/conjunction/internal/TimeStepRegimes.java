@@ -0,0 +1,169 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-satellite step multiples for multi-rate sweeping. Every satellite gets a power-of-two stride from the fastest
+ * relative speed it can have against any partner that reaches its altitude: its own speed plus the partner's, both
+ * bounded by vis-viva at the lowest radius where they can meet. A pass at relative speed v is sampled within
+ * v * stride * step / 2 of its closest approach, so the stride is the largest one that keeps a pass under the
+ * collision threshold inside the distance the broad phase reports every pair at: the tolerance, or a cell size for the
+ * grid.
+ * <p>
+ * A satellite is swept only at steps that are multiples of its stride, so a pair is checked at multiples of the larger
+ * of the two strides. Both strides were sized for the faster partner, so that is never too coarse. LEO stays at stride
+ * 1; slow regimes such as GEO drop out of the odd steps.
+ */
+public final class TimeStepRegimes {
+
+    private static final double MU_KM3_S2 = 398600.4418;
+    private static final double EARTH_RADIUS_KM = 6378.135;
+    // Slack on the TLE perigee/apogee for short-period and drag variation over the window
+    private static final double RADIUS_MARGIN_KM = 50.0;
+
+    private final int[] strides;
+    // Level L: satellites with stride at most 2^L, in index order
+    private final int[][] activeByLevel;
+
+    /**
+     * @param coverageKm distance under which the broad phase reports every pair, at most {@code toleranceKm}
+     * @param maxStride  largest stride any satellite may get, a power of two
+     */
+    public TimeStepRegimes(List<SatelliteScanInfo> satellites, PositionSource positions, double toleranceKm,
+                           double coverageKm, double thresholdKm, double stepSeconds, int maxStride) {
+        int numSatellites = positions.numSatellites();
+        MutableIntIntMap noradIdToArrayId = positions.noradIdToArrayId();
+
+        // Satellites without orbit data stay at stride 1 and may be moving at escape speed anywhere
+        double[] perigeeRadius = new double[numSatellites];
+        double[] apogeeRadius = new double[numSatellites];
+        Arrays.fill(apogeeRadius, Double.POSITIVE_INFINITY);
+        boolean[] known = new boolean[numSatellites];
+        for (SatelliteScanInfo sat : satellites) {
+            if (!noradIdToArrayId.containsKey(sat.noradCatId())) continue;
+            int idx = noradIdToArrayId.get(sat.noradCatId());
+            perigeeRadius[idx] = EARTH_RADIUS_KM + Math.min(sat.perigeeKm(), sat.apogeeKm());
+            apogeeRadius[idx] = EARTH_RADIUS_KM + Math.max(sat.perigeeKm(), sat.apogeeKm());
+            known[idx] = true;
+        }
+        PartnerBound partners = new PartnerBound(perigeeRadius, apogeeRadius);
+
+        double reachKm = Math.sqrt(Math.max(0, coverageKm * coverageKm - thresholdKm * thresholdKm));
+        strides = new int[numSatellites];
+        for (int idx = 0; idx < numSatellites; idx++) {
+            strides[idx] = 1;
+            if (!known[idx]) continue;
+            double meetRadius = Math.max(perigeeRadius[idx] - toleranceKm - RADIUS_MARGIN_KM, EARTH_RADIUS_KM);
+            double semiMajorAxis = (perigeeRadius[idx] + apogeeRadius[idx]) / 2;
+            double relativeSpeed = speed(meetRadius, semiMajorAxis) + speed(meetRadius, partners.at(meetRadius));
+            long stride = (long) (2 * reachKm / (relativeSpeed * stepSeconds));
+            strides[idx] = (int) Long.highestOneBit(Math.clamp(stride, 1, maxStride));
+        }
+
+        int levels = Integer.numberOfTrailingZeros(Integer.highestOneBit(maxStride)) + 1;
+        activeByLevel = new int[levels][];
+        for (int level = 0; level < levels; level++) {
+            IntArrayList active = new IntArrayList();
+            for (int idx = 0; idx < numSatellites; idx++) {
+                if (strides[idx] <= 1 << level) active.add(idx);
+            }
+            activeByLevel[level] = active.toArray();
+        }
+    }
+
+    /**
+     * Vis-viva speed in km/s at {@code radiusKm} on an orbit with the given semi-major axis (infinite for escape).
+     */
+    private static double speed(double radiusKm, double semiMajorAxisKm) {
+        return Math.sqrt(MU_KM3_S2 * (2 / radiusKm - 1 / semiMajorAxisKm));
+    }
+
+    public int stride(int idx) {
+        return strides[idx];
+    }
+
+    /**
+     * Strides by satellite index, for interpolation that skips off-lattice steps.
+     */
+    int[] strides() {
+        return strides;
+    }
+
+    /**
+     * Steps between checks of a pair: the larger of the two strides.
+     */
+    public int pairStride(int a, int b) {
+        return Math.max(strides[a], strides[b]);
+    }
+
+    /**
+     * Event gap of a pair, three of its checks, as {@link ScanService#groupAndReduce(DetectionBuffer)} uses three steps.
+     */
+    public int pairGapSteps(long pairKey) {
+        return 3 * pairStride(DetectionBuffer.firstIndex(pairKey), DetectionBuffer.secondIndex(pairKey));
+    }
+
+    public int maxStride() {
+        return 1 << (activeByLevel.length - 1);
+    }
+
+    /**
+     * Satellites swept at {@code step}: those whose stride divides it.
+     */
+    public int[] activeAt(int step) {
+        int top = activeByLevel.length - 1;
+        int level = step == 0 ? top : Math.min(Integer.numberOfTrailingZeros(step), top);
+        return activeByLevel[level];
+    }
+
+    /**
+     * Satellite count per stride 1, 2, 4, ... up to {@link #maxStride()}.
+     */
+    public int[] countsByStride() {
+        int[] counts = new int[activeByLevel.length];
+        for (int stride : strides) counts[Integer.numberOfTrailingZeros(stride)]++;
+        return counts;
+    }
+
+    /**
+     * Largest semi-major axis among satellites whose apogee reaches a radius, from a suffix maximum over apogees.
+     */
+    private static final class PartnerBound {
+        private final double[] sortedApogees;
+        private final double[] maxSemiMajorAxisFrom;
+
+        PartnerBound(double[] perigeeRadius, double[] apogeeRadius) {
+            int n = apogeeRadius.length;
+            Integer[] byApogee = new Integer[n];
+            for (int i = 0; i < n; i++) byApogee[i] = i;
+            Arrays.sort(byApogee, (a, b) -> Double.compare(apogeeRadius[a], apogeeRadius[b]));
+
+            sortedApogees = new double[n];
+            maxSemiMajorAxisFrom = new double[n + 1];
+            for (int p = n - 1; p >= 0; p--) {
+                int idx = byApogee[p];
+                sortedApogees[p] = apogeeRadius[idx];
+                double semiMajorAxis = (perigeeRadius[idx] + apogeeRadius[idx]) / 2;
+                maxSemiMajorAxisFrom[p] = Math.max(maxSemiMajorAxisFrom[p + 1], semiMajorAxis);
+            }
+        }
+
+        double at(double radiusKm) {
+            double reach = radiusKm - RADIUS_MARGIN_KM;
+            int lo = 0;
+            int hi = sortedApogees.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sortedApogees[mid] < reach) lo = mid + 1;
+                else hi = mid;
+            }
+            // Never empty: the satellite asking reaches its own meeting radius
+            return maxSemiMajorAxisFrom[lo];
+        }
+    }
+}
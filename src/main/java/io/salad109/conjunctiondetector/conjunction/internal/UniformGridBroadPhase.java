@@ -0,0 +1,52 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import java.util.Optional;
+
+/**
+ * The uniform spatial grids as a broad phase. Candidates come from the same and adjacent cells, so coverage is one
+ * cell size: pairs further apart than the cell but still under tolerance can be missed when cells are smaller.
+ * Occupancy is tracked for the sorted grid only.
+ */
+final class UniformGridBroadPhase implements BroadPhase {
+
+    private final GridType gridType;
+    private final double cellSizeKm;
+    private final OccupancyCounter occupancy = new OccupancyCounter();
+
+    UniformGridBroadPhase(GridType gridType, double cellSizeKm) {
+        this.gridType = gridType;
+        this.cellSizeKm = cellSizeKm;
+    }
+
+    @Override
+    public void forEachCandidatePair(PositionSource positions, int step, SpatialGrid.IntBiConsumer consumer) {
+        switch (gridType) {
+            case HASH -> new SpatialGrid(cellSizeKm, positions, step).forEachCandidatePair(consumer);
+            case SORTED -> sortedGrid(positions, step).forEachCandidatePair(consumer);
+        }
+    }
+
+    /**
+     * The vector kernel needs the sorted grid's contiguous cells; with the hash grid it falls back to scalar.
+     */
+    @Override
+    public void forEachPairWithin(PositionSource positions, int step, double tolSq, KernelType kernel,
+                                  SortedSpatialGrid.PairDistanceConsumer consumer) {
+        if (kernel == KernelType.VECTOR && gridType == GridType.SORTED) {
+            sortedGrid(positions, step).forEachPairWithin(positions, step, tolSq, consumer);
+        } else {
+            BroadPhase.super.forEachPairWithin(positions, step, tolSq, kernel, consumer);
+        }
+    }
+
+    @Override
+    public Optional<Occupancy> occupancy() {
+        return gridType == GridType.SORTED ? Optional.of(occupancy.snapshot()) : Optional.empty();
+    }
+
+    private SortedSpatialGrid sortedGrid(PositionSource positions, int step) {
+        SortedSpatialGrid grid = new SortedSpatialGrid(cellSizeKm, positions, step);
+        grid.recordOccupancy(occupancy);
+        return grid;
+    }
+}
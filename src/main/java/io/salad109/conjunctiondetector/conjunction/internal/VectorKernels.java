@@ -0,0 +1,105 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@code jdk.incubator.vector} versions of the Hermite and distance loops. Lanes follow the scalar operation order, so
+ * results are bit-identical to the scalar code. Only touched when {@link KernelType#VECTOR} is selected.
+ */
+final class VectorKernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {
+    }
+
+    /**
+     * Hermite basis {h00, h10, h01, h11} for the interior steps of a segment, index j is step j + 1 after the knot.
+     */
+    static float[][] hermiteBasis(int stride) {
+        int n = stride - 1;
+        float[] h00 = new float[n];
+        float[] h10 = new float[n];
+        float[] h01 = new float[n];
+        float[] h11 = new float[n];
+        for (int j = 0; j < n; j++) {
+            float t = (float) (j + 1) / stride;
+            float t2 = t * t;
+            float t3 = t2 * t;
+            h00[j] = 2 * t3 - 3 * t2 + 1;
+            h10[j] = t3 - 2 * t2 + t;
+            h01[j] = -2 * t3 + 3 * t2;
+            h11[j] = t3 - t2;
+        }
+        return new float[][]{h00, h10, h01, h11};
+    }
+
+    /**
+     * Evaluate one axis of one segment for all interior steps: out[from + j] = H(t_j), many steps per vector op.
+     */
+    static void hermite(float[][] basis, float p0, float v0, float p1, float v1, float dt, float[] out, int from) {
+        float[] h00 = basis[0];
+        float[] h10 = basis[1];
+        float[] h01 = basis[2];
+        float[] h11 = basis[3];
+        int count = h00.length;
+        int bound = SPECIES.loopBound(count);
+
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, h00, j).mul(p0)
+                    .add(FloatVector.fromArray(SPECIES, h10, j).mul(v0).mul(dt))
+                    .add(FloatVector.fromArray(SPECIES, h01, j).mul(p1))
+                    .add(FloatVector.fromArray(SPECIES, h11, j).mul(v1).mul(dt))
+                    .intoArray(out, from + j);
+        }
+        for (; j < count; j++) {
+            out[from + j] = h00[j] * p0 + h10[j] * v0 * dt + h01[j] * p1 + h11[j] * v1 * dt;
+        }
+    }
+
+    /**
+     * Test one point against entries [from, to) of the coordinate arrays. Indices and squared distances of entries
+     * with distance² <= limitSq go to hitIndex/hitDistSq, returns the hit count.
+     */
+    static int withinDistance(float ax, float ay, float az, float[] xs, float[] ys, float[] zs, int from, int to,
+                              float limitSq, int[] hitIndex, float[] hitDistSq) {
+        FloatVector vax = FloatVector.broadcast(SPECIES, ax);
+        FloatVector vay = FloatVector.broadcast(SPECIES, ay);
+        FloatVector vaz = FloatVector.broadcast(SPECIES, az);
+        int bound = from + SPECIES.loopBound(to - from);
+        int hits = 0;
+
+        int j = from;
+        for (; j < bound; j += SPECIES.length()) {
+            FloatVector dx = vax.sub(FloatVector.fromArray(SPECIES, xs, j));
+            FloatVector dy = vay.sub(FloatVector.fromArray(SPECIES, ys, j));
+            FloatVector dz = vaz.sub(FloatVector.fromArray(SPECIES, zs, j));
+            FloatVector distSq = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz));
+            VectorMask<Float> close = distSq.compare(VectorOperators.LE, limitSq);
+            if (!close.anyTrue()) continue;
+            for (int lane = 0; lane < SPECIES.length(); lane++) {
+                if (close.laneIsSet(lane)) {
+                    hitIndex[hits] = j + lane;
+                    hitDistSq[hits] = distSq.lane(lane);
+                    hits++;
+                }
+            }
+        }
+        for (; j < to; j++) {
+            float dx = ax - xs[j];
+            float dy = ay - ys[j];
+            float dz = az - zs[j];
+            float distSq = dx * dx + dy * dy + dz * dz;
+            if (distSq <= limitSq) {
+                hitIndex[hits] = j;
+                hitDistSq[hits] = distSq;
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -1,6 +1,7 @@
 package io.salad109.conjunctiondetector.conjunction.internal.benchmark;
 
 import io.salad109.conjunctiondetector.conjunction.internal.CollisionProbabilityService;
+import io.salad109.conjunctiondetector.conjunction.internal.InterpolationOrder;
 import io.salad109.conjunctiondetector.conjunction.internal.PropagationService;
 import io.salad109.conjunctiondetector.conjunction.internal.ScanService;
 import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
@@ -37,6 +38,8 @@ public class AccuracyBenchmark extends BenchmarkRunner implements CommandLineRun
 
     private static final int[] STEP_RATIO_VALUES = {6, 7, 8, 9, 10, 11, 12, 13, 14, 15};
     private static final int[] STRIDE_VALUES = {1, 5, 10, 15, 20, 25, 30, 35, 40, 45, 50, 55, 60, 65, 70, 75, 80, 85, 90, 95, 100, 105, 110, 115, 120, 125};
+    // Quintic holds recall further out, so its sweep runs past the cubic range
+    private static final int[] QUINTIC_STRIDE_VALUES = {1, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100, 125, 150, 175, 200, 225, 250, 300, 350, 400};
     private static final double[] CELL_RATIO_VALUES = {1, 1.1, 1.2, 1.3, 1.4, 1.45, 1.50, 1.55, 1.60, 1.65, 1.70, 1.75, 1.80, 1.85, 1.90, 1.95, 2, 2.05, 2.10, 2.15, 2.20, 2.25, 2.30};
     private static final double[] TOLERANCE_VALUES = {24, 32, 40, 48, 56, 64, 72, 80, 88, 96, 104, 112, 120, 128, 136, 144, 152, 160};
 
@@ -82,6 +85,21 @@ public class AccuracyBenchmark extends BenchmarkRunner implements CommandLineRun
             writeCsv(results, Paths.get("docs", "2-interpolation-stride", "conjunction_benchmark.csv"));
         }
 
+        log.info("");
+        log.info("Sweeping interpolation stride, quintic Hermite");
+        log.info("Locked: stepRatio={}, cellRatio={}", DEFAULT_STEP_RATIO, DEFAULT_CELL_RATIO);
+        {
+            InterpolationOrder configured = interpolationOrder;
+            interpolationOrder = InterpolationOrder.QUINTIC;
+            List<BenchmarkResult> results = new ArrayList<>();
+            double stepSeconds = TOLERANCE_KM / DEFAULT_STEP_RATIO;
+            for (int stride : QUINTIC_STRIDE_VALUES) {
+                results.addAll(runIterations(satellites, TOLERANCE_KM, DEFAULT_STEP_RATIO, stepSeconds, stride, DEFAULT_CELL_RATIO, ITERATIONS));
+            }
+            writeCsv(results, Paths.get("docs", "2-interpolation-stride", "conjunction_benchmark_quintic.csv"));
+            interpolationOrder = configured;
+        }
+
         log.info("");
         log.info("Sweeping cell ratio");
         log.info("Locked: stepRatio={}, stride={}", DEFAULT_STEP_RATIO, DEFAULT_STRIDE);
@@ -1,15 +1,30 @@
 package io.salad109.conjunctiondetector.conjunction.internal.benchmark;
 
+import io.salad109.conjunctiondetector.conjunction.internal.BroadPhase;
+import io.salad109.conjunctiondetector.conjunction.internal.BroadPhaseType;
 import io.salad109.conjunctiondetector.conjunction.internal.CollisionProbabilityService;
 import io.salad109.conjunctiondetector.conjunction.internal.Conjunction;
+import io.salad109.conjunctiondetector.conjunction.internal.DetectionBuffer;
+import io.salad109.conjunctiondetector.conjunction.internal.GridType;
+import io.salad109.conjunctiondetector.conjunction.internal.InterpolationOrder;
+import io.salad109.conjunctiondetector.conjunction.internal.KernelType;
+import io.salad109.conjunctiondetector.conjunction.internal.KnotPropagator;
+import io.salad109.conjunctiondetector.conjunction.internal.OffHeapPositionCache;
+import io.salad109.conjunctiondetector.conjunction.internal.PositionLayout;
+import io.salad109.conjunctiondetector.conjunction.internal.PositionSource;
+import io.salad109.conjunctiondetector.conjunction.internal.PositionStorage;
 import io.salad109.conjunctiondetector.conjunction.internal.PropagationService;
+import io.salad109.conjunctiondetector.conjunction.internal.QuantizedPositionCache;
+import io.salad109.conjunctiondetector.conjunction.internal.SatelliteOrdering;
+import io.salad109.conjunctiondetector.conjunction.internal.ScanCatalog;
 import io.salad109.conjunctiondetector.conjunction.internal.ScanService;
+import io.salad109.conjunctiondetector.conjunction.internal.SweepMode;
 import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
 import io.salad109.conjunctiondetector.satellite.SatelliteService;
 import org.apache.commons.lang3.time.StopWatch;
-import org.orekit.propagation.analytical.tle.TLEPropagator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -19,7 +34,6 @@ import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public abstract class BenchmarkRunner {
 
@@ -33,6 +47,36 @@ public abstract class BenchmarkRunner {
     protected final ScanService scanService;
     protected final CollisionProbabilityService collisionProbabilityService;
 
+    @Value("${conjunction.grid-type:hash}")
+    protected GridType gridType;
+
+    @Value("${conjunction.broad-phase:grid}")
+    protected BroadPhaseType broadPhaseType;
+
+    @Value("${conjunction.position-layout:satellite-major}")
+    protected PositionLayout positionLayout;
+
+    @Value("${conjunction.position-storage:heap}")
+    protected PositionStorage positionStorage;
+
+    @Value("${conjunction.sweep-mode:cached}")
+    protected SweepMode sweepMode;
+
+    @Value("${conjunction.neighbor-list-steps:1}")
+    protected int neighborListSteps;
+
+    @Value("${conjunction.satellite-ordering:catalog}")
+    protected SatelliteOrdering satelliteOrdering;
+
+    @Value("${conjunction.knot-propagator:orekit}")
+    protected KnotPropagator knotPropagator;
+
+    @Value("${conjunction.kernel:scalar}")
+    protected KernelType kernel;
+
+    @Value("${conjunction.interpolation-order:cubic}")
+    protected InterpolationOrder interpolationOrder;
+
     protected BenchmarkRunner(SatelliteService satelliteService, PropagationService propagationService,
                               ScanService scanService, CollisionProbabilityService collisionProbabilityService) {
         this.satelliteService = satelliteService;
@@ -44,35 +88,67 @@ public abstract class BenchmarkRunner {
     protected BenchmarkResult runBenchmark(List<SatelliteScanInfo> satellites,
                                            double toleranceKm, int stepRatio, double stepSeconds,
                                            int stride, double cellRatio) {
+        return runBenchmark(satellites, toleranceKm, stepRatio, stepSeconds, stride, cellRatio, neighborListSteps);
+    }
+
+    protected BenchmarkResult runBenchmark(List<SatelliteScanInfo> satellites,
+                                           double toleranceKm, int stepRatio, double stepSeconds,
+                                           int stride, double cellRatio, int neighborListSteps) {
         double cellSizeKm = toleranceKm / cellRatio;
+        BroadPhase broadPhase = BroadPhase.create(broadPhaseType, gridType, toleranceKm, cellSizeKm);
+        double sweepToleranceKm = toleranceKm;
         StopWatch total = StopWatch.createStarted();
 
         StopWatch propagator = StopWatch.createStarted();
-        Map<Integer, TLEPropagator> propagators = propagationService.buildPropagators(satellites);
+        ScanCatalog catalog = propagationService.buildCatalog(satellites);
         propagator.stop();
 
         StopWatch propagateSweep = StopWatch.createStarted();
         OffsetDateTime endTime = FIXED_START_TIME.plusHours(LOOKAHEAD_HOURS);
-        PropagationService.KnotCache knots = propagationService.computeKnots(
-                propagators, FIXED_START_TIME, endTime, stepSeconds, stride);
+        PropagationService.KnotCache knots = propagationService.reorder(propagationService.computeKnots(
+                catalog, FIXED_START_TIME, endTime, stepSeconds, stride, knotPropagator), satelliteOrdering);
         propagateSweep.stop();
 
+        // Streaming and segment-box modes fuse interpolation into the sweep, so their interpolation time is reported as zero
         StopWatch interpolation = StopWatch.createStarted();
-        PropagationService.PositionCache positionCache = propagationService.interpolate(knots);
+        PositionSource positionCache;
+        if (sweepMode != SweepMode.CACHED) {
+            positionCache = knots;
+        } else if (positionStorage == PositionStorage.OFF_HEAP) {
+            positionCache = propagationService.interpolateOffHeap(knots, null);
+        } else if (positionStorage == PositionStorage.QUANTIZED) {
+            QuantizedPositionCache quantized = propagationService.interpolateQuantized(knots);
+            sweepToleranceKm += 2 * quantized.maxErrorKm();
+            broadPhase = BroadPhase.create(broadPhaseType, gridType, sweepToleranceKm, cellSizeKm);
+            positionCache = quantized;
+        } else {
+            positionCache = propagationService.interpolate(knots, positionLayout, kernel, interpolationOrder);
+        }
         interpolation.stop();
 
         StopWatch checkPairs = StopWatch.createStarted();
-        List<ScanService.CoarseDetection> detections = scanService.checkPairs(satellites, positionCache, toleranceKm, cellSizeKm);
+        DetectionBuffer detections;
+        if (sweepMode == SweepMode.SEGMENT_BOXES) {
+            detections = scanService.checkPairsBySegmentBoxes(knots, toleranceKm);
+        } else if (sweepMode == SweepMode.STREAMING) {
+            detections = scanService.checkPairsStreaming(knots, toleranceKm, broadPhase, kernel);
+        } else if (neighborListSteps > 1) {
+            detections = scanService.checkPairsNeighborList(
+                    positionCache, sweepToleranceKm, cellSizeKm, gridType, neighborListSteps);
+        } else {
+            detections = scanService.checkPairs(positionCache, sweepToleranceKm, broadPhase, kernel);
+        }
         checkPairs.stop();
 
         StopWatch grouping = StopWatch.createStarted();
-        List<ScanService.CoarseDetection> events = scanService.groupAndReduce(detections);
+        DetectionBuffer events = scanService.groupAndReduce(detections);
         grouping.stop();
 
         StopWatch refine = StopWatch.createStarted();
         List<ScanService.RefinedEvent> refined = scanService.refine(
-                events, positionCache, propagators, stepSeconds, THRESHOLD_KM);
+                events, catalog, positionCache, stepSeconds, THRESHOLD_KM);
         refine.stop();
+        if (positionCache instanceof OffHeapPositionCache offHeap) offHeap.close();
 
         StopWatch probability = StopWatch.createStarted();
         List<Conjunction> conjunctions = refined.parallelStream()
@@ -82,27 +158,55 @@ public abstract class BenchmarkRunner {
 
         total.stop();
 
-        log.info("tol={}km stepRatio={} stride={} cellRatio={} | {}ms | prop={}ms sgp4={}ms interp={}ms check={}ms group={}ms refine={}ms pc={}ms | {} conj",
-                (int) toleranceKm, stepRatio, stride, cellRatio, total.getTime(),
-                propagator.getTime(), propagateSweep.getTime(), interpolation.getTime(),
-                checkPairs.getTime(), grouping.getTime(), refine.getTime(),
-                probability.getTime(), conjunctions.size());
+        double meanIndexGap = meanIndexGap(detections);
+        log.info("tol={}km stepRatio={} stride={} cellRatio={} nlSteps={} kernel={} broadPhase={} ordering={} knots={} order={} storage={} | {}ms | prop={}ms sgp4={}ms interp={}ms check={}ms group={}ms refine={}ms pc={}ms | {} conj, index gap {}",
+                (int) toleranceKm, stepRatio, stride, cellRatio, neighborListSteps, kernel, broadPhaseType,
+                satelliteOrdering, knotPropagator, interpolationOrder, positionStorage,
+                total.getTime(), propagator.getTime(), propagateSweep.getTime(),
+                interpolation.getTime(), checkPairs.getTime(), grouping.getTime(), refine.getTime(),
+                probability.getTime(), conjunctions.size(), Math.round(meanIndexGap));
+        broadPhase.occupancy().ifPresent(o -> log.info(
+                "occupancy: {} cells/step, max {} per cell, {} same-cell pairs/step",
+                Math.round(o.cellsPerStep()), o.maxOccupancy(), Math.round(o.sameCellPairsPerStep())));
 
-        return new BenchmarkResult(toleranceKm, stepRatio, cellRatio, stride,
+        return new BenchmarkResult(toleranceKm, stepRatio, cellRatio, stride, neighborListSteps,
                 detections.size(), events.size(), conjunctions.size(),
                 propagator.getTime(), propagateSweep.getTime(),
                 interpolation.getTime(), checkPairs.getTime(), grouping.getTime(), refine.getTime(),
-                probability.getTime(), total.getTime());
+                probability.getTime(), total.getTime(), meanIndexGap);
+    }
+
+    /**
+     * Mean array index distance between the two satellites of a detection. The sweep reads both satellites' positions,
+     * so this is a proxy for how far apart its memory accesses are; hardware cache misses need perf stat on the run.
+     */
+    private static double meanIndexGap(DetectionBuffer detections) {
+        if (detections.isEmpty()) return 0;
+        long sum = 0;
+        for (int i = 0; i < detections.size(); i++) {
+            long pairKey = detections.pairKey(i);
+            sum += DetectionBuffer.secondIndex(pairKey) - DetectionBuffer.firstIndex(pairKey);
+        }
+        return (double) sum / detections.size();
     }
 
     protected List<BenchmarkResult> runIterations(List<SatelliteScanInfo> satellites,
                                                   double toleranceKm, int stepRatio, double stepSeconds,
                                                   int stride, double cellRatio, int iterations) throws InterruptedException {
+        return runIterations(satellites, toleranceKm, stepRatio, stepSeconds, stride, cellRatio, neighborListSteps,
+                iterations);
+    }
+
+    protected List<BenchmarkResult> runIterations(List<SatelliteScanInfo> satellites,
+                                                  double toleranceKm, int stepRatio, double stepSeconds,
+                                                  int stride, double cellRatio, int neighborListSteps,
+                                                  int iterations) throws InterruptedException {
         List<BenchmarkResult> results = new ArrayList<>();
         for (int i = 0; i < iterations; i++) {
             System.gc();
             Thread.sleep(100);
-            results.add(runBenchmark(satellites, toleranceKm, stepRatio, stepSeconds, stride, cellRatio));
+            results.add(runBenchmark(satellites, toleranceKm, stepRatio, stepSeconds, stride, cellRatio,
+                    neighborListSteps));
         }
         return results;
     }
@@ -123,10 +227,10 @@ public abstract class BenchmarkRunner {
 
     private String buildCsv(List<BenchmarkResult> results) {
         StringBuilder sb = new StringBuilder();
-        sb.append("tolerance_km,step_ratio,cell_ratio,interp_stride,detections,events,conj,propagator_s,sgp4_s,interp_s,check_s,grouping_s,refine_s,probability_s,total_s\n");
+        sb.append("tolerance_km,step_ratio,cell_ratio,interp_stride,neighbor_list_steps,detections,events,conj,propagator_s,sgp4_s,interp_s,check_s,grouping_s,refine_s,probability_s,total_s\n");
         for (BenchmarkResult r : results) {
-            sb.append(String.format("%.0f,%d,%.2f,%d,%d,%d,%d,%.6f,%.6f,%.6f,%.6f,%.6f,%.6f,%.6f,%.6f%n",
-                    r.toleranceKm, r.stepRatio, r.cellRatio, r.stride,
+            sb.append(String.format("%.0f,%d,%.2f,%d,%d,%d,%d,%d,%.6f,%.6f,%.6f,%.6f,%.6f,%.6f,%.6f,%.6f%n",
+                    r.toleranceKm, r.stepRatio, r.cellRatio, r.stride, r.neighborListSteps,
                     r.detections, r.events, r.conjunctions,
                     r.propagatorTime / 1000.0, r.sgp4Time / 1000.0,
                     r.interpTime / 1000.0, r.checkTime / 1000.0,
@@ -136,9 +240,10 @@ public abstract class BenchmarkRunner {
         return sb.toString();
     }
 
-    public record BenchmarkResult(double toleranceKm, int stepRatio, double cellRatio, int stride,
+    public record BenchmarkResult(double toleranceKm, int stepRatio, double cellRatio, int stride, int neighborListSteps,
                                   long detections, int events, int conjunctions,
                                   long propagatorTime, long sgp4Time, long interpTime, long checkTime,
-                                  long groupingTime, long refineTime, long probabilityTime, long totalTime) {
+                                  long groupingTime, long refineTime, long probabilityTime, long totalTime,
+                                  double meanIndexGap) {
     }
 }
@@ -0,0 +1,124 @@
+package io.salad109.conjunctiondetector.conjunction.internal.benchmark;
+
+import io.salad109.conjunctiondetector.conjunction.internal.BroadPhaseType;
+import io.salad109.conjunctiondetector.conjunction.internal.CollisionProbabilityService;
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService;
+import io.salad109.conjunctiondetector.conjunction.internal.SatelliteOrdering;
+import io.salad109.conjunctiondetector.conjunction.internal.ScanService;
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import io.salad109.conjunctiondetector.satellite.SatelliteService;
+import org.jspecify.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Broad phase comparison on evenly thinned subsets of the catalog, to see how each one scales with catalog size, in
+ * catalog and Morton satellite order.
+ * <p>
+ * Linux:
+ * ./mvnw spring-boot:run -Dspring-boot.run.profiles=benchmark-broad-phase -Dspring-boot.run.jvmArguments="-Xmx12g -Xms12g -XX:+AlwaysPreTouch"
+ * Windows:
+ * ./mvnw spring-boot:run "-Dspring-boot.run.profiles=benchmark-broad-phase" "-Dspring-boot.run.jvmArguments=-Xmx12g -Xms12g -XX:+AlwaysPreTouch"
+ */
+@Component
+@Profile("benchmark-broad-phase")
+public class BroadPhaseBenchmark extends BenchmarkRunner implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BroadPhaseBenchmark.class);
+
+    private static final int ITERATIONS = 3;
+    private static final double TOLERANCE_KM = 72.0;
+    private static final int STEP_RATIO = 8;
+    private static final int STRIDE = 50;
+    private static final double CELL_RATIO = 1.5;
+    private static final double[] CATALOG_FRACTIONS = {0.25, 0.5, 0.75, 1.0};
+
+    public BroadPhaseBenchmark(SatelliteService satelliteService, PropagationService propagationService,
+                               ScanService scanService, CollisionProbabilityService collisionProbabilityService) {
+        super(satelliteService, propagationService, scanService, collisionProbabilityService);
+    }
+
+    @Override
+    public void run(String @NonNull ... args) throws InterruptedException {
+        log.info("");
+        log.info("Starting broad phase benchmark");
+        log.info("");
+
+        List<SatelliteScanInfo> catalog = satelliteService.getAllScanInfo();
+        log.info("Loaded {} satellites", catalog.size());
+        log.info("Locked: tol={}km, stepRatio={}, stride={}, cellRatio={}, grid={}",
+                TOLERANCE_KM, STEP_RATIO, STRIDE, CELL_RATIO, gridType);
+        double stepSeconds = TOLERANCE_KM / STEP_RATIO;
+
+        List<Row> rows = new ArrayList<>();
+        for (double fraction : CATALOG_FRACTIONS) {
+            List<SatelliteScanInfo> satellites = thin(catalog, fraction);
+            log.info("");
+            log.info("Catalog fraction {} ({} satellites)", fraction, satellites.size());
+            for (BroadPhaseType type : BroadPhaseType.values()) {
+                broadPhaseType = type;
+                for (SatelliteOrdering ordering : SatelliteOrdering.values()) {
+                    satelliteOrdering = ordering;
+                    for (BenchmarkResult result : runIterations(satellites, TOLERANCE_KM, STEP_RATIO, stepSeconds,
+                            STRIDE, CELL_RATIO, 1, ITERATIONS)) {
+                        rows.add(new Row(type, ordering, satellites.size(), result));
+                    }
+                }
+            }
+        }
+        writeBroadPhaseCsv(rows, Paths.get("docs", "10-broad-phase", "broad_phase_benchmark.csv"));
+
+        log.info("Benchmark complete");
+        System.exit(0);
+    }
+
+    /**
+     * Every satellite whose running count crosses the next multiple of 1/fraction, spread evenly over the catalog.
+     */
+    private static List<SatelliteScanInfo> thin(List<SatelliteScanInfo> catalog, double fraction) {
+        List<SatelliteScanInfo> subset = new ArrayList<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            if ((int) ((i + 1) * fraction) > (int) (i * fraction)) subset.add(catalog.get(i));
+        }
+        return subset;
+    }
+
+    private void writeBroadPhaseCsv(List<Row> rows, Path outputPath) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("broad_phase,ordering,satellites,detections,events,conj,mean_index_gap,interp_s,check_s,grouping_s,refine_s,total_s\n");
+        for (Row row : rows) {
+            BenchmarkResult r = row.result;
+            sb.append(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%.1f,%.6f,%.6f,%.6f,%.6f,%.6f%n",
+                    row.type.name().toLowerCase(Locale.ROOT).replace('_', '-'),
+                    row.ordering.name().toLowerCase(Locale.ROOT), row.satellites,
+                    r.detections(), r.events(), r.conjunctions(), r.meanIndexGap(),
+                    r.interpTime() / 1000.0, r.checkTime() / 1000.0, r.groupingTime() / 1000.0,
+                    r.refineTime() / 1000.0, r.totalTime() / 1000.0));
+        }
+        try {
+            Path parent = outputPath.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            Files.writeString(outputPath, sb.toString(), StandardCharsets.UTF_8);
+            log.info("CSV written to: {}", outputPath.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("Failed to write CSV to {}: {}", outputPath, e.getMessage());
+            log.error("Dumping results to log:");
+            log.error(sb.toString());
+        }
+    }
+
+    private record Row(BroadPhaseType type, SatelliteOrdering ordering, int satellites, BenchmarkResult result) {
+    }
+}
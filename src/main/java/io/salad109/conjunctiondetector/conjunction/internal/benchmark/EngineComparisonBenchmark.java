@@ -0,0 +1,169 @@
+package io.salad109.conjunctiondetector.conjunction.internal.benchmark;
+
+import io.salad109.conjunctiondetector.conjunction.internal.CollisionProbabilityService;
+import io.salad109.conjunctiondetector.conjunction.internal.DetectionBuffer;
+import io.salad109.conjunctiondetector.conjunction.internal.FilterChainService;
+import io.salad109.conjunctiondetector.conjunction.internal.PositionSource;
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService;
+import io.salad109.conjunctiondetector.conjunction.internal.ScanCatalog;
+import io.salad109.conjunctiondetector.conjunction.internal.ScanService;
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import io.salad109.conjunctiondetector.satellite.SatelliteService;
+import org.apache.commons.lang3.time.StopWatch;
+import org.jspecify.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Grid sweep vs filter chain on the same catalog and window: timings, filter funnel, and event agreement.
+ * <p>
+ * Linux:
+ * ./mvnw spring-boot:run -Dspring-boot.run.profiles=benchmark-engine -Dspring-boot.run.jvmArguments="-Xmx12g -Xms12g -XX:+AlwaysPreTouch"
+ * Windows:
+ * ./mvnw spring-boot:run "-Dspring-boot.run.profiles=benchmark-engine" "-Dspring-boot.run.jvmArguments=-Xmx12g -Xms12g -XX:+AlwaysPreTouch"
+ */
+@Component
+@Profile("benchmark-engine")
+public class EngineComparisonBenchmark extends BenchmarkRunner implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(EngineComparisonBenchmark.class);
+
+    private static final int ITERATIONS = 3;
+    private static final double TOLERANCE_KM = 72.0;
+    private static final int STEP_RATIO = 8;
+    private static final int STRIDE = 50;
+    private static final double CELL_RATIO = 1.5;
+    private static final double[] MARGIN_VALUES = {5, 10, 25, 50};
+    // Events of the same pair closer than this are the same event
+    private static final long MATCH_SECONDS = 60;
+    private static final Path OUTPUT_DIR = Paths.get("docs", "9-screening-engine");
+
+    private final FilterChainService filterChainService;
+
+    public EngineComparisonBenchmark(SatelliteService satelliteService, PropagationService propagationService,
+                                     ScanService scanService, CollisionProbabilityService collisionProbabilityService,
+                                     FilterChainService filterChainService) {
+        super(satelliteService, propagationService, scanService, collisionProbabilityService);
+        this.filterChainService = filterChainService;
+    }
+
+    @Override
+    public void run(String @NonNull ... args) throws InterruptedException {
+        log.info("");
+        log.info("Starting screening engine comparison");
+        log.info("");
+
+        List<SatelliteScanInfo> satellites = satelliteService.getAllScanInfo();
+        log.info("Loaded {} satellites", satellites.size());
+        double stepSeconds = TOLERANCE_KM / STEP_RATIO;
+        OffsetDateTime endTime = FIXED_START_TIME.plusHours(LOOKAHEAD_HOURS);
+
+        log.info("");
+        log.info("Grid engine");
+        writeCsv(runIterations(satellites, TOLERANCE_KM, STEP_RATIO, stepSeconds, STRIDE, CELL_RATIO, ITERATIONS),
+                OUTPUT_DIR.resolve("grid_benchmark.csv"));
+
+        ScanCatalog catalog = propagationService.buildCatalog(satellites);
+        List<ScanService.RefinedEvent> gridEvents = gridEvents(catalog, stepSeconds, endTime);
+
+        log.info("");
+        log.info("Filter chain engine");
+        List<FilterChainRow> rows = new ArrayList<>();
+        for (double marginKm : MARGIN_VALUES) {
+            for (int i = 0; i < ITERATIONS; i++) {
+                System.gc();
+                Thread.sleep(100);
+
+                StopWatch total = StopWatch.createStarted();
+                FilterChainService.ScreeningResult result = filterChainService.screen(catalog,
+                        FIXED_START_TIME, endTime, stepSeconds, TOLERANCE_KM, THRESHOLD_KM, marginKm);
+                total.stop();
+
+                int matched = countMatched(result.refined(), gridEvents);
+                log.info("margin={}km | {}ms | pairs={} apogee/perigee={} path/time={} windows={} samples={} | {} conj, {}/{} grid events matched",
+                        marginKm, total.getTime(), result.totalPairs(), result.apogeePerigeePairs(),
+                        result.pathTimePairs(), result.windows(), result.samples(), result.refined().size(),
+                        matched, gridEvents.size());
+                rows.add(new FilterChainRow(marginKm, result, matched, gridEvents.size(), total.getTime()));
+            }
+        }
+        writeFilterChainCsv(rows, OUTPUT_DIR.resolve("filter_chain_benchmark.csv"));
+
+        log.info("Benchmark complete");
+        System.exit(0);
+    }
+
+    private List<ScanService.RefinedEvent> gridEvents(ScanCatalog catalog, double stepSeconds,
+                                                      OffsetDateTime endTime) {
+        PropagationService.KnotCache knots = propagationService.computeKnots(
+                catalog, FIXED_START_TIME, endTime, stepSeconds, STRIDE);
+        PositionSource cache = propagationService.interpolate(knots, positionLayout, kernel);
+        DetectionBuffer detections = scanService.checkPairs(cache, TOLERANCE_KM, TOLERANCE_KM / CELL_RATIO,
+                gridType, kernel);
+        return scanService.refine(scanService.groupAndReduce(detections), catalog, cache, stepSeconds,
+                THRESHOLD_KM);
+    }
+
+    /**
+     * Grid events that the filter chain also reported, same pair with TCA within {@link #MATCH_SECONDS}.
+     */
+    private static int countMatched(List<ScanService.RefinedEvent> found, List<ScanService.RefinedEvent> reference) {
+        Map<Long, List<OffsetDateTime>> tcasByPair = new HashMap<>();
+        for (ScanService.RefinedEvent e : found) {
+            tcasByPair.computeIfAbsent(pairKey(e), k -> new ArrayList<>()).add(e.tca());
+        }
+        int matched = 0;
+        for (ScanService.RefinedEvent e : reference) {
+            List<OffsetDateTime> tcas = tcasByPair.getOrDefault(pairKey(e), List.of());
+            if (tcas.stream().anyMatch(t -> Math.abs(Duration.between(t, e.tca()).toSeconds()) <= MATCH_SECONDS)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static long pairKey(ScanService.RefinedEvent e) {
+        return DetectionBuffer.pairKey(e.pair().a().noradCatId(), e.pair().b().noradCatId());
+    }
+
+    private void writeFilterChainCsv(List<FilterChainRow> rows, Path outputPath) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("margin_km,total_pairs,apogee_perigee_pairs,path_time_pairs,windows,samples,conj,grid_events,matched,total_s\n");
+        for (FilterChainRow r : rows) {
+            sb.append(String.format(Locale.ROOT, "%.0f,%d,%d,%d,%d,%d,%d,%d,%d,%.6f%n",
+                    r.marginKm, r.result.totalPairs(), r.result.apogeePerigeePairs(), r.result.pathTimePairs(),
+                    r.result.windows(), r.result.samples(), r.result.refined().size(),
+                    r.gridEvents, r.matched, r.totalTime / 1000.0));
+        }
+        try {
+            Path parent = outputPath.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            Files.writeString(outputPath, sb.toString(), StandardCharsets.UTF_8);
+            log.info("CSV written to: {}", outputPath.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("Failed to write CSV to {}: {}", outputPath, e.getMessage());
+            log.error("Dumping results to log:");
+            log.error(sb.toString());
+        }
+    }
+
+    private record FilterChainRow(double marginKm, FilterChainService.ScreeningResult result, int matched,
+                                  int gridEvents, long totalTime) {
+    }
+}
@@ -1,6 +1,8 @@
 package io.salad109.conjunctiondetector.conjunction.internal.benchmark;
 
 import io.salad109.conjunctiondetector.conjunction.internal.CollisionProbabilityService;
+import io.salad109.conjunctiondetector.conjunction.internal.PositionLayout;
+import io.salad109.conjunctiondetector.conjunction.internal.PositionStorage;
 import io.salad109.conjunctiondetector.conjunction.internal.PropagationService;
 import io.salad109.conjunctiondetector.conjunction.internal.ScanService;
 import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
@@ -12,9 +14,11 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
+import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Linux:
@@ -52,18 +56,46 @@ public class GcBenchmark extends BenchmarkRunner implements CommandLineRunner {
         log.info("Locked: tolerance={} km, stepRatio={}, stride={}, cellRatio={}",
                 TOLERANCE_KM, STEP_RATIO, INTERPOLATION_STRIDE, CELL_RATIO);
 
-        double stepSeconds = TOLERANCE_KM / STEP_RATIO;
-        List<BenchmarkResult> results = runIterations(satellites, TOLERANCE_KM,
-                STEP_RATIO, stepSeconds, INTERPOLATION_STRIDE, CELL_RATIO, ITERATIONS);
-
         String gcName = ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
                 .filter(arg -> arg.startsWith("-XX:+Use") && arg.endsWith("GC"))
                 .map(arg -> arg.substring("-XX:+Use".length(), arg.length() - "GC".length()))
                 .findFirst()
                 .orElse("Unknown");
-        writeCsv(results, Paths.get("docs", "6-gc", "gc_benchmark_" + gcName + ".csv"));
+
+        // Same runs with each position cache storage, step-major throughout
+        double stepSeconds = TOLERANCE_KM / STEP_RATIO;
+        PositionLayout configuredLayout = positionLayout;
+        PositionStorage configuredStorage = positionStorage;
+        positionLayout = PositionLayout.STEP_MAJOR;
+        for (PositionStorage storage : PositionStorage.values()) {
+            positionStorage = storage;
+            long gcCount = gcCount();
+            long gcMillis = gcMillis();
+            List<BenchmarkResult> results = runIterations(satellites, TOLERANCE_KM,
+                    STEP_RATIO, stepSeconds, INTERPOLATION_STRIDE, CELL_RATIO, ITERATIONS);
+            String name = storage.name().toLowerCase(Locale.ROOT).replace('_', '-');
+            log.info("{} positions: {} collections, {}ms in GC over {} iterations",
+                    name, gcCount() - gcCount, gcMillis() - gcMillis, ITERATIONS);
+
+            String suffix = storage == PositionStorage.HEAP ? "" : "-" + name;
+            writeCsv(results, Paths.get("docs", "6-gc", "gc_benchmark_" + gcName + suffix + ".csv"));
+        }
+        positionLayout = configuredLayout;
+        positionStorage = configuredStorage;
 
         log.info("GC benchmark complete");
         System.exit(0);
     }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .sum();
+    }
 }
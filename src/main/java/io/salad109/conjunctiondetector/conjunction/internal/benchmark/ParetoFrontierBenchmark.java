@@ -1,6 +1,7 @@
 package io.salad109.conjunctiondetector.conjunction.internal.benchmark;
 
 import io.salad109.conjunctiondetector.conjunction.internal.CollisionProbabilityService;
+import io.salad109.conjunctiondetector.conjunction.internal.InterpolationOrder;
 import io.salad109.conjunctiondetector.conjunction.internal.PropagationService;
 import io.salad109.conjunctiondetector.conjunction.internal.ScanService;
 import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
@@ -16,6 +17,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.function.ToIntFunction;
 import java.util.function.ToLongFunction;
 
@@ -39,12 +41,16 @@ public class ParetoFrontierBenchmark extends BenchmarkRunner implements CommandL
     private static final int START_STEP_RATIO = 9;
     private static final int START_STRIDE = 5;
     private static final double START_CELL_RATIO = 1.0;
+    private static final int START_NEIGHBOR_LIST_STEPS = 1;
 
     // Step sizes
     private static final int STEP_RATIO_DELTA = 1;
     private static final int STRIDE_DELTA = 5;
     private static final double CELL_RATIO_DELTA = 0.1;
 
+    // Neighbor-list rebuild intervals, doubled until accuracy or time stop improving
+    private static final int MAX_NEIGHBOR_LIST_STEPS = 8;
+
     public ParetoFrontierBenchmark(SatelliteService satelliteService, PropagationService propagationService,
                                    ScanService scanService, CollisionProbabilityService collisionProbabilityService) {
         super(satelliteService, propagationService, scanService, collisionProbabilityService);
@@ -71,7 +77,7 @@ public class ParetoFrontierBenchmark extends BenchmarkRunner implements CommandL
     private static BenchmarkResult medianResults(List<BenchmarkResult> results) {
         BenchmarkResult first = results.getFirst();
         return new BenchmarkResult(
-                first.toleranceKm(), first.stepRatio(), first.cellRatio(), first.stride(),
+                first.toleranceKm(), first.stepRatio(), first.cellRatio(), first.stride(), first.neighborListSteps(),
                 medianLong(results, BenchmarkResult::detections),
                 medianInt(results, BenchmarkResult::events),
                 medianInt(results, BenchmarkResult::conjunctions),
@@ -82,7 +88,8 @@ public class ParetoFrontierBenchmark extends BenchmarkRunner implements CommandL
                 medianLong(results, BenchmarkResult::groupingTime),
                 medianLong(results, BenchmarkResult::refineTime),
                 medianLong(results, BenchmarkResult::probabilityTime),
-                medianLong(results, BenchmarkResult::totalTime));
+                medianLong(results, BenchmarkResult::totalTime),
+                first.meanIndexGap());
     }
 
     @Override
@@ -96,20 +103,47 @@ public class ParetoFrontierBenchmark extends BenchmarkRunner implements CommandL
         log.info("Loaded {} satellites", satellites.size());
         log.info("Using fixed start time: {}", FIXED_START_TIME);
 
+        // Ground truth and the first search are cubic, the quintic search is measured against the same ground truth
+        interpolationOrder = InterpolationOrder.CUBIC;
         log.info("Warmup...");
         runBenchmark(satellites, TOLERANCE_KM,
-                START_STEP_RATIO, TOLERANCE_KM / START_STEP_RATIO, START_STRIDE, START_CELL_RATIO);
+                START_STEP_RATIO, TOLERANCE_KM / START_STEP_RATIO, START_STRIDE, START_CELL_RATIO,
+                START_NEIGHBOR_LIST_STEPS);
 
         List<BenchmarkResult> groundTruthResults = runIterations(satellites, TOLERANCE_KM,
-                START_STEP_RATIO, TOLERANCE_KM / START_STEP_RATIO, START_STRIDE, START_CELL_RATIO, ITERATIONS);
+                START_STEP_RATIO, TOLERANCE_KM / START_STEP_RATIO, START_STRIDE, START_CELL_RATIO,
+                START_NEIGHBOR_LIST_STEPS, ITERATIONS);
         BenchmarkResult groundTruthResult = medianResults(groundTruthResults);
         int groundTruth = groundTruthResult.conjunctions();
         log.info("Ground truth: {} conjunctions ({}s)", groundTruth, groundTruthResult.totalTime() / 1000.0);
 
-        List<BenchmarkResult> allResults = new ArrayList<>();
-        allResults.add(groundTruthResult);
+        for (InterpolationOrder order : InterpolationOrder.values()) {
+            interpolationOrder = order;
+            log.info("");
+            log.info("Grid search, {} Hermite", order.name().toLowerCase(Locale.ROOT));
+            // Both files start with the cubic ground truth, plot.py measures accuracy against the first row
+            List<BenchmarkResult> allResults = new ArrayList<>();
+            allResults.add(groundTruthResult);
+            int evaluated = gridSearch(satellites, groundTruth, order == InterpolationOrder.CUBIC, allResults);
+
+            log.info("");
+            log.info("Grid search complete. {} points evaluated.", evaluated);
+
+            String file = order == InterpolationOrder.CUBIC ? "pareto_benchmark.csv" : "pareto_benchmark_quintic.csv";
+            writeCsv(allResults, Paths.get("docs", "5-pareto-frontier", file));
+        }
 
-        int evaluated = 1;
+        log.info("Pareto frontier benchmark complete.");
+        System.exit(0);
+    }
+
+    /**
+     * Bounded grid search from the safest combination outwards, pruning each axis once accuracy drops below
+     * {@link #MIN_ACCURACY_PCT}. Adds every median result to {@code allResults} and returns the points evaluated.
+     */
+    private int gridSearch(List<SatelliteScanInfo> satellites, int groundTruth, boolean skipGroundTruth,
+                           List<BenchmarkResult> allResults) throws InterruptedException {
+        int evaluated = skipGroundTruth ? 1 : 0;
 
         for (int stepRatio = START_STEP_RATIO; ; stepRatio -= STEP_RATIO_DELTA) {
             boolean anyValidAtThisStep = false;
@@ -118,32 +152,41 @@ public class ParetoFrontierBenchmark extends BenchmarkRunner implements CommandL
                 boolean anyValidAtThisStride = false;
 
                 for (double cellRatio = START_CELL_RATIO; ; cellRatio += CELL_RATIO_DELTA) {
-                    // Skip the ground truth combo
-                    if (stepRatio == START_STEP_RATIO && stride == START_STRIDE
-                            && Math.abs(cellRatio - START_CELL_RATIO) < 0.001) {
-                        continue;
+                    boolean anyValidAtThisCell = false;
+
+                    for (int nlSteps = START_NEIGHBOR_LIST_STEPS; nlSteps <= MAX_NEIGHBOR_LIST_STEPS; nlSteps *= 2) {
+                        // Skip the ground truth combo
+                        if (skipGroundTruth && stepRatio == START_STEP_RATIO && stride == START_STRIDE
+                                && Math.abs(cellRatio - START_CELL_RATIO) < 0.001
+                                && nlSteps == START_NEIGHBOR_LIST_STEPS) {
+                            anyValidAtThisCell = true;
+                            continue;
+                        }
+
+                        double stepSeconds = TOLERANCE_KM / stepRatio;
+                        List<BenchmarkResult> results = runIterations(satellites, TOLERANCE_KM,
+                                stepRatio, stepSeconds, stride, cellRatio, nlSteps, ITERATIONS);
+                        BenchmarkResult result = medianResults(results);
+                        double acc = accuracyPct(result, groundTruth);
+                        evaluated++;
+
+                        log.info("[{}] stepRatio={} stride={} cellRatio={} nlSteps={} | {} conj, {}% acc, {}s",
+                                evaluated, stepRatio, stride,
+                                String.format("%.1f", cellRatio), nlSteps,
+                                result.conjunctions(),
+                                String.format("%.2f", acc),
+                                String.format("%.1f", result.totalTime() / 1000.0));
+
+                        allResults.add(result);
+
+                        if (acc >= MIN_ACCURACY_PCT) {
+                            anyValidAtThisCell = true;
+                            anyValidAtThisStride = true;
+                            anyValidAtThisStep = true;
+                        }
                     }
 
-                    double stepSeconds = TOLERANCE_KM / stepRatio;
-                    List<BenchmarkResult> results = runIterations(satellites, TOLERANCE_KM,
-                            stepRatio, stepSeconds, stride, cellRatio, ITERATIONS);
-                    BenchmarkResult result = medianResults(results);
-                    double acc = accuracyPct(result, groundTruth);
-                    evaluated++;
-
-                    log.info("[{}] stepRatio={} stride={} cellRatio={} | {} conj, {}% acc, {}s",
-                            evaluated, stepRatio, stride,
-                            String.format("%.1f", cellRatio),
-                            result.conjunctions(),
-                            String.format("%.2f", acc),
-                            String.format("%.1f", result.totalTime() / 1000.0));
-
-                    allResults.add(result);
-
-                    if (acc >= MIN_ACCURACY_PCT) {
-                        anyValidAtThisStride = true;
-                        anyValidAtThisStep = true;
-                    } else {
+                    if (!anyValidAtThisCell) {
                         log.info("  Accuracy < {}%, pruning remaining cellRatio values", MIN_ACCURACY_PCT);
                         break;
                     }
@@ -161,12 +204,6 @@ public class ParetoFrontierBenchmark extends BenchmarkRunner implements CommandL
             }
         }
 
-        log.info("");
-        log.info("Grid search complete. {} points evaluated.", evaluated);
-
-        writeCsv(allResults, Paths.get("docs", "5-pareto-frontier", "pareto_benchmark.csv"));
-
-        log.info("Pareto frontier benchmark complete.");
-        System.exit(0);
+        return evaluated;
     }
 }
@@ -0,0 +1,133 @@
+package io.salad109.conjunctiondetector.conjunction.internal.benchmark;
+
+import io.salad109.conjunctiondetector.conjunction.internal.BroadPhase;
+import io.salad109.conjunctiondetector.conjunction.internal.CollisionProbabilityService;
+import io.salad109.conjunctiondetector.conjunction.internal.DetectionBuffer;
+import io.salad109.conjunctiondetector.conjunction.internal.PositionSource;
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService;
+import io.salad109.conjunctiondetector.conjunction.internal.ScanCatalog;
+import io.salad109.conjunctiondetector.conjunction.internal.ScanService;
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import io.salad109.conjunctiondetector.satellite.SatelliteService;
+import org.apache.commons.lang3.time.StopWatch;
+import org.jspecify.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Refinement alone on 1, 2, 4, ... worker threads up to the core count, over the same grouped events, to see how the
+ * SGP4 confirmations scale now that no propagator is locked.
+ * <p>
+ * Linux:
+ * ./mvnw spring-boot:run -Dspring-boot.run.profiles=benchmark-refine -Dspring-boot.run.jvmArguments="-Xmx12g -Xms12g -XX:+AlwaysPreTouch"
+ * Windows:
+ * ./mvnw spring-boot:run "-Dspring-boot.run.profiles=benchmark-refine" "-Dspring-boot.run.jvmArguments=-Xmx12g -Xms12g -XX:+AlwaysPreTouch"
+ */
+@Component
+@Profile("benchmark-refine")
+public class RefineScalingBenchmark extends BenchmarkRunner implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(RefineScalingBenchmark.class);
+
+    private static final int ITERATIONS = 5;
+    private static final double TOLERANCE_KM = 72.0;
+    private static final int STEP_RATIO = 8;
+    private static final int STRIDE = 50;
+    private static final double CELL_RATIO = 1.5;
+
+    public RefineScalingBenchmark(SatelliteService satelliteService, PropagationService propagationService,
+                                  ScanService scanService, CollisionProbabilityService collisionProbabilityService) {
+        super(satelliteService, propagationService, scanService, collisionProbabilityService);
+    }
+
+    @Override
+    public void run(String @NonNull ... args) throws InterruptedException, ExecutionException {
+        log.info("");
+        log.info("Starting refine scaling benchmark");
+        log.info("");
+
+        List<SatelliteScanInfo> satellites = satelliteService.getAllScanInfo();
+        int cores = Runtime.getRuntime().availableProcessors();
+        log.info("Loaded {} satellites, {} cores", satellites.size(), cores);
+        log.info("Locked: tol={}km, stepRatio={}, stride={}, cellRatio={}", TOLERANCE_KM, STEP_RATIO, STRIDE, CELL_RATIO);
+        double stepSeconds = TOLERANCE_KM / STEP_RATIO;
+
+        // Everything up to refinement once, on the common pool
+        ScanCatalog catalog = propagationService.buildCatalog(satellites);
+        OffsetDateTime endTime = FIXED_START_TIME.plusHours(LOOKAHEAD_HOURS);
+        PropagationService.KnotCache knots = propagationService.reorder(propagationService.computeKnots(
+                catalog, FIXED_START_TIME, endTime, stepSeconds, STRIDE, knotPropagator), satelliteOrdering);
+        PositionSource cache = propagationService.interpolate(knots, positionLayout, kernel, interpolationOrder);
+        BroadPhase broadPhase = BroadPhase.create(broadPhaseType, gridType, TOLERANCE_KM, TOLERANCE_KM / CELL_RATIO);
+        DetectionBuffer events = scanService.groupAndReduce(
+                scanService.checkPairs(cache, TOLERANCE_KM, broadPhase, kernel));
+        log.info("{} events to refine", events.size());
+
+        List<Row> rows = new ArrayList<>();
+        double baseline = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            long best = Long.MAX_VALUE;
+            int conjunctions = 0;
+            try (ForkJoinPool pool = new ForkJoinPool(threads)) {
+                // First pass warms up the JIT and every worker's propagator copies
+                for (int i = 0; i <= ITERATIONS; i++) {
+                    StopWatch refine = StopWatch.createStarted();
+                    List<ScanService.RefinedEvent> refined = pool.submit(() -> scanService.refine(
+                            events, catalog, cache, stepSeconds, THRESHOLD_KM)).get();
+                    refine.stop();
+                    if (i > 0) best = Math.min(best, refine.getNanoTime());
+                    conjunctions = refined.size();
+                }
+            }
+            double seconds = best / 1e9;
+            if (threads == 1) baseline = seconds;
+            Row row = new Row(threads, seconds, baseline / seconds, events.size(), conjunctions);
+            rows.add(row);
+            log.info("threads={} refine={}s speedup={}x conj={}", threads,
+                    String.format(Locale.ROOT, "%.3f", seconds), String.format(Locale.ROOT, "%.2f", row.speedup),
+                    conjunctions);
+            if (threads == cores) break;
+        }
+        writeScalingCsv(rows, Paths.get("docs", "11-refine-scaling", "refine_scaling.csv"));
+
+        log.info("Benchmark complete");
+        System.exit(0);
+    }
+
+    private void writeScalingCsv(List<Row> rows, Path outputPath) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("threads,refine_s,speedup,events,conj\n");
+        for (Row row : rows) {
+            sb.append(String.format(Locale.ROOT, "%d,%.6f,%.3f,%d,%d%n",
+                    row.threads, row.seconds, row.speedup, row.events, row.conjunctions));
+        }
+        try {
+            Path parent = outputPath.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            Files.writeString(outputPath, sb.toString(), StandardCharsets.UTF_8);
+            log.info("CSV written to: {}", outputPath.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("Failed to write CSV to {}: {}", outputPath, e.getMessage());
+            log.error("Dumping results to log:");
+            log.error(sb.toString());
+        }
+    }
+
+    private record Row(int threads, double seconds, double speedup, int events, int conjunctions) {
+    }
+}
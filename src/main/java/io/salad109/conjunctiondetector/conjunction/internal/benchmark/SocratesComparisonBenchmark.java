@@ -2,13 +2,21 @@ package io.salad109.conjunctiondetector.conjunction.internal.benchmark;
 
 import io.salad109.conjunctiondetector.conjunction.internal.CollisionProbabilityService;
 import io.salad109.conjunctiondetector.conjunction.internal.Conjunction;
+import io.salad109.conjunctiondetector.conjunction.internal.DetectionBuffer;
+import io.salad109.conjunctiondetector.conjunction.internal.FilterChainService;
+import io.salad109.conjunctiondetector.conjunction.internal.GridType;
+import io.salad109.conjunctiondetector.conjunction.internal.KernelType;
+import io.salad109.conjunctiondetector.conjunction.internal.PositionLayout;
+import io.salad109.conjunctiondetector.conjunction.internal.PositionSource;
 import io.salad109.conjunctiondetector.conjunction.internal.PropagationService;
+import io.salad109.conjunctiondetector.conjunction.internal.ScanCatalog;
 import io.salad109.conjunctiondetector.conjunction.internal.ScanService;
+import io.salad109.conjunctiondetector.conjunction.internal.ScreeningEngine;
+import io.salad109.conjunctiondetector.conjunction.internal.SweepMode;
 import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
 import io.salad109.conjunctiondetector.satellite.SatelliteService;
 import org.apache.commons.lang3.time.StopWatch;
 import org.jspecify.annotations.NonNull;
-import org.orekit.propagation.analytical.tle.TLEPropagator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -28,7 +36,6 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 /**
  * Linux:
@@ -53,6 +60,7 @@ public class SocratesComparisonBenchmark implements CommandLineRunner {
     private final SatelliteService satelliteService;
     private final PropagationService propagationService;
     private final ScanService scanService;
+    private final FilterChainService filterChainService;
     private final CollisionProbabilityService collisionProbabilityService;
 
     @Value("${conjunction.tolerance-km}")
@@ -67,13 +75,33 @@ public class SocratesComparisonBenchmark implements CommandLineRunner {
     @Value("${conjunction.interpolation-stride}")
     private int interpolationStride;
 
+    @Value("${conjunction.grid-type}")
+    private GridType gridType;
+
+    @Value("${conjunction.position-layout}")
+    private PositionLayout positionLayout;
+
+    @Value("${conjunction.sweep-mode}")
+    private SweepMode sweepMode;
+
+    @Value("${conjunction.kernel}")
+    private KernelType kernel;
+
+    @Value("${conjunction.engine}")
+    private ScreeningEngine engine;
+
+    @Value("${conjunction.filter-margin-km}")
+    private double filterMarginKm;
+
     public SocratesComparisonBenchmark(SatelliteService satelliteService,
                                        PropagationService propagationService,
                                        ScanService scanService,
+                                       FilterChainService filterChainService,
                                        CollisionProbabilityService collisionProbabilityService) {
         this.satelliteService = satelliteService;
         this.propagationService = propagationService;
         this.scanService = scanService;
+        this.filterChainService = filterChainService;
         this.collisionProbabilityService = collisionProbabilityService;
     }
 
@@ -84,8 +112,9 @@ public class SocratesComparisonBenchmark implements CommandLineRunner {
         log.info("");
         log.info("SOCRATES comparison run");
         log.info("Window: {} -> {} ({} h, {} subwindows)", START_TIME, windowEnd, LOOKAHEAD_HOURS, SUBWINDOW_COUNT);
-        log.info("Tolerance: {} km, cell: {} km, threshold: {} km, step: {} s, stride: {}",
-                toleranceKm, cellSizeKm, THRESHOLD_KM, stepSeconds, interpolationStride);
+        log.info("Tolerance: {} km, cell: {} km, threshold: {} km, step: {} s, stride: {}, grid: {}, sweep: {}, kernel: {}, engine: {}",
+                toleranceKm, cellSizeKm, THRESHOLD_KM, stepSeconds, interpolationStride, gridType, sweepMode, kernel,
+                engine);
         log.info("");
 
         StopWatch total = StopWatch.createStarted();
@@ -93,25 +122,36 @@ public class SocratesComparisonBenchmark implements CommandLineRunner {
         List<SatelliteScanInfo> satellites = satelliteService.getAllScanInfo();
         log.info("Loaded {} satellites", satellites.size());
 
-        Map<Integer, TLEPropagator> propagators = propagationService.buildPropagators(satellites);
-        log.info("Built {} propagators", propagators.size());
+        ScanCatalog catalog = propagationService.buildCatalog(satellites);
+        log.info("Built {} propagators", catalog.size());
 
-        long subwindowNanos = Duration.between(START_TIME, windowEnd).toNanos() / SUBWINDOW_COUNT;
         List<ScanService.RefinedEvent> allRefined = new ArrayList<>();
+        if (engine == ScreeningEngine.FILTER_CHAIN) {
+            FilterChainService.ScreeningResult result = filterChainService.screen(catalog, START_TIME,
+                    windowEnd, stepSeconds, toleranceKm, THRESHOLD_KM, filterMarginKm);
+            allRefined.addAll(result.refined());
+            log.info("Filter chain: {} pairs, {} after apogee/perigee, {} after orbit path and time, {} windows, {} samples, {} refined",
+                    result.totalPairs(), result.apogeePerigeePairs(), result.pathTimePairs(), result.windows(),
+                    result.samples(), result.refined().size());
+        }
 
-        for (int w = 0; w < SUBWINDOW_COUNT; w++) {
+        long subwindowNanos = Duration.between(START_TIME, windowEnd).toNanos() / SUBWINDOW_COUNT;
+        for (int w = 0; engine == ScreeningEngine.GRID && w < SUBWINDOW_COUNT; w++) {
             OffsetDateTime subStart = START_TIME.plusNanos(w * subwindowNanos);
             OffsetDateTime subEnd = (w == SUBWINDOW_COUNT - 1) ? windowEnd : START_TIME.plusNanos((w + 1) * subwindowNanos);
 
             StopWatch sub = StopWatch.createStarted();
             PropagationService.KnotCache knots = propagationService.computeKnots(
-                    propagators, subStart, subEnd, stepSeconds, interpolationStride);
-            PropagationService.PositionCache cache = propagationService.interpolate(knots);
-            List<ScanService.CoarseDetection> detections = scanService.checkPairs(
-                    satellites, cache, toleranceKm, cellSizeKm);
-            List<ScanService.CoarseDetection> events = scanService.groupAndReduce(detections);
+                    catalog, subStart, subEnd, stepSeconds, interpolationStride);
+            PositionSource cache = sweepMode == SweepMode.STREAMING
+                    ? knots
+                    : propagationService.interpolate(knots, positionLayout, kernel);
+            DetectionBuffer detections = sweepMode == SweepMode.STREAMING
+                    ? scanService.checkPairsStreaming(knots, toleranceKm, cellSizeKm, gridType, kernel)
+                    : scanService.checkPairs(cache, toleranceKm, cellSizeKm, gridType, kernel);
+            DetectionBuffer events = scanService.groupAndReduce(detections);
             List<ScanService.RefinedEvent> refined = scanService.refine(
-                    events, cache, propagators, stepSeconds, THRESHOLD_KM);
+                    events, catalog, cache, stepSeconds, THRESHOLD_KM);
             allRefined.addAll(refined);
             sub.stop();
 
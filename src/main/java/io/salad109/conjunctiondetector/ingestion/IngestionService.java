@@ -69,7 +69,7 @@ public class IngestionService {
                     processingResult.skipped(),
                     processingResult.deleted());
 
-            eventPublisher.publishEvent(new DataChangedEvent());
+            eventPublisher.publishEvent(new DataChangedEvent(true));
         } catch (IOException e) {
             SyncResult failedSyncResult = new SyncResult(startedAt, 0, 0, 0, 0, 0, false);
             ingestionLogService.saveIngestionLog(failedSyncResult, e.getMessage());
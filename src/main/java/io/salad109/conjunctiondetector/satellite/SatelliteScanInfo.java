@@ -3,5 +3,5 @@ package io.salad109.conjunctiondetector.satellite;
 import java.time.OffsetDateTime;
 
 public record SatelliteScanInfo(int noradCatId, String tleLine1, String tleLine2, OffsetDateTime epoch,
-                                double perigeeKm, String objectType) {
+                                double perigeeKm, double apogeeKm, String objectType) {
 }
@@ -23,4 +23,11 @@ public class ScheduleService {
         ingestionService.sync();
         conjunctionService.findConjunctions();
     }
+
+    // Primaries only, between full scans; reuses the last synced TLEs so it can run more often than the API allows
+    @Scheduled(cron = "${conjunction.primary-schedule.cron:-}")
+    @Transactional
+    public void scanPrimaries() {
+        conjunctionService.findPrimaryConjunctions();
+    }
 }
@@ -0,0 +1,146 @@
+package io.salad109.conjunctiondetector.conjunction;
+
+import io.salad109.conjunctiondetector.conjunction.internal.*;
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.orekit.data.DataContext;
+import org.orekit.data.DirectoryCrawler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.ApplicationConversionService;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConjunctionServiceTest {
+
+    private static final String IRIDIUM_TLE1 = "1 24946U 97051C   09040.78448243 +.00000153 +00000-0 +47668-4 0  9994";
+    private static final String IRIDIUM_TLE2 = "2 24946 086.3994 121.7028 0002288 085.1644 274.9812 14.34219863597336";
+    private static final String COSMOS_TLE1 = "1 22675U 93036A   09040.49834364 -.00000001  00000-0  95251-5 0  9996";
+    private static final String COSMOS_TLE2 = "2 22675 074.0355 019.4646 0016027 098.7014 261.5952 14.31135643817415";
+    private static final OffsetDateTime COLLISION_TIME =
+            OffsetDateTime.of(2009, 2, 10, 16, 55, 59, 806_000_000, ZoneOffset.UTC);
+    private static final OffsetDateTime START = COLLISION_TIME.minusHours(2);
+    private static final OffsetDateTime END = COLLISION_TIME.plusHours(2);
+
+    private final PropagationService propagationService = new PropagationService();
+    private final ScanCatalog catalog = propagationService.buildCatalog(List.of(
+            satellite(24946, IRIDIUM_TLE1, IRIDIUM_TLE2), satellite(22675, COSMOS_TLE1, COSMOS_TLE2)));
+
+    @BeforeAll
+    static void initOrekit() {
+        File orekitData = new File("src/main/resources/orekit-data");
+        if (orekitData.exists()) {
+            DataContext.getDefault().getDataProvidersManager()
+                    .addProvider(new DirectoryCrawler(orekitData));
+        }
+    }
+
+    @Test
+    void pipelinedScreeningMatchesSequential() {
+        ScanService scanService = new ScanService(propagationService);
+        List<ScanService.RefinedEvent> sequential = service(propagationService, scanService,
+                Map.of("conjunction.subwindow-count", "4")).screenGrid(catalog, START, END, null);
+        // Two satellites take a few kilobytes per subwindow, all three later ones are prepared ahead
+        List<ScanService.RefinedEvent> pipelined = service(propagationService, scanService,
+                Map.of("conjunction.subwindow-count", "4", "conjunction.pipeline-memory-mb", "64"))
+                .screenGrid(catalog, START, END, null);
+
+        assertThat(sequential).isNotEmpty();
+        assertThat(pipelined.stream().map(ConjunctionServiceTest::summary).toList())
+                .isEqualTo(sequential.stream().map(ConjunctionServiceTest::summary).toList());
+    }
+
+    @Test
+    void failedSweepReleasesCachesPreparedAhead() {
+        List<OffHeapPositionCache> caches = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch allPrepared = new CountDownLatch(4);
+        PropagationService recording = new PropagationService() {
+            @Override
+            public OffHeapPositionCache interpolateOffHeap(KnotCache knots, Path spillDirectory) {
+                OffHeapPositionCache cache = super.interpolateOffHeap(knots, spillDirectory);
+                caches.add(cache);
+                allPrepared.countDown();
+                return cache;
+            }
+        };
+        // The second sweep fails once every subwindow is prepared, so two are left holding their caches
+        AtomicInteger sweeps = new AtomicInteger();
+        ScanService failing = new ScanService(recording) {
+            @Override
+            public DetectionBuffer checkPairs(PositionSource positions, double toleranceKm, BroadPhase broadPhase,
+                                              KernelType kernel, LongSet excludedPairs) {
+                if (sweeps.incrementAndGet() == 2) {
+                    try {
+                        assertThat(allPrepared.await(30, TimeUnit.SECONDS)).isTrue();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalStateException("sweep failed");
+                }
+                return super.checkPairs(positions, toleranceKm, broadPhase, kernel, excludedPairs);
+            }
+        };
+        ConjunctionService service = service(recording, failing, Map.of(
+                "conjunction.subwindow-count", "4",
+                "conjunction.pipeline-memory-mb", "64",
+                "conjunction.position-layout", "step-major",
+                "conjunction.position-storage", "off-heap"));
+
+        assertThatThrownBy(() -> service.screenGrid(catalog, START, END, null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("sweep failed");
+        assertThat(caches).hasSize(4);
+        for (OffHeapPositionCache cache : caches) {
+            assertThatThrownBy(() -> cache.x(0, 0)).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    /**
+     * Service over the given collaborators, every {@code @Value} field at its default unless overridden by key.
+     */
+    private static ConjunctionService service(PropagationService propagationService, ScanService scanService,
+                                              Map<String, String> properties) {
+        ConjunctionService service = new ConjunctionService(null, null, propagationService, null, scanService, null,
+                new FormationTracker(scanService), null, null, null);
+        for (Field field : ConjunctionService.class.getDeclaredFields()) {
+            Value value = field.getAnnotation(Value.class);
+            if (value == null) continue;
+            // ${key:default}
+            String placeholder = value.value().substring(2, value.value().length() - 1);
+            int colon = placeholder.indexOf(':');
+            String text = properties.getOrDefault(placeholder.substring(0, colon), placeholder.substring(colon + 1));
+            field.setAccessible(true);
+            try {
+                field.set(service, ApplicationConversionService.getSharedInstance().convert(text, field.getType()));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        service.validateProperties();
+        return service;
+    }
+
+    // RefinedEvent carries Orekit coordinates, which compare by identity
+    private static List<Object> summary(ScanService.RefinedEvent event) {
+        return List.of(event.pair(), event.distanceKm(), event.tca(), event.relativeVelocityMS());
+    }
+
+    private static SatelliteScanInfo satellite(int noradId, String line1, String line2) {
+        return new SatelliteScanInfo(noradId, line1, line2, COLLISION_TIME, 780.0, 800.0, "PAYLOAD");
+    }
+}
@@ -0,0 +1,105 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.PositionCache;
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AltitudeShellsTest {
+
+    private static final double EARTH_RADIUS_KM = 6378.135;
+    private static final double TOLERANCE_KM = 40.0;
+    private static final double[] BOUNDARIES_KM = {500, 600, 700, 900};
+
+    private final ScanService scanService = new ScanService(null);
+
+    @Test
+    void shellSweepMatchesFullSweep() {
+        Catalog catalog = catalog(1500, 4, 5);
+        AltitudeShells shells = new AltitudeShells(catalog.satellites, catalog.positions, BOUNDARIES_KM, 5.0,
+                TOLERANCE_KM);
+
+        List<String> expected = rows(scanService.checkPairs(catalog.positions, TOLERANCE_KM, TOLERANCE_KM,
+                GridType.SORTED));
+        List<String> actual = rows(scanService.checkPairsByShell(catalog.positions, shells, TOLERANCE_KM,
+                TOLERANCE_KM, GridType.SORTED));
+
+        assertThat(actual).isNotEmpty().containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void eliminatedPairsMatchBruteForce() {
+        Catalog catalog = catalog(400, 1, 9);
+        AltitudeShells shells = new AltitudeShells(catalog.satellites, catalog.positions, BOUNDARIES_KM, 5.0,
+                TOLERANCE_KM);
+
+        long disjoint = 0;
+        for (int a = 0; a < 400; a++) {
+            for (int b = a + 1; b < 400; b++) {
+                if (!shells.bandsIntersect(a, b)) disjoint++;
+            }
+        }
+        assertThat(disjoint).isPositive();
+        assertThat(shells.eliminatedPairs()).isEqualTo(disjoint);
+        assertThat(shells.totalPairs()).isEqualTo(400L * 399 / 2);
+    }
+
+    @Test
+    void everyIntersectingPairHasExactlyOneOwner() {
+        Catalog catalog = catalog(300, 1, 2);
+        AltitudeShells shells = new AltitudeShells(catalog.satellites, catalog.positions, BOUNDARIES_KM, 5.0,
+                TOLERANCE_KM);
+
+        for (int a = 0; a < 300; a++) {
+            for (int b = a + 1; b < 300; b++) {
+                int owners = 0;
+                for (int shell = 0; shell < shells.shellCount(); shell++) {
+                    if (shells.owns(shell, a, b)) owners++;
+                }
+                assertThat(owners).isEqualTo(shells.bandsIntersect(a, b) ? 1 : 0);
+            }
+        }
+    }
+
+    private static List<String> rows(DetectionBuffer detections) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < detections.size(); i++) {
+            rows.add(detections.pairKey(i) + "/" + detections.step(i) + "/" + detections.distanceSq(i));
+        }
+        return rows;
+    }
+
+    private record Catalog(List<SatelliteScanInfo> satellites, PositionCache positions) {
+    }
+
+    /**
+     * Satellites in a small patch of sky, each at a radius inside its perigee/apogee band.
+     */
+    private static Catalog catalog(int numSats, int steps, long seed) {
+        Random random = new Random(seed);
+        List<SatelliteScanInfo> satellites = new ArrayList<>();
+        float[][] x = new float[numSats][steps];
+        float[][] y = new float[numSats][steps];
+        float[][] z = new float[numSats][steps];
+        double[] perigees = {420, 550, 560, 780, 1200};
+        for (int s = 0; s < numSats; s++) {
+            double perigee = perigees[random.nextInt(perigees.length)] + random.nextDouble() * 20;
+            double apogee = perigee + (random.nextInt(4) == 0 ? random.nextDouble() * 400 : random.nextDouble() * 5);
+            satellites.add(new SatelliteScanInfo(s + 1, "", "", TestCatalogs.START, perigee, apogee, "PAYLOAD"));
+            for (int step = 0; step < steps; step++) {
+                double r = EARTH_RADIUS_KM + perigee + random.nextDouble() * (apogee - perigee);
+                double lat = random.nextGaussian() * 0.02;
+                double lon = random.nextGaussian() * 0.02;
+                x[s][step] = (float) (r * Math.cos(lat) * Math.cos(lon));
+                y[s][step] = (float) (r * Math.cos(lat) * Math.sin(lon));
+                z[s][step] = (float) (r * Math.sin(lat));
+            }
+        }
+        return new Catalog(satellites, TestCatalogs.positions(9_000_000_000L, x, y, z));
+    }
+}
@@ -0,0 +1,164 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.PositionCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static io.salad109.conjunctiondetector.conjunction.internal.TestCatalogs.randomWalk;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BroadPhaseTest {
+
+    private static final double TOLERANCE_KM = 50.0;
+
+    private final ScanService scanService = new ScanService(null);
+
+    @Test
+    void everyBroadPhaseMatchesBruteForce() {
+        PositionCache cache = randomWalk(500, 30, 23);
+        List<String> expected = bruteForce(cache);
+
+        for (BroadPhaseType type : BroadPhaseType.values()) {
+            // Cell size equal to tolerance makes the grid exact too
+            BroadPhase broadPhase = BroadPhase.create(type, GridType.SORTED, TOLERANCE_KM, TOLERANCE_KM);
+            List<String> actual = rows(scanService.checkPairs(cache, TOLERANCE_KM, broadPhase, KernelType.SCALAR));
+            assertThat(actual).as("%s", type).isNotEmpty().containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    @Test
+    void candidatesAreReportedOnce() {
+        PositionCache cache = randomWalk(300, 1, 5);
+        for (BroadPhaseType type : new BroadPhaseType[]{BroadPhaseType.SWEEP_AND_PRUNE, BroadPhaseType.KD_TREE,
+                BroadPhaseType.ADAPTIVE_GRID}) {
+            List<Long> seen = new ArrayList<>();
+            BroadPhase.create(type, GridType.SORTED, TOLERANCE_KM, TOLERANCE_KM)
+                    .forEachCandidatePair(cache, 0, (a, b) -> seen.add(DetectionBuffer.pairKey(a, b)));
+            assertThat(seen).as("%s", type).isNotEmpty().doesNotHaveDuplicates();
+        }
+    }
+
+    @Test
+    void sweepAndPruneStaysExactOutOfStepOrderAndOnSubsets() {
+        PositionCache cache = randomWalk(300, 12, 11);
+        int[] everyOther = IntStream.range(0, cache.numSatellites()).filter(sat -> sat % 2 == 0).toArray();
+        BroadPhase sweep = BroadPhase.create(BroadPhaseType.SWEEP_AND_PRUNE, GridType.SORTED, TOLERANCE_KM,
+                TOLERANCE_KM);
+
+        // Backwards, so no call continues the previous one, alternating between the catalog and a subset of it
+        for (int step = cache.times().length - 1; step >= 0; step--) {
+            PositionSource positions = step % 2 == 0 ? cache : new SubsetView(cache, everyOther);
+            List<Long> actual = new ArrayList<>();
+            sweep.forEachCandidatePair(positions, step, (a, b) -> actual.add(DetectionBuffer.pairKey(a, b)));
+            assertThat(actual).as("step %d", step).containsExactlyInAnyOrderElementsOf(insideCube(positions, step));
+        }
+    }
+
+    @Test
+    void adaptiveGridBoundsHotCellOccupancy() {
+        PositionCache cache = denseShell(400, 7);
+        List<String> expected = bruteForce(cache);
+
+        BroadPhase grid = BroadPhase.create(BroadPhaseType.GRID, GridType.SORTED, TOLERANCE_KM, TOLERANCE_KM);
+        BroadPhase adaptive = BroadPhase.create(BroadPhaseType.ADAPTIVE_GRID, GridType.SORTED, TOLERANCE_KM,
+                TOLERANCE_KM);
+        scanService.checkPairs(cache, TOLERANCE_KM, grid, KernelType.SCALAR);
+        List<String> actual = rows(scanService.checkPairs(cache, TOLERANCE_KM, adaptive, KernelType.SCALAR));
+        assertThat(actual).isNotEmpty().containsExactlyInAnyOrderElementsOf(expected);
+
+        BroadPhase.Occupancy gridOccupancy = grid.occupancy().orElseThrow();
+        BroadPhase.Occupancy adaptiveOccupancy = adaptive.occupancy().orElseThrow();
+        assertThat(adaptiveOccupancy.steps()).isEqualTo(1);
+        assertThat(gridOccupancy.maxOccupancy()).isGreaterThan(AdaptiveGridBroadPhase.MAX_OCCUPANCY);
+        assertThat(adaptiveOccupancy.maxOccupancy()).isLessThanOrEqualTo(AdaptiveGridBroadPhase.MAX_OCCUPANCY);
+        assertThat(adaptiveOccupancy.sameCellPairs()).isLessThan(gridOccupancy.sameCellPairs() / 2);
+    }
+
+    @Test
+    void primaryProbeFindsTheGridPairsInvolvingAPrimary() {
+        PositionCache cache = randomWalk(500, 30, 31);
+        boolean[] primary = new boolean[cache.numSatellites()];
+        for (int sat = 0; sat < primary.length; sat += 7) primary[sat] = true;
+        // A cell smaller than tolerance, so the probe has to pick the same cells as the grid to match it
+        double cellSizeKm = 0.7 * TOLERANCE_KM;
+
+        BroadPhase grid = BroadPhase.create(BroadPhaseType.GRID, GridType.SORTED, TOLERANCE_KM, cellSizeKm);
+        List<String> expected = new ArrayList<>();
+        DetectionBuffer all = scanService.checkPairs(cache, TOLERANCE_KM, grid, KernelType.SCALAR);
+        for (int i = 0; i < all.size(); i++) {
+            long pairKey = all.pairKey(i);
+            if (primary[DetectionBuffer.firstIndex(pairKey)] || primary[DetectionBuffer.secondIndex(pairKey)]) {
+                expected.add(pairKey + "/" + all.step(i) + "/" + all.distanceSq(i));
+            }
+        }
+
+        BroadPhase probe = BroadPhase.primariesAgainstCatalog(primary, cellSizeKm);
+        List<String> actual = rows(scanService.checkPairs(cache, TOLERANCE_KM, probe, KernelType.SCALAR));
+        assertThat(actual).isNotEmpty().hasSizeLessThan(all.size()).containsExactlyInAnyOrderElementsOf(expected);
+
+        List<Long> seen = new ArrayList<>();
+        probe.forEachCandidatePair(cache, 0, (a, b) -> seen.add(DetectionBuffer.pairKey(a, b)));
+        assertThat(seen).isNotEmpty().doesNotHaveDuplicates();
+    }
+
+    private static List<String> bruteForce(PositionCache cache) {
+        double tolSq = TOLERANCE_KM * TOLERANCE_KM;
+        List<String> rows = new ArrayList<>();
+        for (int step = 0; step < cache.times().length; step++) {
+            for (int a = 0; a < cache.numSatellites(); a++) {
+                if (!cache.isValid(a, step)) continue;
+                for (int b = a + 1; b < cache.numSatellites(); b++) {
+                    if (!cache.isValid(b, step)) continue;
+                    double distSq = cache.distanceSquaredAt(a, b, step);
+                    if (distSq < tolSq) rows.add(DetectionBuffer.pairKey(a, b) + "/" + step + "/" + (float) distSq);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static List<Long> insideCube(PositionSource positions, int step) {
+        List<Long> pairs = new ArrayList<>();
+        for (int a = 0; a < positions.numSatellites(); a++) {
+            if (!positions.isValid(a, step)) continue;
+            for (int b = a + 1; b < positions.numSatellites(); b++) {
+                if (positions.isValid(b, step)
+                        && Math.abs(positions.x(a, step) - positions.x(b, step)) <= TOLERANCE_KM
+                        && Math.abs(positions.y(a, step) - positions.y(b, step)) <= TOLERANCE_KM
+                        && Math.abs(positions.z(a, step) - positions.z(b, step)) <= TOLERANCE_KM) {
+                    pairs.add(DetectionBuffer.pairKey(a, b));
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private static List<String> rows(DetectionBuffer detections) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < detections.size(); i++) {
+            rows.add(detections.pairKey(i) + "/" + detections.step(i) + "/" + detections.distanceSq(i));
+        }
+        return rows;
+    }
+
+    /**
+     * One step with most satellites packed into a 100 km cube and the rest scattered far apart.
+     */
+    private static PositionCache denseShell(int numSats, long seed) {
+        Random random = new Random(seed);
+        float[][] x = new float[numSats][1];
+        float[][] y = new float[numSats][1];
+        float[][] z = new float[numSats][1];
+        for (int s = 0; s < numSats; s++) {
+            double extent = s % 10 == 0 ? 40000 : 100;
+            x[s][0] = (float) (random.nextDouble() * extent);
+            y[s][0] = (float) (random.nextDouble() * extent);
+            z[s][0] = (float) (random.nextDouble() * extent);
+        }
+        return TestCatalogs.positions(0, x, y, z);
+    }
+}
@@ -17,7 +17,6 @@ import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.offset;
@@ -96,34 +95,33 @@ class CeriseArianBackTest {
         OffsetDateTime debrisEpoch = OffsetDateTime.of(1996, 7, 23, 8, 15, 33, 0, ZoneOffset.UTC);
 
         SatelliteScanInfo cerise = new SatelliteScanInfo(23606, CERISE_TLE1, CERISE_TLE2,
-                ceriseEpoch, 670.0, "PAYLOAD");
+                ceriseEpoch, 670.0, 690.0, "PAYLOAD");
         SatelliteScanInfo debris = new SatelliteScanInfo(18208, DEBRIS_TLE1, DEBRIS_TLE2,
-                debrisEpoch, 670.0, "DEBRIS");
+                debrisEpoch, 670.0, 690.0, "DEBRIS");
 
         List<SatelliteScanInfo> satellites = List.of(cerise, debris);
-        Map<Integer, TLEPropagator> propagators = propagationService.buildPropagators(satellites);
+        ScanCatalog catalog = propagationService.buildCatalog(satellites);
 
         // Propagate and interpolate
         OffsetDateTime startTime = OffsetDateTime.of(1996, 7, 24, 0, 0, 0, 0, ZoneOffset.UTC);
         OffsetDateTime endTime = startTime.plusHours(10);
         PropagationService.KnotCache knots = propagationService.computeKnots(
-                propagators, startTime, endTime, stepSeconds, interpolationStride);
+                catalog, startTime, endTime, stepSeconds, interpolationStride);
         PropagationService.PositionCache cache = propagationService.interpolate(knots);
 
         // Coarse spatial scan
-        List<ScanService.CoarseDetection> detections = scanService.checkPairs(
-                satellites, cache, toleranceKm, cellSizeKm);
+        DetectionBuffer detections = scanService.checkPairs(cache, toleranceKm, cellSizeKm, GridType.SORTED);
 
-        assertThat(detections).as("coarse detections").isNotEmpty();
+        assertThat(detections.size()).as("coarse detections").isPositive();
 
         // Group and reduce
-        List<ScanService.CoarseDetection> events = scanService.groupAndReduce(detections);
+        DetectionBuffer events = scanService.groupAndReduce(detections);
 
-        assertThat(events).as("grouped events").isNotEmpty();
+        assertThat(events.size()).as("grouped events").isPositive();
 
         // Refine
         List<ScanService.RefinedEvent> refined = scanService.refine(
-                events, cache, propagators, stepSeconds, thresholdKm);
+                events, catalog, cache, stepSeconds, thresholdKm);
 
         // 6 passes documented in the paper
         List<ScanService.RefinedEvent> sorted = refined.stream()
@@ -0,0 +1,153 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.orekit.data.DataContext;
+import org.orekit.data.DirectoryCrawler;
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.time.TimeScalesFactory;
+import org.orekit.utils.PVCoordinates;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChebyshevEphemerisTest {
+
+    private static final String IRIDIUM_TLE1 = "1 24946U 97051C   09040.78448243 +.00000153 +00000-0 +47668-4 0  9994";
+    private static final String IRIDIUM_TLE2 = "2 24946 086.3994 121.7028 0002288 085.1644 274.9812 14.34219863597336";
+    private static final String COSMOS_TLE1 = "1 22675U 93036A   09040.49834364 -.00000001  00000-0  95251-5 0  9996";
+    private static final String COSMOS_TLE2 = "2 22675 074.0355 019.4646 0016027 098.7014 261.5952 14.31135643817415";
+    private static final OffsetDateTime COLLISION_TIME =
+            OffsetDateTime.of(2009, 2, 10, 16, 55, 59, 806_000_000, ZoneOffset.UTC);
+    private static final double STEP_SECONDS = 9;
+    private static final int SEGMENT_STEPS = 400; // 60 minutes
+    private static final int DEGREE = 12;
+
+    private final PropagationService propagationService = new PropagationService();
+    private final ScanService scanService = new ScanService(propagationService);
+
+    @BeforeAll
+    static void initOrekit() {
+        File orekitData = new File("src/main/resources/orekit-data");
+        if (orekitData.exists()) {
+            DataContext.getDefault().getDataProvidersManager()
+                    .addProvider(new DirectoryCrawler(orekitData));
+        }
+    }
+
+    @Test
+    void seriesStaysWithinItsErrorBoundOfSgp4() {
+        TLE eccentric = new TLE(90000, 'U', 2000, 1, "A", 0, 999,
+                new AbsoluteDate(2009, 2, 9, 0, 0, 0.0, TimeScalesFactory.getUTC()),
+                12.0 * 2 * Math.PI / 86400.0, 0.0, 0.0, 0.15, 1.1, 1.3, 2.1, 0.4, 100, 1e-4);
+        List<SatelliteScanInfo> satellites = List.of(satellite(24946, IRIDIUM_TLE1, IRIDIUM_TLE2),
+                satellite(22675, COSMOS_TLE1, COSMOS_TLE2),
+                satellite(90000, eccentric.getLine1(), eccentric.getLine2()));
+        ScanCatalog catalog = propagationService.buildCatalog(satellites);
+        OffsetDateTime start = COLLISION_TIME.minusHours(6);
+        ChebyshevEphemeris ephemeris = propagationService.fitChebyshev(catalog, start, start.plusHours(12),
+                STEP_SECONDS, SEGMENT_STEPS, DEGREE, KnotPropagator.NATIVE);
+
+        assertThat(ephemeris.segmentCount()).isEqualTo(12);
+        // Near-circular LEO fits to metres over an hour
+        assertThat(ephemeris.errorKm(0, 3600)).isLessThan(0.01);
+
+        AbsoluteDate startDate = propagationService.toAbsoluteDate(start);
+        Random random = new Random(3);
+        double[] position = new double[3];
+        double[] velocity = new double[3];
+        for (int i = 0; i < 300; i++) {
+            int sat = i % satellites.size();
+            double seconds = random.nextDouble() * 12 * 3600;
+            TLEPropagator prop = catalog.propagators()[sat];
+            PVCoordinates pv = prop.getPVCoordinates(startDate.shiftedBy(seconds), prop.getFrame());
+            assertThat(ephemeris.position(sat, seconds, position)).isTrue();
+            assertThat(ephemeris.velocity(sat, seconds, velocity)).isTrue();
+
+            double dx = position[0] - pv.getPosition().getX() / 1000.0;
+            double dy = position[1] - pv.getPosition().getY() / 1000.0;
+            double dz = position[2] - pv.getPosition().getZ() / 1000.0;
+            assertThat(Math.sqrt(dx * dx + dy * dy + dz * dz)).isLessThanOrEqualTo(ephemeris.errorKm(sat, seconds) + 1e-4);
+            double dvx = velocity[0] - pv.getVelocity().getX() / 1000.0;
+            double dvy = velocity[1] - pv.getVelocity().getY() / 1000.0;
+            double dvz = velocity[2] - pv.getVelocity().getZ() / 1000.0;
+            // Velocity has no bound of its own, it only steers the closest approach search
+            assertThat(Math.sqrt(dvx * dvx + dvy * dvy + dvz * dvz)).isLessThan(sat == 2 ? 2e-3 : 1e-4);
+        }
+    }
+
+    @Test
+    void refinementPlacesTheCollisionBetweenSteps() {
+        ScanCatalog catalog = propagationService.buildCatalog(List.of(satellite(24946, IRIDIUM_TLE1, IRIDIUM_TLE2),
+                satellite(22675, COSMOS_TLE1, COSMOS_TLE2)));
+        OffsetDateTime start = COLLISION_TIME.minusHours(1);
+        ChebyshevEphemeris ephemeris = propagationService.fitChebyshev(catalog, start, start.plusHours(2),
+                STEP_SECONDS, SEGMENT_STEPS, DEGREE, KnotPropagator.NATIVE);
+
+        PositionSource cache = propagationService.evaluate(ephemeris, PositionLayout.STEP_MAJOR);
+        DetectionBuffer events = scanService.groupAndReduce(
+                scanService.checkPairs(cache, 72.0, sweepBroadPhase(ephemeris, 72.0, 48.0), KernelType.SCALAR));
+        List<ScanService.RefinedEvent> refined = scanService.refine(events, catalog, ephemeris, STEP_SECONDS, 5.0);
+
+        assertThat(refined).hasSize(1);
+        assertThat(refined.getFirst().distanceKm()).isLessThan(1.0);
+        assertThat(Duration.between(COLLISION_TIME, refined.getFirst().tca()).abs())
+                .isLessThan(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void sweepHoldsEachPairToItsOwnFitErrors() {
+        double toleranceKm = 10.0;
+        // Constant positions (degree 0) along x, one segment, pairs 1000 km apart
+        double[] x = {0, 10.5, 2009.9, 2020.4, 5000};
+        float[] errors = {0.01f, 0.01f, 0.3f, 0.3f, 1.0f};
+        float[][] coefficients = new float[x.length][];
+        float[][] errorKm = new float[x.length][];
+        int[] noradIds = new int[x.length];
+        IntIntHashMap idMap = new IntIntHashMap();
+        for (int sat = 0; sat < x.length; sat++) {
+            coefficients[sat] = new float[]{(float) x[sat], 0, 0};
+            errorKm[sat] = new float[]{errors[sat]};
+            noradIds[sat] = sat + 1;
+            idMap.put(sat + 1, sat);
+        }
+        long stepNanos = 9_000_000_000L;
+        ChebyshevEphemeris ephemeris = new ChebyshevEphemeris(idMap, noradIds, TestCatalogs.times(3, stepNanos),
+                stepNanos, SEGMENT_STEPS, 0, coefficients, errorKm);
+        PositionSource cache = propagationService.evaluate(ephemeris, PositionLayout.SATELLITE_MAJOR);
+
+        DetectionBuffer detections = scanService.checkPairs(cache, toleranceKm,
+                sweepBroadPhase(ephemeris, toleranceKm, toleranceKm), KernelType.SCALAR);
+
+        // 0-1 is 0.5 km out with 10 m bounds, under the largest bound it would pass. 2-3 is as far out, well within
+        // its own bounds, and sits in cells two apart at the unwidened cell size.
+        assertThat(detections.size()).isEqualTo(3);
+        for (int i = 0; i < detections.size(); i++) {
+            assertThat(detections.pairKey(i)).isEqualTo(DetectionBuffer.pairKey(2, 3));
+        }
+    }
+
+    /**
+     * Grid broad phase over the series the way the scan builds it, cell and tolerance widened by twice the largest
+     * bound and each pair held to its own.
+     */
+    private static BroadPhase sweepBroadPhase(ChebyshevEphemeris ephemeris, double toleranceKm, double cellSizeKm) {
+        double maxErrorKm = ephemeris.maxErrorKm();
+        return BroadPhase.errorBounded(BroadPhase.create(BroadPhaseType.GRID, GridType.SORTED,
+                toleranceKm + 2 * maxErrorKm, cellSizeKm + 2 * maxErrorKm), ephemeris::stepErrorKm, maxErrorKm);
+    }
+
+    private static SatelliteScanInfo satellite(int noradId, String line1, String line2) {
+        return new SatelliteScanInfo(noradId, line1, line2, COLLISION_TIME, 780.0, 800.0, "PAYLOAD");
+    }
+}
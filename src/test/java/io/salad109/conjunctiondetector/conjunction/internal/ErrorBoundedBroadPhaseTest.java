@@ -0,0 +1,101 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.KnotCache;
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.PositionCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorBoundedBroadPhaseTest {
+
+    private static final double TOLERANCE_KM = 50.0;
+    private static final double CELL_SIZE_KM = 30.0;
+    private static final int STRIDE = 10;
+    private static final int KNOTS = 5;
+
+    private final PropagationService propagationService = new PropagationService();
+    private final ScanService scanService = new ScanService(null);
+
+    @Test
+    void quantizedSweepKeepsEveryPairTheHeapCacheCovers() {
+        KnotCache knots = pairsAtCellDistance(400, 3);
+        PositionCache heap = propagationService.interpolate(knots);
+        QuantizedPositionCache quantized = propagationService.interpolateQuantized(knots);
+        double errorKm = quantized.maxErrorKm();
+        assertThat(errorKm).isPositive();
+
+        // The grid reports every pair within one cell of each other, over the exact positions
+        Set<String> expected = within(heap, CELL_SIZE_KM);
+        assertThat(expected).hasSizeGreaterThan(1000);
+
+        for (GridType gridType : GridType.values()) {
+            BroadPhase widened = BroadPhase.create(BroadPhaseType.GRID, gridType, TOLERANCE_KM + 2 * errorKm,
+                    CELL_SIZE_KM + 2 * errorKm);
+            BroadPhase broadPhase = BroadPhase.errorBounded(widened, (sat, step) -> errorKm, errorKm);
+            Set<String> actual = keys(scanService.checkPairs(quantized, TOLERANCE_KM, broadPhase, KernelType.SCALAR));
+            assertThat(actual).as("%s grid", gridType).containsAll(expected);
+        }
+    }
+
+    private static Set<String> within(PositionSource positions, double distanceKm) {
+        Set<String> pairs = new HashSet<>();
+        for (int step = 0; step < positions.times().length; step++) {
+            for (int a = 0; a < positions.numSatellites(); a++) {
+                if (!positions.isValid(a, step)) continue;
+                for (int b = a + 1; b < positions.numSatellites(); b++) {
+                    if (positions.isValid(b, step)
+                            && positions.distanceSquaredAt(a, b, step) < distanceKm * distanceKm) {
+                        pairs.add(DetectionBuffer.pairKey(a, b) + "/" + step);
+                    }
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private static Set<String> keys(DetectionBuffer detections) {
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < detections.size(); i++) keys.add(detections.pairKey(i) + "/" + detections.step(i));
+        return keys;
+    }
+
+    /**
+     * Pairs of satellites about one cell apart along x, closing or opening slowly. Each pair's lower satellite drifts
+     * across a cell boundary at some step of the window while the gap is a hair under one cell. Both satellites fly
+     * fast across y and z, which coarsens the quantization unit, and the pairs are spread over y and z far beyond the
+     * tolerance, so pairs do not meet each other.
+     */
+    private static KnotCache pairsAtCellDistance(int numPairs, long seed) {
+        Random random = new Random(seed);
+        float[][][] p = new float[3][2 * numPairs][KNOTS];
+        float[][][] v = new float[3][2 * numPairs][KNOTS];
+        double knotSeconds = STRIDE * 9.0;
+        for (int pair = 0; pair < numPairs; pair++) {
+            double crossing = random.nextDouble() * (KNOTS - 1) * knotSeconds;
+            double boundary = (1 + random.nextInt(30)) * CELL_SIZE_KM;
+            double gap = CELL_SIZE_KM - random.nextDouble() * 0.02;
+            double closing = (random.nextBoolean() ? 1 : -1) * (0.001 + random.nextDouble() * 0.002);
+            double y = random.nextDouble() * 20000, z = random.nextDouble() * 20000;
+            double vy = random.nextGaussian() * 5, vz = random.nextGaussian() * 5;
+            for (int sat = 2 * pair; sat <= 2 * pair + 1; sat++) {
+                boolean lower = sat == 2 * pair;
+                double vx = lower ? 0.01 : 0.01 - closing;
+                for (int k = 0; k < KNOTS; k++) {
+                    double t = knotSeconds * k;
+                    p[0][sat][k] = (float) (boundary + (lower ? 0 : gap) + vx * (t - crossing));
+                    p[1][sat][k] = (float) (y + vy * t);
+                    p[2][sat][k] = (float) (z + vz * t);
+                    v[0][sat][k] = (float) vx;
+                    v[1][sat][k] = (float) vy;
+                    v[2][sat][k] = (float) vz;
+                }
+            }
+        }
+        return TestCatalogs.knots((KNOTS - 1) * STRIDE + 1, 9_000_000_000L, STRIDE,
+                p[0], p[1], p[2], v[0], v[1], v[2]);
+    }
+}
@@ -0,0 +1,99 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.PositionCache;
+import org.eclipse.collections.impl.factory.primitive.LongSets;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static io.salad109.conjunctiondetector.conjunction.internal.TestCatalogs.randomWalk;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventReducerTest {
+
+    private static final int STEPS = 300;
+    private static final int MAX_GAP_STEPS = 3;
+
+    private final ScanService scanService = new ScanService(null);
+
+    @Test
+    void rangesCombinedInAnyShapeMatchGroupAndReduce() {
+        Random random = new Random(7);
+        DetectionBuffer detections = randomDetections(random);
+        DetectionBuffer expected = scanService.groupAndReduce(detections);
+
+        for (int trial = 0; trial < 20; trial++) {
+            // Cut the steps into ranges of 1 to 12 steps, one reducer each
+            List<EventReducer> reducers = new ArrayList<>();
+            int start = 0;
+            while (start < STEPS) {
+                int end = Math.min(STEPS, start + 1 + random.nextInt(12));
+                EventReducer reducer = new EventReducer(MAX_GAP_STEPS);
+                for (int step = start; step < end; step++) {
+                    for (int i = 0; i < detections.size(); i++) {
+                        if (detections.step(i) == step) {
+                            reducer.add(detections.pairKey(i), detections.distanceSq(i), step);
+                        }
+                    }
+                }
+                reducers.add(reducer);
+                start = end;
+            }
+            // Combine adjacent reducers in random order, as a fork-join tree would
+            while (reducers.size() > 1) {
+                int i = random.nextInt(reducers.size() - 1);
+                reducers.get(i).combine(reducers.remove(i + 1));
+            }
+            assertSameEvents(sorted(reducers.getFirst().events()), expected);
+        }
+    }
+
+    @Test
+    void inSweepReductionMatchesSortedReduction() {
+        PositionCache cache = randomWalk(300, 400, 11);
+        BroadPhase broadPhase = BroadPhase.create(BroadPhaseType.GRID, GridType.SORTED, 50.0, 50.0);
+
+        DetectionBuffer expected = scanService.groupAndReduce(
+                scanService.checkPairs(cache, 50.0, broadPhase, KernelType.SCALAR));
+        DetectionBuffer actual = scanService.checkPairsReduced(cache, 50.0, broadPhase, KernelType.SCALAR,
+                LongSets.immutable.empty());
+
+        assertThat(expected.size()).isGreaterThan(100);
+        assertSameEvents(actual, expected);
+    }
+
+    private void assertSameEvents(DetectionBuffer actual, DetectionBuffer expected) {
+        assertThat(actual.size()).isEqualTo(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.pairKey(i)).isEqualTo(expected.pairKey(i));
+            assertThat(actual.step(i)).isEqualTo(expected.step(i));
+            assertThat(actual.distanceSq(i)).isEqualTo(expected.distanceSq(i));
+        }
+    }
+
+    /**
+     * Reorder by re-reducing: events are more than the gap apart, so grouping them again changes nothing but order.
+     */
+    private DetectionBuffer sorted(DetectionBuffer events) {
+        return scanService.groupAndReduce(events, 0);
+    }
+
+    /**
+     * Bursty detections over a few pairs, with gaps around the event boundary and repeated distances for ties.
+     */
+    private static DetectionBuffer randomDetections(Random random) {
+        DetectionBuffer detections = new DetectionBuffer();
+        for (int a = 0; a < 6; a++) {
+            for (int b = a + 1; b < 6; b++) {
+                int step = random.nextInt(5);
+                while (step < STEPS) {
+                    detections.add(a, b, random.nextInt(4), step);
+                    step += 1 + random.nextInt(random.nextBoolean() ? 3 : 6);
+                }
+            }
+        }
+        return detections;
+    }
+}
@@ -0,0 +1,104 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.KnotCache;
+import org.eclipse.collections.api.set.primitive.LongSet;
+import org.eclipse.collections.impl.factory.primitive.LongSets;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FormationTrackerTest {
+
+    private static final double TOLERANCE_KM = 50.0;
+    private static final double MAX_VELOCITY_KMS = 0.01;
+    private static final int STRIDE = 10;
+    private static final int KNOTS = 6;
+
+    private final ScanService scanService = new ScanService(null);
+
+    @Test
+    void coLocatedPairsAreTrackedAcrossWindowsUntilTheySeparate() {
+        FormationTracker tracker = new FormationTracker(scanService);
+        // 0-1 fly in formation, 0-2 pass each other fast
+        KnotCache first = knots(new double[]{0, 2, 40}, new double[]{0, 0.005, 1.0});
+        tracker.spot(events(0, 1, 0, 2), first, TOLERANCE_KM, MAX_VELOCITY_KMS);
+        assertThat(tracker.trackedCount()).isEqualTo(1);
+
+        // Same pair, new window and shuffled array indices: still held
+        KnotCache second = knots(new double[]{40, 2, 0}, new double[]{1.0, 0.005, 0});
+        LongSet held = tracker.verify(second, TOLERANCE_KM, MAX_VELOCITY_KMS);
+        assertThat(held.toArray()).containsExactly(DetectionBuffer.pairKey(1, 2));
+
+        // Drifting apart at 20 m/s: dropped
+        KnotCache third = knots(new double[]{0, 2, 40}, new double[]{0, 0.02, 1.0});
+        assertThat(tracker.verify(third, TOLERANCE_KM, MAX_VELOCITY_KMS).isEmpty()).isTrue();
+        assertThat(tracker.trackedCount()).isZero();
+    }
+
+    @Test
+    void scopedVerifyLeavesOtherPairsAlone() {
+        FormationTracker tracker = new FormationTracker(scanService);
+        KnotCache together = knots(new double[]{0, 2, 3000, 3002}, new double[]{0, 0.005, 0, 0.005});
+        tracker.spot(events(0, 1, 2, 3), together, TOLERANCE_KM, MAX_VELOCITY_KMS);
+        assertThat(tracker.trackedCount()).isEqualTo(2);
+
+        // Only satellite 0 in scope: its pair is held, the other one is neither returned nor dropped though it broke up
+        KnotCache apart = knots(new double[]{0, 2, 3000, 3002}, new double[]{0, 0.005, 0, 1.0});
+        LongSet held = tracker.verify(apart, TOLERANCE_KM, MAX_VELOCITY_KMS, new boolean[]{true, false, false, false});
+        assertThat(held.toArray()).containsExactly(DetectionBuffer.pairKey(0, 1));
+        assertThat(tracker.trackedCount()).isEqualTo(2);
+
+        assertThat(tracker.verify(apart, TOLERANCE_KM, MAX_VELOCITY_KMS).toArray())
+                .containsExactly(DetectionBuffer.pairKey(0, 1));
+        assertThat(tracker.trackedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void excludedPairsAreNotEmitted() {
+        KnotCache knots = knots(new double[]{0, 2, 10}, new double[]{0, 0.005, 0.001});
+        PositionSource cache = new PropagationService().interpolate(knots);
+        BroadPhase broadPhase = BroadPhase.create(BroadPhaseType.GRID, GridType.SORTED, TOLERANCE_KM, TOLERANCE_KM);
+
+        DetectionBuffer all = scanService.checkPairs(cache, TOLERANCE_KM, broadPhase, KernelType.SCALAR);
+        DetectionBuffer filtered = scanService.checkPairs(cache, TOLERANCE_KM, broadPhase, KernelType.SCALAR,
+                LongSets.immutable.of(DetectionBuffer.pairKey(0, 1)));
+
+        int steps = cache.times().length;
+        assertThat(all.size()).isEqualTo(3 * steps);
+        assertThat(filtered.size()).isEqualTo(2 * steps);
+        for (int i = 0; i < filtered.size(); i++) {
+            assertThat(filtered.pairKey(i)).isNotEqualTo(DetectionBuffer.pairKey(0, 1));
+        }
+    }
+
+    private static DetectionBuffer events(int... indices) {
+        DetectionBuffer events = new DetectionBuffer();
+        for (int i = 0; i < indices.length; i += 2) events.add(indices[i], indices[i + 1], 1f, 0);
+        return events;
+    }
+
+    /**
+     * Satellites moving along x from the given offsets at the given speeds, NORAD ID 100 + offset.
+     */
+    private static KnotCache knots(double[] offsetsKm, double[] speedsKmS) {
+        int numSats = offsetsKm.length;
+        int steps = (KNOTS - 1) * STRIDE + 1;
+        long stepNanos = 10_000_000_000L;
+        int[] ids = new int[numSats];
+        float[][] x = new float[numSats][KNOTS];
+        float[][] y = new float[numSats][KNOTS];
+        float[][] z = new float[numSats][KNOTS];
+        float[][] vx = new float[numSats][KNOTS];
+        float[][] vy = new float[numSats][KNOTS];
+        float[][] vz = new float[numSats][KNOTS];
+        double knotSeconds = STRIDE * stepNanos / 1e9;
+        for (int s = 0; s < numSats; s++) {
+            ids[s] = 100 + (int) offsetsKm[s];
+            for (int k = 0; k < KNOTS; k++) {
+                x[s][k] = (float) (7000 + offsetsKm[s] + speedsKmS[s] * knotSeconds * k);
+                vx[s][k] = (float) speedsKmS[s];
+            }
+        }
+        return TestCatalogs.knots(ids, steps, stepNanos, STRIDE, x, y, z, vx, vy, vz);
+    }
+}
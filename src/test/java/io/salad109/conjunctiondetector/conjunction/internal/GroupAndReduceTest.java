@@ -1,12 +1,7 @@
 package io.salad109.conjunctiondetector.conjunction.internal;
 
-import io.salad109.conjunctiondetector.conjunction.internal.ScanService.CoarseDetection;
-import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
-import io.salad109.conjunctiondetector.satellite.SatelliteScanInfoPair;
 import org.junit.jupiter.api.Test;
 
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -15,97 +10,120 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 class GroupAndReduceTest {
 
-    private static final SatelliteScanInfoPair PAIR_AB = makePair(100, 200);
-    private static final SatelliteScanInfoPair PAIR_CD = makePair(300, 400);
+    private static final long PAIR_AB = DetectionBuffer.pairKey(0, 1);
+    private static final long PAIR_CD = DetectionBuffer.pairKey(2, 3);
     private final ScanService scanService = new ScanService(null);
 
-    private static SatelliteScanInfoPair makePair(int noradA, int noradB) {
-        OffsetDateTime epoch = OffsetDateTime.now(ZoneOffset.UTC);
-        SatelliteScanInfo a = new SatelliteScanInfo(noradA, "", "", epoch, 400.0, "PAYLOAD");
-        SatelliteScanInfo b = new SatelliteScanInfo(noradB, "", "", epoch, 400.0, "PAYLOAD");
-        return new SatelliteScanInfoPair(a, b);
+    private static DetectionBuffer buffer(Detection... detections) {
+        DetectionBuffer buffer = new DetectionBuffer(1);
+        for (Detection d : detections) buffer.add(d.pairKey(), d.distanceSq(), d.step());
+        return buffer;
+    }
+
+    private static List<Detection> toList(DetectionBuffer buffer) {
+        List<Detection> list = new ArrayList<>();
+        for (int i = 0; i < buffer.size(); i++) {
+            list.add(new Detection(buffer.pairKey(i), buffer.distanceSq(i), buffer.step(i)));
+        }
+        return list;
+    }
+
+    @Test
+    void pairKeyIsOrderIndependent() {
+        assertThat(DetectionBuffer.pairKey(7, 3)).isEqualTo(DetectionBuffer.pairKey(3, 7));
+        assertThat(DetectionBuffer.firstIndex(DetectionBuffer.pairKey(7, 3))).isEqualTo(3);
+        assertThat(DetectionBuffer.secondIndex(DetectionBuffer.pairKey(7, 3))).isEqualTo(7);
     }
 
     @Test
     void consecutiveDetectionsClusterIntoOneEvent() {
-        List<CoarseDetection> detections = List.of(
-                new CoarseDetection(PAIR_AB, 25.0, 10),
-                new CoarseDetection(PAIR_AB, 9.0, 11),
-                new CoarseDetection(PAIR_AB, 16.0, 12)
+        DetectionBuffer detections = buffer(
+                new Detection(PAIR_AB, 25.0f, 10),
+                new Detection(PAIR_AB, 9.0f, 11),
+                new Detection(PAIR_AB, 16.0f, 12)
         );
 
-        List<CoarseDetection> result = scanService.groupAndReduce(detections);
+        List<Detection> result = toList(scanService.groupAndReduce(detections));
 
         assertThat(result).hasSize(1);
-        assertThat(result.getFirst().distanceSq()).isEqualTo(9.0);
-        assertThat(result.getFirst().stepIndex()).isEqualTo(11);
+        assertThat(result.getFirst().distanceSq()).isEqualTo(9.0f);
+        assertThat(result.getFirst().step()).isEqualTo(11);
     }
 
     @Test
     void gapOfExactlyThreeStaysInSameEvent() {
-        List<CoarseDetection> detections = List.of(
-                new CoarseDetection(PAIR_AB, 25.0, 10),
-                new CoarseDetection(PAIR_AB, 9.0, 13)
+        DetectionBuffer detections = buffer(
+                new Detection(PAIR_AB, 25.0f, 10),
+                new Detection(PAIR_AB, 9.0f, 13)
         );
 
-        List<CoarseDetection> result = scanService.groupAndReduce(detections);
+        List<Detection> result = toList(scanService.groupAndReduce(detections));
 
         assertThat(result).hasSize(1);
-        assertThat(result.getFirst().distanceSq()).isEqualTo(9.0);
+        assertThat(result.getFirst().distanceSq()).isEqualTo(9.0f);
     }
 
     @Test
     void gapOfFourSplits() {
-        List<CoarseDetection> detections = List.of(
-                new CoarseDetection(PAIR_AB, 25.0, 10),
-                new CoarseDetection(PAIR_AB, 9.0, 14)
+        DetectionBuffer detections = buffer(
+                new Detection(PAIR_AB, 25.0f, 10),
+                new Detection(PAIR_AB, 9.0f, 14)
         );
 
-        List<CoarseDetection> result = scanService.groupAndReduce(detections);
+        List<Detection> result = toList(scanService.groupAndReduce(detections));
 
         assertThat(result).hasSize(2);
-        assertThat(result.get(0).distanceSq()).isEqualTo(25.0);
-        assertThat(result.get(1).distanceSq()).isEqualTo(9.0);
+        assertThat(result.get(0).distanceSq()).isEqualTo(25.0f);
+        assertThat(result.get(1).distanceSq()).isEqualTo(9.0f);
     }
 
     @Test
     void differentPairsSplitIntoSeparateEvents() {
-        List<CoarseDetection> detections = List.of(
-                new CoarseDetection(PAIR_AB, 10.0, 5),
-                new CoarseDetection(PAIR_CD, 20.0, 5)
+        DetectionBuffer detections = buffer(
+                new Detection(PAIR_AB, 10.0f, 5),
+                new Detection(PAIR_CD, 20.0f, 5)
         );
 
-        List<CoarseDetection> result = scanService.groupAndReduce(detections);
+        List<Detection> result = toList(scanService.groupAndReduce(detections));
 
         assertThat(result).hasSize(2);
-        assertThat(result.get(0).distanceSq()).isEqualTo(10.0);
-        assertThat(result.get(0).pair()).isEqualTo(PAIR_AB);
-        assertThat(result.get(1).distanceSq()).isEqualTo(20.0);
-        assertThat(result.get(1).pair()).isEqualTo(PAIR_CD);
+        assertThat(result.get(0).distanceSq()).isEqualTo(10.0f);
+        assertThat(result.get(0).pairKey()).isEqualTo(PAIR_AB);
+        assertThat(result.get(1).distanceSq()).isEqualTo(20.0f);
+        assertThat(result.get(1).pairKey()).isEqualTo(PAIR_CD);
+    }
+
+    @Test
+    void emptyInputProducesNoEvents() {
+        assertThat(scanService.groupAndReduce(new DetectionBuffer()).size()).isZero();
     }
 
     @Test
     void shuffledInputProducesSameResultAsOrdered() {
         // parallel scanning doesn't guarantee ordered items
-        List<CoarseDetection> ordered = List.of(
-                new CoarseDetection(PAIR_AB, 25.0, 10),
-                new CoarseDetection(PAIR_AB, 9.0, 11),
-                new CoarseDetection(PAIR_AB, 16.0, 12),
-                new CoarseDetection(PAIR_CD, 50.0, 5),
-                new CoarseDetection(PAIR_CD, 30.0, 6),
-                new CoarseDetection(PAIR_AB, 100.0, 50),
-                new CoarseDetection(PAIR_AB, 4.0, 51)
+        List<Detection> ordered = List.of(
+                new Detection(PAIR_AB, 25.0f, 10),
+                new Detection(PAIR_AB, 9.0f, 11),
+                new Detection(PAIR_AB, 16.0f, 12),
+                new Detection(PAIR_CD, 50.0f, 5),
+                new Detection(PAIR_CD, 30.0f, 6),
+                new Detection(PAIR_AB, 100.0f, 50),
+                new Detection(PAIR_AB, 4.0f, 51)
         );
 
-        List<CoarseDetection> shuffled = new ArrayList<>(ordered);
+        List<Detection> shuffled = new ArrayList<>(ordered);
         Collections.shuffle(shuffled);
 
-        List<CoarseDetection> fromOrdered = scanService.groupAndReduce(ordered);
-        List<CoarseDetection> fromShuffled = scanService.groupAndReduce(shuffled);
+        List<Detection> fromOrdered = toList(scanService.groupAndReduce(buffer(ordered.toArray(Detection[]::new))));
+        List<Detection> fromShuffled = toList(scanService.groupAndReduce(buffer(shuffled.toArray(Detection[]::new))));
 
         assertThat(fromShuffled).isEqualTo(fromOrdered);
-        for (int i = 0; i < fromOrdered.size(); i++) {
-            assertThat(fromShuffled.get(i)).isEqualTo(fromOrdered.get(i));
-        }
+        assertThat(fromOrdered).containsExactly(
+                new Detection(PAIR_AB, 9.0f, 11),
+                new Detection(PAIR_AB, 4.0f, 51),
+                new Detection(PAIR_CD, 30.0f, 6));
+    }
+
+    private record Detection(long pairKey, float distanceSq, int step) {
     }
 }
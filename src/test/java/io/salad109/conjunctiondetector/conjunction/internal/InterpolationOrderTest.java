@@ -0,0 +1,97 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.orekit.data.DataContext;
+import org.orekit.data.DirectoryCrawler;
+
+import java.io.File;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InterpolationOrderTest {
+
+    private static final String IRIDIUM_TLE1 = "1 24946U 97051C   09040.78448243 +.00000153 +00000-0 +47668-4 0  9994";
+    private static final String IRIDIUM_TLE2 = "2 24946 086.3994 121.7028 0002288 085.1644 274.9812 14.34219863597336";
+    private static final String COSMOS_TLE1 = "1 22675U 93036A   09040.49834364 -.00000001  00000-0  95251-5 0  9996";
+    private static final String COSMOS_TLE2 = "2 22675 074.0355 019.4646 0016027 098.7014 261.5952 14.31135643817415";
+    private static final OffsetDateTime START = OffsetDateTime.of(2009, 2, 10, 12, 0, 0, 0, ZoneOffset.UTC);
+    private static final double STEP_SECONDS = 9;
+    private static final int STRIDE = 100; // 15 minutes between knots
+
+    private final PropagationService propagationService = new PropagationService();
+
+    @BeforeAll
+    static void initOrekit() {
+        File orekitData = new File("src/main/resources/orekit-data");
+        if (orekitData.exists()) {
+            DataContext.getDefault().getDataProvidersManager()
+                    .addProvider(new DirectoryCrawler(orekitData));
+        }
+    }
+
+    @Test
+    void quinticStaysAccurateAtLargeStrides() {
+        ScanCatalog catalog = catalog();
+        OffsetDateTime end = START.plusHours(6);
+        PositionSource truth = propagationService.interpolate(
+                propagationService.computeKnots(catalog, START, end, STEP_SECONDS, 1),
+                PositionLayout.SATELLITE_MAJOR, KernelType.SCALAR);
+        PropagationService.KnotCache knots = propagationService.computeKnots(catalog, START, end, STEP_SECONDS, STRIDE);
+
+        double cubicKm = maxErrorKm(truth, propagationService.interpolate(
+                knots, PositionLayout.SATELLITE_MAJOR, KernelType.SCALAR, InterpolationOrder.CUBIC));
+        double quinticKm = maxErrorKm(truth, propagationService.interpolate(
+                knots, PositionLayout.SATELLITE_MAJOR, KernelType.SCALAR, InterpolationOrder.QUINTIC));
+
+        assertThat(quinticKm).isLessThan(cubicKm / 10);
+        assertThat(quinticKm).isLessThan(1.0);
+    }
+
+    @Test
+    void layoutsAgreeIncludingMissingKnots() {
+        PropagationService.KnotCache knots = propagationService.computeKnots(
+                catalog(), START, START.plusHours(2), STEP_SECONDS, STRIDE / 4);
+        knots.x()[1][3] = Float.NaN; // SGP4 failure on one knot
+
+        PositionSource satelliteMajor = propagationService.interpolateQuintic(knots, PositionLayout.SATELLITE_MAJOR);
+        PositionSource stepMajor = propagationService.interpolateQuintic(knots, PositionLayout.STEP_MAJOR);
+        PositionSource cubic = propagationService.interpolate(knots, PositionLayout.SATELLITE_MAJOR, KernelType.SCALAR);
+
+        assertThat(satelliteMajor.isValid(1, 2 * STRIDE / 4 + 1)).isFalse();
+        for (int sat = 0; sat < knots.numSatellites(); sat++) {
+            for (int step = 0; step < knots.times().length; step++) {
+                assertThat(stepMajor.isValid(sat, step)).isEqualTo(satelliteMajor.isValid(sat, step));
+                assertThat(cubic.isValid(sat, step)).isEqualTo(satelliteMajor.isValid(sat, step));
+                if (!satelliteMajor.isValid(sat, step)) continue;
+                assertThat(stepMajor.x(sat, step)).isEqualTo(satelliteMajor.x(sat, step));
+                assertThat(stepMajor.y(sat, step)).isEqualTo(satelliteMajor.y(sat, step));
+                assertThat(stepMajor.z(sat, step)).isEqualTo(satelliteMajor.z(sat, step));
+            }
+        }
+    }
+
+    private static double maxErrorKm(PositionSource truth, PositionSource interpolated) {
+        double max = 0;
+        for (int sat = 0; sat < truth.numSatellites(); sat++) {
+            for (int step = 0; step < truth.times().length; step++) {
+                if (!interpolated.isValid(sat, step)) continue;
+                double dx = interpolated.x(sat, step) - truth.x(sat, step);
+                double dy = interpolated.y(sat, step) - truth.y(sat, step);
+                double dz = interpolated.z(sat, step) - truth.z(sat, step);
+                max = Math.max(max, Math.sqrt(dx * dx + dy * dy + dz * dz));
+            }
+        }
+        return max;
+    }
+
+    private ScanCatalog catalog() {
+        return propagationService.buildCatalog(List.of(
+                new SatelliteScanInfo(24946, IRIDIUM_TLE1, IRIDIUM_TLE2, START, 780.0, 800.0, "PAYLOAD"),
+                new SatelliteScanInfo(22675, COSMOS_TLE1, COSMOS_TLE2, START, 780.0, 800.0, "PAYLOAD")));
+    }
+}
@@ -15,9 +15,9 @@ import java.io.File;
 import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.offset;
@@ -75,6 +75,69 @@ class IridiumCosmosBackTest {
                 .isCloseTo(11700, offset(1000.0));
     }
 
+    @Test
+    void streamingSweepMatchesCachedSweep() {
+        OffsetDateTime epoch = OffsetDateTime.of(2009, 2, 9, 12, 0, 0, 0, ZoneOffset.UTC);
+        List<SatelliteScanInfo> satellites = List.of(
+                new SatelliteScanInfo(24946, IRIDIUM_TLE1, IRIDIUM_TLE2, epoch, 780.0, 800.0, "PAYLOAD"),
+                new SatelliteScanInfo(22675, COSMOS_TLE1, COSMOS_TLE2, epoch, 780.0, 800.0, "PAYLOAD"));
+        ScanCatalog catalog = propagationService.buildCatalog(satellites);
+
+        // Window length not a multiple of the stride, so the uncovered tail is exercised too
+        OffsetDateTime startTime = COLLISION_TIME.minusHours(1);
+        PropagationService.KnotCache knots = propagationService.computeKnots(
+                catalog, startTime, startTime.plusMinutes(97), 9, 50);
+
+        PropagationService.PositionCache cache = propagationService.interpolate(knots);
+        DetectionBuffer cached = scanService.checkPairs(cache, 72.0, 48.0, GridType.SORTED);
+        DetectionBuffer streamed = scanService.checkPairsStreaming(knots, 72.0, 48.0, GridType.SORTED);
+
+        assertThat(streamed.size()).isPositive();
+        assertThat(rows(streamed)).containsExactlyInAnyOrderElementsOf(rows(cached));
+        // Refinement reads the knots directly and must land on the same TCA
+        assertThat(scanService.refine(scanService.groupAndReduce(streamed), catalog, knots, 9, 5.0))
+                .extracting(ScanService.RefinedEvent::tca)
+                .isEqualTo(scanService.refine(scanService.groupAndReduce(cached), catalog, cache, 9, 5.0)
+                        .stream().map(ScanService.RefinedEvent::tca).toList());
+    }
+
+    @Test
+    void filterChainMatchesGridEngine() {
+        OffsetDateTime epoch = OffsetDateTime.of(2009, 2, 9, 12, 0, 0, 0, ZoneOffset.UTC);
+        List<SatelliteScanInfo> satellites = List.of(
+                new SatelliteScanInfo(24946, IRIDIUM_TLE1, IRIDIUM_TLE2, epoch, 780.0, 800.0, "PAYLOAD"),
+                new SatelliteScanInfo(22675, COSMOS_TLE1, COSMOS_TLE2, epoch, 780.0, 800.0, "PAYLOAD"));
+        ScanCatalog catalog = propagationService.buildCatalog(satellites);
+        FilterChainService filterChainService = new FilterChainService(propagationService, scanService);
+
+        OffsetDateTime startTime = COLLISION_TIME.minusHours(6);
+        OffsetDateTime endTime = COLLISION_TIME.plusHours(6);
+        PropagationService.KnotCache knots = propagationService.computeKnots(
+                catalog, startTime, endTime, 9, 50);
+        PropagationService.PositionCache cache = propagationService.interpolate(knots);
+        List<ScanService.RefinedEvent> grid = scanService.refine(
+                scanService.groupAndReduce(scanService.checkPairs(cache, 72.0, 48.0, GridType.SORTED)),
+                catalog, cache, 9, 5.0);
+
+        FilterChainService.ScreeningResult result = filterChainService.screen(
+                catalog, startTime, endTime, 9, 72.0, 5.0, 25.0);
+
+        assertThat(grid).hasSize(1);
+        assertThat(result.refined()).hasSize(1);
+        assertThat(Duration.between(grid.getFirst().tca(), result.refined().getFirst().tca()).abs())
+                .isLessThan(Duration.ofSeconds(1));
+        // A handful of node passes instead of every step
+        assertThat(result.samples()).isPositive().isLessThan(cache.times().length / 10);
+    }
+
+    private static List<String> rows(DetectionBuffer detections) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < detections.size(); i++) {
+            rows.add(detections.pairKey(i) + "/" + detections.step(i) + "/" + detections.distanceSq(i));
+        }
+        return rows;
+    }
+
     @Test
     void fullPipelineDetectsCollision() {
 
@@ -88,34 +151,33 @@ class IridiumCosmosBackTest {
         OffsetDateTime cosmosEpoch = OffsetDateTime.of(2009, 2, 9, 11, 57, 36, 0, ZoneOffset.UTC);
 
         SatelliteScanInfo iridium = new SatelliteScanInfo(24946, IRIDIUM_TLE1, IRIDIUM_TLE2,
-                iridiumEpoch, 780.0, "PAYLOAD");
+                iridiumEpoch, 780.0, 800.0, "PAYLOAD");
         SatelliteScanInfo cosmos = new SatelliteScanInfo(22675, COSMOS_TLE1, COSMOS_TLE2,
-                cosmosEpoch, 780.0, "PAYLOAD");
+                cosmosEpoch, 780.0, 800.0, "PAYLOAD");
 
         List<SatelliteScanInfo> satellites = List.of(iridium, cosmos);
-        Map<Integer, TLEPropagator> propagators = propagationService.buildPropagators(satellites);
+        ScanCatalog catalog = propagationService.buildCatalog(satellites);
 
         // Propagate and interpolate
         OffsetDateTime startTime = COLLISION_TIME.minusHours(1);
         OffsetDateTime endTime = startTime.plusHours(1);
         PropagationService.KnotCache knots = propagationService.computeKnots(
-                propagators, startTime, endTime, stepSeconds, interpolationStride);
+                catalog, startTime, endTime, stepSeconds, interpolationStride);
         PropagationService.PositionCache cache = propagationService.interpolate(knots);
 
         // Coarse spatial scan
-        List<ScanService.CoarseDetection> detections = scanService.checkPairs(
-                satellites, cache, toleranceKm, cellSizeKm);
+        DetectionBuffer detections = scanService.checkPairs(cache, toleranceKm, cellSizeKm, GridType.SORTED);
 
-        assertThat(detections).as("coarse detections").isNotEmpty();
+        assertThat(detections.size()).as("coarse detections").isPositive();
 
         // Group and reduce
-        List<ScanService.CoarseDetection> events = scanService.groupAndReduce(detections);
+        DetectionBuffer events = scanService.groupAndReduce(detections);
 
-        assertThat(events).as("grouped events").isNotEmpty();
+        assertThat(events.size()).as("grouped events").isPositive();
 
         // Refine
         List<ScanService.RefinedEvent> refined = scanService.refine(
-                events, cache, propagators, stepSeconds, thresholdKm);
+                events, catalog, cache, stepSeconds, thresholdKm);
 
         assertThat(refined).as("refined events").isNotEmpty();
 
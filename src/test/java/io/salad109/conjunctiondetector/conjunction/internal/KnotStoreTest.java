@@ -0,0 +1,179 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.KnotCache;
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.orekit.data.DataContext;
+import org.orekit.data.DirectoryCrawler;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class KnotStoreTest {
+
+    private static final String IRIDIUM_TLE1 = "1 24946U 97051C   09040.78448243 +.00000153 +00000-0 +47668-4 0  9994";
+    private static final String IRIDIUM_TLE2 = "2 24946 086.3994 121.7028 0002288 085.1644 274.9812 14.34219863597336";
+    private static final String COSMOS_TLE1 = "1 22675U 93036A   09040.49834364 -.00000001  00000-0  95251-5 0  9996";
+    private static final String COSMOS_TLE2 = "2 22675 074.0355 019.4646 0016027 098.7014 261.5952 14.31135643817415";
+    // Same elements a day later, with element set 999
+    private static final String COSMOS_TLE1_UPDATED =
+            checksummed("1 22675U 93036A   09041.49834364 -.00000001  00000-0  95251-5 0  999");
+    private static final OffsetDateTime EPOCH = OffsetDateTime.of(2009, 2, 9, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final double TOLERANCE_KM = 1e-3;
+    private static final double STEP_SECONDS = 10.0;
+    private static final int STRIDE = 30;
+
+    private final PropagationService propagationService = new PropagationService();
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void initOrekit() {
+        File orekitData = new File("src/main/resources/orekit-data");
+        if (orekitData.exists()) {
+            DataContext.getDefault().getDataProvidersManager()
+                    .addProvider(new DirectoryCrawler(orekitData));
+        }
+    }
+
+    @Test
+    void storedKnotsMatchFreshOnesAcrossRestartsAndElementSetChanges() {
+        long knotNanos = KnotStore.knotNanos(STEP_SECONDS, STRIDE);
+        OffsetDateTime start = KnotStore.floorToLattice(EPOCH.plusHours(5).plusMinutes(7), knotNanos);
+        OffsetDateTime end = start.plusHours(24);
+        ScanCatalog catalog = propagationService.buildCatalog(List.of(
+                satellite(24946, IRIDIUM_TLE1, IRIDIUM_TLE2), satellite(22675, COSMOS_TLE1, COSMOS_TLE2)));
+
+        KnotCache fresh = knots(catalog, start, end, null);
+        KnotCache first = knots(catalog, start, end, KnotStore.open(directory));
+        assertSameKnots(first, fresh);
+        assertThat(directory).isNotEmptyDirectory();
+
+        // A restarted store reads the same knots for a later, overlapping window
+        OffsetDateTime later = start.plusHours(6);
+        KnotCache laterFresh = knots(catalog, later, later.plusHours(24), null);
+        assertSameKnots(knots(catalog, later, later.plusHours(24), KnotStore.open(directory)), laterFresh);
+
+        // A new element set for one satellite replaces its stored knots
+        ScanCatalog updated = propagationService.buildCatalog(List.of(
+                satellite(24946, IRIDIUM_TLE1, IRIDIUM_TLE2),
+                satellite(22675, COSMOS_TLE1_UPDATED, COSMOS_TLE2, EPOCH.plusDays(1))));
+        KnotStore store = KnotStore.open(directory);
+        assertSameKnots(knots(updated, later, later.plusHours(24), store), knots(updated, later, later.plusHours(24), null));
+        assertThat(Math.abs(knots(updated, later, later.plusHours(24), store).x()[1][0] - laterFresh.x()[1][0]))
+                .isGreaterThan(100f);
+    }
+
+    @Test
+    void overlappingScanPropagatesOnlyNewBlocks() {
+        long knotNanos = KnotStore.knotNanos(STEP_SECONDS, STRIDE);
+        OffsetDateTime start = KnotStore.floorToLattice(EPOCH.plusHours(5).plusMinutes(7), knotNanos);
+        OffsetDateTime next = start.plusHours(6);
+        ScanCatalog catalog = propagationService.buildCatalog(List.of(
+                satellite(24946, IRIDIUM_TLE1, IRIDIUM_TLE2), satellite(22675, COSMOS_TLE1, COSMOS_TLE2)));
+        KnotStore store = KnotStore.open(directory);
+
+        scan(catalog, start, store);
+        long first = store.propagatedRecords();
+        assertThat(first).isEqualTo((block(start.plusHours(24), knotNanos) - block(start, knotNanos) + 1) * 2);
+
+        // The next scan six hours later only propagates the blocks past the end of the first one
+        scan(catalog, next, store);
+        assertThat(store.propagatedRecords() - first)
+                .isEqualTo((block(next.plusHours(24), knotNanos) - block(start.plusHours(24), knotNanos)) * 2);
+    }
+
+    @Test
+    void switchingThePropagatorRepropagatesStoredBlocks() {
+        long knotNanos = KnotStore.knotNanos(STEP_SECONDS, STRIDE);
+        OffsetDateTime start = KnotStore.floorToLattice(EPOCH.plusHours(5).plusMinutes(7), knotNanos);
+        OffsetDateTime end = start.plusHours(6);
+        ScanCatalog catalog = propagationService.buildCatalog(List.of(
+                satellite(24946, IRIDIUM_TLE1, IRIDIUM_TLE2), satellite(22675, COSMOS_TLE1, COSMOS_TLE2)));
+        KnotStore store = KnotStore.open(directory);
+
+        knots(catalog, start, end, store, KnotPropagator.NATIVE);
+        long records = store.propagatedRecords();
+        KnotCache orekit = knots(catalog, start, end, store, KnotPropagator.OREKIT);
+        assertThat(store.propagatedRecords()).isEqualTo(2 * records);
+        assertSameKnots(orekit, knots(catalog, start, end, null, KnotPropagator.OREKIT));
+
+        // Records now hold Orekit knots, the same propagator reads them back
+        knots(catalog, start, end, store, KnotPropagator.OREKIT);
+        assertThat(store.propagatedRecords()).isEqualTo(2 * records);
+    }
+
+    @Test
+    void offLatticeStartIsPropagatedWithoutTheStore() {
+        ScanCatalog catalog = propagationService.buildCatalog(List.of(satellite(24946, IRIDIUM_TLE1, IRIDIUM_TLE2)));
+        OffsetDateTime start = EPOCH.plusSeconds(7);
+        KnotStore store = KnotStore.open(directory);
+
+        assertSameKnots(knots(catalog, start, start.plusHours(6), store), knots(catalog, start, start.plusHours(6), null));
+        assertThat(directory).isEmptyDirectory();
+    }
+
+    /**
+     * A 24-hour scan in four subwindows, pruned once at its start like {@code ConjunctionService.screenGrid}.
+     */
+    private void scan(ScanCatalog catalog, OffsetDateTime start, KnotStore store) {
+        store.retainFrom(start, KnotStore.knotNanos(STEP_SECONDS, STRIDE));
+        for (int w = 0; w < 4; w++) {
+            knots(catalog, start.plusHours(6L * w), start.plusHours(6L * (w + 1)), store);
+        }
+    }
+
+    private static long block(OffsetDateTime time, long knotNanos) {
+        return Math.floorDiv(KnotStore.epochNanos(time) / knotNanos, KnotStore.BLOCK_KNOTS);
+    }
+
+    private KnotCache knots(ScanCatalog catalog, OffsetDateTime start, OffsetDateTime end, KnotStore store) {
+        return knots(catalog, start, end, store, KnotPropagator.NATIVE);
+    }
+
+    private KnotCache knots(ScanCatalog catalog, OffsetDateTime start, OffsetDateTime end, KnotStore store,
+                            KnotPropagator knotPropagator) {
+        return propagationService.computeKnots(catalog, start, end, STEP_SECONDS, STRIDE, knotPropagator, store);
+    }
+
+    /**
+     * Stored blocks are propagated from the block start rather than the window start, equal up to rounding.
+     */
+    private static void assertSameKnots(KnotCache actual, KnotCache expected) {
+        assertThat(actual.numKnots()).isEqualTo(expected.numKnots());
+        for (int s = 0; s < expected.numSatellites(); s++) {
+            for (int k = 0; k < expected.numKnots(); k++) {
+                assertThat(actual.x()[s][k]).isCloseTo(expected.x()[s][k], within((float) TOLERANCE_KM));
+                assertThat(actual.y()[s][k]).isCloseTo(expected.y()[s][k], within((float) TOLERANCE_KM));
+                assertThat(actual.z()[s][k]).isCloseTo(expected.z()[s][k], within((float) TOLERANCE_KM));
+                assertThat(actual.vz()[s][k]).isCloseTo(expected.vz()[s][k], within((float) TOLERANCE_KM));
+            }
+        }
+    }
+
+    private static SatelliteScanInfo satellite(int noradId, String line1, String line2) {
+        return satellite(noradId, line1, line2, EPOCH);
+    }
+
+    private static SatelliteScanInfo satellite(int noradId, String line1, String line2, OffsetDateTime epoch) {
+        return new SatelliteScanInfo(noradId, line1, line2, epoch, 780, 790, "PAYLOAD");
+    }
+
+    private static String checksummed(String body) {
+        int sum = 0;
+        for (char c : body.toCharArray()) {
+            if (Character.isDigit(c)) sum += c - '0';
+            else if (c == '-') sum += 1;
+        }
+        return body + sum % 10;
+    }
+}
@@ -0,0 +1,121 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.PositionCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NeighborListTest {
+
+    private static final double TOLERANCE_KM = 50.0;
+
+    private final ScanService scanService = new ScanService(null);
+
+    @Test
+    void neighborListMatchesPerStepSweep() {
+        PositionCache cache = linearMotion(400, 40, 7.5, 11);
+
+        List<String> expected = rows(scanService.checkPairs(cache, TOLERANCE_KM, TOLERANCE_KM, GridType.SORTED));
+        for (int rebuildSteps : new int[]{2, 5, 8}) {
+            List<String> actual = rows(scanService.checkPairsNeighborList(
+                    cache, TOLERANCE_KM, TOLERANCE_KM, GridType.SORTED, rebuildSteps));
+            assertThat(actual).as("rebuild every %d steps", rebuildSteps)
+                    .isNotEmpty()
+                    .containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    @Test
+    void neighborListCoversCellsSmallerThanTolerance() {
+        // Pairs up to 150 km apart at the build step closing at 20 km per step, inside the list's skin
+        PositionCache cache = headOnPairs(60, 8, 10.0, 5);
+        double cellSizeKm = 20.0;
+
+        List<String> expected = rows(scanService.checkPairs(cache, TOLERANCE_KM, cellSizeKm, GridType.SORTED));
+        List<String> actual = rows(scanService.checkPairsNeighborList(
+                cache, TOLERANCE_KM, cellSizeKm, GridType.SORTED, 8));
+        assertThat(expected).isNotEmpty();
+        assertThat(actual).containsAll(expected);
+    }
+
+    @Test
+    void fastObjectForcesEarlyRebuild() {
+        PositionCache cache = linearMotion(2, 8, 0.0, 3);
+        // Object 1 sits still at the build step, then jumps next to object 0
+        for (int step = 0; step < 8; step++) {
+            cache.x()[0][step] = 0;
+            cache.y()[0][step] = 0;
+            cache.z()[0][step] = 0;
+            cache.x()[1][step] = step < 4 ? 5000 : 10;
+            cache.y()[1][step] = 0;
+            cache.z()[1][step] = 0;
+        }
+
+        DetectionBuffer detections = scanService.checkPairsNeighborList(
+                cache, TOLERANCE_KM, TOLERANCE_KM, GridType.SORTED, 8);
+
+        assertThat(detections.size()).isEqualTo(4);
+        assertThat(detections.step(0)).isEqualTo(4);
+    }
+
+    private static List<String> rows(DetectionBuffer detections) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < detections.size(); i++) {
+            rows.add(detections.pairKey(i) + "/" + detections.step(i) + "/" + detections.distanceSq(i));
+        }
+        return rows;
+    }
+
+    /**
+     * Satellites on straight lines with random directions, speeds up to {@code maxStepKm} per step.
+     */
+    private static PositionCache linearMotion(int numSats, int steps, double maxStepKm, long seed) {
+        Random random = new Random(seed);
+        float[][] x = new float[numSats][steps];
+        float[][] y = new float[numSats][steps];
+        float[][] z = new float[numSats][steps];
+        for (int s = 0; s < numSats; s++) {
+            double px = random.nextDouble() * 600, py = random.nextDouble() * 600, pz = random.nextDouble() * 600;
+            double vx = (random.nextDouble() * 2 - 1) * maxStepKm / Math.sqrt(3);
+            double vy = (random.nextDouble() * 2 - 1) * maxStepKm / Math.sqrt(3);
+            double vz = (random.nextDouble() * 2 - 1) * maxStepKm / Math.sqrt(3);
+            for (int step = 0; step < steps; step++) {
+                x[s][step] = (float) (px + vx * step);
+                y[s][step] = (float) (py + vy * step);
+                z[s][step] = (float) (pz + vz * step);
+            }
+        }
+        return TestCatalogs.positions(9_000_000_000L, x, y, z);
+    }
+
+    /**
+     * Pairs 100 to 150 km apart flying at each other along a random axis at {@code stepKm} each per step, with a small
+     * miss distance. Pairs are 1000 km from one another.
+     */
+    private static PositionCache headOnPairs(int numPairs, int steps, double stepKm, long seed) {
+        Random random = new Random(seed);
+        float[][] x = new float[2 * numPairs][steps];
+        float[][] y = new float[2 * numPairs][steps];
+        float[][] z = new float[2 * numPairs][steps];
+        for (int p = 0; p < numPairs; p++) {
+            double gap = 100 + random.nextDouble() * 50;
+            double miss = random.nextDouble() * 10;
+            int axis = random.nextInt(3);
+            for (int step = 0; step < steps; step++) {
+                double half = gap / 2 - stepKm * step;
+                float[][] along = axis == 0 ? x : axis == 1 ? y : z;
+                float[][] across = axis == 0 ? y : x;
+                along[2 * p][step] = (float) -half;
+                along[2 * p + 1][step] = (float) half;
+                across[2 * p + 1][step] = (float) miss;
+                x[2 * p][step] += p * 1000;
+                x[2 * p + 1][step] += p * 1000;
+            }
+        }
+        return TestCatalogs.positions(9_000_000_000L, x, y, z);
+    }
+}
@@ -0,0 +1,137 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.KnotCache;
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.PositionCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class PositionLayoutTest {
+
+    private final PropagationService propagationService = new PropagationService();
+
+    @Test
+    void stepMajorMatchesSatelliteMajor() {
+        // 11 steps at stride 4: knots at 0, 4, 8 and an uncovered tail step 9-10
+        KnotCache knots = randomKnots(5, 11, 4);
+
+        assertSameLayout(propagationService.interpolate(knots), propagationService.interpolateStepMajor(knots));
+    }
+
+    @Test
+    void stepMajorMatchesSatelliteMajorWithFailedPropagation() {
+        KnotCache knots = randomKnots(4, 41, 5);
+        // Propagation failure leaves a NaN suffix of knots
+        Arrays.fill(knots.x()[1], 3, knots.x()[1].length, Float.NaN);
+        Arrays.fill(knots.x()[2], 1, knots.x()[2].length, Float.NaN);
+        Arrays.fill(knots.x()[3], Float.NaN);
+
+        assertSameLayout(propagationService.interpolate(knots), propagationService.interpolateStepMajor(knots));
+    }
+
+    @Test
+    void stepMajorMatchesSatelliteMajorWithoutInterpolation() {
+        KnotCache knots = randomKnots(3, 7, 1);
+
+        assertSameLayout(propagationService.interpolate(knots), propagationService.interpolateStepMajor(knots));
+    }
+
+    @Test
+    void knotCacheEvaluatesSameInterpolant() {
+        KnotCache knots = randomKnots(4, 43, 6);
+        Arrays.fill(knots.x()[2], 4, knots.x()[2].length, Float.NaN);
+
+        assertSameLayout(propagationService.interpolate(knots), knots);
+    }
+
+    @Test
+    void vectorInterpolationMatchesScalar() {
+        // Stride 13 leaves a scalar tail after the vector lanes on any species width
+        KnotCache knots = randomKnots(6, 70, 13);
+        Arrays.fill(knots.x()[4], 2, knots.x()[4].length, Float.NaN);
+
+        assertSameLayout(propagationService.interpolate(knots, KernelType.SCALAR),
+                propagationService.interpolate(knots, KernelType.VECTOR));
+    }
+
+    @Test
+    void offHeapMatchesSatelliteMajor(@TempDir Path spillDirectory) {
+        KnotCache knots = randomKnots(5, 41, 5);
+        Arrays.fill(knots.x()[3], 2, knots.x()[3].length, Float.NaN);
+
+        try (OffHeapPositionCache offHeap = propagationService.interpolateOffHeap(knots, null);
+             OffHeapPositionCache mapped = propagationService.interpolateOffHeap(knots, spillDirectory)) {
+            assertSameLayout(propagationService.interpolate(knots), offHeap);
+            assertSameLayout(propagationService.interpolate(knots), mapped);
+            // The scratch file is unlinked once mapped
+            assertThat(spillDirectory).isEmptyDirectory();
+        }
+    }
+
+    @Test
+    void closedOffHeapCacheCannotBeRead() {
+        OffHeapPositionCache cache = propagationService.interpolateOffHeap(randomKnots(2, 9, 4), null);
+        cache.close();
+
+        assertThatThrownBy(() -> cache.x(0, 0)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void quantizedStaysWithinItsErrorBound() {
+        KnotCache knots = randomKnots(5, 41, 5);
+        Arrays.fill(knots.x()[3], 2, knots.x()[3].length, Float.NaN);
+        PositionCache expected = propagationService.interpolate(knots);
+
+        QuantizedPositionCache quantized = propagationService.interpolateQuantized(knots);
+
+        // Nothing clipped: half a unit per axis at most, plus float rounding
+        assertThat(quantized.maxErrorKm()).isLessThanOrEqualTo(Math.sqrt(3) / 2 * quantized.kmPerUnit() * 1.01);
+        for (int sat = 0; sat < expected.numSatellites(); sat++) {
+            for (int step = 0; step < expected.times().length; step++) {
+                assertThat(quantized.isValid(sat, step)).isEqualTo(expected.isValid(sat, step));
+                if (!expected.isValid(sat, step)) continue;
+                double dx = quantized.x(sat, step) - expected.x(sat, step);
+                double dy = quantized.y(sat, step) - expected.y(sat, step);
+                double dz = quantized.z(sat, step) - expected.z(sat, step);
+                assertThat(Math.sqrt(dx * dx + dy * dy + dz * dz)).isLessThanOrEqualTo(quantized.maxErrorKm());
+            }
+        }
+        assertThat(Math.sqrt(quantized.distanceSquaredAt(0, 1, 7)))
+                .isCloseTo(Math.sqrt(expected.distanceSquaredAt(0, 1, 7)), within(2 * quantized.maxErrorKm()));
+    }
+
+    private static void assertSameLayout(PositionCache expected, PositionSource actual) {
+        assertThat(actual.numSatellites()).isEqualTo(expected.numSatellites());
+        for (int sat = 0; sat < expected.numSatellites(); sat++) {
+            for (int step = 0; step < expected.times().length; step++) {
+                assertThat(actual.isValid(sat, step)).as("valid sat %d step %d", sat, step)
+                        .isEqualTo(expected.isValid(sat, step));
+                if (!expected.isValid(sat, step)) continue;
+                assertThat(actual.x(sat, step)).isEqualTo(expected.x(sat, step));
+                assertThat(actual.y(sat, step)).isEqualTo(expected.y(sat, step));
+                assertThat(actual.z(sat, step)).isEqualTo(expected.z(sat, step));
+            }
+        }
+        assertThat(actual.distanceSquaredAt(0, 1, 0)).isEqualTo(expected.distanceSquaredAt(0, 1, 0));
+    }
+
+    private static KnotCache randomKnots(int numSats, int totalSteps, int stride) {
+        Random random = new Random(7);
+        int numKnots = (totalSteps - 1) / stride + 1;
+        float[][][] arrays = new float[6][numSats][numKnots];
+        for (int s = 0; s < numSats; s++) {
+            for (float[][] array : arrays) {
+                for (int k = 0; k < numKnots; k++) array[s][k] = (float) (random.nextGaussian() * 7000);
+            }
+        }
+        return TestCatalogs.knots(totalSteps, 9_000_000_000L, stride,
+                arrays[0], arrays[1], arrays[2], arrays[3], arrays[4], arrays[5]);
+    }
+}
@@ -0,0 +1,73 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.orekit.data.DataContext;
+import org.orekit.data.DirectoryCrawler;
+
+import java.io.File;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PropagatorRegistryTest {
+
+    private static final String IRIDIUM_TLE1 = "1 24946U 97051C   09040.78448243 +.00000153 +00000-0 +47668-4 0  9994";
+    private static final String IRIDIUM_TLE2 = "2 24946 086.3994 121.7028 0002288 085.1644 274.9812 14.34219863597336";
+    private static final String COSMOS_TLE1 = "1 22675U 93036A   09040.49834364 -.00000001  00000-0  95251-5 0  9996";
+    private static final String COSMOS_TLE2 = "2 22675 074.0355 019.4646 0016027 098.7014 261.5952 14.31135643817415";
+    private static final OffsetDateTime EPOCH = OffsetDateTime.of(2009, 2, 9, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @BeforeAll
+    static void initOrekit() {
+        File orekitData = new File("src/main/resources/orekit-data");
+        if (orekitData.exists()) {
+            DataContext.getDefault().getDataProvidersManager()
+                    .addProvider(new DirectoryCrawler(orekitData));
+        }
+    }
+
+    @Test
+    void propagatorsAreReusedUntilTheElementSetChanges() {
+        PropagatorRegistry registry = new PropagatorRegistry(null);
+        SatelliteScanInfo iridium = satellite(24946, IRIDIUM_TLE1, IRIDIUM_TLE2);
+        SatelliteScanInfo cosmos = satellite(22675, COSMOS_TLE1, COSMOS_TLE2);
+
+        ScanCatalog first = registry.catalog(List.of(iridium, cosmos));
+        assertThat(first.propagators()[0].getTLE().getSatelliteNumber()).isEqualTo(24946);
+        assertThat(first.propagator(22675)).isSameAs(first.propagators()[1]);
+
+        // Same element sets in another order: same propagators, aligned with the new list
+        ScanCatalog second = registry.catalog(List.of(cosmos, iridium));
+        assertThat(second.propagators()[0]).isSameAs(first.propagators()[1]);
+        assertThat(second.propagators()[1]).isSameAs(first.propagators()[0]);
+
+        // A new element set number rebuilds that satellite only
+        SatelliteScanInfo updated = satellite(24946, withElementSetNo(IRIDIUM_TLE1, 1000), IRIDIUM_TLE2);
+        ScanCatalog third = registry.catalog(List.of(updated, cosmos));
+        assertThat(third.propagators()[0]).isNotSameAs(first.propagators()[0]);
+        assertThat(third.propagators()[0].getTLE().getElementNumber()).isEqualTo(1000);
+        assertThat(third.propagators()[1]).isSameAs(first.propagators()[1]);
+        assertThat(registry.size()).isEqualTo(2);
+    }
+
+    private static SatelliteScanInfo satellite(int noradId, String line1, String line2) {
+        return new SatelliteScanInfo(noradId, line1, line2, EPOCH, 780, 790, "PAYLOAD");
+    }
+
+    /**
+     * Line 1 with columns 65-68 replaced and the checksum recomputed.
+     */
+    private static String withElementSetNo(String line1, int elementSetNo) {
+        String body = line1.substring(0, 64) + String.format("%4d", elementSetNo);
+        int sum = 0;
+        for (char c : body.toCharArray()) {
+            if (Character.isDigit(c)) sum += c - '0';
+            else if (c == '-') sum += 1;
+        }
+        return body + sum % 10;
+    }
+}
@@ -0,0 +1,90 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.KnotCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SatelliteOrderingTest {
+
+    private static final double TOLERANCE_KM = 72.0;
+    private static final int STRIDE = 10;
+    private static final int KNOTS = 5;
+
+    private final PropagationService propagationService = new PropagationService();
+    private final ScanService scanService = new ScanService(null);
+
+    @Test
+    void mortonOrderRenumbersSatellitesWithoutChangingEvents() {
+        KnotCache catalog = drifting(new Random(11), 500);
+        KnotCache morton = propagationService.reorder(catalog, SatelliteOrdering.MORTON);
+
+        for (int i = 0; i < morton.numSatellites(); i++) {
+            int noradId = morton.arrayIdToNoradId()[i];
+            assertThat(morton.noradIdToArrayId().get(noradId)).isEqualTo(i);
+            assertThat(morton.x()[i]).containsExactly(catalog.x()[catalog.noradIdToArrayId().get(noradId)]);
+        }
+        // The satellite that never propagated goes last
+        assertThat(morton.arrayIdToNoradId()[morton.numSatellites() - 1]).isEqualTo(1);
+
+        DetectionBuffer before = detections(catalog);
+        DetectionBuffer after = detections(morton);
+        assertThat(before.size()).isGreaterThan(100);
+        assertThat(byNoradId(after, morton)).containsExactlyElementsOf(byNoradId(before, catalog));
+        // Spatial neighbors now sit close together in the arrays
+        assertThat(meanIndexGap(after)).isLessThan(meanIndexGap(before) / 2);
+    }
+
+    private DetectionBuffer detections(KnotCache knots) {
+        BroadPhase broadPhase = BroadPhase.create(BroadPhaseType.GRID, GridType.SORTED, TOLERANCE_KM, TOLERANCE_KM);
+        return scanService.groupAndReduce(scanService.checkPairs(propagationService.interpolate(knots), TOLERANCE_KM,
+                broadPhase, KernelType.SCALAR));
+    }
+
+    private static List<String> byNoradId(DetectionBuffer events, KnotCache knots) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            int a = knots.arrayIdToNoradId()[DetectionBuffer.firstIndex(events.pairKey(i))];
+            int b = knots.arrayIdToNoradId()[DetectionBuffer.secondIndex(events.pairKey(i))];
+            rows.add(Math.min(a, b) + "-" + Math.max(a, b) + "@" + events.step(i) + ":" + events.distanceSq(i));
+        }
+        rows.sort(null);
+        return rows;
+    }
+
+    private static double meanIndexGap(DetectionBuffer events) {
+        long sum = 0;
+        for (int i = 0; i < events.size(); i++) {
+            sum += DetectionBuffer.secondIndex(events.pairKey(i)) - DetectionBuffer.firstIndex(events.pairKey(i));
+        }
+        return (double) sum / events.size();
+    }
+
+    /**
+     * Satellites drifting slowly in a 1000 km cube, NORAD ID 1 + index. Satellite 0 has no knots.
+     */
+    private static KnotCache drifting(Random random, int numSats) {
+        int steps = (KNOTS - 1) * STRIDE + 1;
+        long stepNanos = 10_000_000_000L;
+        float[][][] p = new float[3][numSats][KNOTS];
+        float[][][] v = new float[3][numSats][KNOTS];
+        double knotSeconds = STRIDE * stepNanos / 1e9;
+        for (int s = 0; s < numSats; s++) {
+            for (int axis = 0; axis < 3; axis++) {
+                double origin = 7000 + random.nextDouble() * 1000;
+                double speed = random.nextDouble() * 0.1 - 0.05;
+                for (int k = 0; k < KNOTS; k++) {
+                    p[axis][s][k] = (float) (origin + speed * knotSeconds * k);
+                    v[axis][s][k] = (float) speed;
+                }
+            }
+        }
+        Arrays.fill(p[0][0], Float.NaN);
+        return TestCatalogs.knots(steps, stepNanos, STRIDE, p[0], p[1], p[2], v[0], v[1], v[2]);
+    }
+}
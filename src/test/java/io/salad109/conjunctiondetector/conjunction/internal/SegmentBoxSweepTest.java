@@ -0,0 +1,77 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.KnotCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentBoxSweepTest {
+
+    private static final double MU_KM3_S2 = 398600.4418;
+    private static final double TOLERANCE_KM = 72.0;
+    private static final double STEP_SECONDS = 9.0;
+    private static final int STRIDE = 20;
+
+    private final ScanService scanService = new ScanService(null);
+
+    @Test
+    void findsTheSameDetectionsAsTheCachedSweep() {
+        KnotCache knots = circularOrbits(new Random(5), 300, 12);
+        BroadPhase broadPhase = BroadPhase.create(BroadPhaseType.GRID, GridType.SORTED, TOLERANCE_KM, TOLERANCE_KM);
+
+        DetectionBuffer cached = scanService.checkPairs(new PropagationService().interpolate(knots), TOLERANCE_KM,
+                broadPhase, KernelType.SCALAR);
+        DetectionBuffer boxed = scanService.checkPairsBySegmentBoxes(knots, TOLERANCE_KM);
+
+        assertThat(cached.size()).isGreaterThan(100);
+        assertThat(boxed.size()).isEqualTo(cached.size());
+        // Both sets of detections are distinct (pair, step), so their events match exactly
+        DetectionBuffer expected = scanService.groupAndReduce(cached);
+        DetectionBuffer actual = scanService.groupAndReduce(boxed);
+        assertThat(actual.size()).isEqualTo(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.pairKey(i)).isEqualTo(expected.pairKey(i));
+            assertThat(actual.step(i)).isEqualTo(expected.step(i));
+            assertThat(actual.distanceSq(i)).isEqualTo(expected.distanceSq(i));
+        }
+    }
+
+    /**
+     * Circular orbits bunched in phase and inclination so that many pairs pass within tolerance, with exact knot
+     * velocities. Every tenth satellite loses a few knots.
+     */
+    private static KnotCache circularOrbits(Random random, int numSats, int numKnots) {
+        int steps = (numKnots - 1) * STRIDE + 1;
+        long stepNanos = (long) (STEP_SECONDS * 1e9);
+        float[][] x = new float[numSats][numKnots];
+        float[][] y = new float[numSats][numKnots];
+        float[][] z = new float[numSats][numKnots];
+        float[][] vx = new float[numSats][numKnots];
+        float[][] vy = new float[numSats][numKnots];
+        float[][] vz = new float[numSats][numKnots];
+        for (int s = 0; s < numSats; s++) {
+            double r = 6900 + random.nextDouble() * 100;
+            double rate = Math.sqrt(MU_KM3_S2 / (r * r * r)) * (random.nextBoolean() ? 1 : -1);
+            double phase = random.nextDouble() * 0.3;
+            double inclination = random.nextDouble() * 0.3;
+            for (int k = 0; k < numKnots; k++) {
+                double u = phase + rate * STEP_SECONDS * STRIDE * k;
+                double ci = Math.cos(inclination);
+                double si = Math.sin(inclination);
+                x[s][k] = (float) (r * Math.cos(u));
+                y[s][k] = (float) (r * Math.sin(u) * ci);
+                z[s][k] = (float) (r * Math.sin(u) * si);
+                vx[s][k] = (float) (-r * rate * Math.sin(u));
+                vy[s][k] = (float) (r * rate * Math.cos(u) * ci);
+                vz[s][k] = (float) (r * rate * Math.cos(u) * si);
+            }
+            if (s % 10 == 0) {
+                int lost = random.nextInt(numKnots);
+                x[s][lost] = y[s][lost] = z[s][lost] = Float.NaN;
+            }
+        }
+        return TestCatalogs.knots(steps, stepNanos, STRIDE, x, y, z, vx, vy, vz);
+    }
+}
@@ -0,0 +1,105 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.KnotCache;
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.orekit.data.DataContext;
+import org.orekit.data.DirectoryCrawler;
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.time.TimeScalesFactory;
+
+import java.io.File;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class Sgp4BatchTest {
+
+    private static final OffsetDateTime EPOCH = OffsetDateTime.of(2009, 2, 9, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final double POSITION_TOLERANCE_KM = 0.002;
+    private static final double VELOCITY_TOLERANCE_KM_S = 1e-6;
+
+    private final PropagationService propagationService = new PropagationService();
+
+    @BeforeAll
+    static void initOrekit() {
+        File orekitData = new File("src/main/resources/orekit-data");
+        if (orekitData.exists()) {
+            DataContext.getDefault().getDataProvidersManager()
+                    .addProvider(new DirectoryCrawler(orekitData));
+        }
+    }
+
+    @Test
+    void nativeKnotsMatchOrekit() {
+        List<SatelliteScanInfo> satellites = new ArrayList<>();
+        satellites.add(satellite("1 24946U 97051C   09040.78448243 +.00000153 +00000-0 +47668-4 0  9994",
+                "2 24946 086.3994 121.7028 0002288 085.1644 274.9812 14.34219863597336"));
+        satellites.add(satellite("1 22675U 93036A   09040.49834364 -.00000001  00000-0  95251-5 0  9996",
+                "2 22675 074.0355 019.4646 0016027 098.7014 261.5952 14.31135643817415"));
+        // Deep space, left to Orekit's SDP4
+        satellites.add(synthetic(90000, 2.0, 0.01, 0.96, 1e-5));
+
+        // Circular (no drag perigee terms), low perigee (truncated drag) and eccentric orbits
+        Random random = new Random(5);
+        for (int i = 0; i < 60; i++) {
+            double revsPerDay = 11.0 + 5.5 * random.nextDouble();
+            double e = switch (i % 3) {
+                case 0 -> 5e-5 * random.nextDouble();
+                case 1 -> 0.001 + 0.01 * random.nextDouble();
+                default -> 0.2 * random.nextDouble();
+            };
+            satellites.add(synthetic(90001 + i, revsPerDay, e, Math.PI * random.nextDouble(),
+                    1e-3 * random.nextDouble()));
+        }
+
+        ScanCatalog catalog = propagationService.buildCatalog(satellites);
+        AbsoluteDate start = propagationService.toAbsoluteDate(EPOCH.plusHours(6));
+        Sgp4Batch batch = Sgp4Batch.of(catalog.propagators(), start);
+        assertThat(batch.covers(0)).isTrue();
+        assertThat(batch.covers(2)).isFalse();
+
+        OffsetDateTime end = EPOCH.plusDays(3);
+        KnotCache reference = propagationService.computeKnots(catalog, EPOCH.plusHours(6), end, 10.0, 30,
+                KnotPropagator.OREKIT);
+        KnotCache batched = propagationService.computeKnots(catalog, EPOCH.plusHours(6), end, 10.0, 30,
+                KnotPropagator.NATIVE);
+
+        int compared = 0;
+        for (int s = 0; s < reference.numSatellites(); s++) {
+            for (int k = 0; k < reference.numKnots(); k++) {
+                if (Float.isNaN(reference.x()[s][k])) {
+                    assertThat(batched.x()[s][k]).isNaN();
+                    continue;
+                }
+                assertThat(batched.x()[s][k]).isCloseTo(reference.x()[s][k], within((float) POSITION_TOLERANCE_KM));
+                assertThat(batched.y()[s][k]).isCloseTo(reference.y()[s][k], within((float) POSITION_TOLERANCE_KM));
+                assertThat(batched.z()[s][k]).isCloseTo(reference.z()[s][k], within((float) POSITION_TOLERANCE_KM));
+                assertThat(batched.vx()[s][k]).isCloseTo(reference.vx()[s][k], within((float) VELOCITY_TOLERANCE_KM_S));
+                assertThat(batched.vy()[s][k]).isCloseTo(reference.vy()[s][k], within((float) VELOCITY_TOLERANCE_KM_S));
+                assertThat(batched.vz()[s][k]).isCloseTo(reference.vz()[s][k], within((float) VELOCITY_TOLERANCE_KM_S));
+                compared++;
+            }
+        }
+        assertThat(compared).isGreaterThan(reference.numSatellites() * reference.numKnots() / 2);
+    }
+
+    private static SatelliteScanInfo satellite(String line1, String line2) {
+        return new SatelliteScanInfo(Integer.parseInt(line1.substring(2, 7).trim()), line1, line2, EPOCH, 0, 0,
+                "PAYLOAD");
+    }
+
+    private static SatelliteScanInfo synthetic(int noradId, double revsPerDay, double e, double i, double bStar) {
+        TLE tle = new TLE(noradId, 'U', 2000, 1, "A", 0, 999,
+                new AbsoluteDate(2009, 2, 9, 0, 0, 0.0, TimeScalesFactory.getUTC()),
+                revsPerDay * 2 * Math.PI / 86400.0, 0.0, 0.0, e, i, 1.3, 2.1, 0.4, 100, bStar);
+        return satellite(tle.getLine1(), tle.getLine2());
+    }
+}
@@ -0,0 +1,182 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SortedSpatialGridTest {
+
+    @Test
+    void sameCellSatellitesFormPair() {
+        float[][] x = {{100.0f}, {105.0f}};
+        float[][] y = {{200.0f}, {205.0f}};
+        float[][] z = {{300.0f}, {305.0f}};
+
+        SortedSpatialGrid grid = new SortedSpatialGrid(10.0, x, y, z, 0);
+
+        assertThat(collectPairs(grid)).hasSize(1);
+    }
+
+    @Test
+    void adjacentCellSatellitesFormPair() {
+        float[][] x = {{9.9f}, {10.1f}};
+        float[][] y = {{5.0f}, {5.0f}};
+        float[][] z = {{5.0f}, {5.0f}};
+
+        SortedSpatialGrid grid = new SortedSpatialGrid(10.0, x, y, z, 0);
+
+        assertThat(collectPairs(grid)).hasSize(1);
+    }
+
+    @Test
+    void nanSatellitesAreSkipped() {
+        float[][] x = {{Float.NaN}, {100.0f}};
+        float[][] y = {{Float.NaN}, {200.0f}};
+        float[][] z = {{Float.NaN}, {300.0f}};
+
+        SortedSpatialGrid grid = new SortedSpatialGrid(10.0, x, y, z, 0);
+
+        assertThat(collectPairs(grid)).isEmpty();
+    }
+
+    @Test
+    void allNanProducesNoPairs() {
+        float[][] x = {{Float.NaN}, {Float.NaN}};
+        float[][] y = {{Float.NaN}, {Float.NaN}};
+        float[][] z = {{Float.NaN}, {Float.NaN}};
+
+        SortedSpatialGrid grid = new SortedSpatialGrid(10.0, x, y, z, 0);
+
+        assertThat(collectPairs(grid)).isEmpty();
+    }
+
+    @Test
+    void negativeCoordinatesCrossZeroBoundary() {
+        // floor(-0.1/10)=-1, floor(0.1/10)=0
+        float[][] x = {{-0.1f}, {0.1f}};
+        float[][] y = {{5.0f}, {5.0f}};
+        float[][] z = {{5.0f}, {5.0f}};
+
+        SortedSpatialGrid grid = new SortedSpatialGrid(10.0, x, y, z, 0);
+
+        assertThat(collectPairs(grid)).hasSize(1);
+    }
+
+    @Test
+    void diagonalNeighborsFormPair() {
+        // +x+y+z and +x-y-z corners of the first cell, the two outer satellites are not neighbors
+        float[][] x = {{5.0f}, {15.0f}, {15.0f}};
+        float[][] y = {{5.0f}, {15.0f}, {-5.0f}};
+        float[][] z = {{5.0f}, {15.0f}, {-5.0f}};
+
+        SortedSpatialGrid grid = new SortedSpatialGrid(10.0, x, y, z, 0);
+
+        assertThat(collectPairs(grid)).hasSize(2);
+    }
+
+    @Test
+    void distantSatellitesDoNotFormPair() {
+        float[][] x = {{5.0f}, {25.0f}};
+        float[][] y = {{5.0f}, {5.0f}};
+        float[][] z = {{5.0f}, {5.0f}};
+
+        SortedSpatialGrid grid = new SortedSpatialGrid(10.0, x, y, z, 0);
+
+        assertThat(collectPairs(grid)).isEmpty();
+    }
+
+    @Test
+    void cellIndexDoesNotWrap() {
+        // SpatialGrid aliases these two onto the same cell
+        float[][] x = {{5.0f}, {10245.0f}};
+        float[][] y = {{5.0f}, {5.0f}};
+        float[][] z = {{5.0f}, {5.0f}};
+
+        SortedSpatialGrid grid = new SortedSpatialGrid(10.0, x, y, z, 0);
+
+        assertThat(collectPairs(grid)).isEmpty();
+    }
+
+    @Test
+    void matchesBruteForceNeighborhood() {
+        Random random = new Random(42);
+        int n = 2000;
+        double cellSize = 48.0;
+        float[][] x = new float[n][1];
+        float[][] y = new float[n][1];
+        float[][] z = new float[n][1];
+        for (int i = 0; i < n; i++) {
+            x[i][0] = (float) (random.nextGaussian() * 400);
+            y[i][0] = (float) (random.nextGaussian() * 400);
+            z[i][0] = (float) (random.nextGaussian() * 400);
+        }
+
+        SortedSpatialGrid grid = new SortedSpatialGrid(cellSize, x, y, z, 0);
+        Set<Long> pairs = new HashSet<>();
+        List<int[]> raw = collectPairs(grid);
+        for (int[] pair : raw) {
+            pairs.add(pairKey(pair[0], pair[1]));
+        }
+        assertThat(pairs).as("no duplicate pairs").hasSize(raw.size());
+
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (Math.abs(cell(x[i][0], cellSize) - cell(x[j][0], cellSize)) <= 1
+                        && Math.abs(cell(y[i][0], cellSize) - cell(y[j][0], cellSize)) <= 1
+                        && Math.abs(cell(z[i][0], cellSize) - cell(z[j][0], cellSize)) <= 1) {
+                    expected.add(pairKey(i, j));
+                }
+            }
+        }
+        assertThat(pairs).isEqualTo(expected);
+    }
+
+    @Test
+    void vectorDistanceKernelMatchesScalar() {
+        Random random = new Random(3);
+        int n = 3000;
+        float[][] x = new float[n][1];
+        float[][] y = new float[n][1];
+        float[][] z = new float[n][1];
+        for (int i = 0; i < n; i++) {
+            x[i][0] = (float) (random.nextGaussian() * 300);
+            y[i][0] = (float) (random.nextGaussian() * 300);
+            z[i][0] = (float) (random.nextGaussian() * 300);
+        }
+        PositionSource positions = new PropagationService.PositionCache(null, null, null, x, y, z);
+        double tolSq = 20.0 * 20.0;
+
+        Set<String> expected = new HashSet<>();
+        new SortedSpatialGrid(15.0, positions, 0).forEachCandidatePair((a, b) -> {
+            double distSq = positions.distanceSquaredAt(a, b, 0);
+            if (distSq < tolSq) expected.add(pairKey(a, b) + "/" + (float) distSq);
+        });
+
+        Set<String> actual = new HashSet<>();
+        new SortedSpatialGrid(15.0, positions, 0).forEachPairWithin(positions, 0, tolSq,
+                (a, b, distSq) -> actual.add(pairKey(a, b) + "/" + distSq));
+
+        assertThat(actual).isNotEmpty().isEqualTo(expected);
+    }
+
+    private static int cell(float p, double cellSize) {
+        return (int) Math.floor(p / cellSize);
+    }
+
+    private static long pairKey(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    private List<int[]> collectPairs(SortedSpatialGrid grid) {
+        List<int[]> pairs = new ArrayList<>();
+        grid.forEachCandidatePair((a, b) -> pairs.add(new int[]{a, b}));
+        return pairs;
+    }
+}
@@ -0,0 +1,79 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.KnotCache;
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.PositionCache;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Synthetic knot and position caches for the scan tests. Tests supply the motion, this supplies the catalog around it.
+ */
+final class TestCatalogs {
+
+    static final OffsetDateTime START = OffsetDateTime.of(2026, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private TestCatalogs() {
+    }
+
+    static OffsetDateTime[] times(int steps, long stepNanos) {
+        OffsetDateTime[] times = new OffsetDateTime[steps];
+        for (int i = 0; i < steps; i++) times[i] = START.plusNanos(i * stepNanos);
+        return times;
+    }
+
+    /**
+     * Knots in rows of {@code [satellite][knot]}, NORAD ID 1 + index.
+     */
+    static KnotCache knots(int steps, long stepNanos, int stride,
+                           float[][] x, float[][] y, float[][] z, float[][] vx, float[][] vy, float[][] vz) {
+        int[] noradIds = IntStream.rangeClosed(1, x.length).toArray();
+        return knots(noradIds, steps, stepNanos, stride, x, y, z, vx, vy, vz);
+    }
+
+    static KnotCache knots(int[] noradIds, int steps, long stepNanos, int stride,
+                           float[][] x, float[][] y, float[][] z, float[][] vx, float[][] vy, float[][] vz) {
+        return new KnotCache(idMap(noradIds), noradIds, times(steps, stepNanos), stepNanos, stride,
+                x, y, z, vx, vy, vz);
+    }
+
+    /**
+     * Positions in rows of {@code [satellite][step]}, NORAD ID 1 + index.
+     */
+    static PositionCache positions(long stepNanos, float[][] x, float[][] y, float[][] z) {
+        int[] noradIds = IntStream.rangeClosed(1, x.length).toArray();
+        return new PositionCache(idMap(noradIds), noradIds, times(x[0].length, stepNanos), x, y, z);
+    }
+
+    /**
+     * Satellites wandering in a 1000 km cube, some of them invalid at some steps.
+     */
+    static PositionCache randomWalk(int numSats, int steps, long seed) {
+        Random random = new Random(seed);
+        float[][] x = new float[numSats][steps];
+        float[][] y = new float[numSats][steps];
+        float[][] z = new float[numSats][steps];
+        for (int s = 0; s < numSats; s++) {
+            double px = random.nextDouble() * 1000, py = random.nextDouble() * 1000, pz = random.nextDouble() * 1000;
+            for (int step = 0; step < steps; step++) {
+                px += random.nextGaussian() * 20;
+                py += random.nextGaussian() * 20;
+                pz += random.nextGaussian() * 20;
+                boolean invalid = random.nextInt(50) == 0;
+                x[s][step] = invalid ? Float.NaN : (float) px;
+                y[s][step] = (float) py;
+                z[s][step] = (float) pz;
+            }
+        }
+        return positions(9_000_000_000L, x, y, z);
+    }
+
+    private static IntIntHashMap idMap(int[] noradIds) {
+        IntIntHashMap idMap = new IntIntHashMap();
+        for (int i = 0; i < noradIds.length; i++) idMap.put(noradIds[i], i);
+        return idMap;
+    }
+}
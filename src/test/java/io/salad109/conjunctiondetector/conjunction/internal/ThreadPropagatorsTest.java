@@ -0,0 +1,48 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.orekit.data.DataContext;
+import org.orekit.data.DirectoryCrawler;
+import org.orekit.propagation.analytical.tle.TLE;
+import org.orekit.propagation.analytical.tle.TLEPropagator;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThreadPropagatorsTest {
+
+    private static final String IRIDIUM_TLE1 = "1 24946U 97051C   09040.78448243 +.00000153 +00000-0 +47668-4 0  9994";
+    private static final String IRIDIUM_TLE2 = "2 24946 086.3994 121.7028 0002288 085.1644 274.9812 14.34219863597336";
+
+    @BeforeAll
+    static void initOrekit() {
+        File orekitData = new File("src/main/resources/orekit-data");
+        if (orekitData.exists()) {
+            DataContext.getDefault().getDataProvidersManager()
+                    .addProvider(new DirectoryCrawler(orekitData));
+        }
+    }
+
+    @Test
+    void copiesAreOwnedByTheThreadAndFollowTheElementSet() {
+        TLEPropagator shared = TLEPropagator.selectExtrapolator(new TLE(IRIDIUM_TLE1, IRIDIUM_TLE2));
+
+        TLEPropagator local = ThreadPropagators.of(shared);
+        assertThat(local).isNotSameAs(shared);
+        assertThat(local.getTLE()).isSameAs(shared.getTLE());
+        assertThat(ThreadPropagators.of(shared)).isSameAs(local);
+
+        // Another thread gets its own copy
+        TLEPropagator other = CompletableFuture.supplyAsync(() -> ThreadPropagators.of(shared)).join();
+        assertThat(other).isNotSameAs(local);
+
+        // A propagator rebuilt by the registry replaces the copy
+        TLEPropagator rebuilt = TLEPropagator.selectExtrapolator(new TLE(IRIDIUM_TLE1, IRIDIUM_TLE2));
+        TLEPropagator replaced = ThreadPropagators.of(rebuilt);
+        assertThat(replaced).isNotSameAs(local);
+        assertThat(replaced.getTLE()).isSameAs(rebuilt.getTLE());
+    }
+}
@@ -0,0 +1,140 @@
+package io.salad109.conjunctiondetector.conjunction.internal;
+
+import io.salad109.conjunctiondetector.conjunction.internal.PropagationService.PositionCache;
+import io.salad109.conjunctiondetector.satellite.SatelliteScanInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeStepRegimesTest {
+
+    private static final double EARTH_RADIUS_KM = 6378.135;
+    private static final double MU_KM3_S2 = 398600.4418;
+    private static final double TOLERANCE_KM = 72.0;
+    private static final double THRESHOLD_KM = 5.0;
+    private static final double STEP_SECONDS = 9.0;
+    private static final double GEO_ALTITUDE_KM = 35786.0;
+    private static final double LEO_ALTITUDE_KM = 550.0;
+
+    private final ScanService scanService = new ScanService(null);
+
+    @Test
+    void slowRegimesGetCoarserStrides() {
+        Catalog catalog = catalog(40, 40, 10, 1);
+        TimeStepRegimes regimes = new TimeStepRegimes(catalog.satellites, catalog.positions, TOLERANCE_KM,
+                TOLERANCE_KM, THRESHOLD_KM, STEP_SECONDS, 8);
+
+        for (int idx = 0; idx < 40; idx++) assertThat(regimes.stride(idx)).isEqualTo(1);
+        for (int idx = 40; idx < 80; idx++) assertThat(regimes.stride(idx)).isEqualTo(2);
+        assertThat(regimes.countsByStride()).containsExactly(40, 40, 0, 0);
+        assertThat(regimes.activeAt(1)).hasSize(40);
+        assertThat(regimes.activeAt(2)).hasSize(80);
+        assertThat(regimes.activeAt(0)).hasSize(80);
+    }
+
+    @Test
+    void gridCoverageShortensStrides() {
+        Catalog catalog = catalog(40, 40, 10, 1);
+        // A 48 km cell only guarantees pairs within 48 km, too short for GEO at stride 2
+        TimeStepRegimes regimes = new TimeStepRegimes(catalog.satellites, catalog.positions, TOLERANCE_KM,
+                TOLERANCE_KM / 1.5, THRESHOLD_KM, STEP_SECONDS, 8);
+
+        assertThat(regimes.countsByStride()).containsExactly(80, 0, 0, 0);
+    }
+
+    @Test
+    void pairsKeepTheirOwnEventGap() {
+        Catalog catalog = catalog(40, 40, 10, 1);
+        TimeStepRegimes regimes = new TimeStepRegimes(catalog.satellites, catalog.positions, TOLERANCE_KM,
+                TOLERANCE_KM, THRESHOLD_KM, STEP_SECONDS, 8);
+        long leoPair = DetectionBuffer.pairKey(0, 1);
+        long geoPair = DetectionBuffer.pairKey(40, 41);
+
+        // Detections 4 steps apart: two events for a stride 1 pair, one for a stride 2 pair
+        DetectionBuffer detections = new DetectionBuffer();
+        for (int step : new int[]{0, 4}) {
+            detections.add(leoPair, 1f, step);
+            detections.add(geoPair, 1f, step);
+        }
+        DetectionBuffer events = scanService.groupAndReduce(detections, regimes);
+        assertThat(events.size()).isEqualTo(3);
+
+        EventReducer reducer = new EventReducer(3 * regimes.maxStride(), regimes::pairGapSteps);
+        for (int step : new int[]{0, 4}) {
+            reducer.add(leoPair, 1f, step);
+            reducer.add(geoPair, 1f, step);
+        }
+        assertThat(reducer.events().size()).isEqualTo(3);
+    }
+
+    @Test
+    void multiRateSweepFindsTheSameEvents() {
+        Catalog catalog = catalog(60, 80, 400, 3);
+        TimeStepRegimes regimes = new TimeStepRegimes(catalog.satellites, catalog.positions, TOLERANCE_KM,
+                TOLERANCE_KM, THRESHOLD_KM, STEP_SECONDS, 8);
+        BroadPhase broadPhase = BroadPhase.create(BroadPhaseType.GRID, GridType.SORTED, TOLERANCE_KM, TOLERANCE_KM);
+
+        DetectionBuffer full = scanService.checkPairs(catalog.positions, TOLERANCE_KM, broadPhase, KernelType.SCALAR);
+        DetectionBuffer multiRate = scanService.checkPairsMultiRate(catalog.positions, regimes, TOLERANCE_KM,
+                broadPhase, KernelType.SCALAR);
+
+        assertThat(multiRate.size()).isLessThan(full.size());
+        for (int i = 0; i < multiRate.size(); i++) {
+            long pairKey = multiRate.pairKey(i);
+            int stride = regimes.pairStride(DetectionBuffer.firstIndex(pairKey), DetectionBuffer.secondIndex(pairKey));
+            assertThat(multiRate.step(i) % stride).isZero();
+        }
+        Set<Long> expected = pairs(scanService.groupAndReduce(full));
+        Set<Long> actual = pairs(scanService.groupAndReduce(multiRate, regimes));
+        assertThat(actual).isNotEmpty().isEqualTo(expected);
+    }
+
+    private static Set<Long> pairs(DetectionBuffer events) {
+        Set<Long> pairs = new HashSet<>();
+        for (int i = 0; i < events.size(); i++) pairs.add(events.pairKey(i));
+        return pairs;
+    }
+
+    private record Catalog(List<SatelliteScanInfo> satellites, PositionCache positions) {
+    }
+
+    /**
+     * Circular orbits, LEO satellites first then GEO, each regime bunched within a fraction of a degree in phase and
+     * inclination so that some pairs pass within tolerance.
+     */
+    private static Catalog catalog(int leo, int geo, int steps, long seed) {
+        Random random = new Random(seed);
+        int numSats = leo + geo;
+        List<SatelliteScanInfo> satellites = new ArrayList<>();
+        float[][] x = new float[numSats][steps];
+        float[][] y = new float[numSats][steps];
+        float[][] z = new float[numSats][steps];
+        for (int s = 0; s < numSats; s++) {
+            double altitude = s < leo ? LEO_ALTITUDE_KM : GEO_ALTITUDE_KM;
+            satellites.add(new SatelliteScanInfo(s + 1, "", "", TestCatalogs.START, altitude, altitude, "PAYLOAD"));
+
+            double r = EARTH_RADIUS_KM + altitude;
+            double rate = Math.sqrt(MU_KM3_S2 / (r * r * r));
+            double spread = s < leo ? 0.02 : 0.005;
+            double phase = random.nextDouble() * spread;
+            double inclination = random.nextDouble() * spread;
+            double node = random.nextDouble() * spread;
+            for (int step = 0; step < steps; step++) {
+                double u = phase + rate * STEP_SECONDS * step;
+                double px = r * Math.cos(u);
+                double py = r * Math.sin(u) * Math.cos(inclination);
+                double pz = r * Math.sin(u) * Math.sin(inclination);
+                x[s][step] = (float) (px * Math.cos(node) - py * Math.sin(node));
+                y[s][step] = (float) (px * Math.sin(node) + py * Math.cos(node));
+                z[s][step] = (float) pz;
+            }
+        }
+        return new Catalog(satellites, TestCatalogs.positions((long) (STEP_SECONDS * 1e9), x, y, z));
+    }
+}